@@ -1,7 +1,9 @@
 package com.mycompany.hiChatJpa;
 
 import com.formdev.flatlaf.FlatDarkLaf;
+import com.mycompany.hiChatJpa.service.impl.SubidaFotosService;
 import com.mycompany.hiChatJpa.view.MainFrame;
+import com.mycompany.hiChatJpa.view.imagenes.CacheImagenes;
 
 /**
  * clase main
@@ -26,6 +28,13 @@ public class App {
         }
         
         FlatDarkLaf.setup();
+
+        // el almacen local reemplaza la foto en la misma url, sin esto la vista
+        // seguiria mostrando la imagen anterior que tiene en memoria
+        SubidaFotosService.getInstance().agregarObservador(
+                (idUsuario, url) -> CacheImagenes.getInstance().invalidar(url));
+        // fotos de perfil que no se alcanzaron a subir en la ejecucion anterior
+        Thread.ofVirtual().name("reanudar-subidas").start(() -> SubidaFotosService.getInstance().reanudarPendientes());
         java.awt.EventQueue.invokeLater(() -> new MainFrame().setVisible(true));
     }
 }
@@ -0,0 +1,411 @@
+package com.mycompany.hiChatJpa.codec;
+
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.dto.LecturaChatDTO;
+import com.mycompany.hiChatJpa.dto.MensajeDTO;
+import com.mycompany.hiChatJpa.dto.PaginaMensajesDTO;
+import com.mycompany.hiChatJpa.dto.SincronizacionChatDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * formato binario compacto para enviar historial y bandeja de chats. Cada
+ * mensaje lleva el perfil completo del emisor y cada chat el de sus
+ * participantes, en un historial casi siempre son los mismos dos perfiles
+ * repetidos. Aqui cada perfil se escribe una sola vez y despues se hace
+ * referencia a el por su posicion en la tabla de perfiles del mensaje.
+ *
+ * Estructura: byte de version, byte de tipo y el contenido. Los IDs y
+ * numeros van como varint, los textos como UTF-8 con su largo adelante y las
+ * fechas como segundos y nanos. Al decodificar, los mensajes del mismo emisor
+ * comparten la misma instancia de UsuarioPerfilDTO.
+ *
+ * No depende de ningun transporte, cualquiera que mueva bytes puede usarlo.
+ *
+ * @author gatog
+ */
+public final class CodecBinario {
+
+    public static final String TIPO_CONTENIDO = "application/x-hichat-bin";
+
+    // 2: la sincronizacion lleva las marcas de lectura del chat
+    // 3: el mensaje lleva la secuencia de envio y la del ultimo cambio
+    // 4: el perfil ya no lleva el correo, el API no lo expone
+    private static final int VERSION = 4;
+    private static final int TIPO_MENSAJE = 1;
+    private static final int TIPO_LISTA_MENSAJES = 2;
+    private static final int TIPO_CHAT = 3;
+    private static final int TIPO_LISTA_CHATS = 4;
+    private static final int TIPO_PAGINA = 5;
+    private static final int TIPO_SINCRONIZACION = 6;
+
+    private CodecBinario() {
+    }
+
+    /**
+     * indica si el valor tiene representacion binaria, las listas vacias se
+     * toman como listas de mensajes
+     *
+     * @param valor resultado de un servicio
+     * @return true si codificar(valor) lo acepta
+     */
+    public static boolean soporta(Object valor) {
+        return tipoDe(valor) != 0;
+    }
+
+    /**
+     * metodo que codifica un MensajeDTO, ChatConMensajesDTO, una lista de
+     * cualquiera de los dos, PaginaMensajesDTO o SincronizacionChatDTO
+     *
+     * @param valor objeto a codificar
+     * @return bytes del formato binario
+     */
+    public static byte[] codificar(Object valor) {
+        int tipo = tipoDe(valor);
+        if (tipo == 0) {
+            throw new IllegalArgumentException("No hay formato binario para " + valor);
+        }
+        EscritorBinario escritor = new EscritorBinario(256);
+        escritor.escribirByte(VERSION);
+        escritor.escribirByte(tipo);
+        Codificador codificador = new Codificador(escritor);
+
+        switch (tipo) {
+            case TIPO_MENSAJE ->
+                codificador.mensaje((MensajeDTO) valor);
+            case TIPO_LISTA_MENSAJES ->
+                codificador.mensajes(lista(valor, MensajeDTO.class));
+            case TIPO_CHAT ->
+                codificador.chat((ChatConMensajesDTO) valor);
+            case TIPO_LISTA_CHATS -> {
+                List<ChatConMensajesDTO> chats = lista(valor, ChatConMensajesDTO.class);
+                escritor.escribirVarLong(chats.size());
+                for (ChatConMensajesDTO chat : chats) {
+                    codificador.chat(chat);
+                }
+            }
+            case TIPO_PAGINA -> {
+                PaginaMensajesDTO pagina = (PaginaMensajesDTO) valor;
+                codificador.mensajes(pagina.getMensajes());
+                escritor.escribirTexto(pagina.getSiguienteCursor());
+                escritor.escribirByte(booleano(pagina.getHayMas()));
+            }
+            case TIPO_SINCRONIZACION -> {
+                SincronizacionChatDTO sincronizacion = (SincronizacionChatDTO) valor;
+                escritor.escribirLong(sincronizacion.getIdChat());
+                codificador.mensajes(sincronizacion.getMensajes());
+                escritor.escribirLong(sincronizacion.getUltimaSecuencia());
+                escritor.escribirByte(booleano(sincronizacion.getHayMas()));
+                codificador.lecturas(sincronizacion.getLecturas());
+            }
+            default ->
+                throw new IllegalStateException("Tipo binario sin codificador: " + tipo);
+        }
+        return escritor.toByteArray();
+    }
+
+    /**
+     * metodo que decodifica lo que produjo codificar()
+     *
+     * @param bytes formato binario
+     * @return el DTO o la lista de DTOs original
+     */
+    public static Object decodificar(byte[] bytes) {
+        LectorBinario lector = new LectorBinario(bytes);
+        int version = lector.leerByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Version del formato binario no soportada: " + version);
+        }
+        int tipo = lector.leerByte();
+        Decodificador decodificador = new Decodificador(lector);
+
+        return switch (tipo) {
+            case TIPO_MENSAJE ->
+                decodificador.mensaje();
+            case TIPO_LISTA_MENSAJES ->
+                decodificador.mensajes();
+            case TIPO_CHAT ->
+                decodificador.chat();
+            case TIPO_LISTA_CHATS -> {
+                int cantidad = cantidad(lector);
+                List<ChatConMensajesDTO> chats = new ArrayList<>(cantidad);
+                for (int i = 0; i < cantidad; i++) {
+                    chats.add(decodificador.chat());
+                }
+                yield chats;
+            }
+            case TIPO_PAGINA -> {
+                List<MensajeDTO> mensajes = decodificador.mensajes();
+                String cursor = lector.leerTexto();
+                yield new PaginaMensajesDTO(mensajes, cursor, booleano(lector.leerByte()));
+            }
+            case TIPO_SINCRONIZACION -> {
+                Long idChat = lector.leerLong();
+                List<MensajeDTO> mensajes = decodificador.mensajes();
+                Long ultimaSecuencia = lector.leerLong();
+                Boolean hayMas = booleano(lector.leerByte());
+                yield new SincronizacionChatDTO(idChat, mensajes, ultimaSecuencia, hayMas, decodificador.lecturas());
+            }
+            default ->
+                throw new IllegalArgumentException("Tipo binario desconocido: " + tipo);
+        };
+    }
+
+    /**
+     * @param bytes formato binario de una lista de mensajes
+     * @return los mensajes
+     */
+    @SuppressWarnings("unchecked")
+    public static List<MensajeDTO> decodificarMensajes(byte[] bytes) {
+        return (List<MensajeDTO>) decodificar(bytes);
+    }
+
+    /**
+     * @param bytes formato binario de una lista de chats
+     * @return los chats
+     */
+    @SuppressWarnings("unchecked")
+    public static List<ChatConMensajesDTO> decodificarChats(byte[] bytes) {
+        return (List<ChatConMensajesDTO>) decodificar(bytes);
+    }
+
+    private static int tipoDe(Object valor) {
+        if (valor instanceof MensajeDTO) {
+            return TIPO_MENSAJE;
+        }
+        if (valor instanceof ChatConMensajesDTO) {
+            return TIPO_CHAT;
+        }
+        if (valor instanceof PaginaMensajesDTO) {
+            return TIPO_PAGINA;
+        }
+        if (valor instanceof SincronizacionChatDTO) {
+            return TIPO_SINCRONIZACION;
+        }
+        if (valor instanceof List<?> lista) {
+            if (lista.stream().allMatch(MensajeDTO.class::isInstance)) {
+                return TIPO_LISTA_MENSAJES;
+            }
+            if (lista.stream().allMatch(ChatConMensajesDTO.class::isInstance)) {
+                return TIPO_LISTA_CHATS;
+            }
+        }
+        return 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> lista(Object valor, Class<T> tipo) {
+        return (List<T>) valor;
+    }
+
+    private static int cantidad(LectorBinario lector) {
+        return Math.toIntExact(lector.leerVarLong());
+    }
+
+    // Booleanos de tres estados: 0 null, 1 false, 2 true
+    private static int booleano(Boolean valor) {
+        return valor == null ? 0 : valor ? 2 : 1;
+    }
+
+    private static Boolean booleano(int valor) {
+        return valor == 0 ? null : valor == 2;
+    }
+
+    /**
+     * escribe los DTOs llevando la tabla de perfiles ya enviados
+     */
+    private static final class Codificador {
+
+        private final EscritorBinario escritor;
+        private final Map<Long, Integer> perfilesPorId = new HashMap<>();
+        private int perfilesEscritos;
+
+        Codificador(EscritorBinario escritor) {
+            this.escritor = escritor;
+        }
+
+        void mensajes(List<MensajeDTO> mensajes) {
+            if (mensajes == null) {
+                escritor.escribirVarLong(0);
+                return;
+            }
+            escritor.escribirVarLong(mensajes.size() + 1L);
+            for (MensajeDTO mensaje : mensajes) {
+                mensaje(mensaje);
+            }
+        }
+
+        void mensaje(MensajeDTO mensaje) {
+            escritor.escribirLong(mensaje.getIdMensaje());
+            escritor.escribirLong(mensaje.getIdChat());
+            perfil(mensaje.getEmisor());
+            escritor.escribirTexto(mensaje.getContenido());
+            escritor.escribirFechaHora(mensaje.getFechaEnvio());
+            // visto y borrado en un solo byte
+            escritor.escribirByte(booleano(mensaje.getEstaVisto()) | booleano(mensaje.getEstaBorrado()) << 2);
+            escritor.escribirLong(mensaje.getSecuencia());
+            escritor.escribirLong(mensaje.getSecuenciaCambio());
+        }
+
+        void chat(ChatConMensajesDTO chat) {
+            escritor.escribirLong(chat.getIdChat());
+            escritor.escribirTexto(chat.getNombre());
+            escritor.escribirLong(chat.getIdMatch());
+            List<UsuarioPerfilDTO> participantes = chat.getParticipantes();
+            if (participantes == null) {
+                escritor.escribirVarLong(0);
+            } else {
+                escritor.escribirVarLong(participantes.size() + 1L);
+                for (UsuarioPerfilDTO participante : participantes) {
+                    perfil(participante);
+                }
+            }
+            escritor.escribirEntero(chat.getTotalMensajes());
+            escritor.escribirTexto(chat.getUltimoMensaje());
+            escritor.escribirFechaHora(chat.getFechaUltimoMensaje());
+            escritor.escribirByte(booleano(chat.getHayNoLeidos()));
+            escritor.escribirEntero(chat.getMensajesNoLeidos());
+        }
+
+        void lecturas(List<LecturaChatDTO> lecturas) {
+            if (lecturas == null) {
+                escritor.escribirVarLong(0);
+                return;
+            }
+            escritor.escribirVarLong(lecturas.size() + 1L);
+            for (LecturaChatDTO lectura : lecturas) {
+                escritor.escribirLong(lectura.getIdChat());
+                escritor.escribirLong(lectura.getIdUsuario());
+                escritor.escribirLong(lectura.getIdUltimoMensajeLeido());
+                escritor.escribirLong(lectura.getSecuencia());
+            }
+        }
+
+        /**
+         * 0 es null, un indice ya enviado es una referencia y el siguiente
+         * indice libre indica que el perfil completo viene a continuacion
+         */
+        void perfil(UsuarioPerfilDTO perfil) {
+            if (perfil == null) {
+                escritor.escribirVarLong(0);
+                return;
+            }
+            Integer indice = perfil.getIdUsuario() != null ? perfilesPorId.get(perfil.getIdUsuario()) : null;
+            if (indice != null) {
+                escritor.escribirVarLong(indice + 1L);
+                return;
+            }
+            int nuevo = perfilesEscritos++;
+            if (perfil.getIdUsuario() != null) {
+                perfilesPorId.put(perfil.getIdUsuario(), nuevo);
+            }
+            escritor.escribirVarLong(nuevo + 1L);
+            escritor.escribirLong(perfil.getIdUsuario());
+            escritor.escribirTexto(perfil.getNombre());
+            escritor.escribirTexto(perfil.getApellidoPaterno());
+            escritor.escribirTexto(perfil.getApellidoMaterno());
+            escritor.escribirTexto(perfil.getCarrera());
+            escritor.escribirTexto(perfil.getBiografia());
+            escritor.escribirTexto(perfil.getUrlFotoPerfil());
+            escritor.escribirTexto(perfil.getGenero());
+            escritor.escribirFecha(perfil.getFechaNacimiento());
+            escritor.escribirEntero(perfil.getEdad());
+        }
+    }
+
+    /**
+     * lee los DTOs reconstruyendo la tabla de perfiles
+     */
+    private static final class Decodificador {
+
+        private final LectorBinario lector;
+        private final List<UsuarioPerfilDTO> perfiles = new ArrayList<>();
+
+        Decodificador(LectorBinario lector) {
+            this.lector = lector;
+        }
+
+        List<MensajeDTO> mensajes() {
+            long cantidad = lector.leerVarLong();
+            if (cantidad == 0) {
+                return null;
+            }
+            int total = Math.toIntExact(cantidad - 1);
+            List<MensajeDTO> mensajes = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                mensajes.add(mensaje());
+            }
+            return mensajes;
+        }
+
+        MensajeDTO mensaje() {
+            Long idMensaje = lector.leerLong();
+            Long idChat = lector.leerLong();
+            UsuarioPerfilDTO emisor = perfil();
+            String contenido = lector.leerTexto();
+            MensajeDTO mensaje = new MensajeDTO(idMensaje, idChat, emisor, contenido, lector.leerFechaHora(), null, null);
+            int estados = lector.leerByte();
+            mensaje.setEstaVisto(booleano(estados & 0x3));
+            mensaje.setEstaBorrado(booleano(estados >> 2 & 0x3));
+            mensaje.setSecuencia(lector.leerLong());
+            mensaje.setSecuenciaCambio(lector.leerLong());
+            return mensaje;
+        }
+
+        ChatConMensajesDTO chat() {
+            Long idChat = lector.leerLong();
+            String nombre = lector.leerTexto();
+            Long idMatch = lector.leerLong();
+            List<UsuarioPerfilDTO> participantes = null;
+            long cantidad = lector.leerVarLong();
+            if (cantidad > 0) {
+                int total = Math.toIntExact(cantidad - 1);
+                participantes = new ArrayList<>(total);
+                for (int i = 0; i < total; i++) {
+                    participantes.add(perfil());
+                }
+            }
+            Integer totalMensajes = lector.leerEntero();
+            String ultimoMensaje = lector.leerTexto();
+            ChatConMensajesDTO chat = new ChatConMensajesDTO(idChat, nombre, idMatch, participantes, totalMensajes,
+                    ultimoMensaje, lector.leerFechaHora(), booleano(lector.leerByte()));
+            chat.setMensajesNoLeidos(lector.leerEntero());
+            return chat;
+        }
+
+        List<LecturaChatDTO> lecturas() {
+            long cantidad = lector.leerVarLong();
+            if (cantidad == 0) {
+                return null;
+            }
+            int total = Math.toIntExact(cantidad - 1);
+            List<LecturaChatDTO> lecturas = new ArrayList<>(total);
+            for (int i = 0; i < total; i++) {
+                lecturas.add(new LecturaChatDTO(lector.leerLong(), lector.leerLong(), lector.leerLong(), lector.leerLong()));
+            }
+            return lecturas;
+        }
+
+        UsuarioPerfilDTO perfil() {
+            long referencia = lector.leerVarLong();
+            if (referencia == 0) {
+                return null;
+            }
+            int indice = Math.toIntExact(referencia - 1);
+            if (indice < perfiles.size()) {
+                return perfiles.get(indice);
+            }
+            if (indice != perfiles.size()) {
+                throw new IllegalArgumentException("Referencia a un perfil que no se ha enviado: " + indice);
+            }
+            UsuarioPerfilDTO perfil = new UsuarioPerfilDTO(lector.leerLong(), lector.leerTexto(), lector.leerTexto(),
+                    lector.leerTexto(), null, lector.leerTexto(), lector.leerTexto(),
+                    lector.leerTexto(), lector.leerTexto(), lector.leerFecha(), lector.leerEntero());
+            perfiles.add(perfil);
+            return perfil;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.mycompany.hiChatJpa.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * buffer de escritura del formato binario. Los enteros van como varint
+ * (7 bits por byte) en zigzag para que los negativos tambien sean cortos, y
+ * los valores que pueden ser null reservan el 0 para null.
+ *
+ * @author gatog
+ */
+final class EscritorBinario {
+
+    private byte[] bytes;
+    private int tamano;
+
+    EscritorBinario(int capacidadInicial) {
+        this.bytes = new byte[Math.max(16, capacidadInicial)];
+    }
+
+    void escribirByte(int valor) {
+        asegurar(1);
+        bytes[tamano++] = (byte) valor;
+    }
+
+    /**
+     * escribe un entero sin signo en varint
+     */
+    void escribirVarLong(long valor) {
+        asegurar(10);
+        while ((valor & ~0x7FL) != 0) {
+            bytes[tamano++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        bytes[tamano++] = (byte) valor;
+    }
+
+    /**
+     * escribe un Long que puede ser null, 0 es null y el resto es el zigzag
+     * del valor mas uno
+     */
+    void escribirLong(Long valor) {
+        escribirVarLong(valor == null ? 0 : zigzag(valor) + 1);
+    }
+
+    void escribirEntero(Integer valor) {
+        escribirLong(valor == null ? null : valor.longValue());
+    }
+
+    /**
+     * escribe el largo en bytes UTF-8 mas uno y luego los bytes, 0 es null
+     */
+    void escribirTexto(String valor) {
+        if (valor == null) {
+            escribirVarLong(0);
+            return;
+        }
+        byte[] utf8 = valor.getBytes(StandardCharsets.UTF_8);
+        escribirVarLong(utf8.length + 1L);
+        asegurar(utf8.length);
+        System.arraycopy(utf8, 0, bytes, tamano, utf8.length);
+        tamano += utf8.length;
+    }
+
+    /**
+     * escribe la fecha como segundos UTC y nanosegundos, las fechas de la
+     * base de datos no traen zona asi que solo importa que sea reversible
+     */
+    void escribirFechaHora(LocalDateTime valor) {
+        if (valor == null) {
+            escribirVarLong(0);
+            return;
+        }
+        escribirVarLong(zigzag(valor.toEpochSecond(ZoneOffset.UTC)) + 1);
+        escribirVarLong(valor.getNano());
+    }
+
+    void escribirFecha(LocalDate valor) {
+        escribirLong(valor == null ? null : valor.toEpochDay());
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(bytes, tamano);
+    }
+
+    private void asegurar(int adicionales) {
+        if (tamano + adicionales > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, tamano + adicionales));
+        }
+    }
+
+    private static long zigzag(long valor) {
+        return (valor << 1) ^ (valor >> 63);
+    }
+}
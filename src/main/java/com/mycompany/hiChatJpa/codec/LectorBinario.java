@@ -0,0 +1,86 @@
+package com.mycompany.hiChatJpa.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * contraparte de EscritorBinario, lee sobre un arreglo sin copiarlo
+ *
+ * @author gatog
+ */
+final class LectorBinario {
+
+    private final byte[] bytes;
+    private int posicion;
+
+    LectorBinario(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    int leerByte() {
+        if (posicion >= bytes.length) {
+            throw new IllegalArgumentException("El mensaje binario esta incompleto");
+        }
+        return bytes[posicion++] & 0xFF;
+    }
+
+    long leerVarLong() {
+        long valor = 0;
+        for (int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7) {
+            int b = leerByte();
+            valor |= (long) (b & 0x7F) << desplazamiento;
+            if ((b & 0x80) == 0) {
+                return valor;
+            }
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    Long leerLong() {
+        long crudo = leerVarLong();
+        return crudo == 0 ? null : dezigzag(crudo - 1);
+    }
+
+    Integer leerEntero() {
+        Long valor = leerLong();
+        return valor == null ? null : Math.toIntExact(valor);
+    }
+
+    String leerTexto() {
+        long largo = leerVarLong();
+        if (largo == 0) {
+            return null;
+        }
+        int bytesTexto = Math.toIntExact(largo - 1);
+        if (bytesTexto > bytes.length - posicion) {
+            throw new IllegalArgumentException("El texto excede el mensaje binario");
+        }
+        String texto = new String(bytes, posicion, bytesTexto, StandardCharsets.UTF_8);
+        posicion += bytesTexto;
+        return texto;
+    }
+
+    LocalDateTime leerFechaHora() {
+        long segundos = leerVarLong();
+        if (segundos == 0) {
+            return null;
+        }
+        int nanos = Math.toIntExact(leerVarLong());
+        return LocalDateTime.ofEpochSecond(dezigzag(segundos - 1), nanos, ZoneOffset.UTC);
+    }
+
+    LocalDate leerFecha() {
+        Long dia = leerLong();
+        return dia == null ? null : LocalDate.ofEpochDay(dia);
+    }
+
+    boolean hayMas() {
+        return posicion < bytes.length;
+    }
+
+    private static long dezigzag(long valor) {
+        return (valor >>> 1) ^ -(valor & 1);
+    }
+}
@@ -0,0 +1,51 @@
+package com.mycompany.hiChatJpa.config;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * almacen de imagenes en una carpeta local, sustituye a Cloudinary cuando se
+ * trabaja sin conexion, las urls que devuelve son file:
+ *
+ * @author gatog
+ */
+public class AlmacenImagenesLocal implements IAlmacenImagenes {
+
+    private static final String FOTO_DEFAULT = "/icons/default-picture.png";
+    private static final long MAX_FILE_SIZE = 10 * 1024 * 1024;
+
+    private final Path directorio;
+
+    public AlmacenImagenesLocal(Path directorio) {
+        this.directorio = directorio;
+    }
+
+    @Override
+    public String subirFotoPerfil(String rutaArchivo, Long idUsuario) throws IOException {
+        Path origen = Path.of(rutaArchivo);
+        if (!Files.isRegularFile(origen)) {
+            throw new IOException("El archivo no existe");
+        }
+        if (Files.size(origen) > MAX_FILE_SIZE) {
+            throw new IOException("El archivo excede el tamaño máximo permitido (10MB)");
+        }
+
+        String nombre = origen.getFileName().toString().toLowerCase();
+        if (!nombre.matches(".*\\.(jpg|jpeg|png|gif|webp)$")) {
+            throw new IOException("Formato de imagen no soportado. Use: JPG, PNG, GIF o WEBP");
+        }
+
+        Path carpeta = directorio.resolve("perfiles");
+        Files.createDirectories(carpeta);
+        Path destino = carpeta.resolve("usuario_" + idUsuario + nombre.substring(nombre.lastIndexOf('.')));
+        Files.copy(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+        return destino.toUri().toString();
+    }
+
+    @Override
+    public String obtenerUrlFotoDefault() {
+        return FOTO_DEFAULT;
+    }
+}
@@ -0,0 +1,37 @@
+package com.mycompany.hiChatJpa.config;
+
+import io.github.cdimascio.dotenv.Dotenv;
+import java.nio.file.Path;
+
+/**
+ * clase que elige el almacen de imagenes segun la variable IMAGE_STORE del
+ * archivo .env (cloudinary por defecto o local)
+ *
+ * @author gatog
+ */
+public class AlmacenImagenesUtil {
+
+    private static IAlmacenImagenes almacen;
+
+    private AlmacenImagenesUtil() {
+    }
+
+    public static synchronized IAlmacenImagenes getAlmacen() {
+        if (almacen == null) {
+            Dotenv dotenv = Dotenv.configure()
+                    .ignoreIfMissing()
+                    .load();
+
+            String tipo = dotenv.get("IMAGE_STORE", "cloudinary").trim();
+            if ("local".equalsIgnoreCase(tipo)) {
+                String directorio = dotenv.get("IMAGE_STORE_DIR");
+                almacen = new AlmacenImagenesLocal(directorio == null || directorio.isBlank()
+                        ? Path.of(System.getProperty("user.home"), ".hichat", "almacen")
+                        : Path.of(directorio.trim()));
+            } else {
+                almacen = CloudinaryUtil.getInstance();
+            }
+        }
+        return almacen;
+    }
+}
@@ -9,7 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Map;
 
-public class CloudinaryUtil {
+public class CloudinaryUtil implements IAlmacenImagenes {
 
     private static CloudinaryUtil instance;
     private final Cloudinary cloudinary;
@@ -47,6 +47,7 @@ public class CloudinaryUtil {
         return instance;
     }
 
+    @Override
     public String obtenerUrlFotoDefault() {
         if (existeImagen(PUBLIC_ID_FOTO_DEFAULT)) {
             return URL_FOTO_DEFAULT;
@@ -119,6 +120,7 @@ public class CloudinaryUtil {
         return subirImagen(archivo.getAbsolutePath(), publicId, carpeta);
     }
 
+    @Override
     public String subirFotoPerfil(String rutaArchivo, Long idUsuario) throws IOException {
         String publicId = "usuario_" + idUsuario;
         return subirImagen(rutaArchivo, publicId, FOLDER_PERFIL);
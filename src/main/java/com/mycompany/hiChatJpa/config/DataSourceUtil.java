@@ -0,0 +1,142 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.github.cdimascio.dotenv.Dotenv;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * clase que construye el pool de conexiones a partir de las variables del
+ * archivo .env, si una variable no existe se usa su valor por defecto
+ *
+ * @author gatog
+ */
+public class DataSourceUtil {
+
+    private static final String URL_DEFAULT = "jdbc:mysql://localhost:3306/HiChat";
+    private static final String USUARIO_DEFAULT = "root";
+    private static final String CONTRASENIA_DEFAULT = "QWERTY";
+    private static final String DRIVER = "com.mysql.cj.jdbc.Driver";
+
+    private static final int MAX_POOL_DEFAULT = 10;
+    private static final int MIN_IDLE_DEFAULT = 2;
+    private static final long IDLE_TIMEOUT_DEFAULT = 600_000;
+    private static final long LEAK_DETECTION_DEFAULT = 20_000;
+    private static final long CONNECTION_TIMEOUT_DEFAULT = 5_000;
+    private static final long MAX_LIFETIME_DEFAULT = 1_800_000;
+    private static final long VENTANA_LECTURA_PROPIA_DEFAULT = 5_000;
+
+    private DataSourceUtil() {
+    }
+
+    /**
+     * crea el pool de conexiones principal
+     *
+     * @param metricas recolector de metricas que usara el pool
+     * @return HikariDataSource listo para usarse
+     */
+    public static HikariDataSource crearDataSource(MetricasPool metricas) {
+        Dotenv dotenv = cargarEnv();
+        return crearDataSource("HiChatPool", valor(dotenv, "DB_URL", URL_DEFAULT), metricas);
+    }
+
+    /**
+     * crea un pool de conexiones con la configuracion del .env apuntando a la
+     * url indicada
+     *
+     * @param nombrePool nombre con el que se identifica el pool en los logs
+     * @param url url jdbc de la base de datos
+     * @param metricas recolector de metricas que usara el pool
+     * @return HikariDataSource listo para usarse
+     */
+    public static HikariDataSource crearDataSource(String nombrePool, String url, MetricasPool metricas) {
+        Dotenv dotenv = cargarEnv();
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(nombrePool);
+        config.setDriverClassName(DRIVER);
+        config.setJdbcUrl(url);
+        config.setUsername(valor(dotenv, "DB_USER", USUARIO_DEFAULT));
+        config.setPassword(valor(dotenv, "DB_PASSWORD", CONTRASENIA_DEFAULT));
+
+        config.setMaximumPoolSize(entero(dotenv, "DB_POOL_MAX_SIZE", MAX_POOL_DEFAULT));
+        config.setMinimumIdle(entero(dotenv, "DB_POOL_MIN_IDLE", MIN_IDLE_DEFAULT));
+        config.setIdleTimeout(largo(dotenv, "DB_POOL_IDLE_TIMEOUT_MS", IDLE_TIMEOUT_DEFAULT));
+        config.setLeakDetectionThreshold(largo(dotenv, "DB_POOL_LEAK_DETECTION_MS", LEAK_DETECTION_DEFAULT));
+        config.setConnectionTimeout(largo(dotenv, "DB_POOL_CONNECTION_TIMEOUT_MS", CONNECTION_TIMEOUT_DEFAULT));
+        config.setMaxLifetime(largo(dotenv, "DB_POOL_MAX_LIFETIME_MS", MAX_LIFETIME_DEFAULT));
+        config.setAutoCommit(false);
+
+        // cache de sentencias preparadas del lado del driver
+        config.addDataSourceProperty("cachePrepStmts", "true");
+        config.addDataSourceProperty("prepStmtCacheSize", "250");
+        config.addDataSourceProperty("prepStmtCacheSqlLimit", "2048");
+        config.addDataSourceProperty("useServerPrepStmts", "true");
+        // el driver junta los lotes de INSERT de Hibernate en un solo INSERT multi-fila
+        config.addDataSourceProperty("rewriteBatchedStatements", "true");
+
+        if (metricas != null) {
+            config.setMetricsTrackerFactory(metricas);
+        }
+
+        try {
+            return new HikariDataSource(config);
+        } catch (Exception e) {
+            throw new RuntimeException("No se pudo crear el pool de conexiones " + nombrePool, e);
+        }
+    }
+
+    /**
+     * lee las urls jdbc de las replicas de lectura de DB_REPLICA_URLS,
+     * separadas por coma. Las replicas usan el mismo usuario, contraseña y
+     * configuracion de pool que la primaria.
+     *
+     * @return lista vacia si no hay replicas configuradas
+     */
+    public static List<String> urlsReplicas() {
+        List<String> urls = new ArrayList<>();
+        String valor = valor(cargarEnv(), "DB_REPLICA_URLS", "");
+        for (String url : valor.split(",")) {
+            if (!url.isBlank()) {
+                urls.add(url.trim());
+            }
+        }
+        return urls;
+    }
+
+    /**
+     * @return milisegundos de DB_REPLICA_STICKY_MS durante los que un usuario
+     * lee de la primaria despues de escribir
+     */
+    public static long ventanaLecturaPropiaMs() {
+        return largo(cargarEnv(), "DB_REPLICA_STICKY_MS", VENTANA_LECTURA_PROPIA_DEFAULT);
+    }
+
+    private static Dotenv cargarEnv() {
+        return Dotenv.configure()
+                .ignoreIfMissing()
+                .load();
+    }
+
+    private static String valor(Dotenv dotenv, String clave, String porDefecto) {
+        String valor = dotenv.get(clave);
+        return (valor == null || valor.isBlank()) ? porDefecto : valor.trim();
+    }
+
+    private static int entero(Dotenv dotenv, String clave, int porDefecto) {
+        try {
+            return Integer.parseInt(valor(dotenv, clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("El valor de " + clave + " no es un numero valido", e);
+        }
+    }
+
+    private static long largo(Dotenv dotenv, String clave, long porDefecto) {
+        try {
+            return Long.parseLong(valor(dotenv, clave, String.valueOf(porDefecto)));
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("El valor de " + clave + " no es un numero valido", e);
+        }
+    }
+}
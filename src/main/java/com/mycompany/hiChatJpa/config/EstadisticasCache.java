@@ -0,0 +1,146 @@
+package com.mycompany.hiChatJpa.config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+/**
+ * valores de la cache de segundo nivel en un instante dado, una entrada por
+ * region configurada en ehcache.xml mas los totales de Hibernate
+ *
+ * @author gatog
+ */
+public class EstadisticasCache {
+
+    private final List<Region> regiones;
+    private final long aciertos;
+    private final long fallos;
+    private final long escrituras;
+    private final long aciertosConsultas;
+    private final long fallosConsultas;
+
+    private EstadisticasCache(List<Region> regiones, long aciertos, long fallos, long escrituras,
+            long aciertosConsultas, long fallosConsultas) {
+        this.regiones = regiones;
+        this.aciertos = aciertos;
+        this.fallos = fallos;
+        this.escrituras = escrituras;
+        this.aciertosConsultas = aciertosConsultas;
+        this.fallosConsultas = fallosConsultas;
+    }
+
+    /**
+     * metodo que toma los valores actuales de las estadisticas de Hibernate
+     *
+     * @param estadisticas estadisticas del SessionFactory
+     * @return EstadisticasCache con los valores de cada region
+     */
+    static EstadisticasCache de(Statistics estadisticas) {
+        List<Region> regiones = new ArrayList<>();
+        for (String nombre : estadisticas.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = estadisticas.getCacheRegionStatistics(nombre);
+            if (region != null) {
+                regiones.add(new Region(nombre, region.getHitCount(), region.getMissCount(),
+                        region.getPutCount(), region.getElementCountInMemory()));
+            }
+        }
+        return new EstadisticasCache(
+                Collections.unmodifiableList(regiones),
+                estadisticas.getSecondLevelCacheHitCount(),
+                estadisticas.getSecondLevelCacheMissCount(),
+                estadisticas.getSecondLevelCachePutCount(),
+                estadisticas.getQueryCacheHitCount(),
+                estadisticas.getQueryCacheMissCount()
+        );
+    }
+
+    public List<Region> getRegiones() {
+        return regiones;
+    }
+
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    public long getFallos() {
+        return fallos;
+    }
+
+    public long getEscrituras() {
+        return escrituras;
+    }
+
+    public long getAciertosConsultas() {
+        return aciertosConsultas;
+    }
+
+    public long getFallosConsultas() {
+        return fallosConsultas;
+    }
+
+    @Override
+    public String toString() {
+        return "EstadisticasCache{"
+                + "aciertos=" + aciertos
+                + ", fallos=" + fallos
+                + ", escrituras=" + escrituras
+                + ", aciertosConsultas=" + aciertosConsultas
+                + ", fallosConsultas=" + fallosConsultas
+                + ", regiones=" + regiones
+                + '}';
+    }
+
+    /**
+     * valores de una region de la cache
+     */
+    public static class Region {
+
+        private final String nombre;
+        private final long aciertos;
+        private final long fallos;
+        private final long escrituras;
+        private final long elementos;
+
+        private Region(String nombre, long aciertos, long fallos, long escrituras, long elementos) {
+            this.nombre = nombre;
+            this.aciertos = aciertos;
+            this.fallos = fallos;
+            this.escrituras = escrituras;
+            this.elementos = elementos;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public long getAciertos() {
+            return aciertos;
+        }
+
+        public long getFallos() {
+            return fallos;
+        }
+
+        public long getEscrituras() {
+            return escrituras;
+        }
+
+        /**
+         * @return elementos en memoria o -1 si el proveedor no lo reporta
+         */
+        public long getElementos() {
+            return elementos;
+        }
+
+        @Override
+        public String toString() {
+            return nombre + "{aciertos=" + aciertos
+                    + ", fallos=" + fallos
+                    + ", escrituras=" + escrituras
+                    + ", elementos=" + elementos
+                    + '}';
+        }
+    }
+}
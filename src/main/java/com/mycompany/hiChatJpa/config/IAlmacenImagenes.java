@@ -0,0 +1,27 @@
+package com.mycompany.hiChatJpa.config;
+
+import java.io.IOException;
+
+/**
+ * interfaz del lugar donde se guardan las fotos de perfil, permite cambiar
+ * Cloudinary por una carpeta local para trabajar sin conexion
+ *
+ * @author gatog
+ */
+public interface IAlmacenImagenes {
+
+    /**
+     * sube la foto de perfil del usuario
+     *
+     * @param rutaArchivo ruta local del archivo
+     * @param idUsuario ID del usuario dueño de la foto
+     * @return url con la que se muestra la foto
+     * @throws IOException si no se pudo subir
+     */
+    String subirFotoPerfil(String rutaArchivo, Long idUsuario) throws IOException;
+
+    /**
+     * @return url de la foto que se usa cuando el usuario no tiene una
+     */
+    String obtenerUrlFotoDefault();
+}
@@ -1,8 +1,15 @@
 package com.mycompany.hiChatJpa.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.Persistence;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.hibernate.SessionFactory;
 
 
 /**
@@ -16,7 +23,17 @@ public class JpaUtil {
     private static final String PERSISTENCE_UNIT = "HiChatPU";
 
     private static volatile EntityManagerFactory emf;
+    private static volatile HikariDataSource dataSource;
+    // replicas de lectura de DB_REPLICA_URLS, vacia si no hay
+    private static volatile List<EntityManagerFactory> replicas = List.of();
+    private static final List<HikariDataSource> dataSourcesReplica = new ArrayList<>();
+    private static final AtomicInteger siguienteReplica = new AtomicInteger();
+    private static final MetricasPool metricasPool = new MetricasPool();
     private static final ThreadLocal<EntityManager> threadLocal = new ThreadLocal<>();
+    // true mientras el hilo esta dentro de una unidad de trabajo
+    private static final ThreadLocal<Boolean> flushDiferido = ThreadLocal.withInitial(() -> false);
+    // System.nanoTime() al abrir el EntityManager del hilo, solo si es de la primaria
+    private static final ThreadLocal<Long> aperturaPrimaria = new ThreadLocal<>();
 
     private JpaUtil() {
     }
@@ -33,8 +50,28 @@ public class JpaUtil {
                 entityManagerFactory = JpaUtil.emf;
                 if (entityManagerFactory == null) {
                     try {
-                        JpaUtil.emf = entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT);
+                        HikariDataSource ds = DataSourceUtil.crearDataSource(metricasPool);
+                        Map<String, Object> propiedades = new HashMap<>();
+                        propiedades.put("hibernate.connection.datasource", ds);
+                        propiedades.put("hibernate.connection.provider_disables_autocommit", "true");
+                        JpaUtil.dataSource = ds;
+                        entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, propiedades);
+                        try {
+                            MigracionIdentificadores.ajustarGeneradores(entityManagerFactory);
+                        } catch (RuntimeException e) {
+                            entityManagerFactory.close();
+                            throw e;
+                        }
+                        // antes de las lecturas, que parten de los participantes
+                        MigracionParticipantes.completar(entityManagerFactory);
+                        MigracionLecturas.ejecutarSiHaceFalta(entityManagerFactory);
+                        crearReplicas();
+                        JpaUtil.emf = entityManagerFactory;
                     } catch (Exception e) {
+                        if (JpaUtil.dataSource != null) {
+                            JpaUtil.dataSource.close();
+                            JpaUtil.dataSource = null;
+                        }
                         throw new RuntimeException("No se pudo inicializar la conexión a la base de datos", e);
                     }
                 }
@@ -43,6 +80,83 @@ public class JpaUtil {
         return entityManagerFactory;
     }
 
+    /**
+     * crea un EntityManagerFactory por cada url de DB_REPLICA_URLS. Las
+     * replicas no generan esquema ni usan la cache de segundo nivel, que es
+     * de la primaria. Una replica que no responde al arrancar se omite y sus
+     * lecturas van a la primaria.
+     */
+    private static void crearReplicas() {
+        List<EntityManagerFactory> creadas = new ArrayList<>();
+        List<String> urls = DataSourceUtil.urlsReplicas();
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource ds = null;
+            try {
+                ds = DataSourceUtil.crearDataSource("HiChatReplica" + (i + 1), urls.get(i), null);
+                Map<String, Object> propiedades = new HashMap<>();
+                propiedades.put("hibernate.connection.datasource", ds);
+                propiedades.put("hibernate.connection.provider_disables_autocommit", "true");
+                propiedades.put("jakarta.persistence.schema-generation.database.action", "none");
+                propiedades.put("jakarta.persistence.sharedCache.mode", "NONE");
+                propiedades.put("hibernate.cache.use_second_level_cache", "false");
+                propiedades.put("hibernate.cache.use_query_cache", "false");
+                creadas.add(Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, propiedades));
+                dataSourcesReplica.add(ds);
+            } catch (RuntimeException e) {
+                if (ds != null) {
+                    ds.close();
+                }
+                System.err.println("No se pudo conectar a la replica " + urls.get(i) + ": " + e.getMessage());
+            }
+        }
+        replicas = List.copyOf(creadas);
+    }
+
+    /**
+     * metodo que indica si hay replicas de lectura disponibles
+     *
+     * @return true si se configuro y levanto al menos una replica
+     */
+    public static boolean hasReplicas() {
+        getEntityManagerFactory();
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * obtiene el EntityManager del hilo actual sobre una replica de lectura,
+     * repartiendo entre las replicas por turnos. Si el hilo ya tiene un
+     * EntityManager abierto se sigue usando ese, y si no hay replicas se usa
+     * la primaria. Solo debe usarse para lecturas.
+     *
+     * @return EntityManager
+     */
+    public static EntityManager getReplicaEntityManager() {
+        EntityManager em = threadLocal.get();
+        if (em != null && em.isOpen()) {
+            return em;
+        }
+        getEntityManagerFactory();
+        List<EntityManagerFactory> disponibles = replicas;
+        if (disponibles.isEmpty()) {
+            return getEntityManager();
+        }
+        em = disponibles.get(Math.floorMod(siguienteReplica.getAndIncrement(), disponibles.size())).createEntityManager();
+        threadLocal.set(em);
+        aperturaPrimaria.remove();
+        return em;
+    }
+
+    /**
+     * metodo que indica si el hilo actual ya esta dentro de una transaccion,
+     * sin crear un EntityManager si no lo tiene
+     *
+     * @return true si hay una transaccion activa en el hilo
+     */
+    public static boolean isTransactionActive() {
+        EntityManager em = threadLocal.get();
+        return em != null && em.isOpen() && em.getTransaction().isActive();
+    }
+
     /**
      * obtiene el EntityManager para el hilo actual
      *
@@ -53,10 +167,24 @@ public class JpaUtil {
         if (em == null || !em.isOpen()) {
             em = getEntityManagerFactory().createEntityManager();
             threadLocal.set(em);
+            aperturaPrimaria.set(System.nanoTime());
         }
         return em;
     }
 
+    /**
+     * metodo que indica desde cuando esta abierto el EntityManager del hilo si
+     * es de la primaria, todo lo que ese EntityManager cargo se leyo despues
+     * de ese instante
+     *
+     * @return System.nanoTime() al abrirlo, o null si el hilo no tiene
+     * EntityManager abierto o es de una replica
+     */
+    public static Long getAperturaPrimaria() {
+        EntityManager em = threadLocal.get();
+        return em != null && em.isOpen() ? aperturaPrimaria.get() : null;
+    }
+
     /**
      * metodo que cierra el EntityManager del hilo actual
      */
@@ -74,6 +202,8 @@ public class JpaUtil {
                 throw new RuntimeException("No se pudo cerrar la conexión al EntityManager", e);
             } finally {
                 threadLocal.remove();
+                flushDiferido.remove();
+                aperturaPrimaria.remove();
             }
         }
     }
@@ -88,13 +218,44 @@ public class JpaUtil {
         }
     }
 
+    /**
+     * metodo que inicia una transaccion como unidad de trabajo: los insertar
+     * de los repositorios ya no hacen flush uno por uno y todo se escribe al
+     * hacer commit, asi Hibernate junta los INSERT de cada tabla en lotes de
+     * hibernate.jdbc.batch_size. Solo aplica a las entidades con IDs de
+     * generador_id: las de IDENTITY (usuario, mensaje) se insertan al hacer
+     * persist porque el ID lo da la base. Los errores de restricciones (llaves unicas,
+     * foraneas) aparecen hasta el commit o hasta la siguiente consulta que
+     * obligue a Hibernate a hacer flush.
+     */
+    public static void beginUnitOfWork() {
+        beginTransaction();
+        flushDiferido.set(true);
+    }
+
+    /**
+     * metodo que usan los repositorios despues de persist, hace flush salvo
+     * que el hilo este dentro de una unidad de trabajo
+     *
+     * @param em EntityManager con el que se hizo persist
+     */
+    public static void flushUnlessDeferred(EntityManager em) {
+        if (!flushDiferido.get()) {
+            em.flush();
+        }
+    }
+
     /**
      * metodo que hace commit de la transacción activa
      */
     public static void commitTransaction() {
         EntityManager em = getEntityManager();
-        if (em.getTransaction().isActive()) {
-            em.getTransaction().commit();
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().commit();
+            }
+        } finally {
+            flushDiferido.remove();
         }
     }
 
@@ -103,11 +264,36 @@ public class JpaUtil {
      */
     public static void rollbackTransaction() {
         EntityManager em = getEntityManager();
-        if (em.getTransaction().isActive()) {
-            em.getTransaction().rollback();
+        try {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+        } finally {
+            flushDiferido.remove();
         }
     }
 
+    /**
+     * metodo que devuelve las metricas actuales del pool de conexiones
+     *
+     * @return MetricasPool.Snapshot con conexiones activas, inactivas,
+     * pendientes y el histograma de tiempos de adquisicion
+     */
+    public static MetricasPool.Snapshot obtenerMetricasPool() {
+        HikariDataSource ds = dataSource;
+        return metricasPool.snapshot(ds != null ? ds.getHikariPoolMXBean() : null);
+    }
+
+    /**
+     * metodo que devuelve las estadisticas de la cache de segundo nivel
+     *
+     * @return EstadisticasCache con aciertos, fallos y escrituras por region
+     */
+    public static EstadisticasCache obtenerEstadisticasCache() {
+        SessionFactory sessionFactory = getEntityManagerFactory().unwrap(SessionFactory.class);
+        return EstadisticasCache.de(sessionFactory.getStatistics());
+    }
+
     /**
      * metodo que cierra el EntityManagerFactory al finalizar el programa
      */
@@ -117,6 +303,21 @@ public class JpaUtil {
             if (emf != null && emf.isOpen()) {
                 emf.close();
             }
+            for (EntityManagerFactory replica : replicas) {
+                if (replica.isOpen()) {
+                    replica.close();
+                }
+            }
+            replicas = List.of();
+            for (HikariDataSource ds : dataSourcesReplica) {
+                if (!ds.isClosed()) {
+                    ds.close();
+                }
+            }
+            dataSourcesReplica.clear();
+            if (dataSource != null && !dataSource.isClosed()) {
+                dataSource.close();
+            }
         } catch (Exception e) {
             throw new RuntimeException("No se pudo cerrar la conexión a la base de datos", e);
         }
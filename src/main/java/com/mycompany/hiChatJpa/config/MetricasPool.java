@@ -0,0 +1,196 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * clase que recolecta las metricas del pool de conexiones, lleva un histograma
+ * del tiempo que tarda cada hilo en obtener una conexion
+ *
+ * @author gatog
+ */
+public class MetricasPool implements MetricsTrackerFactory {
+
+    /**
+     * limites superiores (en microsegundos) de cada cubeta del histograma, la
+     * ultima cubeta acumula todo lo que supere el ultimo limite
+     */
+    private static final long[] LIMITES_MICROS = {100, 500, 1_000, 5_000, 10_000, 50_000, 100_000, 500_000, 1_000_000};
+
+    private final LongAdder[] cubetas = new LongAdder[LIMITES_MICROS.length + 1];
+    private final LongAdder totalAdquisiciones = new LongAdder();
+    private final LongAdder nanosAdquisicion = new LongAdder();
+    private final LongAccumulator maxNanosAdquisicion = new LongAccumulator(Long::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder conexionesCreadas = new LongAdder();
+
+    public MetricasPool() {
+        for (int i = 0; i < cubetas.length; i++) {
+            cubetas[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                registrarAdquisicion(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                conexionesCreadas.increment();
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    private void registrarAdquisicion(long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        int indice = LIMITES_MICROS.length;
+        for (int i = 0; i < LIMITES_MICROS.length; i++) {
+            if (micros < LIMITES_MICROS[i]) {
+                indice = i;
+                break;
+            }
+        }
+        cubetas[indice].increment();
+        totalAdquisiciones.increment();
+        nanosAdquisicion.add(nanos);
+        maxNanosAdquisicion.accumulate(nanos);
+    }
+
+    /**
+     * metodo que toma una foto del estado actual del pool
+     *
+     * @param pool mxbean del pool, puede ser null si el pool aun no arranca
+     * @return Snapshot con los contadores actuales
+     */
+    public Snapshot snapshot(HikariPoolMXBean pool) {
+        long[] histograma = new long[cubetas.length];
+        for (int i = 0; i < cubetas.length; i++) {
+            histograma[i] = cubetas[i].sum();
+        }
+
+        long total = totalAdquisiciones.sum();
+        return new Snapshot(
+                pool != null ? pool.getActiveConnections() : 0,
+                pool != null ? pool.getIdleConnections() : 0,
+                pool != null ? pool.getThreadsAwaitingConnection() : 0,
+                pool != null ? pool.getTotalConnections() : 0,
+                total,
+                total > 0 ? nanosAdquisicion.sum() / total : 0,
+                maxNanosAdquisicion.get(),
+                timeouts.sum(),
+                conexionesCreadas.sum(),
+                LIMITES_MICROS.clone(),
+                histograma
+        );
+    }
+
+    /**
+     * clase inmutable con los valores del pool en un instante dado
+     */
+    public static class Snapshot {
+
+        private final int activas;
+        private final int inactivas;
+        private final int pendientes;
+        private final int totales;
+        private final long adquisiciones;
+        private final long promedioNanosAdquisicion;
+        private final long maxNanosAdquisicion;
+        private final long timeouts;
+        private final long conexionesCreadas;
+        private final long[] limitesMicros;
+        private final long[] histograma;
+
+        private Snapshot(int activas, int inactivas, int pendientes, int totales, long adquisiciones,
+                long promedioNanosAdquisicion, long maxNanosAdquisicion, long timeouts,
+                long conexionesCreadas, long[] limitesMicros, long[] histograma) {
+            this.activas = activas;
+            this.inactivas = inactivas;
+            this.pendientes = pendientes;
+            this.totales = totales;
+            this.adquisiciones = adquisiciones;
+            this.promedioNanosAdquisicion = promedioNanosAdquisicion;
+            this.maxNanosAdquisicion = maxNanosAdquisicion;
+            this.timeouts = timeouts;
+            this.conexionesCreadas = conexionesCreadas;
+            this.limitesMicros = limitesMicros;
+            this.histograma = histograma;
+        }
+
+        public int getActivas() {
+            return activas;
+        }
+
+        public int getInactivas() {
+            return inactivas;
+        }
+
+        public int getPendientes() {
+            return pendientes;
+        }
+
+        public int getTotales() {
+            return totales;
+        }
+
+        public long getAdquisiciones() {
+            return adquisiciones;
+        }
+
+        public long getPromedioNanosAdquisicion() {
+            return promedioNanosAdquisicion;
+        }
+
+        public long getMaxNanosAdquisicion() {
+            return maxNanosAdquisicion;
+        }
+
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        public long getConexionesCreadas() {
+            return conexionesCreadas;
+        }
+
+        /**
+         * @return limites superiores en microsegundos de cada cubeta, el
+         * histograma tiene una cubeta extra para los valores mayores
+         */
+        public long[] getLimitesMicros() {
+            return limitesMicros.clone();
+        }
+
+        public long[] getHistograma() {
+            return histograma.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasPool{"
+                    + "activas=" + activas
+                    + ", inactivas=" + inactivas
+                    + ", pendientes=" + pendientes
+                    + ", totales=" + totales
+                    + ", adquisiciones=" + adquisiciones
+                    + ", promedioMicros=" + TimeUnit.NANOSECONDS.toMicros(promedioNanosAdquisicion)
+                    + ", maxMicros=" + TimeUnit.NANOSECONDS.toMicros(maxNanosAdquisicion)
+                    + ", timeouts=" + timeouts
+                    + '}';
+        }
+    }
+}
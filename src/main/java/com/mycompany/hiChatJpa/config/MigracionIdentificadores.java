@@ -0,0 +1,64 @@
+package com.mycompany.hiChatJpa.config;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * ajusta la tabla generador_id de los @TableGenerator. Las tablas de
+ * interacciones, matches, chats, bloqueos y fotos venian con AUTO_INCREMENT,
+ * asi que antes de repartir bloques de IDs cada fila del generador se sube
+ * por arriba del ID mas alto que ya exista. Corre en cada arranque porque
+ * solo sube valores, nunca los baja.
+ *
+ * No se pueden mezclar versiones: un cliente nuevo inserta el ID X con
+ * valor explicito y MySQL sube el AUTO_INCREMENT a X + 1, asi que un cliente
+ * anterior toma X + 1, que cae dentro del bloque que el nuevo ya tiene
+ * reservado, y el siguiente insert del nuevo falla por llave duplicada.
+ * Todos los clientes que comparten la base se actualizan juntos, con los
+ * anteriores cerrados; el ajuste del arranque solo cubre lo que estos
+ * insertaron antes.
+ *
+ * @author gatog
+ */
+final class MigracionIdentificadores {
+
+    // igual al allocationSize de los @TableGenerator de las entidades
+    private static final int BLOQUE = 50;
+
+    // entidad del generador, tabla y columna del ID
+    private static final String[][] GENERADORES = {
+        {"interaccion", "interaccion", "id_interaccion"},
+        {"match", "matches", "id_match"},
+        {"chat", "chat", "id_chat"},
+        {"bloqueo", "bloqueo", "id_bloqueo"},
+        {"foto", "foto", "id_foto"}
+    };
+
+    private static final String SQL_AJUSTE
+            = "INSERT INTO generador_id (entidad, siguiente_id) "
+            + "SELECT * FROM (SELECT '%s' AS entidad, COALESCE(MAX(%s), 0) + %d AS minimo FROM %s) AS actual "
+            + "ON DUPLICATE KEY UPDATE siguiente_id = GREATEST(siguiente_id, actual.minimo)";
+
+    private MigracionIdentificadores() {
+    }
+
+    static void ajustarGeneradores(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            for (String[] generador : GENERADORES) {
+                em.createNativeQuery(String.format(SQL_AJUSTE, generador[0], generador[2], BLOQUE, generador[1]))
+                        .executeUpdate();
+            }
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            // sin el ajuste el primer bloque podria chocar con IDs viejos
+            throw new IllegalStateException("No se pudo ajustar la tabla generador_id", e);
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.repository.impl.LecturaChatRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * migracion de la columna mensaje.esta_visto a la tabla lectura_chat. Corre
+ * una sola vez al crear el EntityManagerFactory, cuando la tabla de lecturas
+ * todavia esta vacia. Si falla la aplicacion sigue funcionando, los chats
+ * solo aparecen como no leidos hasta que el usuario los abra.
+ *
+ * @author gatog
+ */
+final class MigracionLecturas {
+
+    private MigracionLecturas() {
+    }
+
+    static void ejecutarSiHaceFalta(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Number existentes = (Number) em.createQuery("SELECT COUNT(l) FROM LecturaChat l").getSingleResult();
+            if (existentes.longValue() > 0) {
+                return;
+            }
+            em.getTransaction().begin();
+            int creadas = new LecturaChatRepository(em).migrarDesdeEstaVisto();
+            em.getTransaction().commit();
+            if (creadas > 0) {
+                System.out.println("Marcas de lectura migradas desde esta_visto: " + creadas);
+            }
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            System.err.println("No se pudieron migrar las marcas de lectura: " + e.getMessage());
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.repository.impl.ChatRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * completa la tabla usuario_chat con los dos usuarios del match de cada
+ * chat. Los chats que se creaban al hacer match no agregaban a nadie, asi que
+ * la bandeja salia vacia y la pasarela rechazaba los mensajes de esos chats.
+ * Corre en cada arranque porque solo inserta las filas que faltan; si falla
+ * la aplicacion sigue, sin esos chats en la bandeja.
+ *
+ * @author gatog
+ */
+final class MigracionParticipantes {
+
+    private MigracionParticipantes() {
+    }
+
+    static void completar(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            int agregados = new ChatRepository(em).completarParticipantesDesdeMatches();
+            em.getTransaction().commit();
+            if (agregados > 0) {
+                System.out.println("Participantes de chat completados desde matches: " + agregados);
+            }
+        } catch (RuntimeException e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            System.err.println("No se pudieron completar los participantes de los chats: " + e.getMessage());
+        } finally {
+            em.close();
+        }
+    }
+}
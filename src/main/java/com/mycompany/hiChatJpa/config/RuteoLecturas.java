@@ -0,0 +1,146 @@
+package com.mycompany.hiChatJpa.config;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * decide si una lectura puede ir a una replica. Las replicas van atrasadas
+ * respecto a la primaria, asi que despues de que un usuario escribe sus
+ * propias lecturas van a la primaria durante DB_REPLICA_STICKY_MS; lo mismo
+ * con las lecturas de un chat despues de escribir en el. Las escrituras se
+ * registran en este proceso, un cliente de escritorio solo ve las suyas.
+ *
+ * @author gatog
+ */
+public final class RuteoLecturas {
+
+    private static final RuteoLecturas INSTANCIA = new RuteoLecturas();
+
+    // a partir de este tamaño se barren las entradas vencidas al registrar
+    private static final int TAMANIO_BARRIDO = 10_000;
+
+    private final long ventanaNanos;
+    private final Map<Long, Long> escriturasUsuario = new ConcurrentHashMap<>();
+    private final Map<Long, Long> escriturasChat = new ConcurrentHashMap<>();
+
+    private final LongAdder lecturasReplica = new LongAdder();
+    private final LongAdder lecturasPropias = new LongAdder();
+
+    private RuteoLecturas() {
+        this.ventanaNanos = TimeUnit.MILLISECONDS.toNanos(DataSourceUtil.ventanaLecturaPropiaMs());
+    }
+
+    public static RuteoLecturas getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * metodo que se llama despues del commit de una escritura del usuario
+     *
+     * @param idUsuario usuario que escribio
+     */
+    public void registrarEscrituraUsuario(Long idUsuario) {
+        registrar(escriturasUsuario, idUsuario);
+    }
+
+    /**
+     * metodo que se llama despues del commit de una escritura en el chat
+     *
+     * @param idChat chat en el que se escribio
+     */
+    public void registrarEscrituraChat(Long idChat) {
+        registrar(escriturasChat, idChat);
+    }
+
+    /**
+     * @param idUsuario usuario dueño de la lectura
+     * @return true si hay replicas y el usuario no escribio dentro de la
+     * ventana
+     */
+    public boolean puedeLeerDeReplicaUsuario(Long idUsuario) {
+        return puedeLeerDeReplica(escriturasUsuario, idUsuario);
+    }
+
+    /**
+     * @param idChat chat que se va a leer
+     * @return true si hay replicas y nadie escribio en el chat desde este
+     * proceso dentro de la ventana
+     */
+    public boolean puedeLeerDeReplicaChat(Long idChat) {
+        return puedeLeerDeReplica(escriturasChat, idChat);
+    }
+
+    private void registrar(Map<Long, Long> escrituras, Long id) {
+        if (id == null) {
+            return;
+        }
+        long ahora = System.nanoTime();
+        escrituras.put(id, ahora);
+        if (escrituras.size() > TAMANIO_BARRIDO) {
+            escrituras.values().removeIf(momento -> ahora - momento > ventanaNanos);
+        }
+    }
+
+    private boolean puedeLeerDeReplica(Map<Long, Long> escrituras, Long id) {
+        if (!JpaUtil.hasReplicas()) {
+            return false;
+        }
+        Long momento = id != null ? escrituras.get(id) : null;
+        if (momento != null) {
+            if (System.nanoTime() - momento <= ventanaNanos) {
+                lecturasPropias.increment();
+                return false;
+            }
+            escrituras.remove(id, momento);
+        }
+        lecturasReplica.increment();
+        return true;
+    }
+
+    public Metricas getMetricas() {
+        return new Metricas(lecturasReplica.sum(), lecturasPropias.sum(),
+                escriturasUsuario.size() + escriturasChat.size());
+    }
+
+    /**
+     * fotografia inmutable de las decisiones de ruteo
+     */
+    public static class Metricas {
+
+        private final long lecturasReplica;
+        private final long lecturasPropias;
+        private final int marcasVigentes;
+
+        public Metricas(long lecturasReplica, long lecturasPropias, int marcasVigentes) {
+            this.lecturasReplica = lecturasReplica;
+            this.lecturasPropias = lecturasPropias;
+            this.marcasVigentes = marcasVigentes;
+        }
+
+        public long getLecturasReplica() {
+            return lecturasReplica;
+        }
+
+        /**
+         * @return lecturas que fueron a la primaria por una escritura reciente
+         */
+        public long getLecturasPropias() {
+            return lecturasPropias;
+        }
+
+        public int getMarcasVigentes() {
+            return marcasVigentes;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasRuteoLecturas{"
+                    + "lecturasReplica=" + lecturasReplica
+                    + ", lecturasPropias=" + lecturasPropias
+                    + ", marcasVigentes=" + marcasVigentes
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package com.mycompany.hiChatJpa.config;
+
+import jakarta.persistence.EntityManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+
+/**
+ * ejecuta un trabajo dentro de una transaccion y se encarga de abrir, hacer
+ * commit o rollback y cerrar el EntityManager del hilo. Los servicios solo
+ * escriben la logica en una lambda que recibe el EntityManager y regresa el
+ * resultado.
+ *
+ * Hay tres modos: escritura normal, escritura en lotes (unidad de trabajo de
+ * JpaUtil) y lectura. En lectura la sesion de Hibernate queda de solo lectura
+ * y sin flush, y la conexion JDBC se marca read only para que MySQL no abra
+ * una transaccion de escritura. Un persist o remove dentro de una lectura
+ * termina en IllegalStateException y rollback en lugar de perderse sin
+ * flush; los cambios a entidades cargadas se ignoran porque quedan de solo
+ * lectura, y lo que si llega a la base (UPDATE o DELETE directos, el insert
+ * inmediato de una entidad IDENTITY) lo rechaza MySQL.
+ *
+ * Una lectura puede pedirse sobre replica; si hay replicas configuradas en
+ * JpaUtil corre en una de ellas, y si la replica falla por un error de la
+ * base de datos se repite una vez sobre la primaria, sin gastar uno de los
+ * intentos por deadlock.
+ *
+ * Si MySQL aborta la transaccion por un deadlock (1213) o por tiempo de
+ * espera de un bloqueo (1205) la lambda se vuelve a correr completa con un
+ * EntityManager nuevo, por eso no debe tener efectos fuera de la base de
+ * datos: los eventos y avisos se publican despues, con lo que regresa.
+ *
+ * @author gatog
+ */
+public final class TransactionRunner {
+
+    private static final TransactionRunner INSTANCIA = new TransactionRunner();
+
+    private static final int MAX_INTENTOS = 3;
+    private static final long ESPERA_BASE_MS = 25;
+    private static final long ESPERA_MAXIMA_MS = 500;
+    private static final int ER_LOCK_WAIT_TIMEOUT = 1205;
+    private static final int ER_LOCK_DEADLOCK = 1213;
+    private static final String SQLSTATE_SERIALIZACION = "40001";
+
+    private final List<ObservadorTransaccion> observadores = new CopyOnWriteArrayList<>();
+
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder lecturas = new LongAdder();
+    private final LongAdder lecturasReplica = new LongAdder();
+    private final LongAdder fallosReplica = new LongAdder();
+    private final LongAdder reintentos = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+    private final LongAdder nanosTotales = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    private TransactionRunner() {
+    }
+
+    public static TransactionRunner getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * trabajo que corre dentro de la transaccion
+     *
+     * @param <T> tipo del resultado
+     */
+    @FunctionalInterface
+    public interface Trabajo<T> {
+
+        T ejecutar(EntityManager em) throws Exception;
+    }
+
+    /**
+     * se llama en el hilo de la transaccion cuando termina, con exito o no
+     */
+    @FunctionalInterface
+    public interface ObservadorTransaccion {
+
+        void alTerminar(Ejecucion ejecucion);
+    }
+
+    private enum Modo {
+        ESCRITURA, LOTES, LECTURA, LECTURA_REPLICA
+    }
+
+    /**
+     * metodo que ejecuta un trabajo que escribe en la base de datos
+     *
+     * @param nombre nombre de la operacion para las metricas y observadores
+     * @param trabajo logica de la operacion
+     * @return lo que regrese el trabajo
+     * @throws Exception la misma excepcion que lanzo el trabajo o el commit
+     */
+    public <T> T ejecutar(String nombre, Trabajo<T> trabajo) throws Exception {
+        return correr(nombre, Modo.ESCRITURA, trabajo);
+    }
+
+    /**
+     * metodo que ejecuta un trabajo como unidad de trabajo, los insertar no
+     * hacen flush hasta el commit (ver JpaUtil.beginUnitOfWork)
+     *
+     * @param nombre nombre de la operacion para las metricas y observadores
+     * @param trabajo logica de la operacion
+     * @return lo que regrese el trabajo
+     * @throws Exception la misma excepcion que lanzo el trabajo o el commit
+     */
+    public <T> T ejecutarEnLotes(String nombre, Trabajo<T> trabajo) throws Exception {
+        return correr(nombre, Modo.LOTES, trabajo);
+    }
+
+    /**
+     * metodo que ejecuta un trabajo de solo lectura, las entidades que cargue
+     * no se revisan al hacer commit y sus cambios se ignoran; un persist o
+     * remove lanza IllegalStateException
+     *
+     * @param nombre nombre de la operacion para las metricas y observadores
+     * @param trabajo logica de la operacion
+     * @return lo que regrese el trabajo
+     * @throws Exception la misma excepcion que lanzo el trabajo, o
+     * IllegalStateException si el trabajo dejo escrituras pendientes
+     */
+    public <T> T ejecutarLectura(String nombre, Trabajo<T> trabajo) throws Exception {
+        return correr(nombre, Modo.LECTURA, trabajo);
+    }
+
+    /**
+     * metodo que ejecuta un trabajo de solo lectura, en una replica si se
+     * pide y hay replicas. Quien llama decide si el dato puede venir atrasado
+     * (ver RuteoLecturas).
+     *
+     * @param nombre nombre de la operacion para las metricas y observadores
+     * @param replica true si la lectura puede ir a una replica
+     * @param trabajo logica de la operacion
+     * @return lo que regrese el trabajo
+     * @throws Exception la misma excepcion que lanzo el trabajo
+     */
+    public <T> T ejecutarLectura(String nombre, boolean replica, Trabajo<T> trabajo) throws Exception {
+        return correr(nombre, replica && JpaUtil.hasReplicas() ? Modo.LECTURA_REPLICA : Modo.LECTURA, trabajo);
+    }
+
+    public void agregarObservador(ObservadorTransaccion observador) {
+        observadores.add(observador);
+    }
+
+    public void quitarObservador(ObservadorTransaccion observador) {
+        observadores.remove(observador);
+    }
+
+    private <T> T correr(String nombre, Modo modo, Trabajo<T> trabajo) throws Exception {
+        if (JpaUtil.isTransactionActive()) {
+            // llamada anidada, se une a la transaccion de afuera que es la
+            // que hace commit y reintenta
+            return trabajo.ejecutar(JpaUtil.getEntityManager());
+        }
+
+        long inicio = System.nanoTime();
+        for (int intento = 1;; intento++) {
+            try {
+                T resultado = intentar(modo, trabajo);
+                registrar(nombre, modo, intento, System.nanoTime() - inicio, null);
+                return resultado;
+            } catch (Exception e) {
+                if (modo == Modo.LECTURA_REPLICA && esErrorDeBaseDeDatos(e) && !esBloqueoTransitorio(e)) {
+                    // replica caida o sin la tabla, la lectura se repite en la primaria
+                    fallosReplica.increment();
+                    modo = Modo.LECTURA;
+                    // la repeticion en la primaria no cuenta como intento
+                    intento--;
+                    continue;
+                }
+                if (intento >= MAX_INTENTOS || !esBloqueoTransitorio(e) || !esperar(intento)) {
+                    registrar(nombre, modo, intento, System.nanoTime() - inicio, e);
+                    throw e;
+                }
+                reintentos.increment();
+            }
+        }
+    }
+
+    private <T> T intentar(Modo modo, Trabajo<T> trabajo) throws Exception {
+        EntityManager em = modo == Modo.LECTURA_REPLICA
+                ? JpaUtil.getReplicaEntityManager()
+                : JpaUtil.getEntityManager();
+        try {
+            if (modo == Modo.LOTES) {
+                JpaUtil.beginUnitOfWork();
+            } else {
+                JpaUtil.beginTransaction();
+            }
+            if (modo == Modo.LECTURA || modo == Modo.LECTURA_REPLICA) {
+                marcarSoloLectura(em);
+            }
+            T resultado = trabajo.ejecutar(em);
+            if ((modo == Modo.LECTURA || modo == Modo.LECTURA_REPLICA) && em.unwrap(Session.class).isDirty()) {
+                // sin flush el persist o remove se perderia en silencio
+                throw new IllegalStateException("La lectura dejo escrituras pendientes");
+            }
+            JpaUtil.commitTransaction();
+            return resultado;
+        } catch (Exception e) {
+            try {
+                JpaUtil.rollbackTransaction();
+            } catch (RuntimeException errorRollback) {
+                e.addSuppressed(errorRollback);
+            }
+            throw e;
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+
+    /**
+     * la conexion todavia no ejecuto nada en esta transaccion, asi que el
+     * read only le llega a MySQL antes de que empiece. Hikari regresa la
+     * conexion a read only false cuando vuelve al pool.
+     */
+    private static void marcarSoloLectura(EntityManager em) {
+        Session session = em.unwrap(Session.class);
+        session.setDefaultReadOnly(true);
+        session.setHibernateFlushMode(FlushMode.MANUAL);
+        session.doWork(conexion -> conexion.setReadOnly(true));
+    }
+
+    private static boolean esBloqueoTransitorio(Throwable error) {
+        // las excepciones de los repositorios envuelven a la de Hibernate, que
+        // envuelve a la SQLException del driver
+        for (int nivel = 0; error != null && nivel < 20; nivel++, error = error.getCause()) {
+            if (error instanceof SQLException sql) {
+                if (sql.getErrorCode() == ER_LOCK_DEADLOCK || sql.getErrorCode() == ER_LOCK_WAIT_TIMEOUT
+                        || SQLSTATE_SERIALIZACION.equals(sql.getSQLState())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean esErrorDeBaseDeDatos(Throwable error) {
+        for (int nivel = 0; error != null && nivel < 20; nivel++, error = error.getCause()) {
+            if (error instanceof SQLException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * espera antes del siguiente intento, el doble cada vez con un tope y una
+     * parte al azar para que las transacciones que chocaron no vuelvan a
+     * chocar al mismo tiempo
+     *
+     * @return false si el hilo se interrumpio y ya no hay que reintentar
+     */
+    private static boolean esperar(int intento) {
+        long tope = Math.min(ESPERA_MAXIMA_MS, ESPERA_BASE_MS << (intento - 1));
+        long espera = tope / 2 + ThreadLocalRandom.current().nextLong(tope / 2 + 1);
+        try {
+            Thread.sleep(espera);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void registrar(String nombre, Modo modo, int intentos, long nanos, Exception error) {
+        if (modo == Modo.LECTURA_REPLICA) {
+            lecturas.increment();
+            lecturasReplica.increment();
+        } else if (modo == Modo.LECTURA) {
+            lecturas.increment();
+        } else {
+            escrituras.increment();
+        }
+        if (error != null) {
+            fallidas.increment();
+        }
+        nanosTotales.add(nanos);
+        maxNanos.accumulate(nanos);
+
+        if (observadores.isEmpty()) {
+            return;
+        }
+        Ejecucion ejecucion = new Ejecucion(nombre, modo == Modo.LECTURA || modo == Modo.LECTURA_REPLICA, intentos, nanos, error);
+        for (ObservadorTransaccion observador : observadores) {
+            try {
+                observador.alTerminar(ejecucion);
+            } catch (RuntimeException e) {
+                // un observador no puede cambiar el resultado de la transaccion
+                System.err.println("Fallo un observador de transacciones: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * metodo que devuelve las metricas acumuladas de las transacciones
+     *
+     * @return Metricas con el conteo por modo, reintentos, fallidas y tiempos
+     */
+    public Metricas getMetricas() {
+        long total = escrituras.sum() + lecturas.sum();
+        return new Metricas(escrituras.sum(), lecturas.sum(), lecturasReplica.sum(), fallosReplica.sum(),
+                reintentos.sum(), fallidas.sum(), total == 0 ? 0 : nanosTotales.sum() / total, maxNanos.get());
+    }
+
+    /**
+     * datos de una transaccion terminada que reciben los observadores
+     */
+    public static class Ejecucion {
+
+        private final String nombre;
+        private final boolean soloLectura;
+        private final int intentos;
+        private final long nanos;
+        private final Exception error;
+
+        public Ejecucion(String nombre, boolean soloLectura, int intentos, long nanos, Exception error) {
+            this.nombre = nombre;
+            this.soloLectura = soloLectura;
+            this.intentos = intentos;
+            this.nanos = nanos;
+            this.error = error;
+        }
+
+        public String getNombre() {
+            return nombre;
+        }
+
+        public boolean isSoloLectura() {
+            return soloLectura;
+        }
+
+        public int getIntentos() {
+            return intentos;
+        }
+
+        /**
+         * @return tiempo total incluyendo los reintentos y sus esperas
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public boolean isExitosa() {
+            return error == null;
+        }
+
+        /**
+         * @return la excepcion con la que termino, null si hizo commit
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        @Override
+        public String toString() {
+            return "Ejecucion{"
+                    + "nombre=" + nombre
+                    + ", soloLectura=" + soloLectura
+                    + ", intentos=" + intentos
+                    + ", ms=" + nanos / 1_000_000
+                    + ", exitosa=" + isExitosa()
+                    + '}';
+        }
+    }
+
+    /**
+     * fotografia inmutable de las metricas de las transacciones
+     */
+    public static class Metricas {
+
+        private final long escrituras;
+        private final long lecturas;
+        private final long lecturasReplica;
+        private final long fallosReplica;
+        private final long reintentos;
+        private final long fallidas;
+        private final long promedioNanos;
+        private final long maxNanos;
+
+        public Metricas(long escrituras, long lecturas, long lecturasReplica, long fallosReplica,
+                long reintentos, long fallidas, long promedioNanos, long maxNanos) {
+            this.escrituras = escrituras;
+            this.lecturas = lecturas;
+            this.lecturasReplica = lecturasReplica;
+            this.fallosReplica = fallosReplica;
+            this.reintentos = reintentos;
+            this.fallidas = fallidas;
+            this.promedioNanos = promedioNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getEscrituras() {
+            return escrituras;
+        }
+
+        public long getLecturas() {
+            return lecturas;
+        }
+
+        /**
+         * @return lecturas que terminaron en una replica, incluidas en lecturas
+         */
+        public long getLecturasReplica() {
+            return lecturasReplica;
+        }
+
+        /**
+         * @return lecturas de replica que fallaron y se repitieron en la primaria
+         */
+        public long getFallosReplica() {
+            return fallosReplica;
+        }
+
+        /**
+         * @return intentos repetidos por deadlock o espera de bloqueo
+         */
+        public long getReintentos() {
+            return reintentos;
+        }
+
+        public long getFallidas() {
+            return fallidas;
+        }
+
+        public long getPromedioNanos() {
+            return promedioNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasTransacciones{"
+                    + "escrituras=" + escrituras
+                    + ", lecturas=" + lecturas
+                    + ", lecturasReplica=" + lecturasReplica
+                    + ", fallosReplica=" + fallosReplica
+                    + ", reintentos=" + reintentos
+                    + ", fallidas=" + fallidas
+                    + ", promedioMs=" + promedioNanos / 1_000_000.0
+                    + ", maxMs=" + maxNanos / 1_000_000.0
+                    + '}';
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.dto;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -9,7 +10,7 @@ import java.util.List;
  * DTO para cargar chats del usuario con información completa
  * Incluye participantes y último mensaje
  */
-public class ChatConMensajesDTO {
+public class ChatConMensajesDTO implements Serializable {
 
     private Long idChat;
     private String nombre;
@@ -19,6 +20,7 @@ public class ChatConMensajesDTO {
     private String ultimoMensaje;
     private LocalDateTime fechaUltimoMensaje;
     private Boolean hayNoLeidos;
+    private Integer mensajesNoLeidos;
 
     // Constructor vacío
     public ChatConMensajesDTO() {
@@ -104,6 +106,14 @@ public class ChatConMensajesDTO {
         this.hayNoLeidos = hayNoLeidos;
     }
 
+    public Integer getMensajesNoLeidos() {
+        return mensajesNoLeidos;
+    }
+
+    public void setMensajesNoLeidos(Integer mensajesNoLeidos) {
+        this.mensajesNoLeidos = mensajesNoLeidos;
+    }
+
     @Override
     public String toString() {
         return "ChatConMensajesDTO{" +
@@ -111,6 +121,7 @@ public class ChatConMensajesDTO {
                 ", nombre='" + nombre + '\'' +
                 ", totalMensajes=" + totalMensajes +
                 ", hayNoLeidos=" + hayNoLeidos +
+                ", mensajesNoLeidos=" + mensajesNoLeidos +
                 '}';
     }
 }
@@ -0,0 +1,71 @@
+package com.mycompany.hiChatJpa.dto;
+
+import java.io.Serializable;
+
+/**
+ * DTO con la marca de lectura de un participante
+ * Los mensajes con ID menor o igual a idUltimoMensajeLeido ya los leyo
+ *
+ * @author gatog
+ */
+public class LecturaChatDTO implements Serializable {
+
+    private Long idChat;
+    private Long idUsuario;
+    private Long idUltimoMensajeLeido;
+    private Long secuencia;
+
+    // Constructor vacío
+    public LecturaChatDTO() {
+    }
+
+    // Constructor completo
+    public LecturaChatDTO(Long idChat, Long idUsuario, Long idUltimoMensajeLeido, Long secuencia) {
+        this.idChat = idChat;
+        this.idUsuario = idUsuario;
+        this.idUltimoMensajeLeido = idUltimoMensajeLeido;
+        this.secuencia = secuencia;
+    }
+
+    // Getters y Setters
+    public Long getIdChat() {
+        return idChat;
+    }
+
+    public void setIdChat(Long idChat) {
+        this.idChat = idChat;
+    }
+
+    public Long getIdUsuario() {
+        return idUsuario;
+    }
+
+    public void setIdUsuario(Long idUsuario) {
+        this.idUsuario = idUsuario;
+    }
+
+    public Long getIdUltimoMensajeLeido() {
+        return idUltimoMensajeLeido;
+    }
+
+    public void setIdUltimoMensajeLeido(Long idUltimoMensajeLeido) {
+        this.idUltimoMensajeLeido = idUltimoMensajeLeido;
+    }
+
+    public Long getSecuencia() {
+        return secuencia;
+    }
+
+    public void setSecuencia(Long secuencia) {
+        this.secuencia = secuencia;
+    }
+
+    @Override
+    public String toString() {
+        return "LecturaChatDTO{"
+                + "idChat=" + idChat
+                + ", idUsuario=" + idUsuario
+                + ", idUltimoMensajeLeido=" + idUltimoMensajeLeido
+                + '}';
+    }
+}
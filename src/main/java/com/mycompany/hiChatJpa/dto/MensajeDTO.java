@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.dto;
 
+import java.io.Serializable;
 import java.time.LocalDateTime;
 
 /**
@@ -7,7 +8,7 @@ import java.time.LocalDateTime;
  *
  * @author Luis Valenzuela
  */
-public class MensajeDTO {
+public class MensajeDTO implements Serializable {
 
     private Long idMensaje;
     private Long idChat;
@@ -16,6 +17,10 @@ public class MensajeDTO {
     private LocalDateTime fechaEnvio;
     private Boolean estaVisto;
     private Boolean estaBorrado;
+    // orden de envio dentro del chat
+    private Long secuencia;
+    // secuencia del ultimo cambio (envio o borrado), la que usa la sincronizacion
+    private Long secuenciaCambio;
 
     // Constructor vacío
     public MensajeDTO() {
@@ -91,6 +96,22 @@ public class MensajeDTO {
         this.estaBorrado = estaBorrado;
     }
 
+    public Long getSecuencia() {
+        return secuencia;
+    }
+
+    public void setSecuencia(Long secuencia) {
+        this.secuencia = secuencia;
+    }
+
+    public Long getSecuenciaCambio() {
+        return secuenciaCambio;
+    }
+
+    public void setSecuenciaCambio(Long secuenciaCambio) {
+        this.secuenciaCambio = secuenciaCambio;
+    }
+
     @Override
     public String toString() {
         return "MensajeDTO{"
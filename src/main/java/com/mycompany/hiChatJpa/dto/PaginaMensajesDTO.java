@@ -0,0 +1,61 @@
+package com.mycompany.hiChatJpa.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * DTO con una pagina del historial de un chat
+ * El cursor es opaco: el cliente solo lo devuelve para pedir la pagina anterior
+ *
+ * @author gatog
+ */
+public class PaginaMensajesDTO implements Serializable {
+
+    private List<MensajeDTO> mensajes;
+    private String siguienteCursor;
+    private Boolean hayMas;
+
+    // Constructor vacío
+    public PaginaMensajesDTO() {
+    }
+
+    // Constructor completo
+    public PaginaMensajesDTO(List<MensajeDTO> mensajes, String siguienteCursor, Boolean hayMas) {
+        this.mensajes = mensajes;
+        this.siguienteCursor = siguienteCursor;
+        this.hayMas = hayMas;
+    }
+
+    // Getters y Setters
+    public List<MensajeDTO> getMensajes() {
+        return mensajes;
+    }
+
+    public void setMensajes(List<MensajeDTO> mensajes) {
+        this.mensajes = mensajes;
+    }
+
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+
+    public void setSiguienteCursor(String siguienteCursor) {
+        this.siguienteCursor = siguienteCursor;
+    }
+
+    public Boolean getHayMas() {
+        return hayMas;
+    }
+
+    public void setHayMas(Boolean hayMas) {
+        this.hayMas = hayMas;
+    }
+
+    @Override
+    public String toString() {
+        return "PaginaMensajesDTO{"
+                + "mensajes=" + (mensajes != null ? mensajes.size() : 0)
+                + ", hayMas=" + hayMas
+                + '}';
+    }
+}
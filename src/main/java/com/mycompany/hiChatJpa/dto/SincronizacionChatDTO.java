@@ -0,0 +1,91 @@
+package com.mycompany.hiChatJpa.dto;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * DTO con los cambios de un chat desde una secuencia
+ * El cliente guarda ultimaSecuencia y la manda en la siguiente sincronizacion
+ * Las lecturas traen las marcas que se movieron, un mensaje esta visto si la
+ * marca de otro participante llega a su ID
+ *
+ * @author gatog
+ */
+public class SincronizacionChatDTO implements Serializable {
+
+    private Long idChat;
+    private List<MensajeDTO> mensajes;
+    private Long ultimaSecuencia;
+    private Boolean hayMas;
+    private List<LecturaChatDTO> lecturas;
+
+    // Constructor vacío
+    public SincronizacionChatDTO() {
+    }
+
+    // Constructor completo
+    public SincronizacionChatDTO(Long idChat, List<MensajeDTO> mensajes, Long ultimaSecuencia, Boolean hayMas) {
+        this.idChat = idChat;
+        this.mensajes = mensajes;
+        this.ultimaSecuencia = ultimaSecuencia;
+        this.hayMas = hayMas;
+    }
+
+    public SincronizacionChatDTO(Long idChat, List<MensajeDTO> mensajes, Long ultimaSecuencia, Boolean hayMas,
+            List<LecturaChatDTO> lecturas) {
+        this(idChat, mensajes, ultimaSecuencia, hayMas);
+        this.lecturas = lecturas;
+    }
+
+    // Getters y Setters
+    public Long getIdChat() {
+        return idChat;
+    }
+
+    public void setIdChat(Long idChat) {
+        this.idChat = idChat;
+    }
+
+    public List<MensajeDTO> getMensajes() {
+        return mensajes;
+    }
+
+    public void setMensajes(List<MensajeDTO> mensajes) {
+        this.mensajes = mensajes;
+    }
+
+    public Long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    public void setUltimaSecuencia(Long ultimaSecuencia) {
+        this.ultimaSecuencia = ultimaSecuencia;
+    }
+
+    public Boolean getHayMas() {
+        return hayMas;
+    }
+
+    public void setHayMas(Boolean hayMas) {
+        this.hayMas = hayMas;
+    }
+
+    public List<LecturaChatDTO> getLecturas() {
+        return lecturas;
+    }
+
+    public void setLecturas(List<LecturaChatDTO> lecturas) {
+        this.lecturas = lecturas;
+    }
+
+    @Override
+    public String toString() {
+        return "SincronizacionChatDTO{"
+                + "idChat=" + idChat
+                + ", mensajes=" + (mensajes != null ? mensajes.size() : 0)
+                + ", ultimaSecuencia=" + ultimaSecuencia
+                + ", hayMas=" + hayMas
+                + ", lecturas=" + (lecturas != null ? lecturas.size() : 0)
+                + '}';
+    }
+}
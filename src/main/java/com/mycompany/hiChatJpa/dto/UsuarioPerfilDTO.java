@@ -1,6 +1,8 @@
 package com.mycompany.hiChatJpa.dto;
 
+import java.io.Serializable;
 import java.time.LocalDate;
+import java.time.Period;
 
 /**
  * DTO para mostrar perfil de usuario
@@ -8,7 +10,7 @@ import java.time.LocalDate;
  * 
  * @author Luis Valenzuela
  */
-public class UsuarioPerfilDTO {
+public class UsuarioPerfilDTO implements Serializable {
     private Long idUsuario;
     private String nombre;
     private String apellidoPaterno;
@@ -39,6 +41,34 @@ public class UsuarioPerfilDTO {
         this.edad = edad;
     }
 
+    // Constructor de proyeccion JPQL (SELECT new ...), sin biografia ni
+    // contraseña, la edad se calcula aqui
+    public UsuarioPerfilDTO(Long idUsuario, String nombre, String apellidoPaterno,
+                           String apellidoMaterno, String correoElectronico, String carrera,
+                           String urlFotoPerfil, String genero, LocalDate fechaNacimiento) {
+        this.idUsuario = idUsuario;
+        this.nombre = nombre;
+        this.apellidoPaterno = apellidoPaterno;
+        this.apellidoMaterno = apellidoMaterno;
+        this.correoElectronico = correoElectronico;
+        this.carrera = carrera;
+        this.urlFotoPerfil = urlFotoPerfil;
+        this.genero = genero;
+        this.fechaNacimiento = fechaNacimiento;
+        this.edad = fechaNacimiento != null ? Period.between(fechaNacimiento, LocalDate.now()).getYears() : null;
+    }
+
+    // Constructor de proyeccion JPQL para las tarjetas de pretendientes, igual
+    // que el anterior pero con biografia
+    public UsuarioPerfilDTO(Long idUsuario, String nombre, String apellidoPaterno,
+                           String apellidoMaterno, String correoElectronico, String carrera,
+                           String biografia, String urlFotoPerfil, String genero,
+                           LocalDate fechaNacimiento) {
+        this(idUsuario, nombre, apellidoPaterno, apellidoMaterno, correoElectronico, carrera,
+                urlFotoPerfil, genero, fechaNacimiento);
+        this.biografia = biografia;
+    }
+
     // Constructor completo
     public UsuarioPerfilDTO(Long idUsuario, String nombre, String apellidoPaterno,
                            String apellidoMaterno, String correoElectronico, String carrera,
@@ -11,6 +11,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.UniqueConstraint;
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -36,13 +37,19 @@ import java.time.LocalDateTime;
     @NamedQuery(
             name = "Bloqueo.findByBloqueado",
             query = "SELECT b FROM Bloqueo b WHERE b.usuarioBloqueado = :bloqueado"
+    ),
+    @NamedQuery(
+            name = "Bloqueo.existe",
+            query = "SELECT b.idBloqueo FROM Bloqueo b WHERE b.usuarioBloqueador.idUsuario = :bloqueador AND b.usuarioBloqueado.idUsuario = :bloqueado"
     )
 })
 public class Bloqueo implements Serializable {
 
     //seccion de mapeo
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "gen_bloqueo")
+    @TableGenerator(name = "gen_bloqueo", table = "generador_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "bloqueo", allocationSize = 50)
     @Column(name = "id_bloqueo")
     private Long idBloqueo;
 
@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.entitys;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -14,9 +15,12 @@ import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToMany;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * clase que modela un chat
@@ -25,6 +29,8 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "chat")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "chat")
 @NamedQueries({
     @NamedQuery(
             name = "Chat.findAll",
@@ -37,13 +43,23 @@ import java.util.Set;
     @NamedQuery(
             name = "Chat.findByParticipante",
             query = "SELECT c FROM Chat c JOIN c.participantes p WHERE p = :participante"
+    ),
+    @NamedQuery(
+            name = "Chat.esParticipante",
+            query = "SELECT COUNT(c) FROM Chat c JOIN c.participantes p WHERE c.idChat = :idChat AND p.idUsuario = :idUsuario"
+    ),
+    @NamedQuery(
+            name = "Chat.findUltimaSecuencia",
+            query = "SELECT c.ultimaSecuencia FROM Chat c WHERE c.idChat = :idChat"
     )
 })
 public class Chat implements Serializable {
 
     // seccion de mapeo
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "gen_chat")
+    @TableGenerator(name = "gen_chat", table = "generador_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "chat", allocationSize = 50)
     @Column(name = "id_chat")
     private Long idChat;
 
@@ -54,12 +70,19 @@ public class Chat implements Serializable {
     @JoinColumn(name = "id_match", unique = true)
     private Match match;
 
+    // lado inverso de Usuario.chats, si la membresia se cambia desde el
+    // usuario hay que desalojar esta coleccion de la cache
     @ManyToMany(mappedBy = "chats")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "chat.participantes")
     private Set<Usuario> participantes = new HashSet<>();
 
     @OneToMany(mappedBy = "chat", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Mensaje> mensajes = new HashSet<>();
 
+    // ultima secuencia asignada a un cambio de mensaje en este chat
+    @Column(name = "ultima_secuencia", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long ultimaSecuencia = 0L;
+
     /**
      * metodo constructor privado para el builder
      *
@@ -165,4 +188,12 @@ public class Chat implements Serializable {
     public void setMensajes(Set<Mensaje> mensajes) {
         this.mensajes = mensajes;
     }
+
+    public Long getUltimaSecuencia() {
+        return ultimaSecuencia;
+    }
+
+    public void setUltimaSecuencia(Long ultimaSecuencia) {
+        this.ultimaSecuencia = ultimaSecuencia;
+    }
 }
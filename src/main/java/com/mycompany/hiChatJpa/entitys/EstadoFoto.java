@@ -0,0 +1,11 @@
+package com.mycompany.hiChatJpa.entitys;
+
+/**
+ * clase que representa el estado de la subida de la foto de perfil
+ * @author gatog
+ */
+public enum EstadoFoto {
+    PENDIENTE,
+    SUBIDA,
+    FALLIDA
+}
@@ -11,6 +11,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import java.io.Serializable;
 
 /**
@@ -38,7 +39,9 @@ public class Foto implements Serializable {
 
     // seccion de mapeo
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "gen_foto")
+    @TableGenerator(name = "gen_foto", table = "generador_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "foto", allocationSize = 50)
     @Column(name = "id_foto")
     private Long idFoto;
 
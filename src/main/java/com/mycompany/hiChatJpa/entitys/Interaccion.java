@@ -13,6 +13,7 @@ import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import jakarta.persistence.UniqueConstraint;
 import java.io.Serializable;
 import java.time.LocalDateTime;
@@ -39,6 +40,10 @@ import java.time.LocalDateTime;
             name = "Interaccion.findByReceptor",
             query = "SELECT i FROM Interaccion i WHERE i.usuarioReceptor = :receptor ORDER BY i.fechaInteraccion DESC"
     ),
+    @NamedQuery(
+            name = "Interaccion.existe",
+            query = "SELECT i.idInteraccion FROM Interaccion i WHERE i.usuarioEmisor.idUsuario = :emisor AND i.usuarioReceptor.idUsuario = :receptor AND i.tipo = :tipo"
+    ),
     @NamedQuery(
             name = "Interaccion.findByTipo",
             query = "SELECT i FROM Interaccion i WHERE i.tipo = :tipo ORDER BY i.fechaInteraccion DESC"
@@ -48,7 +53,9 @@ public class Interaccion implements Serializable {
 
     // seccion de mapeo
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "gen_interaccion")
+    @TableGenerator(name = "gen_interaccion", table = "generador_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "interaccion", allocationSize = 50)
     @Column(name = "id_interaccion")
     private Long idInteraccion;
 
@@ -0,0 +1,187 @@
+package com.mycompany.hiChatJpa.entitys;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.NamedQueries;
+import jakarta.persistence.NamedQuery;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * clase que modela hasta donde leyo un participante un chat. Todo mensaje con
+ * ID menor o igual a idUltimoMensajeLeido cuenta como leido para ese usuario,
+ * asi marcar un chat como leido actualiza una sola fila sin importar cuantos
+ * mensajes tenga.
+ *
+ * @author gatog
+ */
+@Entity
+@Table(name = "lectura_chat",
+        uniqueConstraints = @UniqueConstraint(name = "uq_lectura_chat_usuario", columnNames = {"id_chat", "id_usuario"}),
+        indexes = @Index(name = "idx_lectura_usuario", columnList = "id_usuario, id_chat")
+)
+@NamedQueries({
+    @NamedQuery(
+            name = "LecturaChat.findByChat",
+            query = "SELECT l FROM LecturaChat l WHERE l.chat.idChat = :idChat"
+    ),
+    @NamedQuery(
+            name = "LecturaChat.findByChatYUsuario",
+            query = "SELECT l FROM LecturaChat l WHERE l.chat.idChat = :idChat AND l.usuario.idUsuario = :idUsuario"
+    ),
+    @NamedQuery(
+            name = "LecturaChat.deleteByUsuario",
+            query = "DELETE FROM LecturaChat l WHERE l.usuario.idUsuario = :idUsuario"
+    )
+})
+public class LecturaChat implements Serializable {
+
+    // seccion de mapeo
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_lectura")
+    private Long idLectura;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_chat", nullable = false)
+    private Chat chat;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "id_usuario", nullable = false)
+    private Usuario usuario;
+
+    @Column(name = "id_ultimo_mensaje_leido", nullable = false)
+    private Long idUltimoMensajeLeido = 0L;
+
+    // secuencia del chat en la que se movio la marca, para sincronizarChat
+    @Column(name = "secuencia_cambio", nullable = false)
+    private Long secuenciaCambio = 0L;
+
+    @Column(name = "fecha_lectura", nullable = false)
+    private LocalDateTime fechaLectura;
+
+    /**
+     * constructor por ausencia
+     */
+    protected LecturaChat() {
+    }
+
+    /**
+     * constructor builder
+     *
+     * @param builder
+     */
+    private LecturaChat(Builder builder) {
+        this.idLectura = builder.idLectura;
+        this.chat = builder.chat;
+        this.usuario = builder.usuario;
+        this.idUltimoMensajeLeido = builder.idUltimoMensajeLeido;
+        this.secuenciaCambio = builder.secuenciaCambio;
+        this.fechaLectura = builder.fechaLectura;
+    }
+
+    /**
+     * clase interna que permite implementar builder
+     */
+    public static class Builder {
+
+        private Long idLectura;
+        private Chat chat;
+        private Usuario usuario;
+        private Long idUltimoMensajeLeido = 0L;
+        private Long secuenciaCambio = 0L;
+        private LocalDateTime fechaLectura = LocalDateTime.now();
+
+        public Builder idLectura(Long idLectura) {
+            this.idLectura = idLectura;
+            return this;
+        }
+
+        public Builder chat(Chat chat) {
+            this.chat = chat;
+            return this;
+        }
+
+        public Builder usuario(Usuario usuario) {
+            this.usuario = usuario;
+            return this;
+        }
+
+        public Builder idUltimoMensajeLeido(Long idUltimoMensajeLeido) {
+            this.idUltimoMensajeLeido = idUltimoMensajeLeido;
+            return this;
+        }
+
+        public Builder secuenciaCambio(Long secuenciaCambio) {
+            this.secuenciaCambio = secuenciaCambio;
+            return this;
+        }
+
+        public Builder fechaLectura(LocalDateTime fechaLectura) {
+            this.fechaLectura = fechaLectura;
+            return this;
+        }
+
+        public LecturaChat build() {
+            return new LecturaChat(this);
+        }
+    }
+
+    // getters y setters
+    public Long getIdLectura() {
+        return idLectura;
+    }
+
+    public void setIdLectura(Long idLectura) {
+        this.idLectura = idLectura;
+    }
+
+    public Chat getChat() {
+        return chat;
+    }
+
+    public void setChat(Chat chat) {
+        this.chat = chat;
+    }
+
+    public Usuario getUsuario() {
+        return usuario;
+    }
+
+    public void setUsuario(Usuario usuario) {
+        this.usuario = usuario;
+    }
+
+    public Long getIdUltimoMensajeLeido() {
+        return idUltimoMensajeLeido;
+    }
+
+    public void setIdUltimoMensajeLeido(Long idUltimoMensajeLeido) {
+        this.idUltimoMensajeLeido = idUltimoMensajeLeido;
+    }
+
+    public Long getSecuenciaCambio() {
+        return secuenciaCambio;
+    }
+
+    public void setSecuenciaCambio(Long secuenciaCambio) {
+        this.secuenciaCambio = secuenciaCambio;
+    }
+
+    public LocalDateTime getFechaLectura() {
+        return fechaLectura;
+    }
+
+    public void setFechaLectura(LocalDateTime fechaLectura) {
+        this.fechaLectura = fechaLectura;
+    }
+}
@@ -7,12 +7,14 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
 import jakarta.persistence.OneToOne;
 import jakarta.persistence.Table;
+import jakarta.persistence.TableGenerator;
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
@@ -22,7 +24,13 @@ import java.time.LocalDateTime;
  * @author angel
  */
 @Entity
-@Table(name = "matches")
+@Table(name = "matches",
+        indexes = {
+            // uno por lado, cada rama de Match.findByUsuario recorre el suyo
+            @Index(name = "idx_match_usuario_a_fecha", columnList = "usuario_a, fecha_match, id_match"),
+            @Index(name = "idx_match_usuario_b_fecha", columnList = "usuario_b, fecha_match, id_match")
+        }
+)
 
 @NamedQueries({
     @NamedQuery(
@@ -36,13 +44,50 @@ import java.time.LocalDateTime;
     @NamedQuery(
             name = "Match.findByUsuarioB",
             query = "SELECT m FROM Match m WHERE m.usuarioB = :usuarioB ORDER BY m.fechaMatch DESC"
+    ),
+    // los matches de un usuario en cualquiera de los dos lados con los datos
+    // de perfil de ambos y el chat en una sola consulta, paginados por
+    // (fechaMatch, idMatch). Cada lado es una rama con su propio orden y
+    // limite que recorre su indice, UNION ALL junta las dos paginas de IDs y
+    // solo esas filas se unen con los usuarios y el chat
+    @NamedQuery(
+            name = "Match.findByUsuario",
+            query = Match.RESUMEN + "FROM ("
+                    + "(" + Match.RAMA_A + Match.PAGINA + ") UNION ALL (" + Match.RAMA_B + Match.PAGINA + ")"
+                    + ") p " + Match.UNIONES
+    ),
+    @NamedQuery(
+            name = "Match.findByUsuarioAntesDe",
+            query = Match.RESUMEN + "FROM ("
+                    + "(" + Match.RAMA_A + Match.ANTES_DE + Match.PAGINA + ") UNION ALL ("
+                    + Match.RAMA_B + Match.ANTES_DE + Match.PAGINA + ")"
+                    + ") p " + Match.UNIONES
     )
 })
 public class Match implements Serializable {
 
+    // partes de Match.findByUsuario, MatchRepository lee las columnas por posicion
+    static final String RESUMEN = "SELECT m.idMatch, m.fechaMatch, c.idChat, "
+            + "a.idUsuario, a.nombre, a.apellidoPaterno, a.apellidoMaterno, a.correoElectronico, "
+            + "a.carrera, a.urlFotoPerfil, CAST(a.genero AS String), a.fechaNacimiento, "
+            + "b.idUsuario, b.nombre, b.apellidoPaterno, b.apellidoMaterno, b.correoElectronico, "
+            + "b.carrera, b.urlFotoPerfil, CAST(b.genero AS String), b.fechaNacimiento ";
+    static final String RAMA_A = "SELECT r.idMatch AS idMatch, r.fechaMatch AS fechaMatch FROM Match r "
+            + "WHERE r.usuarioA.idUsuario = :idUsuario ";
+    static final String RAMA_B = "SELECT r.idMatch AS idMatch, r.fechaMatch AS fechaMatch FROM Match r "
+            + "WHERE r.usuarioB.idUsuario = :idUsuario ";
+    static final String ANTES_DE
+            = "AND (r.fechaMatch < :fecha OR (r.fechaMatch = :fecha AND r.idMatch < :idMatch)) ";
+    static final String PAGINA = "ORDER BY r.fechaMatch DESC, r.idMatch DESC LIMIT :limite";
+    static final String UNIONES = "JOIN Match m ON m.idMatch = p.idMatch "
+            + "JOIN m.usuarioA a JOIN m.usuarioB b LEFT JOIN m.chat c "
+            + "ORDER BY p.fechaMatch DESC, p.idMatch DESC";
+
     //seccion de mapeo
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "gen_match")
+    @TableGenerator(name = "gen_match", table = "generador_id", pkColumnName = "entidad",
+            valueColumnName = "siguiente_id", pkColumnValue = "match", allocationSize = 50)
     @Column(name = "id_match")
     private Long idMatch;
 
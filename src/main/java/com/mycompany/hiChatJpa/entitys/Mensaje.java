@@ -6,6 +6,7 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.NamedQueries;
@@ -20,7 +21,12 @@ import java.time.LocalDateTime;
  * @author angel
  */
 @Entity
-@Table(name = "mensaje")
+@Table(name = "mensaje",
+        indexes = {
+            @Index(name = "idx_mensaje_chat_fecha", columnList = "id_chat, esta_borrado, fecha_envio, id_mensaje"),
+            @Index(name = "idx_mensaje_chat_cambio", columnList = "id_chat, secuencia_cambio")
+        }
+)
 @NamedQueries({
     @NamedQuery(
         name = "Mensaje.findAll",
@@ -30,14 +36,36 @@ import java.time.LocalDateTime;
         name = "Mensaje.findByChat",
         query = "SELECT m FROM Mensaje m WHERE m.chat = :chat ORDER BY m.fechaEnvio DESC"
     ),
+    @NamedQuery(
+        name = "Mensaje.findByChatRecientes",
+        query = "SELECT m FROM Mensaje m JOIN FETCH m.usuarioEmisor WHERE m.chat.idChat = :idChat AND m.estaBorrado = false ORDER BY m.fechaEnvio DESC, m.idMensaje DESC"
+    ),
+    @NamedQuery(
+        name = "Mensaje.findByChatAntesDe",
+        query = "SELECT m FROM Mensaje m JOIN FETCH m.usuarioEmisor WHERE m.chat.idChat = :idChat AND m.estaBorrado = false AND (m.fechaEnvio < :fecha OR (m.fechaEnvio = :fecha AND m.idMensaje < :idMensaje)) ORDER BY m.fechaEnvio DESC, m.idMensaje DESC"
+    ),
+    @NamedQuery(
+        name = "Mensaje.findUltimoId",
+        query = "SELECT MAX(m.idMensaje) FROM Mensaje m WHERE m.chat = :chat"
+    ),
+    @NamedQuery(
+        name = "Mensaje.findCambiosDesde",
+        query = "SELECT m FROM Mensaje m JOIN FETCH m.usuarioEmisor WHERE m.chat.idChat = :idChat AND m.secuenciaCambio > :desde ORDER BY m.secuenciaCambio ASC, m.idMensaje ASC"
+    ),
     @NamedQuery(
         name = "Mensaje.findNoVistosPorUsuario",
-        query = "SELECT m FROM Mensaje m WHERE m.chat IN (SELECT c FROM Chat c JOIN c.participantes p WHERE p = :usuario) AND m.usuarioEmisor <> :usuario AND m.estaVisto = false ORDER BY m.fechaEnvio DESC"
+        query = "SELECT m FROM Mensaje m JOIN m.chat c JOIN c.participantes p WHERE p = :usuario AND m.usuarioEmisor <> :usuario AND m.estaBorrado = false "
+                + "AND m.idMensaje > COALESCE((SELECT l.idUltimoMensajeLeido FROM LecturaChat l WHERE l.chat = c AND l.usuario = :usuario), 0) "
+                + "ORDER BY m.fechaEnvio DESC"
     )
 })
 public class Mensaje implements Serializable {
 
     // seccion de mapeo
+    // IDENTITY y no generador_id: las marcas de lectura comparan IDs y cuentan
+    // con que crezcan en el orden de envio dentro del chat, y con bloques por
+    // proceso eso se rompe. El costo es que Hibernate inserta cada mensaje al
+    // hacer persist y sus INSERT nunca van en lotes JDBC
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     @Column(name = "id_mensaje")
@@ -57,12 +85,22 @@ public class Mensaje implements Serializable {
     @Column(name = "fecha_envio", nullable = false)
     private LocalDateTime fechaEnvio;
 
-    @Column(name = "esta_visto", nullable = false)
+    // columna heredada, ya no se actualiza: lo leido vive en LecturaChat y
+    // solo se consulta al migrar las marcas de lectura
+    @Column(name = "esta_visto", nullable = false, updatable = false)
     private Boolean estaVisto = false;
 
     @Column(name = "esta_borrado", nullable = false)
     private Boolean estaBorrado = false;
 
+    // posicion del mensaje dentro del chat, se asigna al enviarlo
+    @Column(name = "secuencia", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long secuencia = 0L;
+
+    // secuencia del chat en el ultimo cambio del mensaje (envio o borrado)
+    @Column(name = "secuencia_cambio", nullable = false, columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private Long secuenciaCambio = 0L;
+
     /**
      * constructor builder
      *
@@ -76,6 +114,8 @@ public class Mensaje implements Serializable {
         this.fechaEnvio = builder.fechaEnvio;
         this.estaVisto = builder.estaVisto;
         this.estaBorrado = builder.estaBorrado;
+        this.secuencia = builder.secuencia;
+        this.secuenciaCambio = builder.secuencia;
     }
 
     /**
@@ -96,6 +136,7 @@ public class Mensaje implements Serializable {
         private LocalDateTime fechaEnvio;
         private Boolean estaVisto = false;
         private Boolean estaBorrado = false;
+        private Long secuencia = 0L;
 
         public Builder idMensaje(Long idMensaje){
             this.idMensaje = idMensaje;
@@ -132,6 +173,11 @@ public class Mensaje implements Serializable {
             return this;
         }
 
+        public Builder secuencia(Long secuencia) {
+            this.secuencia = secuencia;
+            return this;
+        }
+
         /**
          * constructor builder con validaciones
          *
@@ -201,4 +247,20 @@ public class Mensaje implements Serializable {
     public void setEstaBorrado(Boolean estaBorrado) {
         this.estaBorrado = estaBorrado;
     }
+
+    public Long getSecuencia() {
+        return secuencia;
+    }
+
+    public void setSecuencia(Long secuencia) {
+        this.secuencia = secuencia;
+    }
+
+    public Long getSecuenciaCambio() {
+        return secuenciaCambio;
+    }
+
+    public void setSecuenciaCambio(Long secuenciaCambio) {
+        this.secuenciaCambio = secuenciaCambio;
+    }
 }
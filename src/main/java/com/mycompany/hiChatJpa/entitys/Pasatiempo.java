@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.entitys;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -8,10 +9,13 @@ import jakarta.persistence.Id;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.NamedQueries;
 import jakarta.persistence.NamedQuery;
+import jakarta.persistence.QueryHint;
 import jakarta.persistence.Table;
 import java.io.Serializable;
 import java.util.HashSet;
 import java.util.Set;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * clase que modela un pasatiempo
@@ -20,14 +24,18 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "pasatiempo")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "pasatiempo")
 @NamedQueries({
     @NamedQuery(
         name = "Pasatiempo.findAll",
-        query = "SELECT p FROM Pasatiempo p ORDER BY p.nombre ASC"
+        query = "SELECT p FROM Pasatiempo p ORDER BY p.nombre ASC",
+        hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")
     ),
     @NamedQuery(
         name = "Pasatiempo.findByNombre",
-        query = "SELECT p FROM Pasatiempo p WHERE p.nombre = :nombre"
+        query = "SELECT p FROM Pasatiempo p WHERE p.nombre = :nombre",
+        hints = @QueryHint(name = "org.hibernate.cacheable", value = "true")
     )
 })
 public class Pasatiempo implements Serializable {
@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.entitys;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -20,6 +21,8 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 /**
  * clase que modela un usuario
@@ -28,6 +31,8 @@ import java.util.Set;
  */
 @Entity
 @Table(name = "usuario")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuario")
 @NamedQueries({
     @NamedQuery(
         name = "Usuario.findAll",
@@ -40,6 +45,19 @@ import java.util.Set;
     @NamedQuery(
         name = "Usuario.findByNombreCompleto",
         query = "SELECT u FROM Usuario u WHERE u.nombre = :nombre AND u.apellidoPaterno = :apellidoPaterno"
+    ),
+    @NamedQuery(
+        name = "Usuario.findFotosPendientes",
+        query = "SELECT u FROM Usuario u WHERE u.estadoFoto = :estado AND u.idUsuario > :despuesDe ORDER BY u.idUsuario"
+    ),
+    // solo si la foto sigue siendo la misma pendiente, asi no se pisa una mas nueva
+    @NamedQuery(
+        name = "Usuario.actualizarFoto",
+        query = "UPDATE Usuario u SET u.urlFotoPerfil = :url, u.estadoFoto = :estado, u.rutaFotoPendiente = NULL WHERE u.idUsuario = :idUsuario AND u.estadoFoto = :pendiente AND u.rutaFotoPendiente = :ruta"
+    ),
+    @NamedQuery(
+        name = "Usuario.actualizarFotoSinRuta",
+        query = "UPDATE Usuario u SET u.urlFotoPerfil = :url, u.estadoFoto = :estado WHERE u.idUsuario = :idUsuario AND u.estadoFoto = :pendiente AND u.rutaFotoPendiente IS NULL"
     )
 })
 public class Usuario implements Serializable {
@@ -74,6 +92,13 @@ public class Usuario implements Serializable {
     @Column(name = "url_foto_perfil", length = 255)
     private String urlFotoPerfil;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_foto", length = 20)
+    private EstadoFoto estadoFoto;
+
+    @Column(name = "ruta_foto_pendiente", length = 500)
+    private String rutaFotoPendiente;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "genero", length = 20)
     private Genero genero;
@@ -85,6 +110,7 @@ public class Usuario implements Serializable {
     private LocalDateTime fechaRegistro;
 
     @ManyToMany
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuario.pasatiempos")
     @JoinTable(
             name = "usuario_pasatiempo",
             joinColumns = @JoinColumn(name = "id_usuario"),
@@ -133,6 +159,8 @@ public class Usuario implements Serializable {
         this.carrera = builder.carrera;
         this.biografia = builder.biografia;
         this.urlFotoPerfil = builder.urlFotoPerfil;
+        this.estadoFoto = builder.estadoFoto;
+        this.rutaFotoPendiente = builder.rutaFotoPendiente;
         this.genero = builder.genero;
         this.fechaNacimiento = builder.fechaNacimiento;
         this.fechaRegistro = builder.fechaRegistro;
@@ -166,6 +194,8 @@ public class Usuario implements Serializable {
         private String carrera;
         private String biografia;
         private String urlFotoPerfil;
+        private EstadoFoto estadoFoto;
+        private String rutaFotoPendiente;
         private Genero genero;
         private LocalDate fechaNacimiento;
         private LocalDateTime fechaRegistro = LocalDateTime.now();
@@ -218,6 +248,16 @@ public class Usuario implements Serializable {
             return this;
         }
 
+        public Builder estadoFoto(EstadoFoto estadoFoto) {
+            this.estadoFoto = estadoFoto;
+            return this;
+        }
+
+        public Builder rutaFotoPendiente(String rutaFotoPendiente) {
+            this.rutaFotoPendiente = rutaFotoPendiente;
+            return this;
+        }
+
         public Builder genero(Genero genero) {
             this.genero = genero;
             return this;
@@ -331,6 +371,22 @@ public class Usuario implements Serializable {
         this.urlFotoPerfil = urlFotoPerfil;
     }
 
+    public EstadoFoto getEstadoFoto() {
+        return estadoFoto;
+    }
+
+    public void setEstadoFoto(EstadoFoto estadoFoto) {
+        this.estadoFoto = estadoFoto;
+    }
+
+    public String getRutaFotoPendiente() {
+        return rutaFotoPendiente;
+    }
+
+    public void setRutaFotoPendiente(String rutaFotoPendiente) {
+        this.rutaFotoPendiente = rutaFotoPendiente;
+    }
+
     public Genero getGenero() {
         return genero;
     }
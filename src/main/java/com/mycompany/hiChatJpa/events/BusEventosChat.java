@@ -0,0 +1,358 @@
+package com.mycompany.hiChatJpa.events;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * bus de eventos en memoria por ID de chat. Los servicios publican despues de
+ * confirmar la transaccion y cada suscriptor recibe los eventos en su propia
+ * cola acotada, en orden y sin bloquear a quien publica. Si la cola se llena
+ * se aplica la politica de desborde del suscriptor. Ademas de los canales por
+ * chat hay un canal por usuario para avisos que no pertenecen a un chat que el
+ * usuario ya tenga abierto, como un match nuevo.
+ *
+ * @author gatog
+ */
+public class BusEventosChat {
+
+    private static final BusEventosChat INSTANCIA = new BusEventosChat();
+
+    private final Map<Long, Set<Suscripcion>> suscriptores = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Suscripcion>> suscriptoresUsuario = new ConcurrentHashMap<>();
+    private final ExecutorService entregaPorDefecto = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("bus-eventos-", 0).factory());
+
+    // metricas
+    private final LongAdder publicados = new LongAdder();
+    private final LongAdder entregados = new LongAdder();
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder fallosOyente = new LongAdder();
+    private final LongAdder nanosEntrega = new LongAdder();
+    private final LongAccumulator maxNanosEntrega = new LongAccumulator(Long::max, 0);
+
+    private BusEventosChat() {
+    }
+
+    public static BusEventosChat getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * metodo que suscribe un oyente a los eventos de un chat
+     *
+     * @param idChat ID del chat
+     * @param capacidad tamaño maximo de la cola del suscriptor
+     * @param politica que hacer cuando la cola esta llena
+     * @param entrega donde se ejecuta el oyente, para vistas
+     * SwingUtilities::invokeLater
+     * @param oyente recibe los eventos en orden de publicacion
+     * @return suscripcion para cancelarla
+     */
+    public Suscripcion suscribir(Long idChat, int capacidad, PoliticaDesborde politica,
+            Executor entrega, Consumer<EventoChat> oyente) {
+        if (idChat == null || oyente == null || politica == null) {
+            throw new IllegalArgumentException("el chat, la politica y el oyente son obligatorios");
+        }
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("la capacidad debe ser mayor a cero");
+        }
+        return agregar(suscriptores, idChat, idChat, capacidad, politica, entrega, oyente);
+    }
+
+    /**
+     * metodo que suscribe un oyente a los avisos dirigidos a un usuario
+     *
+     * @param idUsuario ID del usuario
+     * @param capacidad tamaño maximo de la cola del suscriptor
+     * @param politica que hacer cuando la cola esta llena
+     * @param entrega donde se ejecuta el oyente
+     * @param oyente recibe los eventos en orden de publicacion
+     * @return suscripcion para cancelarla
+     */
+    public Suscripcion suscribirUsuario(Long idUsuario, int capacidad, PoliticaDesborde politica,
+            Executor entrega, Consumer<EventoChat> oyente) {
+        if (idUsuario == null || oyente == null || politica == null) {
+            throw new IllegalArgumentException("el usuario, la politica y el oyente son obligatorios");
+        }
+        if (capacidad <= 0) {
+            throw new IllegalArgumentException("la capacidad debe ser mayor a cero");
+        }
+        return agregar(suscriptoresUsuario, idUsuario, null, capacidad, politica, entrega, oyente);
+    }
+
+    private Suscripcion agregar(Map<Long, Set<Suscripcion>> canal, Long clave, Long idChat, int capacidad,
+            PoliticaDesborde politica, Executor entrega, Consumer<EventoChat> oyente) {
+        Suscripcion suscripcion = new Suscripcion(canal, clave, idChat, capacidad, politica,
+                entrega != null ? entrega : entregaPorDefecto, oyente);
+        canal.compute(clave, (id, actuales) -> {
+            Set<Suscripcion> conjunto = actuales != null ? actuales : new CopyOnWriteArraySet<>();
+            conjunto.add(suscripcion);
+            return conjunto;
+        });
+        return suscripcion;
+    }
+
+    /**
+     * metodo que publica un evento a los suscriptores de su chat, nunca
+     * bloquea ni lanza excepciones de los oyentes
+     *
+     * @param evento evento a publicar
+     */
+    public void publicar(EventoChat evento) {
+        if (evento == null || evento.getIdChat() == null) {
+            return;
+        }
+        entregar(suscriptores.get(evento.getIdChat()), evento);
+    }
+
+    /**
+     * metodo que publica un evento solo a los suscriptores del usuario
+     *
+     * @param idUsuario ID del usuario destino
+     * @param evento evento a publicar
+     */
+    public void publicarAUsuario(Long idUsuario, EventoChat evento) {
+        if (idUsuario == null || evento == null) {
+            return;
+        }
+        entregar(suscriptoresUsuario.get(idUsuario), evento);
+    }
+
+    private void entregar(Set<Suscripcion> destino, EventoChat evento) {
+        publicados.increment();
+        if (destino == null) {
+            return;
+        }
+        for (Suscripcion suscripcion : destino) {
+            suscripcion.encolar(evento);
+        }
+    }
+
+    public Metricas getMetricas() {
+        int total = suscriptores.values().stream().mapToInt(Set::size).sum()
+                + suscriptoresUsuario.values().stream().mapToInt(Set::size).sum();
+        long totalEntregados = entregados.sum();
+        return new Metricas(total, publicados.sum(), totalEntregados, descartados.sum(), fallosOyente.sum(),
+                totalEntregados > 0 ? nanosEntrega.sum() / totalEntregados : 0, maxNanosEntrega.get());
+    }
+
+    private void quitar(Suscripcion suscripcion) {
+        suscripcion.canal.computeIfPresent(suscripcion.clave, (id, actuales) -> {
+            actuales.remove(suscripcion);
+            return actuales.isEmpty() ? null : actuales;
+        });
+    }
+
+    /**
+     * suscripcion de un oyente a un chat o usuario con su cola de eventos
+     * pendientes
+     */
+    public final class Suscripcion {
+
+        private final Map<Long, Set<Suscripcion>> canal;
+        private final Long clave;
+        private final Long idChat;
+        private final int capacidad;
+        private final PoliticaDesborde politica;
+        private final Executor entrega;
+        private final Consumer<EventoChat> oyente;
+
+        // protegido por this
+        private final ArrayDeque<EventoChat> cola = new ArrayDeque<>();
+        private boolean entregando;
+        private boolean cancelada;
+        private long descartadosPropios;
+
+        private Suscripcion(Map<Long, Set<Suscripcion>> canal, Long clave, Long idChat, int capacidad,
+                PoliticaDesborde politica, Executor entrega, Consumer<EventoChat> oyente) {
+            this.canal = canal;
+            this.clave = clave;
+            this.idChat = idChat;
+            this.capacidad = capacidad;
+            this.politica = politica;
+            this.entrega = entrega;
+            this.oyente = oyente;
+        }
+
+        /**
+         * deja de recibir eventos, los que estaban en cola se descartan
+         */
+        public void cancelar() {
+            synchronized (this) {
+                cancelada = true;
+                cola.clear();
+            }
+            quitar(this);
+        }
+
+        public synchronized boolean isCancelada() {
+            return cancelada;
+        }
+
+        public synchronized int getPendientes() {
+            return cola.size();
+        }
+
+        public synchronized long getDescartados() {
+            return descartadosPropios;
+        }
+
+        private void encolar(EventoChat evento) {
+            boolean programar;
+            synchronized (this) {
+                if (cancelada) {
+                    return;
+                }
+                if (cola.size() >= capacidad) {
+                    switch (politica) {
+                        case DESCARTAR_NUEVO -> {
+                            descartar(1);
+                            return;
+                        }
+                        case DESCARTAR_ANTIGUO -> {
+                            cola.poll();
+                            descartar(1);
+                            cola.add(evento);
+                        }
+                        case COALESCER -> {
+                            // todo lo pendiente se recupera sincronizando
+                            descartar(cola.size() + 1);
+                            cola.clear();
+                            cola.add(EventoChat.resincronizar(idChat));
+                        }
+                    }
+                } else if (politica == PoliticaDesborde.COALESCER
+                        && cola.peekLast() != null
+                        && cola.peekLast().getTipo() == TipoEventoChat.RESINCRONIZAR) {
+                    // ya se pidio resincronizar, el evento queda cubierto
+                    descartar(1);
+                    return;
+                } else {
+                    cola.add(evento);
+                }
+                programar = !entregando;
+                entregando = true;
+            }
+            if (programar) {
+                try {
+                    entrega.execute(this::vaciar);
+                } catch (RuntimeException e) {
+                    synchronized (this) {
+                        entregando = false;
+                    }
+                    System.err.println("No se pudo programar la entrega de eventos de " + clave + ": " + e.getMessage());
+                }
+            }
+        }
+
+        private void descartar(long cantidad) {
+            descartadosPropios += cantidad;
+            descartados.add(cantidad);
+        }
+
+        /**
+         * entrega los eventos de la cola uno por uno en el ejecutor del
+         * suscriptor, solo hay un vaciado en curso por suscripcion
+         */
+        private void vaciar() {
+            while (true) {
+                EventoChat evento;
+                synchronized (this) {
+                    evento = cancelada ? null : cola.poll();
+                    if (evento == null) {
+                        entregando = false;
+                        return;
+                    }
+                }
+                long nanos = System.nanoTime() - evento.getPublicadoNanos();
+                entregados.increment();
+                nanosEntrega.add(nanos);
+                maxNanosEntrega.accumulate(nanos);
+                try {
+                    oyente.accept(evento);
+                } catch (RuntimeException e) {
+                    fallosOyente.increment();
+                    System.err.println("Error en oyente de " + clave + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * valores del bus en un instante dado
+     */
+    public static class Metricas {
+
+        private final int suscriptores;
+        private final long publicados;
+        private final long entregados;
+        private final long descartados;
+        private final long fallosOyente;
+        private final long promedioNanosEntrega;
+        private final long maxNanosEntrega;
+
+        public Metricas(int suscriptores, long publicados, long entregados, long descartados,
+                long fallosOyente, long promedioNanosEntrega, long maxNanosEntrega) {
+            this.suscriptores = suscriptores;
+            this.publicados = publicados;
+            this.entregados = entregados;
+            this.descartados = descartados;
+            this.fallosOyente = fallosOyente;
+            this.promedioNanosEntrega = promedioNanosEntrega;
+            this.maxNanosEntrega = maxNanosEntrega;
+        }
+
+        public int getSuscriptores() {
+            return suscriptores;
+        }
+
+        public long getPublicados() {
+            return publicados;
+        }
+
+        public long getEntregados() {
+            return entregados;
+        }
+
+        public long getDescartados() {
+            return descartados;
+        }
+
+        public long getFallosOyente() {
+            return fallosOyente;
+        }
+
+        /**
+         * @return tiempo promedio entre publicar y llamar al oyente
+         */
+        public long getPromedioNanosEntrega() {
+            return promedioNanosEntrega;
+        }
+
+        public long getMaxNanosEntrega() {
+            return maxNanosEntrega;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasBusEventosChat{"
+                    + "suscriptores=" + suscriptores
+                    + ", publicados=" + publicados
+                    + ", entregados=" + entregados
+                    + ", descartados=" + descartados
+                    + ", fallosOyente=" + fallosOyente
+                    + ", promedioEntregaMicros=" + promedioNanosEntrega / 1_000
+                    + ", maxEntregaMicros=" + maxNanosEntrega / 1_000
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.mycompany.hiChatJpa.events;
+
+import com.mycompany.hiChatJpa.dto.MensajeDTO;
+
+/**
+ * evento inmutable de un chat, se publica despues de confirmar la transaccion
+ * que lo produjo
+ *
+ * @author gatog
+ */
+public class EventoChat {
+
+    private final TipoEventoChat tipo;
+    private final Long idChat;
+    private final Long secuencia;
+    private final Long idMensaje;
+    private final Long idUsuario;
+    private final Long idMatch;
+    private final MensajeDTO mensaje;
+    private final long publicadoNanos;
+
+    private EventoChat(TipoEventoChat tipo, Long idChat, Long secuencia, Long idMensaje,
+            Long idUsuario, Long idMatch, MensajeDTO mensaje) {
+        this.tipo = tipo;
+        this.idChat = idChat;
+        this.secuencia = secuencia;
+        this.idMensaje = idMensaje;
+        this.idUsuario = idUsuario;
+        this.idMatch = idMatch;
+        this.mensaje = mensaje;
+        this.publicadoNanos = System.nanoTime();
+    }
+
+    /**
+     * @param mensaje mensaje recien enviado
+     * @return evento MENSAJE_ENVIADO
+     */
+    public static EventoChat mensajeEnviado(MensajeDTO mensaje) {
+        return new EventoChat(TipoEventoChat.MENSAJE_ENVIADO, mensaje.getIdChat(), mensaje.getSecuenciaCambio(),
+                mensaje.getIdMensaje(), mensaje.getEmisor() != null ? mensaje.getEmisor().getIdUsuario() : null,
+                null, mensaje);
+    }
+
+    public static EventoChat mensajeBorrado(Long idChat, Long idMensaje, Long secuencia) {
+        return new EventoChat(TipoEventoChat.MENSAJE_BORRADO, idChat, secuencia, idMensaje, null, null, null);
+    }
+
+    /**
+     * @param idChat ID del chat
+     * @param idMensaje hasta donde llego la marca de lectura, los mensajes con
+     * ID menor o igual ya estan vistos
+     * @param idUsuarioReceptor usuario que vio los mensajes o null si fueron
+     * varios
+     * @param secuencia secuencia del cambio
+     * @return evento MENSAJES_VISTOS
+     */
+    public static EventoChat mensajesVistos(Long idChat, Long idMensaje, Long idUsuarioReceptor, Long secuencia) {
+        return new EventoChat(TipoEventoChat.MENSAJES_VISTOS, idChat, secuencia, idMensaje, idUsuarioReceptor, null, null);
+    }
+
+    /**
+     * @param idChat chat creado para el match
+     * @param idMatch ID del match
+     * @param idContraparte el otro usuario del match
+     * @return evento NUEVO_MATCH
+     */
+    public static EventoChat nuevoMatch(Long idChat, Long idMatch, Long idContraparte) {
+        return new EventoChat(TipoEventoChat.NUEVO_MATCH, idChat, null, null, idContraparte, idMatch, null);
+    }
+
+    static EventoChat resincronizar(Long idChat) {
+        return new EventoChat(TipoEventoChat.RESINCRONIZAR, idChat, null, null, null, null, null);
+    }
+
+    public TipoEventoChat getTipo() {
+        return tipo;
+    }
+
+    public Long getIdChat() {
+        return idChat;
+    }
+
+    public Long getSecuencia() {
+        return secuencia;
+    }
+
+    public Long getIdMensaje() {
+        return idMensaje;
+    }
+
+    public Long getIdUsuario() {
+        return idUsuario;
+    }
+
+    public Long getIdMatch() {
+        return idMatch;
+    }
+
+    /**
+     * @return el mensaje enviado, solo en MENSAJE_ENVIADO
+     */
+    public MensajeDTO getMensaje() {
+        return mensaje;
+    }
+
+    long getPublicadoNanos() {
+        return publicadoNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "EventoChat{"
+                + "tipo=" + tipo
+                + ", idChat=" + idChat
+                + ", secuencia=" + secuencia
+                + ", idMensaje=" + idMensaje
+                + '}';
+    }
+}
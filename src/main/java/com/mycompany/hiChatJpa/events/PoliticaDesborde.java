@@ -0,0 +1,22 @@
+package com.mycompany.hiChatJpa.events;
+
+/**
+ * que hacer cuando la cola de un suscriptor esta llena
+ *
+ * @author gatog
+ */
+public enum PoliticaDesborde {
+    /**
+     * se descarta el evento nuevo
+     */
+    DESCARTAR_NUEVO,
+    /**
+     * se descarta el evento mas antiguo de la cola
+     */
+    DESCARTAR_ANTIGUO,
+    /**
+     * la cola se reemplaza por un solo evento RESINCRONIZAR, el suscriptor
+     * recupera lo perdido con sincronizarChat
+     */
+    COALESCER
+}
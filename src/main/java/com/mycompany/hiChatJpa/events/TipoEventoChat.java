@@ -0,0 +1,21 @@
+package com.mycompany.hiChatJpa.events;
+
+/**
+ * tipos de evento que se publican por chat
+ *
+ * @author gatog
+ */
+public enum TipoEventoChat {
+    MENSAJE_ENVIADO,
+    MENSAJE_BORRADO,
+    MENSAJES_VISTOS,
+    /**
+     * se creo un match y su chat, se publica en el canal de cada usuario
+     */
+    NUEVO_MATCH,
+    /**
+     * el suscriptor perdio eventos por tener la cola llena, debe volver a
+     * sincronizar el chat desde la ultima secuencia que conoce
+     */
+    RESINCRONIZAR
+}
@@ -0,0 +1,14 @@
+package com.mycompany.hiChatJpa.exceptions;
+
+/**
+ * excepcion personalizada lanzada cuando el usuario de la sesion intenta
+ * leer o cambiar algo que no es suyo
+ *
+ * @author gatog
+ */
+public class AccessDeniedException extends RuntimeException {
+
+    public AccessDeniedException(String message) {
+        super(message);
+    }
+}
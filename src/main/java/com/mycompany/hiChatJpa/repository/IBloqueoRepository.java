@@ -25,4 +25,6 @@ public interface IBloqueoRepository {
     List<Bloqueo> buscarPorBloqueador(Usuario usuario, int limit, int offset) throws RepositoryException;
 
     List<Bloqueo> buscarPorBloqueado(Usuario usuario, int limit, int offset) throws RepositoryException;
+
+    boolean existeBloqueo(Long idBloqueador, Long idBloqueado) throws RepositoryException;
 }
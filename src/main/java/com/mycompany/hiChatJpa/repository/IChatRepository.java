@@ -1,6 +1,7 @@
 
 package com.mycompany.hiChatJpa.repository;
 
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
 import com.mycompany.hiChatJpa.entitys.Chat;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
@@ -25,4 +26,29 @@ public interface IChatRepository {
     List<Chat> buscarPorNombre(String nombre, int limit, int offset) throws RepositoryException;
 
     List<Chat> buscarPorParticipante(Usuario usuario, int limit, int offset) throws RepositoryException;
+
+    List<ChatConMensajesDTO> buscarBandejaPorParticipante(Long idUsuario, int limit, int offset) throws RepositoryException;
+
+    /**
+     * reserva la siguiente secuencia del chat, bloquea la fila del chat hasta
+     * que termine la transaccion para que dos cambios nunca reciban la misma
+     *
+     * @param chat chat administrado por el EntityManager
+     * @return secuencia asignada
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    long siguienteSecuencia(Chat chat) throws RepositoryException;
+
+    Long buscarUltimaSecuencia(Long idChat) throws RepositoryException;
+
+    boolean esParticipante(Long idChat, Long idUsuario) throws RepositoryException;
+
+    /**
+     * agrega a usuario_chat a los dos usuarios del match de cada chat que no
+     * los tenga, solo inserta lo que falta
+     *
+     * @return cantidad de filas insertadas
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    int completarParticipantesDesdeMatches() throws RepositoryException;
 }
@@ -28,4 +28,6 @@ public interface IInteraccionRepository {
     List<Interaccion> buscarPorReceptor(Usuario usuario, int limit, int offset) throws RepositoryException;
 
     List<Interaccion> buscarPorTipo(TipoInteraccion tipo, int limit, int offset) throws RepositoryException;
+
+    boolean existeInteraccion(Long idEmisor, Long idReceptor, TipoInteraccion tipo) throws RepositoryException;
 }
@@ -0,0 +1,36 @@
+package com.mycompany.hiChatJpa.repository;
+
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.LecturaChat;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.exceptions.RepositoryException;
+import java.util.List;
+
+/**
+ * interfaz que define los metodos de las marcas de lectura de los chats
+ *
+ * @author gatog
+ */
+public interface ILecturaChatRepository {
+
+    LecturaChat insertar(LecturaChat lectura) throws RepositoryException;
+
+    LecturaChat buscarPorChatYUsuario(Long idChat, Long idUsuario) throws RepositoryException;
+
+    List<LecturaChat> buscarPorChat(Long idChat) throws RepositoryException;
+
+    /**
+     * mueve la marca de lectura del usuario hasta el mensaje indicado, nunca
+     * la regresa
+     *
+     * @param chat chat leido
+     * @param usuario usuario que leyo
+     * @param idMensaje ultimo mensaje leido
+     * @param secuencia secuencia del chat asignada al cambio
+     * @return true si la marca avanzo
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    boolean avanzar(Chat chat, Usuario usuario, Long idMensaje, long secuencia) throws RepositoryException;
+
+    int migrarDesdeEstaVisto() throws RepositoryException;
+}
@@ -1,8 +1,10 @@
 package com.mycompany.hiChatJpa.repository;
 
+import com.mycompany.hiChatJpa.dto.MatchDTO;
 import com.mycompany.hiChatJpa.entitys.Match;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -25,4 +27,17 @@ public interface IMatchRepository {
     List<Match> buscarPorUsuarioA(Usuario usuario, int limit, int offset) throws RepositoryException;
 
     List<Match> buscarPorUsuarioB(Usuario usuario, int limit, int offset) throws RepositoryException;
+
+    /**
+     * matches del usuario en cualquiera de los dos lados, paginados por
+     * (fechaMatch, idMatch) del mas reciente al mas antiguo
+     *
+     * @param idUsuario ID del usuario
+     * @param fecha fechaMatch del ultimo match ya mostrado, null para empezar
+     * @param idMatch ID del ultimo match ya mostrado
+     * @param limit cantidad maxima de matches
+     * @return pagina de matches con los perfiles de ambos usuarios
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    List<MatchDTO> buscarPorUsuario(Long idUsuario, LocalDateTime fecha, Long idMatch, int limit) throws RepositoryException;
 }
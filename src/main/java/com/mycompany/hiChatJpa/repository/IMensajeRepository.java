@@ -4,6 +4,7 @@ import com.mycompany.hiChatJpa.entitys.Chat;
 import com.mycompany.hiChatJpa.entitys.Mensaje;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -25,5 +26,21 @@ public interface IMensajeRepository {
 
     List<Mensaje> buscarPorChat(Chat chat, int limit, int offset) throws RepositoryException;
 
+    List<Mensaje> buscarPorChatAntesDe(Long idChat, LocalDateTime fecha, Long idMensaje, int limit) throws RepositoryException;
+
+    Long buscarUltimoId(Chat chat) throws RepositoryException;
+
+    /**
+     * busca los mensajes enviados o borrados despues de la secuencia
+     * indicada en orden de secuencia
+     *
+     * @param idChat ID del chat
+     * @param desdeSecuencia ultima secuencia que ya conoce el cliente
+     * @param limit cantidad maxima de mensajes
+     * @return mensajes con su emisor cargado
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    List<Mensaje> buscarCambiosDesde(Long idChat, long desdeSecuencia, int limit) throws RepositoryException;
+
     List<Mensaje> buscarNoVistosPorUsuario(Usuario usuario, int limit, int offset) throws RepositoryException;
 }
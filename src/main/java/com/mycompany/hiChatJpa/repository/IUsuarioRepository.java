@@ -1,5 +1,7 @@
 package com.mycompany.hiChatJpa.repository;
 
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.entitys.EstadoFoto;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import java.util.List;
@@ -23,5 +25,19 @@ public interface IUsuarioRepository {
 
     List<Usuario> listar(int limit, int offset) throws RepositoryException;
 
+    List<UsuarioPerfilDTO> listarPerfiles(int limit, int offset) throws RepositoryException;
+
     List<Usuario> buscarPorNombreCompleto(String nombre, String apellidoPaterno, int limit, int offset) throws RepositoryException;
+
+    List<Usuario> buscarPretendientes(Long idUsuarioActual, int limit, int offset) throws RepositoryException;
+
+    List<UsuarioPerfilDTO> buscarPerfilesPretendientes(Long idUsuarioActual, int limit, int offset) throws RepositoryException;
+
+    List<Usuario> muestrearPretendientes(Long idUsuarioActual, int limit) throws RepositoryException;
+
+    List<UsuarioPerfilDTO> muestrearPerfilesPretendientes(Long idUsuarioActual, int limit) throws RepositoryException;
+
+    List<Usuario> buscarFotosPendientes(Long despuesDeId, int limit) throws RepositoryException;
+
+    int actualizarFoto(Long idUsuario, String urlFotoPerfil, EstadoFoto estado, String rutaPendiente) throws RepositoryException;
 }
@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
 import com.mycompany.hiChatJpa.entitys.Bloqueo;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
@@ -33,7 +34,7 @@ public class BloqueoRepository implements IBloqueoRepository {
     public Bloqueo insertar(Bloqueo bloqueo) throws RepositoryException {
         try {
             entityManager.persist(bloqueo);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return bloqueo;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar el bloqueo", e);
@@ -158,4 +159,27 @@ public class BloqueoRepository implements IBloqueoRepository {
             throw new RepositoryException("buscarPorBloqueado", "No se pudieron buscar los bloqueos por bloqueado", e);
         }
     }
+
+    /**
+     * Verifica si el bloqueador ya bloqueo al usuario indicado. Se resuelve con
+     * la llave única (usuario_bloqueador, usuario_bloqueado).
+     *
+     * @param idBloqueador ID del usuario que bloquea
+     * @param idBloqueado ID del usuario bloqueado
+     * @return true si el bloqueo existe
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public boolean existeBloqueo(Long idBloqueador, Long idBloqueado) throws RepositoryException {
+        try {
+            TypedQuery<Long> query = entityManager.createNamedQuery("Bloqueo.existe", Long.class);
+            query.setParameter("bloqueador", idBloqueador);
+            query.setParameter("bloqueado", idBloqueado);
+            query.setMaxResults(1);
+
+            return !query.getResultList().isEmpty();
+        } catch (Exception e) {
+            throw new RepositoryException("existeBloqueo", "No se pudo verificar el bloqueo", e);
+        }
+    }
 }
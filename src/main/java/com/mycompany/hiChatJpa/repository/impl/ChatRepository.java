@@ -1,12 +1,23 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.Chat;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import jakarta.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import org.hibernate.Cache;
 import com.mycompany.hiChatJpa.repository.IChatRepository;
 
 /**
@@ -16,6 +27,18 @@ import com.mycompany.hiChatJpa.repository.IChatRepository;
  */
 public class ChatRepository implements IChatRepository {
 
+    /**
+     * participantes que faltan segun el match de cada chat, los chats creados
+     * al hacer match no escribian usuario_chat
+     */
+    private static final String SQL_COMPLETAR_PARTICIPANTES
+            = "INSERT INTO usuario_chat (id_usuario, id_chat) "
+            + "SELECT p.id_usuario, p.id_chat "
+            + "FROM (SELECT m.usuario_a AS id_usuario, c.id_chat FROM chat c JOIN matches m ON m.id_match = c.id_match "
+            + "      UNION SELECT m.usuario_b, c.id_chat FROM chat c JOIN matches m ON m.id_match = c.id_match) p "
+            + "WHERE NOT EXISTS (SELECT 1 FROM usuario_chat uc "
+            + "                  WHERE uc.id_usuario = p.id_usuario AND uc.id_chat = p.id_chat)";
+
     private final EntityManager entityManager;
 
     public ChatRepository(EntityManager em) {
@@ -33,7 +56,7 @@ public class ChatRepository implements IChatRepository {
     public Chat insertar(Chat chat) throws RepositoryException {
         try {
             entityManager.persist(chat);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return chat;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar el chat", e);
@@ -149,7 +172,7 @@ public class ChatRepository implements IChatRepository {
     public List<Chat> buscarPorParticipante(Usuario usuario, int limit, int offset) throws RepositoryException {
         try {
             TypedQuery<Chat> query = entityManager.createNamedQuery("Chat.findByParticipante", Chat.class);
-            query.setParameter("usuario", usuario);
+            query.setParameter("participante", usuario);
             query.setMaxResults(limit);
             query.setFirstResult(offset);
             
@@ -158,4 +181,156 @@ public class ChatRepository implements IChatRepository {
             throw new RepositoryException("buscarPorParticipante", "No se pudieron buscar los chats por participante", e);
         }
     }
+
+    /**
+     * Obtiene la bandeja de chats de un usuario en dos consultas: una con los
+     * datos de cada chat, su ultimo mensaje y cuantos mensajes quedan despues
+     * de la marca de lectura del usuario, y otra con los participantes de
+     * todos los chats de la pagina. Los chats vienen ordenados por su ultima
+     * actividad, los chats sin mensajes quedan al final.
+     *
+     * @param idUsuario ID del usuario participante
+     * @param limit
+     * @param offset
+     * @return Lista de chats listos para mostrarse en la bandeja
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<ChatConMensajesDTO> buscarBandejaPorParticipante(Long idUsuario, int limit, int offset) throws RepositoryException {
+        try {
+            String jpql
+                    = "SELECT c.idChat, c.nombre, mt.idMatch, ult.contenido, ult.fechaEnvio, "
+                    + "    (SELECT COUNT(total) FROM Mensaje total "
+                    + "     WHERE total.chat = c AND total.estaBorrado = false), "
+                    + "    (SELECT COUNT(nv) FROM Mensaje nv "
+                    + "     WHERE nv.chat = c AND nv.estaBorrado = false "
+                    + "     AND nv.usuarioEmisor.idUsuario <> :idUsuario "
+                    + "     AND nv.idMensaje > COALESCE(("
+                    + "         SELECT l.idUltimoMensajeLeido FROM LecturaChat l "
+                    + "         WHERE l.chat = c AND l.usuario.idUsuario = :idUsuario), 0)) "
+                    + "FROM Usuario u JOIN u.chats c "
+                    + "LEFT JOIN c.match mt "
+                    + "LEFT JOIN Mensaje ult ON ult.chat = c AND ult.idMensaje = ("
+                    + "    SELECT MAX(um.idMensaje) FROM Mensaje um "
+                    + "    WHERE um.chat = c AND um.estaBorrado = false"
+                    + ") "
+                    + "WHERE u.idUsuario = :idUsuario "
+                    + "ORDER BY CASE WHEN ult.idMensaje IS NULL THEN 1 ELSE 0 END, "
+                    + "ult.fechaEnvio DESC, c.idChat DESC";
+
+            TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+            query.setParameter("idUsuario", idUsuario);
+            query.setMaxResults(limit);
+            query.setFirstResult(offset);
+
+            Map<Long, ChatConMensajesDTO> bandeja = new LinkedHashMap<>();
+            for (Object[] fila : query.getResultList()) {
+                ChatConMensajesDTO dto = new ChatConMensajesDTO();
+                dto.setIdChat((Long) fila[0]);
+                dto.setNombre((String) fila[1]);
+                dto.setIdMatch((Long) fila[2]);
+                dto.setUltimoMensaje((String) fila[3]);
+                dto.setFechaUltimoMensaje((LocalDateTime) fila[4]);
+                dto.setTotalMensajes(((Number) fila[5]).intValue());
+                int noLeidos = ((Number) fila[6]).intValue();
+                dto.setMensajesNoLeidos(noLeidos);
+                dto.setHayNoLeidos(noLeidos > 0);
+                dto.setParticipantes(new ArrayList<>());
+                bandeja.put(dto.getIdChat(), dto);
+            }
+
+            if (bandeja.isEmpty()) {
+                return new ArrayList<>();
+            }
+
+            for (Map.Entry<Long, List<UsuarioPerfilDTO>> entrada : buscarParticipantes(bandeja.keySet()).entrySet()) {
+                bandeja.get(entrada.getKey()).setParticipantes(entrada.getValue());
+            }
+
+            return new ArrayList<>(bandeja.values());
+        } catch (Exception e) {
+            throw new RepositoryException("buscarBandejaPorParticipante", "No se pudo obtener la bandeja de chats", e);
+        }
+    }
+
+    @Override
+    public long siguienteSecuencia(Chat chat) throws RepositoryException {
+        try {
+            // se relee con FOR UPDATE, la copia en memoria puede venir de la cache
+            entityManager.refresh(chat, LockModeType.PESSIMISTIC_WRITE);
+            long siguiente = chat.getUltimaSecuencia() + 1;
+            chat.setUltimaSecuencia(siguiente);
+            return siguiente;
+        } catch (Exception e) {
+            throw new RepositoryException("siguienteSecuencia", "No se pudo asignar la secuencia del chat", e);
+        }
+    }
+
+    @Override
+    public Long buscarUltimaSecuencia(Long idChat) throws RepositoryException {
+        try {
+            return entityManager.createNamedQuery("Chat.findUltimaSecuencia", Long.class)
+                    .setParameter("idChat", idChat)
+                    .getResultStream()
+                    .findFirst()
+                    .orElse(null);
+        } catch (Exception e) {
+            throw new RepositoryException("buscarUltimaSecuencia", "No se pudo obtener la secuencia del chat", e);
+        }
+    }
+
+    @Override
+    public boolean esParticipante(Long idChat, Long idUsuario) throws RepositoryException {
+        try {
+            return entityManager.createNamedQuery("Chat.esParticipante", Long.class)
+                    .setParameter("idChat", idChat)
+                    .setParameter("idUsuario", idUsuario)
+                    .getSingleResult() > 0;
+        } catch (Exception e) {
+            throw new RepositoryException("esParticipante", "No se pudo revisar la membresia del chat", e);
+        }
+    }
+
+    @Override
+    public int completarParticipantesDesdeMatches() throws RepositoryException {
+        try {
+            int insertadas = entityManager.createNativeQuery(SQL_COMPLETAR_PARTICIPANTES).executeUpdate();
+            if (insertadas > 0) {
+                // participantes es el lado inverso y su cache no ve las filas nuevas
+                entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class)
+                        .evictCollectionData(Chat.class.getName() + ".participantes");
+            }
+            return insertadas;
+        } catch (Exception e) {
+            throw new RepositoryException("completarParticipantesDesdeMatches", "No se pudieron completar los participantes", e);
+        }
+    }
+
+    /**
+     * Obtiene un resumen (id, nombre, apellido y foto) de los participantes de
+     * varios chats en una sola consulta.
+     *
+     * @param idsChat IDs de los chats
+     * @return participantes agrupados por ID de chat
+     */
+    private Map<Long, List<UsuarioPerfilDTO>> buscarParticipantes(Collection<Long> idsChat) {
+        String jpql
+                = "SELECT c.idChat, p.idUsuario, p.nombre, p.apellidoPaterno, p.urlFotoPerfil "
+                + "FROM Chat c JOIN c.participantes p "
+                + "WHERE c.idChat IN :idsChat";
+
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class);
+        query.setParameter("idsChat", idsChat);
+
+        Map<Long, List<UsuarioPerfilDTO>> participantes = new HashMap<>();
+        for (Object[] fila : query.getResultList()) {
+            UsuarioPerfilDTO participante = new UsuarioPerfilDTO();
+            participante.setIdUsuario((Long) fila[1]);
+            participante.setNombre((String) fila[2]);
+            participante.setApellidoPaterno((String) fila[3]);
+            participante.setUrlFotoPerfil((String) fila[4]);
+            participantes.computeIfAbsent((Long) fila[0], k -> new ArrayList<>()).add(participante);
+        }
+        return participantes;
+    }
 }
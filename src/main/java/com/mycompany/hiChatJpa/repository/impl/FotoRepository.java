@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
 import com.mycompany.hiChatJpa.entitys.Foto;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
@@ -33,7 +34,7 @@ public class FotoRepository implements IFotoRepository {
     public Foto insertar(Foto foto) throws RepositoryException {
         try {
             entityManager.persist(foto);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return foto;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar la foto", e);
@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
 import com.mycompany.hiChatJpa.entitys.Interaccion;
 import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
 import com.mycompany.hiChatJpa.entitys.Usuario;
@@ -33,7 +34,7 @@ public class InteraccionRepository implements IInteraccionRepository {
     public Interaccion insertar(Interaccion interaccion) throws RepositoryException {
         try {
             entityManager.persist(interaccion);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return interaccion;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar la interacción", e);
@@ -180,4 +181,30 @@ public class InteraccionRepository implements IInteraccionRepository {
             throw new RepositoryException("buscarPorTipo", "No se pudieron buscar las interacciones por tipo", e);
         }
     }
+
+    /**
+     * Verifica si el emisor ya registro una interacción del tipo indicado hacia
+     * el receptor. Se resuelve con la llave única (usuario_emisor,
+     * usuario_receptor) sin cargar las interacciones del emisor.
+     *
+     * @param idEmisor ID del usuario emisor
+     * @param idReceptor ID del usuario receptor
+     * @param tipo Tipo de interacción a verificar
+     * @return true si la interacción existe
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public boolean existeInteraccion(Long idEmisor, Long idReceptor, TipoInteraccion tipo) throws RepositoryException {
+        try {
+            TypedQuery<Long> query = entityManager.createNamedQuery("Interaccion.existe", Long.class);
+            query.setParameter("emisor", idEmisor);
+            query.setParameter("receptor", idReceptor);
+            query.setParameter("tipo", tipo);
+            query.setMaxResults(1);
+
+            return !query.getResultList().isEmpty();
+        } catch (Exception e) {
+            throw new RepositoryException("existeInteraccion", "No se pudo verificar la interacción", e);
+        }
+    }
 }
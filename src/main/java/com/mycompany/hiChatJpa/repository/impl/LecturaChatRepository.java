@@ -0,0 +1,136 @@
+package com.mycompany.hiChatJpa.repository.impl;
+
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.LecturaChat;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.exceptions.RepositoryException;
+import com.mycompany.hiChatJpa.repository.ILecturaChatRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * clase dao que permite manipular las marcas de lectura de los chats
+ *
+ * @author gatog
+ */
+public class LecturaChatRepository implements ILecturaChatRepository {
+
+    /**
+     * crea las marcas que falten a partir de la columna esta_visto: para cada
+     * participante, usuario del match o emisor de cada chat la marca queda en
+     * el ultimo mensaje que envio o que ya tenia visto. Los usuarios del match
+     * cubren los chats que quedaron sin usuario_chat. INSERT IGNORE respeta
+     * las marcas que ya existen, asi que se puede ejecutar mas de una vez.
+     */
+    private static final String SQL_MIGRACION
+            = "INSERT IGNORE INTO lectura_chat (id_chat, id_usuario, id_ultimo_mensaje_leido, secuencia_cambio, fecha_lectura) "
+            + "SELECT p.id_chat, p.id_usuario, COALESCE(MAX(m.id_mensaje), 0), 0, NOW() "
+            + "FROM (SELECT uc.id_chat, uc.id_usuario FROM usuario_chat uc "
+            + "      UNION SELECT c.id_chat, ma.usuario_a FROM chat c JOIN matches ma ON ma.id_match = c.id_match "
+            + "      UNION SELECT c.id_chat, ma.usuario_b FROM chat c JOIN matches ma ON ma.id_match = c.id_match "
+            + "      UNION SELECT me.id_chat, me.usuario_emisor FROM mensaje me) p "
+            + "LEFT JOIN mensaje m ON m.id_chat = p.id_chat "
+            + "     AND (m.usuario_emisor = p.id_usuario OR m.esta_visto = TRUE) "
+            + "GROUP BY p.id_chat, p.id_usuario";
+
+    private final EntityManager entityManager;
+
+    public LecturaChatRepository(EntityManager em) {
+        this.entityManager = em;
+    }
+
+    @Override
+    public LecturaChat insertar(LecturaChat lectura) throws RepositoryException {
+        try {
+            entityManager.persist(lectura);
+            JpaUtil.flushUnlessDeferred(entityManager);
+            return lectura;
+        } catch (Exception e) {
+            throw new RepositoryException("insertar", "No se pudo insertar la marca de lectura", e);
+        }
+    }
+
+    @Override
+    public LecturaChat buscarPorChatYUsuario(Long idChat, Long idUsuario) throws RepositoryException {
+        try {
+            TypedQuery<LecturaChat> query = entityManager.createNamedQuery("LecturaChat.findByChatYUsuario", LecturaChat.class);
+            query.setParameter("idChat", idChat);
+            query.setParameter("idUsuario", idUsuario);
+
+            List<LecturaChat> resultado = query.getResultList();
+            return resultado.isEmpty() ? null : resultado.get(0);
+        } catch (Exception e) {
+            throw new RepositoryException("buscarPorChatYUsuario", "No se pudo obtener la marca de lectura", e);
+        }
+    }
+
+    /**
+     * Obtiene las marcas de lectura de todos los participantes del chat, son
+     * tantas filas como participantes.
+     *
+     * @param idChat ID del chat
+     * @return marcas de lectura del chat
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<LecturaChat> buscarPorChat(Long idChat) throws RepositoryException {
+        try {
+            TypedQuery<LecturaChat> query = entityManager.createNamedQuery("LecturaChat.findByChat", LecturaChat.class);
+            query.setParameter("idChat", idChat);
+
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new RepositoryException("buscarPorChat", "No se pudieron obtener las marcas de lectura del chat", e);
+        }
+    }
+
+    /**
+     * Se llama con la fila del chat bloqueada por siguienteSecuencia, por eso
+     * dos lecturas del mismo chat no pueden insertar la marca al mismo tiempo.
+     */
+    @Override
+    public boolean avanzar(Chat chat, Usuario usuario, Long idMensaje, long secuencia) throws RepositoryException {
+        try {
+            LecturaChat lectura = buscarPorChatYUsuario(chat.getIdChat(), usuario.getIdUsuario());
+            if (lectura == null) {
+                insertar(new LecturaChat.Builder()
+                        .chat(chat)
+                        .usuario(usuario)
+                        .idUltimoMensajeLeido(idMensaje)
+                        .secuenciaCambio(secuencia)
+                        .build());
+                return true;
+            }
+            if (lectura.getIdUltimoMensajeLeido() >= idMensaje) {
+                return false;
+            }
+            lectura.setIdUltimoMensajeLeido(idMensaje);
+            lectura.setSecuenciaCambio(secuencia);
+            lectura.setFechaLectura(LocalDateTime.now());
+            return true;
+        } catch (RepositoryException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RepositoryException("avanzar", "No se pudo avanzar la marca de lectura", e);
+        }
+    }
+
+    /**
+     * Crea las marcas de lectura que falten a partir de la columna esta_visto
+     * de los mensajes.
+     *
+     * @return cantidad de marcas creadas
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public int migrarDesdeEstaVisto() throws RepositoryException {
+        try {
+            return entityManager.createNativeQuery(SQL_MIGRACION).executeUpdate();
+        } catch (Exception e) {
+            throw new RepositoryException("migrarDesdeEstaVisto", "No se pudieron migrar las marcas de lectura", e);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.dto.MatchDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.Match;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import com.mycompany.hiChatJpa.repository.IMatchRepository;
 
@@ -33,7 +39,7 @@ public class MatchRepository implements IMatchRepository {
     public Match insertar(Match match) {
         try {
             entityManager.persist(match);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return match;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar el match", e);
@@ -158,4 +164,54 @@ public class MatchRepository implements IMatchRepository {
             throw new RepositoryException("buscarPorUsuarioB", "No se pudieron buscar los matches por UsuarioB", e);
         }
     }
+
+    /**
+     * Obtiene una pagina de los matches de un usuario, sea usuarioA o
+     * usuarioB, con el chat y los perfiles de ambos en una sola consulta. Los
+     * matches vienen del mas reciente al mas antiguo y la pagina siguiente se
+     * pide con la fecha e ID del ultimo match de la anterior.
+     *
+     * @param idUsuario ID del usuario
+     * @param fecha fechaMatch del ultimo match de la pagina anterior, null
+     * para la primera pagina
+     * @param idMatch ID del ultimo match de la pagina anterior
+     * @param limit cantidad maxima de matches
+     * @return Lista de matches con los perfiles completos
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<MatchDTO> buscarPorUsuario(Long idUsuario, LocalDateTime fecha, Long idMatch, int limit) throws RepositoryException {
+        try {
+            TypedQuery<Object[]> query;
+            if (fecha == null || idMatch == null) {
+                query = entityManager.createNamedQuery("Match.findByUsuario", Object[].class);
+            } else {
+                query = entityManager.createNamedQuery("Match.findByUsuarioAntesDe", Object[].class);
+                query.setParameter("fecha", fecha);
+                query.setParameter("idMatch", idMatch);
+            }
+            query.setParameter("idUsuario", idUsuario);
+            // cada rama trae a lo mas limit y la union se vuelve a cortar
+            query.setParameter("limite", limit);
+            query.setMaxResults(limit);
+
+            List<MatchDTO> matches = new ArrayList<>();
+            for (Object[] fila : query.getResultList()) {
+                matches.add(new MatchDTO((Long) fila[0], perfil(fila, 3), perfil(fila, 12),
+                        (LocalDateTime) fila[1], (Long) fila[2]));
+            }
+            return matches;
+        } catch (Exception e) {
+            throw new RepositoryException("buscarPorUsuario", "No se pudieron buscar los matches del usuario", e);
+        }
+    }
+
+    /**
+     * arma el perfil de las 9 columnas de usuario que empiezan en inicio
+     */
+    private static UsuarioPerfilDTO perfil(Object[] fila, int inicio) {
+        return new UsuarioPerfilDTO((Long) fila[inicio], (String) fila[inicio + 1], (String) fila[inicio + 2],
+                (String) fila[inicio + 3], (String) fila[inicio + 4], (String) fila[inicio + 5],
+                (String) fila[inicio + 6], (String) fila[inicio + 7], (LocalDate) fila[inicio + 8]);
+    }
 }
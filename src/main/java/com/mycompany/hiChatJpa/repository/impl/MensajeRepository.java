@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
 import com.mycompany.hiChatJpa.entitys.Chat;
 import com.mycompany.hiChatJpa.entitys.Mensaje;
 import com.mycompany.hiChatJpa.entitys.Usuario;
@@ -7,6 +8,7 @@ import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.TypedQuery;
+import java.time.LocalDateTime;
 import java.util.List;
 import com.mycompany.hiChatJpa.repository.IMensajeRepository;
 
@@ -22,7 +24,7 @@ public class MensajeRepository implements IMensajeRepository {
     public Mensaje insertar(Mensaje mensaje) throws RepositoryException {
         try {
             entityManager.persist(mensaje);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return mensaje;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar el mensaje", e);
@@ -90,6 +92,72 @@ public class MensajeRepository implements IMensajeRepository {
         }
     }
 
+    /**
+     * Busca una pagina de mensajes no borrados de un chat usando como cursor
+     * la llave (fechaEnvio, idMensaje) del ultimo mensaje de la pagina anterior,
+     * asi el costo no crece con lo lejos que se encuentre la pagina.
+     *
+     * @param idChat ID del chat
+     * @param fecha fecha del cursor, null para la primera pagina
+     * @param idMensaje ID del mensaje del cursor, null para la primera pagina
+     * @param limit cantidad maxima de mensajes
+     * @return mensajes ordenados del mas reciente al mas antiguo
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<Mensaje> buscarPorChatAntesDe(Long idChat, LocalDateTime fecha, Long idMensaje, int limit) throws RepositoryException {
+        try {
+            TypedQuery<Mensaje> query;
+            if (fecha == null || idMensaje == null) {
+                query = entityManager.createNamedQuery("Mensaje.findByChatRecientes", Mensaje.class);
+            } else {
+                query = entityManager.createNamedQuery("Mensaje.findByChatAntesDe", Mensaje.class);
+                query.setParameter("fecha", fecha);
+                query.setParameter("idMensaje", idMensaje);
+            }
+            query.setParameter("idChat", idChat);
+            query.setMaxResults(limit);
+
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new RepositoryException("buscarPorChatAntesDe", "No se pudo obtener la pagina de mensajes del chat", e);
+        }
+    }
+
+    /**
+     * Obtiene el ID del ultimo mensaje del chat, es hasta donde avanza la
+     * marca de lectura al leer el chat completo.
+     *
+     * @param chat chat a consultar
+     * @return ID del ultimo mensaje o null si el chat no tiene mensajes
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public Long buscarUltimoId(Chat chat) throws RepositoryException {
+        try {
+            TypedQuery<Long> query = entityManager.createNamedQuery("Mensaje.findUltimoId", Long.class);
+            query.setParameter("chat", chat);
+
+            return query.getSingleResult();
+        } catch (Exception e) {
+            throw new RepositoryException("buscarUltimoId", "No se pudo obtener el ultimo mensaje del chat", e);
+        }
+    }
+
+    @Override
+    public List<Mensaje> buscarCambiosDesde(Long idChat, long desdeSecuencia, int limit) throws RepositoryException {
+        try {
+            TypedQuery<Mensaje> query = entityManager.createNamedQuery("Mensaje.findCambiosDesde", Mensaje.class);
+            query.setParameter("idChat", idChat);
+            query.setParameter("desde", desdeSecuencia);
+            query.setMaxResults(limit);
+
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new RepositoryException("buscarCambiosDesde", "No se pudieron obtener los cambios del chat", e);
+        }
+    }
+
     @Override
     public List<Mensaje> buscarNoVistosPorUsuario(Usuario usuario, int limit, int offset) throws RepositoryException {
         try {
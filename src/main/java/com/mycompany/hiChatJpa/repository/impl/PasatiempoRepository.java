@@ -1,5 +1,6 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
 import com.mycompany.hiChatJpa.entitys.Pasatiempo;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
@@ -29,7 +30,7 @@ public class PasatiempoRepository implements IPasatiempoRepository {
     public Pasatiempo insertar(Pasatiempo pasatiempo) throws RepositoryException {
         try {
             entityManager.persist(pasatiempo);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return pasatiempo;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "No se pudo insertar el pasatiempo", e);
@@ -1,13 +1,28 @@
 package com.mycompany.hiChatJpa.repository.impl;
 
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.EstadoFoto;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.NoResultException;
+import jakarta.persistence.Query;
 import jakarta.persistence.TypedQuery;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import org.hibernate.Cache;
 import com.mycompany.hiChatJpa.repository.IUsuarioRepository;
 
 /**
@@ -18,6 +33,26 @@ import com.mycompany.hiChatJpa.repository.IUsuarioRepository;
  */
 public class UsuarioRepository implements IUsuarioRepository {
 
+    /**
+     * constructor de UsuarioPerfilDTO para las consultas de listas, solo las
+     * columnas que se muestran: sin biografia (TEXT) ni contraseña. El
+     * resultado no son entidades, asi que no entra al contexto de
+     * persistencia. Lo usa la lista de usuarios.
+     */
+    private static final String SELECT_PERFIL
+            = "SELECT new com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO("
+            + "u.idUsuario, u.nombre, u.apellidoPaterno, u.apellidoMaterno, u.correoElectronico, "
+            + "u.carrera, u.urlFotoPerfil, CAST(u.genero AS String), u.fechaNacimiento) ";
+
+    /**
+     * igual que SELECT_PERFIL pero con la biografia, que las tarjetas de
+     * pretendientes si muestran
+     */
+    private static final String SELECT_TARJETA
+            = "SELECT new com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO("
+            + "u.idUsuario, u.nombre, u.apellidoPaterno, u.apellidoMaterno, u.correoElectronico, "
+            + "u.carrera, u.biografia, u.urlFotoPerfil, CAST(u.genero AS String), u.fechaNacimiento) ";
+
     private final EntityManager entityManager;
 
     public UsuarioRepository(EntityManager em) {
@@ -35,7 +70,7 @@ public class UsuarioRepository implements IUsuarioRepository {
     public Usuario insertar(Usuario usuario) throws RepositoryException {
         try {
             entityManager.persist(usuario);
-            entityManager.flush();
+            JpaUtil.flushUnlessDeferred(entityManager);
             return usuario;
         } catch (Exception e) {
             throw new RepositoryException("insertar", "no se pudo insertar el usuario", e);
@@ -72,6 +107,16 @@ public class UsuarioRepository implements IUsuarioRepository {
             if (usuario == null) {
                 throw new EntityNotFoundException("no se encontro el usuario indicado");
             }
+            // participantes es el lado inverso de Usuario.chats, Hibernate no
+            // invalida su cache al cambiar la tabla intermedia desde aqui
+            Cache cache = entityManager.getEntityManagerFactory().getCache().unwrap(Cache.class);
+            for (Chat chat : usuario.getChats()) {
+                cache.evictCollectionData(Chat.class.getName() + ".participantes", chat.getIdChat());
+            }
+            // las marcas de lectura no son parte del usuario, se borran aparte
+            entityManager.createNamedQuery("LecturaChat.deleteByUsuario")
+                    .setParameter("idUsuario", id)
+                    .executeUpdate();
             entityManager.remove(usuario);
             return usuario;
         } catch (EntityNotFoundException e) {
@@ -135,6 +180,29 @@ public class UsuarioRepository implements IUsuarioRepository {
         }
     }
 
+    /**
+     * Lista los perfiles de los usuarios en el mismo orden que listar, pero
+     * como proyeccion sin biografia ni contraseña
+     *
+     * @param limit
+     * @param offset
+     * @return Lista de perfiles
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<UsuarioPerfilDTO> listarPerfiles(int limit, int offset) throws RepositoryException {
+        try {
+            TypedQuery<UsuarioPerfilDTO> query = entityManager.createQuery(
+                    SELECT_PERFIL + "FROM Usuario u ORDER BY u.nombre ASC, u.apellidoPaterno ASC", UsuarioPerfilDTO.class);
+            query.setMaxResults(limit);
+            query.setFirstResult(offset);
+
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new RepositoryException("listarPerfiles", "no se pudo obtener la lista de perfiles", e);
+        }
+    }
+
     /**
      * Busca usuarios por nombre completo
      *
@@ -160,36 +228,109 @@ public class UsuarioRepository implements IUsuarioRepository {
     }
 
     /**
-     * consulta que lista a los posibles pretendientes
+     * Busca los usuarios cuya foto de perfil sigue pendiente de subir, en
+     * orden de ID para recorrerlos por paginas
+     *
+     * @param despuesDeId ID del ultimo usuario de la pagina anterior, 0 para
+     * empezar
+     * @param limit cantidad maxima de usuarios
+     * @return lista de usuarios con foto pendiente
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<Usuario> buscarFotosPendientes(Long despuesDeId, int limit) throws RepositoryException {
+        try {
+            TypedQuery<Usuario> query = entityManager.createNamedQuery("Usuario.findFotosPendientes", Usuario.class);
+            query.setParameter("estado", EstadoFoto.PENDIENTE);
+            query.setParameter("despuesDe", despuesDeId);
+            query.setMaxResults(limit);
+
+            return query.getResultList();
+        } catch (Exception e) {
+            throw new RepositoryException("buscarFotosPendientes", "no se pudieron buscar las fotos pendientes", e);
+        }
+    }
+
+    /**
+     * Actualiza solo la url y el estado de la foto de perfil sin cargar al
+     * usuario, la ruta pendiente se limpia. Solo cambia la fila si la foto
+     * sigue pendiente con la misma ruta; si otro cliente ya la termino o el
+     * usuario eligio otra foto no se toca.
+     *
+     * @param idUsuario ID del usuario
+     * @param urlFotoPerfil nueva url de la foto
+     * @param estado estado final de la subida
+     * @param rutaPendiente ruta con la que quedo pendiente, puede ser null
+     * @return cantidad de filas actualizadas, 0 si la foto ya no era esa
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public int actualizarFoto(Long idUsuario, String urlFotoPerfil, EstadoFoto estado, String rutaPendiente) throws RepositoryException {
+        try {
+            Query query = entityManager.createNamedQuery(rutaPendiente != null ? "Usuario.actualizarFoto" : "Usuario.actualizarFotoSinRuta")
+                    .setParameter("url", urlFotoPerfil)
+                    .setParameter("estado", estado)
+                    .setParameter("idUsuario", idUsuario)
+                    .setParameter("pendiente", EstadoFoto.PENDIENTE);
+            if (rutaPendiente != null) {
+                query.setParameter("ruta", rutaPendiente);
+            }
+            return query.executeUpdate();
+        } catch (Exception e) {
+            throw new RepositoryException("actualizarFoto", "no se pudo actualizar la foto de perfil", e);
+        }
+    }
+
+    /**
+     * filtro de usuarios elegibles como pretendientes, cada NOT EXISTS se
+     * resuelve con la llave unica de bloqueo o interaccion en lugar de
+     * materializar listas completas
+     */
+    private static final String JPQL_ELEGIBLES
+            = "FROM Usuario u "
+            + "WHERE u.idUsuario <> :idUsuarioActual "
+            + "AND NOT EXISTS ("
+            + "    SELECT b FROM Bloqueo b "
+            + "    WHERE b.usuarioBloqueador.idUsuario = :idUsuarioActual AND b.usuarioBloqueado = u"
+            + ") "
+            + "AND NOT EXISTS ("
+            + "    SELECT b FROM Bloqueo b "
+            + "    WHERE b.usuarioBloqueador = u AND b.usuarioBloqueado.idUsuario = :idUsuarioActual"
+            + ") "
+            + "AND NOT EXISTS ("
+            + "    SELECT i FROM Interaccion i "
+            + "    WHERE i.usuarioEmisor.idUsuario = :idUsuarioActual AND i.usuarioReceptor = u"
+            + ") ";
+
+    /**
+     * si los sondeos no alcanzan y todos los elegibles caben en
+     * limit * CONJUNTO_CHICO, la muestra se toma de la lista completa
+     */
+    private static final int CONJUNTO_CHICO = 5;
+
+    /**
+     * sondeos al azar antes de leer los elegibles en orden
+     */
+    private static final int MAX_SONDEOS = 8;
+
+    /**
+     * maximo de IDs al azar por sondeo, es el tamaño de la lista del IN
+     */
+    private static final int MAX_IDS_SONDEO = 1024;
+
+    /**
+     * consulta que lista a los posibles pretendientes en orden de id
+     *
      * @param idUsuarioActual
      * @param limit
      * @param offset
      * @return
-     * @throws RepositoryException 
+     * @throws RepositoryException
      */
+    @Override
     public List<Usuario> buscarPretendientes(Long idUsuarioActual, int limit, int offset) throws RepositoryException {
         try {
-            String jpql
-                    = "SELECT u FROM Usuario u "
-                    + "WHERE u.idUsuario <> :idUsuarioActual "
-                    + "AND u.idUsuario NOT IN ("
-                    + "    SELECT b.usuarioBloqueado.idUsuario "
-                    + "    FROM Bloqueo b "
-                    + "    WHERE b.usuarioBloqueador.idUsuario = :idUsuarioActual"
-                    + ") "
-                    + "AND u.idUsuario NOT IN ("
-                    + "    SELECT b.usuarioBloqueador.idUsuario "
-                    + "    FROM Bloqueo b "
-                    + "    WHERE b.usuarioBloqueado.idUsuario = :idUsuarioActual"
-                    + ") "
-                    + "AND u.idUsuario NOT IN ("
-                    + "    SELECT i.usuarioReceptor.idUsuario "
-                    + "    FROM Interaccion i "
-                    + "    WHERE i.usuarioEmisor.idUsuario = :idUsuarioActual"
-                    + ") "
-                    + "ORDER BY FUNCTION('RAND')";
-
-            TypedQuery<Usuario> query = entityManager.createQuery(jpql, Usuario.class);
+            TypedQuery<Usuario> query = entityManager.createQuery("SELECT u " + JPQL_ELEGIBLES + "ORDER BY u.idUsuario", Usuario.class);
             query.setParameter("idUsuarioActual", idUsuarioActual);
             query.setMaxResults(limit);
             query.setFirstResult(offset);
@@ -200,4 +341,195 @@ public class UsuarioRepository implements IUsuarioRepository {
             throw new RepositoryException("buscarPretendientes", "Error al buscar pretendientes", e);
         }
     }
+
+    /**
+     * igual que buscarPretendientes pero como proyeccion a perfiles
+     *
+     * @param idUsuarioActual
+     * @param limit
+     * @param offset
+     * @return
+     * @throws RepositoryException
+     */
+    @Override
+    public List<UsuarioPerfilDTO> buscarPerfilesPretendientes(Long idUsuarioActual, int limit, int offset) throws RepositoryException {
+        try {
+            TypedQuery<UsuarioPerfilDTO> query = entityManager.createQuery(
+                    SELECT_TARJETA + JPQL_ELEGIBLES + "ORDER BY u.idUsuario", UsuarioPerfilDTO.class);
+            query.setParameter("idUsuarioActual", idUsuarioActual);
+            query.setMaxResults(limit);
+            query.setFirstResult(offset);
+
+            return query.getResultList();
+
+        } catch (Exception e) {
+            throw new RepositoryException("buscarPerfilesPretendientes", "Error al buscar pretendientes", e);
+        }
+    }
+
+    /**
+     * Obtiene una muestra aleatoria uniforme de pretendientes sin ordenar toda
+     * la tabla. Se sortean IDs dentro del rango y cada sondeo busca esos IDs
+     * exactos con el filtro de elegibles, asi cada elegible tiene la misma
+     * probabilidad sin importar los huecos entre IDs. El tamaño del sondeo se
+     * ajusta a la proporcion de aciertos del anterior, y se deja de sondear
+     * despues de MAX_SONDEOS o cuando un sondeo del tamaño maximo no agrega a
+     * nadie. Si faltan, se leen en orden los IDs de los primeros
+     * limit * CONJUNTO_CHICO + 1 elegibles: si no hay mas, la muestra sale de
+     * esa lista completa; si hay mas, los elegibles son muchos pero muy
+     * dispersos y se completa con los primeros, sin uniformidad.
+     *
+     * @param idUsuarioActual ID del usuario que busca pretendientes
+     * @param limit cantidad maxima de pretendientes
+     * @return lista de pretendientes en orden aleatorio
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<Usuario> muestrearPretendientes(Long idUsuarioActual, int limit) throws RepositoryException {
+        try {
+            return muestrear(idUsuarioActual, limit, "SELECT u ", Usuario.class, Usuario::getIdUsuario);
+        } catch (Exception e) {
+            throw new RepositoryException("muestrearPretendientes", "Error al muestrear pretendientes", e);
+        }
+    }
+
+    /**
+     * igual que muestrearPretendientes pero cada sondeo es una proyeccion a
+     * perfiles, sin cargar entidades
+     *
+     * @param idUsuarioActual ID del usuario que busca pretendientes
+     * @param limit cantidad maxima de pretendientes
+     * @return lista de perfiles en orden aleatorio
+     * @throws RepositoryException si ocurre un error en la operación
+     */
+    @Override
+    public List<UsuarioPerfilDTO> muestrearPerfilesPretendientes(Long idUsuarioActual, int limit) throws RepositoryException {
+        try {
+            return muestrear(idUsuarioActual, limit, SELECT_TARJETA, UsuarioPerfilDTO.class, UsuarioPerfilDTO::getIdUsuario);
+        } catch (Exception e) {
+            throw new RepositoryException("muestrearPerfilesPretendientes", "Error al muestrear pretendientes", e);
+        }
+    }
+
+    /**
+     * @param select clausula SELECT de las consultas
+     * @param tipo tipo del resultado del SELECT
+     * @param id ID del usuario de cada resultado
+     */
+    private <T> List<T> muestrear(Long idUsuarioActual, int limit, String select, Class<T> tipo,
+            Function<T, Long> id) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Map<Long, T> elegidos = new LinkedHashMap<>();
+
+        Object[] rango = entityManager
+                .createQuery("SELECT MIN(u.idUsuario), MAX(u.idUsuario) FROM Usuario u", Object[].class)
+                .getSingleResult();
+        if (rango[0] != null) {
+            long minimo = (Long) rango[0];
+            long maximo = (Long) rango[1];
+            Set<Long> sorteados = new HashSet<>();
+            int tamanio = tamanioSondeo(limit * 2L);
+            for (int sondeo = 0; sondeo < MAX_SONDEOS && elegidos.size() < limit; sondeo++) {
+                Set<Long> ids = new HashSet<>();
+                // no se vuelve a sortear un ID ya revisado, si el rango se acaba se corta
+                for (int i = 0; i < tamanio * 4 && ids.size() < tamanio
+                        && sorteados.size() <= maximo - minimo; i++) {
+                    long candidato = random.nextLong(minimo, maximo + 1);
+                    if (sorteados.add(candidato)) {
+                        ids.add(candidato);
+                    }
+                }
+                if (ids.isEmpty()) {
+                    break;
+                }
+
+                List<T> encontrados = elegiblesConId(idUsuarioActual, ids, select, tipo);
+                // llegan en orden de id, si sobran no deben quedarse siempre los menores
+                Collections.shuffle(encontrados, random);
+                int antes = elegidos.size();
+                for (T u : encontrados) {
+                    if (elegidos.size() < limit) {
+                        elegidos.putIfAbsent(id.apply(u), u);
+                    }
+                }
+
+                if (elegidos.size() == antes) {
+                    if (tamanio >= MAX_IDS_SONDEO) {
+                        break;
+                    }
+                    tamanio = tamanioSondeo(tamanio * 4L);
+                } else {
+                    // IDs que hacen falta para los que quedan con la proporcion de este sondeo
+                    double aciertos = (double) encontrados.size() / ids.size();
+                    tamanio = tamanioSondeo((long) Math.ceil((limit - elegidos.size()) / aciertos * 1.5));
+                }
+            }
+        }
+
+        if (elegidos.size() < limit) {
+            // los sondeos no alcanzaron, se leen en orden los primeros elegibles
+            TypedQuery<Long> primeros = entityManager.createQuery(
+                    "SELECT u.idUsuario " + JPQL_ELEGIBLES + "ORDER BY u.idUsuario", Long.class);
+            primeros.setParameter("idUsuarioActual", idUsuarioActual);
+            primeros.setMaxResults(limit * CONJUNTO_CHICO + 1);
+            List<Long> iniciales = primeros.getResultList();
+
+            if (iniciales.size() <= limit * CONJUNTO_CHICO) {
+                // son todos los elegibles, se toma una muestra de la lista completa
+                List<Long> barajados = new ArrayList<>(iniciales);
+                Collections.shuffle(barajados, random);
+                elegidos.clear();
+                for (T u : elegiblesConId(idUsuarioActual, barajados.subList(0, Math.min(limit, barajados.size())),
+                        select, tipo)) {
+                    elegidos.put(id.apply(u), u);
+                }
+            } else {
+                // muchos elegibles pero muy dispersos, se completa con los primeros
+                List<Long> faltantes = new ArrayList<>();
+                for (Long idInicial : iniciales) {
+                    if (elegidos.size() + faltantes.size() >= limit) {
+                        break;
+                    }
+                    if (!elegidos.containsKey(idInicial)) {
+                        faltantes.add(idInicial);
+                    }
+                }
+                for (T u : elegiblesConId(idUsuarioActual, faltantes, select, tipo)) {
+                    elegidos.putIfAbsent(id.apply(u), u);
+                }
+            }
+        }
+
+        List<T> resultado = new ArrayList<>(elegidos.values());
+        Collections.shuffle(resultado, random);
+        return resultado;
+    }
+
+    /**
+     * busca los usuarios con esos IDs que sigan siendo elegibles, cada ID es
+     * una busqueda por llave primaria
+     */
+    private <T> List<T> elegiblesConId(Long idUsuarioActual, Collection<Long> ids, String select, Class<T> tipo) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        TypedQuery<T> query = entityManager.createQuery(
+                select + JPQL_ELEGIBLES + "AND u.idUsuario IN :ids", tipo);
+        query.setParameter("idUsuarioActual", idUsuarioActual);
+        query.setParameter("ids", ids);
+        return query.getResultList();
+    }
+
+    /**
+     * redondea a potencia de dos entre 1 y MAX_IDS_SONDEO, asi el IN solo
+     * tiene unos cuantos tamaños y sus planes se reutilizan
+     */
+    private static int tamanioSondeo(long ids) {
+        int acotado = (int) Math.max(1, Math.min(ids, MAX_IDS_SONDEO));
+        int potencia = Integer.highestOneBit(acotado);
+        return potencia == acotado ? potencia : Math.min(potencia << 1, MAX_IDS_SONDEO);
+    }
 }
@@ -0,0 +1,398 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.dto.LoginDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.events.BusEventosChat;
+import com.mycompany.hiChatJpa.events.EventoChat;
+import com.mycompany.hiChatJpa.events.PoliticaDesborde;
+import com.mycompany.hiChatJpa.events.TipoEventoChat;
+import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
+import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * una conexion de la pasarela. El hilo lector atiende los marcos del cliente
+ * en orden y el hilo escritor vacia la cola de salida, juntando varios marcos
+ * por cada flush. La cola de salida es acotada: los eventos esperan un tiempo
+ * a que haya lugar y si el cliente no lee se cierra la conexion, y la
+ * suscripcion al bus coalesce en RESINCRONIZAR si se queda atras.
+ *
+ * Marcos del cliente: AUTENTICAR{correo, contrasena}, SUSCRIBIR{idChat},
+ * ENVIAR{idChat, contenido}, VISTOS{idChat}, PING y PONG. Todos aceptan un
+ * campo ref que se devuelve en la respuesta.
+ *
+ * Marcos del servidor: AUTENTICADO{datos}, SUSCRITO, ENVIADO, VISTOS,
+ * EVENTO{datos}, PING, PONG, ERROR{error} y CERRADO{error}.
+ *
+ * @author gatog
+ */
+class ConexionPasarela {
+
+    private static final int MAX_BYTES_LINEA = 64 * 1024;
+    private static final int CAPACIDAD_SALIDA = 512;
+    private static final int CAPACIDAD_EVENTOS = 256;
+    private static final long ESPERA_SALIDA_SEGUNDOS = 5;
+    private static final byte FIN_LINEA = '\n';
+
+    private final PasarelaMensajes pasarela;
+    private final Socket socket;
+    private final BlockingQueue<byte[]> salida = new ArrayBlockingQueue<>(CAPACIDAD_SALIDA);
+    private final Map<Long, BusEventosChat.Suscripcion> suscripciones = new ConcurrentHashMap<>();
+    private final Set<Long> chatsPermitidos = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean cerrada = new AtomicBoolean();
+    private final long creadaNanos = System.nanoTime();
+    private volatile long ultimaActividadNanos = creadaNanos;
+    private volatile Long idUsuario;
+    private volatile BusEventosChat.Suscripcion suscripcionUsuario;
+    private volatile byte[] marcoFinal;
+    private Thread escritor;
+
+    // marco que manda el cliente, los campos que no aplican llegan en null
+    record MarcoCliente(String tipo, Long ref, String correo, String contrasena, Long idChat, String contenido) {
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    record MarcoServidor(String tipo, Long ref, String error, Object datos) {
+    }
+
+    ConexionPasarela(PasarelaMensajes pasarela, Socket socket) {
+        this.pasarela = pasarela;
+        this.socket = socket;
+    }
+
+    void iniciar() {
+        String nombre = "pasarela-" + socket.getPort();
+        escritor = Thread.ofVirtual().name(nombre + "-escritor").start(this::escribir);
+        Thread.ofVirtual().name(nombre + "-lector").start(this::leer);
+    }
+
+    // Hilo lector
+    private void leer() {
+        try (InputStream entrada = new BufferedInputStream(socket.getInputStream())) {
+            ByteArrayOutputStream linea = new ByteArrayOutputStream(256);
+            while (leerLinea(entrada, linea)) {
+                ultimaActividadNanos = System.nanoTime();
+                pasarela.marcoRecibido();
+                if (linea.size() > 0) {
+                    atender(linea.toString(StandardCharsets.UTF_8));
+                }
+            }
+        } catch (IOException e) {
+            // el cliente se desconecto o la linea era demasiado larga
+        } finally {
+            cerrar(null);
+        }
+    }
+
+    /**
+     * lee hasta el siguiente salto de linea
+     *
+     * @return false si el cliente cerro la conexion
+     * @throws IOException si la linea supera MAX_BYTES_LINEA
+     */
+    private static boolean leerLinea(InputStream entrada, ByteArrayOutputStream linea) throws IOException {
+        linea.reset();
+        int b;
+        while ((b = entrada.read()) != -1) {
+            if (b == FIN_LINEA) {
+                return true;
+            }
+            if (b != '\r') {
+                if (linea.size() >= MAX_BYTES_LINEA) {
+                    throw new IOException("Linea demasiado larga");
+                }
+                linea.write(b);
+            }
+        }
+        return false;
+    }
+
+    private void atender(String json) {
+        MarcoCliente marco;
+        try {
+            marco = JsonUtil.leer(json, MarcoCliente.class);
+        } catch (IOException e) {
+            responderError(null, "El marco no es un JSON valido");
+            return;
+        }
+        if (marco == null || marco.tipo() == null) {
+            responderError(null, "El marco no tiene tipo");
+            return;
+        }
+
+        try {
+            switch (marco.tipo()) {
+                case "PING" ->
+                    responder(new MarcoServidor("PONG", marco.ref(), null, null));
+                case "PONG" -> {
+                    // la actividad ya se registro al leer la linea
+                }
+                case "AUTENTICAR" ->
+                    autenticar(marco);
+                default -> {
+                    if (idUsuario == null) {
+                        responderError(marco.ref(), "Primero debes autenticarte");
+                        return;
+                    }
+                    atenderAutenticado(marco);
+                }
+            }
+        } catch (EntityNotFoundException e) {
+            responderError(marco.ref(), e.getMessage());
+        } catch (ServiceException e) {
+            // con causa es un error interno, sin causa es una validacion
+            if (e.getCause() != null) {
+                System.err.println("Error en la pasarela con " + marco.tipo() + ": " + e.getMessage());
+            }
+            responderError(marco.ref(), e.getCause() == null ? e.getMessage() : "Error interno del servidor");
+        } catch (RuntimeException e) {
+            System.err.println("Error en la pasarela con " + marco.tipo() + ": " + e.getMessage());
+            responderError(marco.ref(), "Error interno del servidor");
+        } finally {
+            // igual que en el modo HTTP, ningun marco hereda el contexto de otro
+            try {
+                JpaUtil.closeEntityManager();
+            } catch (RuntimeException e) {
+                System.err.println("No se pudo cerrar el EntityManager de la pasarela: " + e.getMessage());
+            }
+        }
+    }
+
+    private void atenderAutenticado(MarcoCliente marco) {
+        switch (marco.tipo()) {
+            case "SUSCRIBIR" -> {
+                validarChat(marco.idChat());
+                suscribirChat(marco.idChat());
+                responder(new MarcoServidor("SUSCRITO", marco.ref(), null, marco.idChat()));
+            }
+            case "ENVIAR" -> {
+                validarChat(marco.idChat());
+                pasarela.getChatService().enviarMensaje(marco.idChat(), idUsuario, marco.contenido());
+                responder(new MarcoServidor("ENVIADO", marco.ref(), null, marco.idChat()));
+            }
+            case "VISTOS" -> {
+                validarChat(marco.idChat());
+                pasarela.getChatService().marcarMensajesDelChatComoVistos(marco.idChat(), idUsuario);
+                responder(new MarcoServidor("VISTOS", marco.ref(), null, marco.idChat()));
+            }
+            default ->
+                responderError(marco.ref(), "Tipo de marco desconocido: " + marco.tipo());
+        }
+    }
+
+    private void autenticar(MarcoCliente marco) {
+        if (idUsuario != null) {
+            responderError(marco.ref(), "La conexion ya esta autenticada");
+            return;
+        }
+        UsuarioPerfilDTO perfil = pasarela.getUsuarioService()
+                .iniciarSesion(new LoginDTO(marco.correo(), marco.contrasena()));
+        idUsuario = perfil.getIdUsuario();
+        pasarela.conexionAutenticada();
+        responder(new MarcoServidor("AUTENTICADO", marco.ref(), null, perfil));
+
+        // desde aqui el cliente recibe sus matches nuevos y los eventos de sus chats
+        suscripcionUsuario = BusEventosChat.getInstance().suscribirUsuario(idUsuario, CAPACIDAD_EVENTOS,
+                PoliticaDesborde.COALESCER, null, this::alRecibirEvento);
+        cargarChatsPermitidos();
+        for (Long idChat : chatsPermitidos) {
+            suscribirChat(idChat);
+        }
+        if (cerrada.get()) {
+            cancelarSuscripciones();
+        }
+    }
+
+    private void cargarChatsPermitidos() {
+        for (ChatConMensajesDTO chat : pasarela.getChatService().cargarChatsDelUsuario(idUsuario)) {
+            chatsPermitidos.add(chat.getIdChat());
+        }
+    }
+
+    /**
+     * verifica que el chat sea del usuario, si no esta en la lista se revisa
+     * en la base por si el chat es nuevo o quedo fuera de la bandeja
+     */
+    private void validarChat(Long idChat) {
+        if (idChat == null) {
+            throw new ServiceException("El ID del chat no puede ser nulo");
+        }
+        if (chatsPermitidos.contains(idChat)) {
+            return;
+        }
+        if (!pasarela.getChatService().esParticipante(idChat, idUsuario)) {
+            throw new ServiceException("No perteneces a este chat");
+        }
+        chatsPermitidos.add(idChat);
+    }
+
+    private void suscribirChat(Long idChat) {
+        if (cerrada.get()) {
+            return;
+        }
+        suscripciones.computeIfAbsent(idChat, id -> BusEventosChat.getInstance()
+                .suscribir(id, CAPACIDAD_EVENTOS, PoliticaDesborde.COALESCER, null, this::alRecibirEvento));
+    }
+
+    /**
+     * oyente del bus, corre en el hilo de entrega de la suscripcion asi que
+     * puede esperar a que haya lugar en la cola de salida
+     */
+    private void alRecibirEvento(EventoChat evento) {
+        if (evento.getTipo() == TipoEventoChat.NUEVO_MATCH && evento.getIdChat() != null) {
+            chatsPermitidos.add(evento.getIdChat());
+            suscribirChat(evento.getIdChat());
+        }
+        encolar(new MarcoServidor("EVENTO", null, null, evento), true);
+    }
+
+    void ping() {
+        encolar(new MarcoServidor("PING", null, null, null), false);
+    }
+
+    private void responder(MarcoServidor marco) {
+        encolar(marco, true);
+    }
+
+    private void responderError(Long ref, String error) {
+        encolar(new MarcoServidor("ERROR", ref, error, null), true);
+    }
+
+    /**
+     * pone un marco en la cola de salida
+     *
+     * @param esperar si se espera a que haya lugar, si se agota la espera el
+     * cliente no esta leyendo y se cierra la conexion
+     */
+    private void encolar(MarcoServidor marco, boolean esperar) {
+        if (cerrada.get()) {
+            return;
+        }
+        byte[] bytes;
+        try {
+            bytes = JsonUtil.escribir(marco);
+        } catch (IOException e) {
+            System.err.println("No se pudo serializar el marco " + marco.tipo() + ": " + e.getMessage());
+            return;
+        }
+        try {
+            boolean encolado = esperar
+                    ? salida.offer(bytes, ESPERA_SALIDA_SEGUNDOS, TimeUnit.SECONDS)
+                    : salida.offer(bytes);
+            if (!encolado && esperar) {
+                pasarela.conexionLenta();
+                cerrar("El cliente no esta leyendo los mensajes");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Hilo escritor
+    private void escribir() {
+        try (OutputStream destino = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024)) {
+            while (true) {
+                byte[] marco = salida.take();
+                // se juntan los marcos pendientes en un solo flush
+                do {
+                    destino.write(marco);
+                    destino.write(FIN_LINEA);
+                    pasarela.marcoEnviado();
+                    if (marco == marcoFinal) {
+                        destino.flush();
+                        return;
+                    }
+                } while ((marco = salida.poll()) != null);
+                destino.flush();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // el cliente se desconecto
+        } finally {
+            cerrar(null);
+        }
+    }
+
+    /**
+     * metodo que cierra la conexion, si hay motivo se intenta avisar al
+     * cliente antes de cerrar el socket. Una segunda llamada cierra el socket
+     * aunque el aviso no haya salido, por ejemplo si el escritor quedo
+     * bloqueado con un cliente que ya no responde.
+     *
+     * @param motivo motivo que se envia al cliente o null para cerrar sin aviso
+     */
+    void cerrar(String motivo) {
+        if (!cerrada.compareAndSet(false, true)) {
+            cerrarSocket();
+            return;
+        }
+        cancelarSuscripciones();
+
+        if (motivo != null) {
+            try {
+                byte[] aviso = JsonUtil.escribir(new MarcoServidor("CERRADO", null, motivo, null));
+                marcoFinal = aviso;
+                if (salida.offer(aviso)) {
+                    // el escritor cierra el socket despues de mandar el aviso
+                    return;
+                }
+            } catch (IOException e) {
+                // se cierra sin aviso
+            }
+        }
+        cerrarSocket();
+    }
+
+    private void cancelarSuscripciones() {
+        BusEventosChat.Suscripcion propia = suscripcionUsuario;
+        if (propia != null) {
+            propia.cancelar();
+        }
+        for (BusEventosChat.Suscripcion suscripcion : suscripciones.values()) {
+            suscripcion.cancelar();
+        }
+        suscripciones.clear();
+    }
+
+    private void cerrarSocket() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // ya estaba cerrado
+        }
+        if (escritor != null && Thread.currentThread() != escritor) {
+            escritor.interrupt();
+        }
+        pasarela.conexionCerrada(this);
+    }
+
+    boolean isAutenticada() {
+        return idUsuario != null;
+    }
+
+    long getCreadaNanos() {
+        return creadaNanos;
+    }
+
+    long getUltimaActividadNanos() {
+        return ultimaActividadNanos;
+    }
+}
@@ -0,0 +1,285 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.mycompany.hiChatJpa.codec.CodecBinario;
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.exceptions.AccessDeniedException;
+import com.mycompany.hiChatJpa.exceptions.DuplicateEntityException;
+import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
+import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * manejador HTTP que despacha cada peticion a la accion registrada para su
+ * metodo y ruta. Cada peticion corre en su propio hilo virtual, el
+ * EntityManager del hilo se cierra siempre al terminar para que ninguna
+ * peticion herede el contexto de persistencia de otra.
+ *
+ * Las rutas registradas con ruta() piden el encabezado Authorization: Bearer
+ * con un token de SesionesApi y responden 401 sin el; solo las registradas
+ * con rutaPublica() se atienden sin sesion.
+ *
+ * @author gatog
+ */
+public class EnrutadorApi implements HttpHandler {
+
+    private static final Pattern PARAMETRO = Pattern.compile("\\{(\\w+)\\}");
+
+    private static final String PREFIJO_TOKEN = "Bearer ";
+
+    private final List<Ruta> rutas = new ArrayList<>();
+    private final SesionesApi sesiones;
+
+    // metricas
+    private final LongAdder peticiones = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder nanosPeticion = new LongAdder();
+    private final LongAccumulator maxNanosPeticion = new LongAccumulator(Long::max, 0);
+
+    EnrutadorApi(SesionesApi sesiones) {
+        this.sesiones = sesiones;
+    }
+
+    /**
+     * accion de una ruta, devuelve el objeto que se enviara como JSON
+     */
+    @FunctionalInterface
+    public interface Accion {
+
+        Object ejecutar(Peticion peticion) throws Exception;
+    }
+
+    /**
+     * registra una ruta que pide sesion, los segmentos {nombre} se leen con
+     * Peticion.idRuta(nombre) y el usuario de la sesion con
+     * Peticion.idUsuario()
+     *
+     * @param metodo metodo HTTP
+     * @param patron ruta, por ejemplo /api/usuarios/{id}
+     * @param accion accion a ejecutar
+     * @return el mismo enrutador para encadenar
+     */
+    public EnrutadorApi ruta(String metodo, String patron, Accion accion) {
+        return agregar(metodo, patron, accion, true);
+    }
+
+    /**
+     * registra una ruta que se atiende sin sesion, como iniciar sesion o
+     * registrarse
+     */
+    public EnrutadorApi rutaPublica(String metodo, String patron, Accion accion) {
+        return agregar(metodo, patron, accion, false);
+    }
+
+    private EnrutadorApi agregar(String metodo, String patron, Accion accion, boolean pideSesion) {
+        String regex = PARAMETRO.matcher(patron).replaceAll("(?<$1>[^/]+)");
+        rutas.add(new Ruta(metodo, Pattern.compile("^" + regex + "/?$"), accion, pideSesion));
+        return this;
+    }
+
+    @Override
+    public void handle(HttpExchange intercambio) throws IOException {
+        long inicio = System.nanoTime();
+        peticiones.increment();
+        try (intercambio) {
+            String metodo = intercambio.getRequestMethod();
+            String camino = intercambio.getRequestURI().getPath();
+
+            boolean rutaExiste = false;
+            for (Ruta ruta : rutas) {
+                Matcher matcher = ruta.patron.matcher(camino);
+                if (!matcher.matches()) {
+                    continue;
+                }
+                rutaExiste = true;
+                if (!ruta.metodo.equalsIgnoreCase(metodo)) {
+                    continue;
+                }
+                String token = token(intercambio);
+                Long idUsuario = sesiones.validar(token);
+                if (ruta.pideSesion && idUsuario == null) {
+                    errores.increment();
+                    intercambio.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                    responder(intercambio, 401, error("Sesion invalida o vencida"));
+                    return;
+                }
+                responderAccion(intercambio, ruta.accion, new Peticion(intercambio, matcher, token, idUsuario), metodo);
+                return;
+            }
+
+            errores.increment();
+            if (rutaExiste) {
+                responder(intercambio, 405, error("Metodo no permitido"));
+            } else {
+                responder(intercambio, 404, error("Ruta no encontrada"));
+            }
+        } finally {
+            // el EntityManager vive solo lo que dura la peticion
+            try {
+                JpaUtil.closeEntityManager();
+            } catch (RuntimeException e) {
+                System.err.println("No se pudo cerrar el EntityManager de la peticion: " + e.getMessage());
+            }
+            long nanos = System.nanoTime() - inicio;
+            nanosPeticion.add(nanos);
+            maxNanosPeticion.accumulate(nanos);
+        }
+    }
+
+    private void responderAccion(HttpExchange intercambio, Accion accion, Peticion peticion, String metodo) throws IOException {
+        Object resultado;
+        try {
+            resultado = accion.ejecutar(peticion);
+        } catch (Exception e) {
+            errores.increment();
+            int estado = estadoPara(e);
+            if (estado == 500) {
+                System.err.println("Error en " + metodo + " " + intercambio.getRequestURI() + ": " + e.getMessage());
+            }
+            responder(intercambio, estado, error(estado == 500 ? "Error interno del servidor" : e.getMessage()));
+            return;
+        }
+
+        if (resultado == null) {
+            if ("GET".equalsIgnoreCase(metodo)) {
+                responder(intercambio, 404, error("Recurso no encontrado"));
+            } else {
+                intercambio.sendResponseHeaders(204, -1);
+            }
+            return;
+        }
+        if (aceptaBinario(intercambio) && CodecBinario.soporta(resultado)) {
+            responderBinario(intercambio, CodecBinario.codificar(resultado));
+            return;
+        }
+        responder(intercambio, 200, resultado);
+    }
+
+    private static String token(HttpExchange intercambio) {
+        String autorizacion = intercambio.getRequestHeaders().getFirst("Authorization");
+        if (autorizacion == null || !autorizacion.regionMatches(true, 0, PREFIJO_TOKEN, 0, PREFIJO_TOKEN.length())) {
+            return null;
+        }
+        return autorizacion.substring(PREFIJO_TOKEN.length()).trim();
+    }
+
+    /**
+     * los clientes que mandan Accept: application/x-hichat-bin reciben el
+     * historial y la bandeja en el formato binario en lugar de JSON
+     */
+    private static boolean aceptaBinario(HttpExchange intercambio) {
+        String acepta = intercambio.getRequestHeaders().getFirst("Accept");
+        return acepta != null && acepta.contains(CodecBinario.TIPO_CONTENIDO);
+    }
+
+    /**
+     * traduce la excepcion de los servicios a un estado HTTP, los servicios
+     * envuelven la causa original asi que se revisa toda la cadena
+     */
+    private static int estadoPara(Exception e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof EntityNotFoundException) {
+                return 404;
+            }
+            if (causa instanceof DuplicateEntityException) {
+                return 409;
+            }
+            if (causa instanceof AccessDeniedException) {
+                return 403;
+            }
+        }
+        if (e instanceof ServiceException se) {
+            // sin causa es una validacion del servicio
+            return se.getCause() == null ? 400 : 500;
+        }
+        if (e instanceof IllegalArgumentException) {
+            return 400;
+        }
+        return 500;
+    }
+
+    private static Map<String, Object> error(String mensaje) {
+        Map<String, Object> cuerpo = new LinkedHashMap<>();
+        cuerpo.put("error", mensaje);
+        return cuerpo;
+    }
+
+    private static void responder(HttpExchange intercambio, int estado, Object cuerpo) throws IOException {
+        byte[] bytes = JsonUtil.escribir(cuerpo);
+        intercambio.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        intercambio.sendResponseHeaders(estado, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    private static void responderBinario(HttpExchange intercambio, byte[] bytes) throws IOException {
+        intercambio.getResponseHeaders().set("Content-Type", CodecBinario.TIPO_CONTENIDO);
+        intercambio.sendResponseHeaders(200, bytes.length);
+        try (OutputStream salida = intercambio.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    public Metricas getMetricas() {
+        long total = peticiones.sum();
+        return new Metricas(total, errores.sum(), total > 0 ? nanosPeticion.sum() / total : 0, maxNanosPeticion.get());
+    }
+
+    private record Ruta(String metodo, Pattern patron, Accion accion, boolean pideSesion) {
+    }
+
+    /**
+     * valores del enrutador en un instante dado
+     */
+    public static class Metricas {
+
+        private final long peticiones;
+        private final long errores;
+        private final long promedioNanos;
+        private final long maxNanos;
+
+        public Metricas(long peticiones, long errores, long promedioNanos, long maxNanos) {
+            this.peticiones = peticiones;
+            this.errores = errores;
+            this.promedioNanos = promedioNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getPeticiones() {
+            return peticiones;
+        }
+
+        public long getErrores() {
+            return errores;
+        }
+
+        public long getPromedioNanos() {
+            return promedioNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasEnrutadorApi{"
+                    + "peticiones=" + peticiones
+                    + ", errores=" + errores
+                    + ", promedioMs=" + promedioNanos / 1_000_000.0
+                    + ", maxMs=" + maxNanos / 1_000_000.0
+                    + '}';
+        }
+    }
+}
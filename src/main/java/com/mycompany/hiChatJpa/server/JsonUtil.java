@@ -0,0 +1,71 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * clase que centraliza la conversion de DTOs a JSON y de regreso, el
+ * ObjectMapper es seguro entre hilos una vez configurado. Los perfiles se
+ * escriben sin el correo: cualquier usuario con sesion puede listar a los
+ * demas y el correo es lo que se usa para iniciar sesion.
+ *
+ * @author gatog
+ */
+public class JsonUtil {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .addMixIn(UsuarioPerfilDTO.class, PerfilSinCorreo.class);
+
+    @JsonIgnoreProperties("correoElectronico")
+    private abstract static class PerfilSinCorreo {
+    }
+
+    private JsonUtil() {
+    }
+
+    /**
+     * convierte un objeto a JSON en bytes UTF-8
+     *
+     * @param valor objeto a convertir
+     * @return bytes del JSON
+     * @throws IOException si el objeto no se puede serializar
+     */
+    public static byte[] escribir(Object valor) throws IOException {
+        return MAPPER.writeValueAsBytes(valor);
+    }
+
+    /**
+     * lee un JSON y lo convierte al tipo indicado
+     *
+     * @param <T> tipo de destino
+     * @param entrada cuerpo de la peticion
+     * @param tipo clase de destino
+     * @return objeto leido
+     * @throws IOException si el JSON no es valido
+     */
+    public static <T> T leer(InputStream entrada, Class<T> tipo) throws IOException {
+        return MAPPER.readValue(entrada, tipo);
+    }
+
+    /**
+     * lee un JSON de una cadena
+     *
+     * @param <T> tipo de destino
+     * @param json texto JSON
+     * @param tipo clase de destino
+     * @return objeto leido
+     * @throws IOException si el JSON no es valido
+     */
+    public static <T> T leer(String json, Class<T> tipo) throws IOException {
+        return MAPPER.readValue(json, tipo);
+    }
+}
@@ -0,0 +1,299 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.mycompany.hiChatJpa.service.IChatService;
+import com.mycompany.hiChatJpa.service.IUsuarioService;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * pasarela de conexiones persistentes. Cada cliente abre un socket TCP, se
+ * autentica una vez y desde ahi recibe por push los mensajes y matches de sus
+ * chats, y envia mensajes sin volver a consultar la base de datos.
+ *
+ * El protocolo es JSON delimitado por saltos de linea, cada linea es un marco
+ * con un campo "tipo". Cada conexion usa dos hilos virtuales, uno que lee y
+ * otro que escribe desde una cola acotada, asi un cliente lento no bloquea a
+ * los demas. Un revisor periodico manda PING a las conexiones calladas y
+ * expulsa las que no responden o no se autentican a tiempo.
+ *
+ * @author gatog
+ */
+public class PasarelaMensajes {
+
+    static final long AUTENTICACION_MAX_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final long PING_TRAS_NANOS = TimeUnit.SECONDS.toNanos(20);
+    static final long INACTIVIDAD_MAX_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long REVISION_SEGUNDOS = 5;
+
+    private final IUsuarioService usuarioService;
+    private final IChatService chatService;
+    private final int maxConexiones;
+    private final Set<ConexionPasarela> conexiones = ConcurrentHashMap.newKeySet();
+    private ServerSocket servidor;
+    private ScheduledExecutorService revisor;
+    private volatile boolean activa;
+
+    // metricas
+    private final LongAdder aceptadas = new LongAdder();
+    private final LongAdder rechazadas = new LongAdder();
+    private final LongAdder autenticadas = new LongAdder();
+    private final LongAdder marcosRecibidos = new LongAdder();
+    private final LongAdder marcosEnviados = new LongAdder();
+    private final LongAdder expulsadasInactivas = new LongAdder();
+    private final LongAdder expulsadasLentas = new LongAdder();
+
+    public PasarelaMensajes(IUsuarioService usuarioService, IChatService chatService, int maxConexiones) {
+        this.usuarioService = usuarioService;
+        this.chatService = chatService;
+        this.maxConexiones = maxConexiones;
+    }
+
+    /**
+     * metodo que abre el puerto solo en la interfaz local
+     *
+     * @param puerto puerto TCP
+     * @param backlog conexiones en espera que acepta el sistema operativo
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciar(int puerto, int backlog) throws IOException {
+        iniciar(ServidorHiChat.HOST_DEFAULT, puerto, backlog);
+    }
+
+    /**
+     * metodo que abre el puerto y empieza a aceptar conexiones en segundo
+     * plano
+     *
+     * @param host interfaz en la que se escucha, 0.0.0.0 para todas
+     * @param puerto puerto TCP
+     * @param backlog conexiones en espera que acepta el sistema operativo
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciar(String host, int puerto, int backlog) throws IOException {
+        servidor = new ServerSocket();
+        servidor.setReuseAddress(true);
+        servidor.bind(new InetSocketAddress(host, puerto), backlog);
+        activa = true;
+
+        revisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pasarela-revisor");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        revisor.scheduleWithFixedDelay(this::revisarConexiones, REVISION_SEGUNDOS, REVISION_SEGUNDOS, TimeUnit.SECONDS);
+
+        Thread.ofPlatform().name("pasarela-aceptar").daemon(true).start(this::aceptar);
+        System.out.println("Pasarela de mensajes escuchando en " + host + ":" + puerto);
+    }
+
+    private void aceptar() {
+        while (activa) {
+            Socket socket;
+            try {
+                socket = servidor.accept();
+            } catch (SocketException e) {
+                // el socket se cerro en detener()
+                return;
+            } catch (IOException e) {
+                System.err.println("Error al aceptar conexion en la pasarela: " + e.getMessage());
+                continue;
+            }
+            if (conexiones.size() >= maxConexiones) {
+                rechazadas.increment();
+                cerrarSocket(socket);
+                continue;
+            }
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setKeepAlive(true);
+                ConexionPasarela conexion = new ConexionPasarela(this, socket);
+                conexiones.add(conexion);
+                aceptadas.increment();
+                conexion.iniciar();
+            } catch (IOException e) {
+                cerrarSocket(socket);
+            }
+        }
+    }
+
+    /**
+     * recorre las conexiones, manda PING a las que llevan un rato calladas y
+     * cierra las que ya no responden o nunca se autenticaron
+     */
+    private void revisarConexiones() {
+        long ahora = System.nanoTime();
+        for (ConexionPasarela conexion : conexiones) {
+            try {
+                if (!conexion.isAutenticada() && ahora - conexion.getCreadaNanos() > AUTENTICACION_MAX_NANOS) {
+                    expulsadasInactivas.increment();
+                    conexion.cerrar("Tiempo de autenticacion agotado");
+                } else if (ahora - conexion.getUltimaActividadNanos() > INACTIVIDAD_MAX_NANOS) {
+                    expulsadasInactivas.increment();
+                    conexion.cerrar("Conexion inactiva");
+                } else if (ahora - conexion.getUltimaActividadNanos() > PING_TRAS_NANOS) {
+                    conexion.ping();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Error al revisar conexion de la pasarela: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * metodo que deja de aceptar conexiones y cierra las abiertas
+     */
+    public void detener() {
+        activa = false;
+        if (revisor != null) {
+            revisor.shutdownNow();
+        }
+        if (servidor != null) {
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                System.err.println("Error al cerrar la pasarela: " + e.getMessage());
+            }
+        }
+        for (ConexionPasarela conexion : conexiones) {
+            conexion.cerrar("Servidor detenido");
+        }
+    }
+
+    private static void cerrarSocket(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // no hay nada que hacer con un socket que ya no se puede cerrar
+        }
+    }
+
+    // Métodos usados por las conexiones
+    IUsuarioService getUsuarioService() {
+        return usuarioService;
+    }
+
+    IChatService getChatService() {
+        return chatService;
+    }
+
+    void conexionCerrada(ConexionPasarela conexion) {
+        conexiones.remove(conexion);
+    }
+
+    void conexionAutenticada() {
+        autenticadas.increment();
+    }
+
+    void marcoRecibido() {
+        marcosRecibidos.increment();
+    }
+
+    void marcoEnviado() {
+        marcosEnviados.increment();
+    }
+
+    void conexionLenta() {
+        expulsadasLentas.increment();
+    }
+
+    public Metricas getMetricas() {
+        int abiertas = 0;
+        int conSesion = 0;
+        for (ConexionPasarela conexion : conexiones) {
+            abiertas++;
+            if (conexion.isAutenticada()) {
+                conSesion++;
+            }
+        }
+        return new Metricas(abiertas, conSesion, aceptadas.sum(), rechazadas.sum(), autenticadas.sum(),
+                marcosRecibidos.sum(), marcosEnviados.sum(), expulsadasInactivas.sum(), expulsadasLentas.sum());
+    }
+
+    /**
+     * valores de la pasarela en un instante dado
+     */
+    public static class Metricas {
+
+        private final int abiertas;
+        private final int autenticadas;
+        private final long aceptadas;
+        private final long rechazadas;
+        private final long sesiones;
+        private final long marcosRecibidos;
+        private final long marcosEnviados;
+        private final long expulsadasInactivas;
+        private final long expulsadasLentas;
+
+        public Metricas(int abiertas, int autenticadas, long aceptadas, long rechazadas, long sesiones,
+                long marcosRecibidos, long marcosEnviados, long expulsadasInactivas, long expulsadasLentas) {
+            this.abiertas = abiertas;
+            this.autenticadas = autenticadas;
+            this.aceptadas = aceptadas;
+            this.rechazadas = rechazadas;
+            this.sesiones = sesiones;
+            this.marcosRecibidos = marcosRecibidos;
+            this.marcosEnviados = marcosEnviados;
+            this.expulsadasInactivas = expulsadasInactivas;
+            this.expulsadasLentas = expulsadasLentas;
+        }
+
+        public int getAbiertas() {
+            return abiertas;
+        }
+
+        public int getAutenticadas() {
+            return autenticadas;
+        }
+
+        public long getAceptadas() {
+            return aceptadas;
+        }
+
+        public long getRechazadas() {
+            return rechazadas;
+        }
+
+        public long getSesiones() {
+            return sesiones;
+        }
+
+        public long getMarcosRecibidos() {
+            return marcosRecibidos;
+        }
+
+        public long getMarcosEnviados() {
+            return marcosEnviados;
+        }
+
+        public long getExpulsadasInactivas() {
+            return expulsadasInactivas;
+        }
+
+        public long getExpulsadasLentas() {
+            return expulsadasLentas;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasPasarela{"
+                    + "abiertas=" + abiertas
+                    + ", autenticadas=" + autenticadas
+                    + ", aceptadas=" + aceptadas
+                    + ", rechazadas=" + rechazadas
+                    + ", sesiones=" + sesiones
+                    + ", marcosRecibidos=" + marcosRecibidos
+                    + ", marcosEnviados=" + marcosEnviados
+                    + ", expulsadasInactivas=" + expulsadasInactivas
+                    + ", expulsadasLentas=" + expulsadasLentas
+                    + '}';
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * peticion HTTP ya enrutada, da acceso a los parametros de la ruta, de la
+ * consulta y al cuerpo JSON
+ *
+ * @author gatog
+ */
+public class Peticion {
+
+    private final HttpExchange intercambio;
+    private final Matcher ruta;
+    private final String token;
+    private final Long idUsuario;
+    private Map<String, String> consulta;
+
+    Peticion(HttpExchange intercambio, Matcher ruta, String token, Long idUsuario) {
+        this.intercambio = intercambio;
+        this.ruta = ruta;
+        this.token = token;
+        this.idUsuario = idUsuario;
+    }
+
+    /**
+     * @return ID del usuario de la sesion, null solo en las rutas publicas
+     * cuando no se mando token
+     */
+    public Long idUsuario() {
+        return idUsuario;
+    }
+
+    /**
+     * @return token de la sesion tal como lo mando el cliente
+     */
+    public String token() {
+        return token;
+    }
+
+    /**
+     * obtiene un parametro numerico de la ruta, por ejemplo {id}
+     *
+     * @param nombre nombre del grupo en el patron de la ruta
+     * @return valor del parametro
+     */
+    public Long idRuta(String nombre) {
+        try {
+            return Long.valueOf(ruta.group(nombre));
+        } catch (NumberFormatException e) {
+            throw new ServiceException("El parametro " + nombre + " no es un numero valido");
+        }
+    }
+
+    /**
+     * obtiene un parametro de la consulta (?nombre=valor)
+     *
+     * @param nombre nombre del parametro
+     * @return valor decodificado o null si no viene
+     */
+    public String consulta(String nombre) {
+        if (consulta == null) {
+            consulta = decodificarConsulta(intercambio.getRequestURI().getRawQuery());
+        }
+        return consulta.get(nombre);
+    }
+
+    public Long consultaLong(String nombre) {
+        String valor = consulta(nombre);
+        if (valor == null || valor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(valor);
+        } catch (NumberFormatException e) {
+            throw new ServiceException("El parametro " + nombre + " no es un numero valido");
+        }
+    }
+
+    public int consultaInt(String nombre, int porDefecto) {
+        Long valor = consultaLong(nombre);
+        return valor != null ? valor.intValue() : porDefecto;
+    }
+
+    /**
+     * lee el cuerpo de la peticion como JSON
+     *
+     * @param <T> tipo de destino
+     * @param tipo clase de destino
+     * @return cuerpo convertido
+     */
+    public <T> T cuerpo(Class<T> tipo) {
+        try {
+            T valor = JsonUtil.leer(intercambio.getRequestBody(), tipo);
+            if (valor == null) {
+                throw new ServiceException("La peticion no tiene cuerpo");
+            }
+            return valor;
+        } catch (IOException e) {
+            throw new ServiceException("El cuerpo de la peticion no es un JSON valido");
+        }
+    }
+
+    private static Map<String, String> decodificarConsulta(String consulta) {
+        Map<String, String> valores = new HashMap<>();
+        if (consulta == null || consulta.isEmpty()) {
+            return valores;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            String nombre = igual >= 0 ? par.substring(0, igual) : par;
+            String valor = igual >= 0 ? par.substring(igual + 1) : "";
+            valores.putIfAbsent(URLDecoder.decode(nombre, StandardCharsets.UTF_8),
+                    URLDecoder.decode(valor, StandardCharsets.UTF_8));
+        }
+        return valores;
+    }
+}
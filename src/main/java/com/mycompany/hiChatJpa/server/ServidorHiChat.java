@@ -0,0 +1,315 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.config.RuteoLecturas;
+import com.mycompany.hiChatJpa.config.TransactionRunner;
+import com.mycompany.hiChatJpa.dto.ActualizarUsuarioDTO;
+import com.mycompany.hiChatJpa.dto.LoginDTO;
+import com.mycompany.hiChatJpa.dto.RegistroDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
+import com.mycompany.hiChatJpa.events.BusEventosChat;
+import com.mycompany.hiChatJpa.exceptions.AccessDeniedException;
+import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import com.mycompany.hiChatJpa.service.IChatService;
+import com.mycompany.hiChatJpa.service.IUsuarioService;
+import com.mycompany.hiChatJpa.service.impl.CachePerfiles;
+import com.mycompany.hiChatJpa.service.impl.ChatService;
+import com.mycompany.hiChatJpa.service.impl.SubidaFotosService;
+import com.mycompany.hiChatJpa.service.impl.UsuarioService;
+import com.sun.net.httpserver.HttpServer;
+import io.github.cdimascio.dotenv.Dotenv;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * punto de entrada del modo servidor, expone los servicios de usuarios y
+ * chats como HTTP/JSON sin abrir la interfaz grafica. Cada peticion se atiende
+ * en un hilo virtual, la concurrencia real contra MySQL la limita el pool de
+ * conexiones (DB_POOL_MAX_SIZE).
+ *
+ * Junto al HTTP se levanta la pasarela de conexiones persistentes
+ * (PasarelaMensajes) para los clientes que reciben mensajes por push.
+ *
+ * POST /api/sesiones cambia correo y contraseña por un token que las demas
+ * rutas piden en Authorization: Bearer, igual que AUTENTICAR en la pasarela.
+ * El usuario que actua siempre es el de la sesion: las rutas
+ * /api/usuarios/{id} solo aceptan el propio ID y las de /api/chats/{id} solo
+ * los chats en los que participa.
+ *
+ * Variables del .env: SERVER_HOST (127.0.0.1), SERVER_PORT (8080),
+ * SERVER_BACKLOG (1024), GATEWAY_HOST (127.0.0.1), GATEWAY_PORT (9090),
+ * GATEWAY_BACKLOG (4096), GATEWAY_MAX_CONNECTIONS (20000) y
+ * DB_SLOW_TRANSACTION_MS (1000), a partir de la cual una transaccion se
+ * reporta en el log. Para aceptar conexiones de otras maquinas hay que poner
+ * 0.0.0.0 o la interfaz deseada en SERVER_HOST y GATEWAY_HOST.
+ *
+ * @author gatog
+ */
+public class ServidorHiChat {
+
+    static final String HOST_DEFAULT = "127.0.0.1";
+    private static final int PUERTO_DEFAULT = 8080;
+    private static final int BACKLOG_DEFAULT = 1024;
+    private static final int PUERTO_PASARELA_DEFAULT = 9090;
+    private static final int BACKLOG_PASARELA_DEFAULT = 4096;
+    private static final int MAX_CONEXIONES_PASARELA_DEFAULT = 20_000;
+    private static final int TRANSACCION_LENTA_MS_DEFAULT = 1000;
+
+    private final IUsuarioService usuarioService;
+    private final IChatService chatService;
+    private final SesionesApi sesiones = new SesionesApi();
+    private final EnrutadorApi enrutador = new EnrutadorApi(sesiones);
+    private HttpServer servidor;
+    private ExecutorService ejecutor;
+    private PasarelaMensajes pasarela;
+
+    public ServidorHiChat() {
+        this(new UsuarioService(), new ChatService());
+    }
+
+    public ServidorHiChat(IUsuarioService usuarioService, IChatService chatService) {
+        this.usuarioService = usuarioService;
+        this.chatService = chatService;
+        registrarRutas();
+    }
+
+    // cuerpos de las peticiones que no tienen DTO propio
+    record InteraccionPeticion(Long idReceptor, TipoInteraccion tipo) {
+    }
+
+    record BloqueoPeticion(Long idReceptor) {
+    }
+
+    record MensajePeticion(String contenido) {
+    }
+
+    record AliasPeticion(String nombre) {
+    }
+
+    record SesionRespuesta(String token, UsuarioPerfilDTO usuario) {
+    }
+
+    private void registrarRutas() {
+        enrutador
+                // sesion y usuarios
+                .rutaPublica("POST", "/api/sesiones", p -> {
+                    UsuarioPerfilDTO perfil = usuarioService.iniciarSesion(p.cuerpo(LoginDTO.class));
+                    return new SesionRespuesta(sesiones.crear(perfil.getIdUsuario()), perfil);
+                })
+                .ruta("DELETE", "/api/sesiones", p -> {
+                    sesiones.cerrar(p.token());
+                    return null;
+                })
+                .rutaPublica("POST", "/api/usuarios", p -> usuarioService.registrarUsuario(p.cuerpo(RegistroDTO.class)))
+                .ruta("GET", "/api/usuarios", p -> {
+                    String nombre = p.consulta("nombre");
+                    return nombre != null && !nombre.isBlank()
+                            ? usuarioService.filtrarUsuariosPorNombre(nombre)
+                            : usuarioService.listarUsuarios();
+                })
+                .ruta("GET", "/api/usuarios/{id}", p -> usuarioService.buscarPorId(p.idRuta("id")))
+                .ruta("PUT", "/api/usuarios/{id}", p -> {
+                    ActualizarUsuarioDTO dto = p.cuerpo(ActualizarUsuarioDTO.class);
+                    dto.setIdUsuario(usuarioPropio(p));
+                    return usuarioService.actualizarUsuario(dto);
+                })
+                .ruta("DELETE", "/api/usuarios/{id}", p -> {
+                    Long idUsuario = usuarioPropio(p);
+                    boolean eliminado = usuarioService.eliminarUsuario(idUsuario);
+                    sesiones.cerrarDelUsuario(idUsuario);
+                    return eliminado;
+                })
+                .ruta("GET", "/api/usuarios/{id}/pretendientes", p -> usuarioService.mostrarPretendientes(usuarioPropio(p)))
+                .ruta("GET", "/api/usuarios/{id}/matches", p -> usuarioService.mostrarMatches(usuarioPropio(p)))
+                .ruta("POST", "/api/usuarios/{id}/interacciones", p -> {
+                    InteraccionPeticion cuerpo = p.cuerpo(InteraccionPeticion.class);
+                    return usuarioService.registrarInteraccion(usuarioPropio(p), cuerpo.idReceptor(), cuerpo.tipo());
+                })
+                .ruta("POST", "/api/usuarios/{id}/bloqueos", p
+                        -> usuarioService.bloquearUsuario(usuarioPropio(p), p.cuerpo(BloqueoPeticion.class).idReceptor()))
+                .ruta("GET", "/api/usuarios/{id}/chats", p -> chatService.cargarChatsDelUsuario(usuarioPropio(p)))
+                // chats y mensajes
+                .ruta("GET", "/api/chats/{id}", p -> chatService.obtenerDetallesChat(chatPropio(p)))
+                .ruta("PUT", "/api/chats/{id}/alias", p
+                        -> chatService.cambiarAliasDelChat(chatPropio(p), p.cuerpo(AliasPeticion.class).nombre()))
+                .ruta("GET", "/api/chats/{id}/mensajes", p
+                        -> chatService.obtenerMensajesAntesDe(chatPropio(p), p.consulta("cursor"), p.consultaInt("limit", 50)))
+                .ruta("POST", "/api/chats/{id}/mensajes", p
+                        -> chatService.enviarMensaje(chatPropio(p), p.idUsuario(), p.cuerpo(MensajePeticion.class).contenido()))
+                .ruta("GET", "/api/chats/{id}/cambios", p
+                        -> chatService.sincronizarChat(chatPropio(p), p.consultaLong("desde")))
+                .ruta("POST", "/api/chats/{id}/vistos", p -> {
+                    chatService.marcarMensajesDelChatComoVistos(chatPropio(p), p.idUsuario());
+                    return null;
+                })
+                .ruta("DELETE", "/api/mensajes/{id}", p -> chatService.eliminarMensaje(p.idRuta("id"), p.idUsuario()))
+                // diagnostico
+                .ruta("GET", "/api/metricas", p -> metricas());
+    }
+
+    /**
+     * metodo que lee el {id} de una ruta de usuario y verifica que sea el de
+     * la sesion
+     */
+    private static Long usuarioPropio(Peticion peticion) {
+        Long idUsuario = peticion.idRuta("id");
+        if (!idUsuario.equals(peticion.idUsuario())) {
+            throw new AccessDeniedException("Solo puedes consultar o cambiar tu propia cuenta");
+        }
+        return idUsuario;
+    }
+
+    /**
+     * metodo que lee el {id} de una ruta de chat y verifica que el usuario de
+     * la sesion participe en el, como validarChat en la pasarela
+     */
+    private Long chatPropio(Peticion peticion) {
+        Long idChat = peticion.idRuta("id");
+        if (!chatService.esParticipante(idChat, peticion.idUsuario())) {
+            throw new AccessDeniedException("No perteneces a este chat");
+        }
+        return idChat;
+    }
+
+    private Map<String, Object> metricas() {
+        Map<String, Object> metricas = new LinkedHashMap<>();
+        metricas.put("api", enrutador.getMetricas());
+        metricas.put("pool", JpaUtil.obtenerMetricasPool());
+        metricas.put("cache", JpaUtil.obtenerEstadisticasCache());
+        metricas.put("perfiles", CachePerfiles.getInstance().getMetricas());
+        metricas.put("eventos", BusEventosChat.getInstance().getMetricas());
+        metricas.put("transacciones", TransactionRunner.getInstance().getMetricas());
+        metricas.put("lecturas", RuteoLecturas.getInstance().getMetricas());
+        if (pasarela != null) {
+            metricas.put("pasarela", pasarela.getMetricas());
+        }
+        return metricas;
+    }
+
+    /**
+     * metodo que levanta el servidor en el puerto indicado, solo en la
+     * interfaz local
+     *
+     * @param puerto puerto TCP
+     * @param backlog conexiones en espera que acepta el sistema operativo
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciar(int puerto, int backlog) throws IOException {
+        iniciar(HOST_DEFAULT, puerto, backlog);
+    }
+
+    /**
+     * metodo que levanta el servidor en la interfaz y puerto indicados
+     *
+     * @param host interfaz en la que se escucha, 0.0.0.0 para todas
+     * @param puerto puerto TCP
+     * @param backlog conexiones en espera que acepta el sistema operativo
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciar(String host, int puerto, int backlog) throws IOException {
+        // se crea el pool y el EntityManagerFactory antes de aceptar peticiones
+        JpaUtil.getEntityManagerFactory();
+
+        ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        servidor = HttpServer.create(new InetSocketAddress(host, puerto), backlog);
+        servidor.createContext("/api", enrutador);
+        servidor.setExecutor(ejecutor);
+        servidor.start();
+        System.out.println("HiChat escuchando en " + host + ":" + puerto);
+    }
+
+    /**
+     * metodo que levanta la pasarela de conexiones persistentes, se llama
+     * despues de iniciar()
+     *
+     * @param host interfaz en la que se escucha, 0.0.0.0 para todas
+     * @param puerto puerto TCP de la pasarela
+     * @param backlog conexiones en espera que acepta el sistema operativo
+     * @param maxConexiones conexiones abiertas a la vez, las demas se rechazan
+     * @throws IOException si no se puede abrir el puerto
+     */
+    public void iniciarPasarela(String host, int puerto, int backlog, int maxConexiones) throws IOException {
+        pasarela = new PasarelaMensajes(usuarioService, chatService, maxConexiones);
+        pasarela.iniciar(host, puerto, backlog);
+    }
+
+    /**
+     * metodo que deja de aceptar peticiones, espera hasta el tiempo indicado a
+     * las que estan en curso y cierra la base de datos
+     *
+     * @param esperaSegundos segundos de espera para las peticiones en curso
+     */
+    public void detener(int esperaSegundos) {
+        if (pasarela != null) {
+            pasarela.detener();
+        }
+        if (servidor != null) {
+            servidor.stop(esperaSegundos);
+        }
+        if (ejecutor != null) {
+            ejecutor.shutdown();
+        }
+        SubidaFotosService.getInstance().cerrar();
+        JpaUtil.shutdown();
+    }
+
+    public EnrutadorApi.Metricas getMetricas() {
+        return enrutador.getMetricas();
+    }
+
+    /**
+     * @param args no se usan, la configuracion viene del .env
+     */
+    public static void main(String[] args) {
+        Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+        String host = texto(dotenv, "SERVER_HOST", HOST_DEFAULT);
+        int puerto = entero(dotenv, "SERVER_PORT", PUERTO_DEFAULT);
+        int backlog = entero(dotenv, "SERVER_BACKLOG", BACKLOG_DEFAULT);
+        String hostPasarela = texto(dotenv, "GATEWAY_HOST", HOST_DEFAULT);
+        int puertoPasarela = entero(dotenv, "GATEWAY_PORT", PUERTO_PASARELA_DEFAULT);
+        int backlogPasarela = entero(dotenv, "GATEWAY_BACKLOG", BACKLOG_PASARELA_DEFAULT);
+        int maxConexiones = entero(dotenv, "GATEWAY_MAX_CONNECTIONS", MAX_CONEXIONES_PASARELA_DEFAULT);
+        long nanosLenta = entero(dotenv, "DB_SLOW_TRANSACTION_MS", TRANSACCION_LENTA_MS_DEFAULT) * 1_000_000L;
+
+        // se reportan las transacciones lentas y las que chocaron con un bloqueo
+        TransactionRunner.getInstance().agregarObservador(ejecucion -> {
+            if (ejecucion.getNanos() >= nanosLenta || ejecucion.getIntentos() > 1) {
+                System.err.println("Transaccion lenta o reintentada: " + ejecucion);
+            }
+        });
+
+        ServidorHiChat servidor = new ServidorHiChat();
+        try {
+            servidor.iniciar(host, puerto, backlog);
+            servidor.iniciarPasarela(hostPasarela, puertoPasarela, backlogPasarela, maxConexiones);
+        } catch (IOException e) {
+            System.err.println("No se pudo iniciar el servidor: " + e.getMessage());
+            System.exit(1);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> servidor.detener(5), "detener-servidor"));
+
+        Thread.ofVirtual().name("reanudar-subidas").start(() -> SubidaFotosService.getInstance().reanudarPendientes());
+    }
+
+    private static String texto(Dotenv dotenv, String clave, String porDefecto) {
+        String valor = dotenv.get(clave);
+        return valor == null || valor.isBlank() ? porDefecto : valor.trim();
+    }
+
+    private static int entero(Dotenv dotenv, String clave, int porDefecto) {
+        String valor = dotenv.get(clave);
+        if (valor == null || valor.isBlank()) {
+            return porDefecto;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            throw new ServiceException("La variable " + clave + " no es un numero valido: " + valor);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.mycompany.hiChatJpa.server;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * sesiones del API HTTP. POST /api/sesiones cambia correo y contraseña por un
+ * token al azar y las demas rutas lo reciben en Authorization: Bearer. Viven
+ * en la memoria de este proceso, cada uso las renueva y vencen despues de
+ * DURACION_HORAS sin usarse; al reiniciar el servidor hay que volver a
+ * iniciar sesion.
+ *
+ * @author gatog
+ */
+final class SesionesApi {
+
+    private static final long DURACION_HORAS = 12;
+    private static final int BYTES_TOKEN = 32;
+
+    // a partir de este tamaño se barren las sesiones vencidas al crear
+    private static final int TAMANIO_BARRIDO = 10_000;
+
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Sesion> sesiones = new ConcurrentHashMap<>();
+    private final long duracionNanos = TimeUnit.HOURS.toNanos(DURACION_HORAS);
+
+    private record Sesion(Long idUsuario, long ultimoUsoNanos) {
+    }
+
+    /**
+     * @param idUsuario usuario que inicio sesion
+     * @return token de la sesion nueva
+     */
+    String crear(Long idUsuario) {
+        byte[] bytes = new byte[BYTES_TOKEN];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long ahora = System.nanoTime();
+        sesiones.put(token, new Sesion(idUsuario, ahora));
+        if (sesiones.size() > TAMANIO_BARRIDO) {
+            sesiones.values().removeIf(sesion -> ahora - sesion.ultimoUsoNanos() > duracionNanos);
+        }
+        return token;
+    }
+
+    /**
+     * @param token token que mando el cliente, puede ser null
+     * @return ID del usuario de la sesion o null si no existe o ya vencio
+     */
+    Long validar(String token) {
+        if (token == null) {
+            return null;
+        }
+        Sesion sesion = sesiones.get(token);
+        if (sesion == null) {
+            return null;
+        }
+        long ahora = System.nanoTime();
+        if (ahora - sesion.ultimoUsoNanos() > duracionNanos) {
+            sesiones.remove(token, sesion);
+            return null;
+        }
+        sesiones.replace(token, sesion, new Sesion(sesion.idUsuario(), ahora));
+        return sesion.idUsuario();
+    }
+
+    void cerrar(String token) {
+        if (token != null) {
+            sesiones.remove(token);
+        }
+    }
+
+    /**
+     * cierra todas las sesiones del usuario, por ejemplo al eliminar la cuenta
+     */
+    void cerrarDelUsuario(Long idUsuario) {
+        sesiones.values().removeIf(sesion -> sesion.idUsuario().equals(idUsuario));
+    }
+
+    int getActivas() {
+        return sesiones.size();
+    }
+}
@@ -2,6 +2,8 @@ package com.mycompany.hiChatJpa.service;
 
 import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
 import com.mycompany.hiChatJpa.dto.MensajeDTO;
+import com.mycompany.hiChatJpa.dto.PaginaMensajesDTO;
+import com.mycompany.hiChatJpa.dto.SincronizacionChatDTO;
 import com.mycompany.hiChatJpa.exceptions.ServiceException;
 import java.util.List;
 
@@ -20,11 +22,39 @@ public interface IChatService {
 
     void marcarMensajesDelChatComoVistos(Long idChat, Long idUsuarioReceptor) throws ServiceException;
 
-    boolean eliminarMensaje(Long idMensaje) throws ServiceException;
+    boolean eliminarMensaje(Long idMensaje, Long idUsuario) throws ServiceException;
+
+    boolean esParticipante(Long idChat, Long idUsuario) throws ServiceException;
 
     List<ChatConMensajesDTO> cargarChatsDelUsuario(Long idUsuario) throws ServiceException;
 
     List<MensajeDTO> obtenerMensajesDelChat(Long idChat, int limit, int offset) throws ServiceException;
 
+    /**
+     * obtiene la pagina de mensajes anterior al cursor indicado
+     *
+     * @param idChat ID del chat
+     * @param cursor cursor devuelto por la pagina anterior, null para la mas
+     * reciente
+     * @param limit cantidad maxima de mensajes
+     * @return pagina con los mensajes en orden cronologico y el siguiente cursor
+     * @throws ServiceException
+     */
+    PaginaMensajesDTO obtenerMensajesAntesDe(Long idChat, String cursor, int limit) throws ServiceException;
+
+    /**
+     * obtiene los mensajes nuevos, vistos o borrados desde la ultima
+     * sincronizacion del cliente
+     *
+     * @param idChat ID del chat
+     * @param desdeSecuencia ultimaSecuencia de la sincronizacion anterior, null
+     * para solo obtener la secuencia actual (el historial se carga con
+     * obtenerMensajesAntesDe)
+     * @return cambios en orden de secuencia y la secuencia para la siguiente
+     * llamada
+     * @throws ServiceException
+     */
+    SincronizacionChatDTO sincronizarChat(Long idChat, Long desdeSecuencia) throws ServiceException;
+
     ChatConMensajesDTO obtenerDetallesChat(Long idChat) throws ServiceException;
 }
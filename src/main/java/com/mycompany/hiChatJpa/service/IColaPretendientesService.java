@@ -0,0 +1,100 @@
+package com.mycompany.hiChatJpa.service;
+
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * interfaz de la cola de pretendientes de una sesion, la cola se recarga en
+ * segundo plano para que la vista nunca espere a la base de datos al pasar de
+ * un pretendiente a otro
+ *
+ * @author gatog
+ */
+public interface IColaPretendientesService {
+
+    /**
+     * obtiene el siguiente pretendiente de la cola, si la cola tiene elementos
+     * el future ya viene completado, si esta vacia se completa cuando termine
+     * la recarga
+     *
+     * @return future con el siguiente pretendiente o null si ya no hay
+     * pretendientes disponibles
+     */
+    CompletableFuture<UsuarioPerfilDTO> siguiente();
+
+    /**
+     * registra que el usuario ya interactuo con el pretendiente para que no
+     * vuelva a aparecer en esta sesion
+     *
+     * @param idPretendiente ID del pretendiente
+     */
+    void marcarAtendido(Long idPretendiente);
+
+    int getProfundidad();
+
+    Metricas getMetricas();
+
+    /**
+     * detiene las recargas pendientes y libera los hilos de la cola
+     */
+    void cerrar();
+
+    /**
+     * valores de la cola en un instante dado
+     */
+    public static class Metricas {
+
+        private final int profundidad;
+        private final long recargas;
+        private final long recargasFallidas;
+        private final long ultimaLatenciaNanos;
+        private final long promedioLatenciaNanos;
+        private final long maxLatenciaNanos;
+
+        public Metricas(int profundidad, long recargas, long recargasFallidas,
+                long ultimaLatenciaNanos, long promedioLatenciaNanos, long maxLatenciaNanos) {
+            this.profundidad = profundidad;
+            this.recargas = recargas;
+            this.recargasFallidas = recargasFallidas;
+            this.ultimaLatenciaNanos = ultimaLatenciaNanos;
+            this.promedioLatenciaNanos = promedioLatenciaNanos;
+            this.maxLatenciaNanos = maxLatenciaNanos;
+        }
+
+        public int getProfundidad() {
+            return profundidad;
+        }
+
+        public long getRecargas() {
+            return recargas;
+        }
+
+        public long getRecargasFallidas() {
+            return recargasFallidas;
+        }
+
+        public long getUltimaLatenciaNanos() {
+            return ultimaLatenciaNanos;
+        }
+
+        public long getPromedioLatenciaNanos() {
+            return promedioLatenciaNanos;
+        }
+
+        public long getMaxLatenciaNanos() {
+            return maxLatenciaNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasColaPretendientes{"
+                    + "profundidad=" + profundidad
+                    + ", recargas=" + recargas
+                    + ", recargasFallidas=" + recargasFallidas
+                    + ", ultimaLatenciaMs=" + ultimaLatenciaNanos / 1_000_000
+                    + ", promedioLatenciaMs=" + promedioLatenciaNanos / 1_000_000
+                    + ", maxLatenciaMs=" + maxLatenciaNanos / 1_000_000
+                    + '}';
+        }
+    }
+}
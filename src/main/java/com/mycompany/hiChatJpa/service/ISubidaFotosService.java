@@ -0,0 +1,65 @@
+package com.mycompany.hiChatJpa.service;
+
+/**
+ * interfaz del proceso que sube las fotos de perfil en segundo plano, el
+ * registro solo deja la foto como pendiente y este proceso la sube y actualiza
+ * la url del usuario al terminar
+ *
+ * @author gatog
+ */
+public interface ISubidaFotosService {
+
+    /**
+     * se llama en el hilo de la subida despues de guardar la nueva url del
+     * usuario, la url puede ser la misma que ya tenia si el almacen reemplaza
+     * el archivo
+     */
+    @FunctionalInterface
+    interface ObservadorFotos {
+
+        void alActualizar(Long idUsuario, String url);
+    }
+
+    /**
+     * copia la foto elegida a la carpeta de pendientes para que siga
+     * disponible aunque el usuario mueva o borre el archivo original. Se
+     * llama antes de la transaccion del registro, la copia tiene un nombre
+     * unico
+     *
+     * @param rutaArchivo ruta original de la foto
+     * @return ruta de la copia, o la ruta original si no se pudo copiar
+     */
+    String copiarAPendientes(String rutaArchivo);
+
+    /**
+     * borra una copia de copiarAPendientes que ya no se va a subir, por
+     * ejemplo si el registro fallo; las rutas fuera de la carpeta de
+     * pendientes no se tocan
+     *
+     * @param rutaCopia ruta que regreso copiarAPendientes
+     */
+    void descartarCopia(String rutaCopia);
+
+    /**
+     * agrega la foto a la cola de subida, si la cola esta llena la foto queda
+     * pendiente en la base y se retoma en cuanto se libera un lugar
+     *
+     * @param idUsuario ID del usuario
+     * @param rutaArchivo ruta local de la foto
+     */
+    void encolar(Long idUsuario, String rutaArchivo);
+
+    /**
+     * vuelve a encolar las fotos que quedaron pendientes y cuyo archivo existe
+     * en esta maquina, se llama al iniciar la aplicacion
+     *
+     * @return cantidad de fotos encoladas
+     */
+    int reanudarPendientes();
+
+    void agregarObservador(ObservadorFotos observador);
+
+    void quitarObservador(ObservadorFotos observador);
+
+    void cerrar();
+}
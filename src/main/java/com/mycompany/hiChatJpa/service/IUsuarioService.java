@@ -8,6 +8,7 @@ import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
 
 import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -105,4 +106,18 @@ public interface IUsuarioService {
 
     List<MatchDTO> mostrarMatches(Long idUsuario) throws ServiceException;
 
+    /**
+     * obtiene una pagina de matches del usuario, del mas reciente al mas
+     * antiguo, en una sola consulta
+     *
+     * @param idUsuario ID del usuario
+     * @param fechaMatch fecha del ultimo match de la pagina anterior, null para
+     * la primera pagina
+     * @param idMatch ID del ultimo match de la pagina anterior
+     * @param limit cantidad maxima de matches
+     * @return pagina de matches
+     * @throws ServiceException
+     */
+    List<MatchDTO> mostrarMatchesAntesDe(Long idUsuario, LocalDateTime fechaMatch, Long idMatch, int limit) throws ServiceException;
+
 }
@@ -0,0 +1,328 @@
+package com.mycompany.hiChatJpa.service.impl;
+
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import java.time.LocalDate;
+import java.time.Period;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * cache compartida de perfiles de usuario, guarda una copia inmutable del
+ * perfil por ID de usuario y entrega siempre un DTO nuevo para que quien lo
+ * reciba pueda modificarlo sin tocar la cache. Las entradas expiran por tiempo
+ * o a la medianoche (cuando puede cambiar la edad) y las menos usadas salen
+ * al llegar al limite. Varias cargas del mismo ID al mismo tiempo se resuelven
+ * con una sola consulta.
+ *
+ * Una entidad ya cargada solo se guarda si su EntityManager es de la primaria
+ * y se abrio despues de la ultima invalidacion (de cualquier usuario): si no,
+ * pudo leerse antes del cambio o de una replica atrasada, y guardarla dejaria
+ * el perfil viejo hasta que expire. En ese caso se convierte sin guardar.
+ *
+ * @author gatog
+ */
+public class CachePerfiles {
+
+    private static final int MAXIMO_ENTRADAS = 5_000;
+    private static final long TTL_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private static final CachePerfiles INSTANCIA = new CachePerfiles();
+
+    // protegido por this, en orden de acceso para expulsar el menos usado
+    private final LinkedHashMap<Long, Entrada> entradas = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entrada> mayor) {
+            if (size() > MAXIMO_ENTRADAS) {
+                expulsiones.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+    private final ConcurrentHashMap<Long, CompletableFuture<Perfil>> cargando = new ConcurrentHashMap<>();
+    // System.nanoTime() de la ultima invalidacion, protegido por this
+    private long ultimaInvalidacion = System.nanoTime();
+
+    // metricas
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder cargasCompartidas = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder invalidaciones = new LongAdder();
+
+    private CachePerfiles() {
+    }
+
+    public static CachePerfiles getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * carga un usuario de la base de datos, se ejecuta en el hilo que pidio el
+     * perfil con su propio EntityManager
+     */
+    @FunctionalInterface
+    public interface Cargador {
+
+        Usuario cargar(Long idUsuario) throws Exception;
+    }
+
+    /**
+     * metodo que convierte un usuario ya cargado a su perfil, si el perfil
+     * esta en cache no se leen los campos de la entidad (ni se inicializa si
+     * es un proxy). Si no esta se convierte la entidad y se guarda cuando el
+     * EntityManager del hilo es de la primaria y se abrio despues de la ultima
+     * invalidacion; debe llamarse con el EntityManager que cargo al usuario
+     * todavia abierto.
+     *
+     * @param usuario usuario a convertir
+     * @return copia del perfil o null si el usuario es null
+     */
+    public UsuarioPerfilDTO obtener(Usuario usuario) {
+        if (usuario == null) {
+            return null;
+        }
+        Perfil perfil = buscarVigente(usuario.getIdUsuario());
+        if (perfil == null) {
+            fallos.increment();
+            perfil = Perfil.de(usuario);
+            Long apertura = JpaUtil.getAperturaPrimaria();
+            if (apertura != null) {
+                guardarSiVigente(usuario.getIdUsuario(), perfil, apertura);
+            }
+        }
+        return perfil.aDTO();
+    }
+
+    /**
+     * metodo que obtiene el perfil por ID, si no esta en cache lo carga con el
+     * cargador. Si otro hilo ya esta cargando el mismo ID se espera su
+     * resultado en lugar de repetir la consulta.
+     *
+     * @param idUsuario ID del usuario
+     * @param cargador consulta a la base de datos
+     * @return copia del perfil o null si el usuario no existe
+     * @throws Exception el error del cargador
+     */
+    public UsuarioPerfilDTO obtener(Long idUsuario, Cargador cargador) throws Exception {
+        Perfil perfil = buscarVigente(idUsuario);
+        if (perfil != null) {
+            return perfil.aDTO();
+        }
+        fallos.increment();
+
+        CompletableFuture<Perfil> propio = new CompletableFuture<>();
+        CompletableFuture<Perfil> enCurso = cargando.putIfAbsent(idUsuario, propio);
+        if (enCurso != null) {
+            cargasCompartidas.increment();
+            try {
+                Perfil compartido = enCurso.join();
+                return compartido != null ? compartido.aDTO() : null;
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof Exception causa ? causa : e;
+            }
+        }
+
+        try {
+            Usuario usuario = cargador.cargar(idUsuario);
+            perfil = usuario != null ? Perfil.de(usuario) : null;
+            // si alguien invalido el ID durante la carga el resultado ya no se guarda
+            if (perfil != null && cargando.remove(idUsuario, propio)) {
+                guardar(idUsuario, perfil);
+            }
+            propio.complete(perfil);
+            return perfil != null ? perfil.aDTO() : null;
+        } catch (Exception | Error e) {
+            propio.completeExceptionally(e);
+            throw e;
+        } finally {
+            cargando.remove(idUsuario, propio);
+        }
+    }
+
+    /**
+     * metodo que descarta el perfil de un usuario, se llama despues de
+     * confirmar cualquier cambio del usuario o de su foto
+     *
+     * @param idUsuario ID del usuario
+     */
+    public void invalidar(Long idUsuario) {
+        if (idUsuario == null) {
+            return;
+        }
+        invalidaciones.increment();
+        cargando.remove(idUsuario);
+        synchronized (this) {
+            ultimaInvalidacion = System.nanoTime();
+            entradas.remove(idUsuario);
+        }
+    }
+
+    /**
+     * metodo que vacia la cache completa
+     */
+    public void limpiar() {
+        cargando.clear();
+        synchronized (this) {
+            ultimaInvalidacion = System.nanoTime();
+            entradas.clear();
+        }
+    }
+
+    public Metricas getMetricas() {
+        int tamanio;
+        synchronized (this) {
+            tamanio = entradas.size();
+        }
+        return new Metricas(tamanio, aciertos.sum(), fallos.sum(), cargasCompartidas.sum(),
+                expulsiones.sum(), invalidaciones.sum());
+    }
+
+    private synchronized Perfil buscarVigente(Long idUsuario) {
+        Entrada entrada = entradas.get(idUsuario);
+        if (entrada == null) {
+            return null;
+        }
+        if (System.nanoTime() - entrada.expiraNanos >= 0) {
+            entradas.remove(idUsuario);
+            expulsiones.increment();
+            return null;
+        }
+        aciertos.increment();
+        return entrada.perfil;
+    }
+
+    private synchronized void guardar(Long idUsuario, Perfil perfil) {
+        entradas.put(idUsuario, new Entrada(perfil, calcularExpiracion()));
+    }
+
+    /**
+     * @param apertura System.nanoTime() al abrir el EntityManager que cargo
+     * el perfil
+     */
+    private synchronized void guardarSiVigente(Long idUsuario, Perfil perfil, long apertura) {
+        if (apertura - ultimaInvalidacion > 0) {
+            guardar(idUsuario, perfil);
+        }
+    }
+
+    /**
+     * la entrada vive el TTL pero nunca pasa de la medianoche para que la edad
+     * guardada siempre sea la del dia
+     */
+    private static long calcularExpiracion() {
+        long ahora = System.nanoTime();
+        long hastaMedianoche = TimeUnit.MILLISECONDS.toNanos(
+                LocalDate.now().plusDays(1).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                - System.currentTimeMillis());
+        return ahora + Math.max(0, Math.min(TTL_NANOS, hastaMedianoche));
+    }
+
+    private static final class Entrada {
+
+        private final Perfil perfil;
+        private final long expiraNanos;
+
+        private Entrada(Perfil perfil, long expiraNanos) {
+            this.perfil = perfil;
+            this.expiraNanos = expiraNanos;
+        }
+    }
+
+    /**
+     * copia inmutable de los datos del perfil
+     */
+    private record Perfil(Long idUsuario, String nombre, String apellidoPaterno, String apellidoMaterno,
+            String correoElectronico, String carrera, String biografia, String urlFotoPerfil,
+            String genero, LocalDate fechaNacimiento, Integer edad) {
+
+        static Perfil de(Usuario usuario) {
+            LocalDate fechaNacimiento = usuario.getFechaNacimiento();
+            return new Perfil(
+                    usuario.getIdUsuario(),
+                    usuario.getNombre(),
+                    usuario.getApellidoPaterno(),
+                    usuario.getApellidoMaterno(),
+                    usuario.getCorreoElectronico(),
+                    usuario.getCarrera(),
+                    usuario.getBiografia(),
+                    usuario.getUrlFotoPerfil(),
+                    usuario.getGenero() != null ? usuario.getGenero().name() : null,
+                    fechaNacimiento,
+                    fechaNacimiento != null ? Period.between(fechaNacimiento, LocalDate.now()).getYears() : null
+            );
+        }
+
+        UsuarioPerfilDTO aDTO() {
+            return new UsuarioPerfilDTO(idUsuario, nombre, apellidoPaterno, apellidoMaterno,
+                    correoElectronico, carrera, biografia, urlFotoPerfil, genero, fechaNacimiento, edad);
+        }
+    }
+
+    /**
+     * valores de la cache en un instante dado
+     */
+    public static class Metricas {
+
+        private final int tamanio;
+        private final long aciertos;
+        private final long fallos;
+        private final long cargasCompartidas;
+        private final long expulsiones;
+        private final long invalidaciones;
+
+        public Metricas(int tamanio, long aciertos, long fallos, long cargasCompartidas,
+                long expulsiones, long invalidaciones) {
+            this.tamanio = tamanio;
+            this.aciertos = aciertos;
+            this.fallos = fallos;
+            this.cargasCompartidas = cargasCompartidas;
+            this.expulsiones = expulsiones;
+            this.invalidaciones = invalidaciones;
+        }
+
+        public int getTamanio() {
+            return tamanio;
+        }
+
+        public long getAciertos() {
+            return aciertos;
+        }
+
+        public long getFallos() {
+            return fallos;
+        }
+
+        public long getCargasCompartidas() {
+            return cargasCompartidas;
+        }
+
+        public long getExpulsiones() {
+            return expulsiones;
+        }
+
+        public long getInvalidaciones() {
+            return invalidaciones;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasCachePerfiles{"
+                    + "tamanio=" + tamanio
+                    + ", aciertos=" + aciertos
+                    + ", fallos=" + fallos
+                    + ", cargasCompartidas=" + cargasCompartidas
+                    + ", expulsiones=" + expulsiones
+                    + ", invalidaciones=" + invalidaciones
+                    + '}';
+        }
+    }
+}
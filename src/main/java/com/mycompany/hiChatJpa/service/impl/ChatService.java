@@ -1,24 +1,41 @@
 package com.mycompany.hiChatJpa.service.impl;
 
-import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.config.RuteoLecturas;
+import com.mycompany.hiChatJpa.config.TransactionRunner;
 import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.dto.LecturaChatDTO;
 import com.mycompany.hiChatJpa.dto.MensajeDTO;
+import com.mycompany.hiChatJpa.dto.PaginaMensajesDTO;
+import com.mycompany.hiChatJpa.dto.SincronizacionChatDTO;
 import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.LecturaChat;
+import com.mycompany.hiChatJpa.entitys.Match;
 import com.mycompany.hiChatJpa.entitys.Mensaje;
 import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.events.BusEventosChat;
+import com.mycompany.hiChatJpa.events.EventoChat;
+import com.mycompany.hiChatJpa.exceptions.AccessDeniedException;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
 import com.mycompany.hiChatJpa.exceptions.ServiceException;
 import com.mycompany.hiChatJpa.repository.impl.ChatRepository;
+import com.mycompany.hiChatJpa.repository.impl.LecturaChatRepository;
 import com.mycompany.hiChatJpa.repository.impl.MensajeRepository;
 import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
 import com.mycompany.hiChatJpa.service.IChatService;
 import jakarta.persistence.EntityManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -28,436 +45,559 @@ import java.util.stream.Collectors;
  */
 public class ChatService implements IChatService {
 
+    private static final int LIMITE_PAGINA_MAXIMO = 100;
+
+    private final TransactionRunner transacciones = TransactionRunner.getInstance();
+    private final RuteoLecturas ruteo = RuteoLecturas.getInstance();
+
     public ChatService() {
     }
 
     @Override
     public boolean cambiarAliasDelChat(Long chatId, String nuevoNombre) throws ServiceException {
-        EntityManager em = null;
         try {
             if (chatId == null || nuevoNombre == null || nuevoNombre.trim().isEmpty()) {
                 throw new ServiceException("Los parámetros no pueden ser nulos o vacíos");
             }
 
-            em = JpaUtil.getEntityManager();
-            ChatRepository chatRepo = new ChatRepository(em);
-
-            Chat chat = chatRepo.buscar(chatId);
-            if (chat == null) {
-                throw new EntityNotFoundException("Chat no encontrado");
-            }
+            transacciones.ejecutar("cambiarAliasDelChat", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
 
-            JpaUtil.beginTransaction();
-            chat.setNombre(nuevoNombre);
-            chatRepo.actualizar(chat);
-            JpaUtil.commitTransaction();
+                Chat chat = chatRepo.buscar(chatId);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
+                }
 
+                chat.setNombre(nuevoNombre);
+                chatRepo.actualizar(chat);
+                return true;
+            });
+            ruteo.registrarEscrituraChat(chatId);
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("cambiarAliasDelChat", "Error al cambiar alias del chat", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public boolean enviarMensaje(Long idChat, Long idUsuarioEmisor, String contenidoMensaje) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idChat == null || idUsuarioEmisor == null || contenidoMensaje == null || contenidoMensaje.trim().isEmpty()) {
                 throw new ServiceException("Los parámetros no pueden ser nulos o vacíos");
             }
 
-            em = JpaUtil.getEntityManager();
-            ChatRepository chatRepo = new ChatRepository(em);
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            MensajeDTO enviado = transacciones.ejecutar("enviarMensaje", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
 
-            Chat chat = chatRepo.buscar(idChat);
-            if (chat == null) {
-                throw new EntityNotFoundException("Chat no encontrado");
-            }
+                Chat chat = chatRepo.buscar(idChat);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
+                }
 
-            Usuario emisor = usuarioRepo.buscar(idUsuarioEmisor);
-            if (emisor == null) {
-                throw new EntityNotFoundException("Usuario emisor no encontrado");
-            }
+                Usuario emisor = usuarioRepo.buscar(idUsuarioEmisor);
+                if (emisor == null) {
+                    throw new EntityNotFoundException("Usuario emisor no encontrado");
+                }
 
-            // Verificar que el usuario es participante del chat
-            boolean esParticipante = chat.getParticipantes().stream()
-                    .anyMatch(u -> u.getIdUsuario().equals(idUsuarioEmisor));
+                // Verificar que el usuario es participante del chat
+                boolean esParticipante = chat.getParticipantes().stream()
+                        .anyMatch(u -> u.getIdUsuario().equals(idUsuarioEmisor));
 
-            if (!esParticipante) {
-                throw new ServiceException("El usuario no es participante del chat");
-            }
+                if (!esParticipante) {
+                    throw new ServiceException("El usuario no es participante del chat");
+                }
 
-            JpaUtil.beginTransaction();
+                long secuencia = chatRepo.siguienteSecuencia(chat);
 
-            Mensaje nuevoMensaje = new Mensaje.Builder()
-                    .chat(chat)
-                    .usuarioEmisor(emisor)
-                    .contenido(contenidoMensaje)
-                    .fechaEnvio(LocalDateTime.now())
-                    .estaVisto(false)
-                    .estaBorrado(false)
-                    .build();
+                Mensaje nuevoMensaje = new Mensaje.Builder()
+                        .chat(chat)
+                        .usuarioEmisor(emisor)
+                        .contenido(contenidoMensaje)
+                        .fechaEnvio(LocalDateTime.now())
+                        .estaVisto(false)
+                        .estaBorrado(false)
+                        .secuencia(secuencia)
+                        .build();
 
-            mensajeRepo.insertar(nuevoMensaje);
-            JpaUtil.commitTransaction();
+                mensajeRepo.insertar(nuevoMensaje);
+                return convertirAMensajeDTO(nuevoMensaje);
+            });
+            ruteo.registrarEscrituraChat(idChat);
+            ruteo.registrarEscrituraUsuario(idUsuarioEmisor);
+            publicar(() -> EventoChat.mensajeEnviado(enviado));
 
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("enviarMensaje", "Error al enviar mensaje", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public void marcarMensajeComoVisto(Long idMensaje) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idMensaje == null) {
                 throw new ServiceException("El ID del mensaje no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            EventoChat vistos = transacciones.ejecutar("marcarMensajeComoVisto", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
+                LecturaChatRepository lecturaRepo = new LecturaChatRepository(em);
 
-            Mensaje mensaje = mensajeRepo.buscar(idMensaje);
-            if (mensaje == null) {
-                throw new EntityNotFoundException("Mensaje no encontrado");
-            }
+                Mensaje mensaje = mensajeRepo.buscar(idMensaje);
+                if (mensaje == null) {
+                    throw new EntityNotFoundException("Mensaje no encontrado");
+                }
+
+                // sin receptor explicito, el mensaje lo vieron los demas participantes
+                Chat chat = mensaje.getChat();
+                Long idEmisor = mensaje.getUsuarioEmisor().getIdUsuario();
+                List<Usuario> receptores = chat.getParticipantes().stream()
+                        .filter(u -> !u.getIdUsuario().equals(idEmisor))
+                        .collect(Collectors.toList());
+                if (receptores.isEmpty() && chat.getMatch() != null) {
+                    // chat de match al que no se le escribio usuario_chat
+                    Match match = chat.getMatch();
+                    receptores.add(match.getUsuarioA().getIdUsuario().equals(idEmisor)
+                            ? match.getUsuarioB() : match.getUsuarioA());
+                }
+                if (receptores.isEmpty()) {
+                    return null;
+                }
 
-            if (!mensaje.getEstaVisto()) {
-                JpaUtil.beginTransaction();
-                mensaje.setEstaVisto(true);
-                mensajeRepo.actualizar(mensaje);
-                JpaUtil.commitTransaction();
+                long secuencia = chatRepo.siguienteSecuencia(chat);
+                boolean avanzo = false;
+                for (Usuario receptor : receptores) {
+                    avanzo |= lecturaRepo.avanzar(chat, receptor, idMensaje, secuencia);
+                }
+                if (!avanzo) {
+                    return null;
+                }
+                Long idReceptor = receptores.size() == 1 ? receptores.get(0).getIdUsuario() : null;
+                return EventoChat.mensajesVistos(chat.getIdChat(), idMensaje, idReceptor, secuencia);
+            });
+            if (vistos != null) {
+                ruteo.registrarEscrituraChat(vistos.getIdChat());
+                publicar(() -> vistos);
             }
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("marcarMensajeComoVisto", "Error al marcar mensaje como visto", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public void marcarMensajesDelChatComoVistos(Long idChat, Long idUsuarioReceptor) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idChat == null || idUsuarioReceptor == null) {
                 throw new ServiceException("Los parámetros no pueden ser nulos");
             }
 
-            em = JpaUtil.getEntityManager();
-            ChatRepository chatRepo = new ChatRepository(em);
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            EventoChat vistos = transacciones.ejecutar("marcarMensajesDelChatComoVistos", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
+                LecturaChatRepository lecturaRepo = new LecturaChatRepository(em);
 
-            Chat chat = chatRepo.buscar(idChat);
-            if (chat == null) {
-                throw new EntityNotFoundException("Chat no encontrado");
-            }
+                Chat chat = chatRepo.buscar(idChat);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
+                }
 
-            List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, 1000, 0);
+                Usuario receptor = usuarioRepo.buscar(idUsuarioReceptor);
+                if (receptor == null) {
+                    throw new EntityNotFoundException("Usuario receptor no encontrado");
+                }
 
-            // Filtrar mensajes no vistos que no fueron enviados por el receptor
-            List<Mensaje> mensajesParaMarcar = mensajes.stream()
-                    .filter(m -> !m.getEstaVisto()
-                    && !m.getUsuarioEmisor().getIdUsuario().equals(idUsuarioReceptor))
-                    .collect(Collectors.toList());
+                // leer el chat completo mueve una sola marca hasta el ultimo mensaje,
+                // si ya estaba ahi no se escribe nada
+                Long hasta = mensajeRepo.buscarUltimoId(chat);
+                if (hasta == null) {
+                    return null;
+                }
+                LecturaChat lectura = lecturaRepo.buscarPorChatYUsuario(idChat, idUsuarioReceptor);
+                if (lectura != null && lectura.getIdUltimoMensajeLeido() >= hasta) {
+                    return null;
+                }
 
-            if (!mensajesParaMarcar.isEmpty()) {
-                JpaUtil.beginTransaction();
-                for (Mensaje mensaje : mensajesParaMarcar) {
-                    mensaje.setEstaVisto(true);
-                    mensajeRepo.actualizar(mensaje);
+                long secuencia = chatRepo.siguienteSecuencia(chat);
+                if (!lecturaRepo.avanzar(chat, receptor, hasta, secuencia)) {
+                    return null;
                 }
-                JpaUtil.commitTransaction();
+                return EventoChat.mensajesVistos(idChat, hasta, idUsuarioReceptor, secuencia);
+            });
+            if (vistos != null) {
+                ruteo.registrarEscrituraChat(idChat);
+                ruteo.registrarEscrituraUsuario(idUsuarioReceptor);
+                publicar(() -> vistos);
             }
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("marcarMensajesDelChatComoVistos",
                     "Error al marcar mensajes como vistos", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
-    public boolean eliminarMensaje(Long idMensaje) throws ServiceException {
-        EntityManager em = null;
+    public boolean eliminarMensaje(Long idMensaje, Long idUsuario) throws ServiceException {
         try {
             if (idMensaje == null) {
                 throw new ServiceException("El ID del mensaje no puede ser nulo");
             }
+            if (idUsuario == null) {
+                throw new ServiceException("El ID del usuario no puede ser nulo");
+            }
 
-            em = JpaUtil.getEntityManager();
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            Mensaje mensaje = transacciones.ejecutar("eliminarMensaje", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
 
-            Mensaje mensaje = mensajeRepo.buscar(idMensaje);
-            if (mensaje == null) {
-                throw new EntityNotFoundException("Mensaje no encontrado");
-            }
+                Mensaje borrado = mensajeRepo.buscar(idMensaje);
+                if (borrado == null) {
+                    throw new EntityNotFoundException("Mensaje no encontrado");
+                }
+                // solo quien lo envio puede borrarlo
+                if (!borrado.getUsuarioEmisor().getIdUsuario().equals(idUsuario)) {
+                    throw new AccessDeniedException("Solo puedes eliminar tus propios mensajes");
+                }
 
-            JpaUtil.beginTransaction();
-            mensaje.setEstaBorrado(true);
-            mensajeRepo.actualizar(mensaje);
-            JpaUtil.commitTransaction();
+                borrado.setSecuenciaCambio(chatRepo.siguienteSecuencia(borrado.getChat()));
+                borrado.setEstaBorrado(true);
+                return mensajeRepo.actualizar(borrado);
+            });
+            ruteo.registrarEscrituraChat(mensaje.getChat().getIdChat());
+            publicar(() -> EventoChat.mensajeBorrado(mensaje.getChat().getIdChat(), mensaje.getIdMensaje(),
+                    mensaje.getSecuenciaCambio()));
 
             return true;
 
-        } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
+        } catch (EntityNotFoundException | AccessDeniedException | ServiceException e) {
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("eliminarMensaje", "Error al eliminar mensaje", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
+        }
+    }
+
+    /**
+     * metodo que revisa si el usuario participa en el chat, lo usan el API y
+     * la pasarela antes de dejarlo leer o escribir en el
+     */
+    @Override
+    public boolean esParticipante(Long idChat, Long idUsuario) throws ServiceException {
+        try {
+            if (idChat == null || idUsuario == null) {
+                throw new ServiceException("El ID del chat y del usuario no pueden ser nulos");
             }
+
+            return transacciones.ejecutarLectura("esParticipante",
+                    ruteo.puedeLeerDeReplicaUsuario(idUsuario),
+                    em -> new ChatRepository(em).esParticipante(idChat, idUsuario));
+
+        } catch (ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("esParticipante", "Error al revisar los participantes del chat", e);
         }
     }
 
     @Override
     public List<ChatConMensajesDTO> cargarChatsDelUsuario(Long idUsuario) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idUsuario == null) {
                 throw new ServiceException("El ID del usuario no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            ChatRepository chatRepo = new ChatRepository(em);
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            return transacciones.ejecutarLectura("cargarChatsDelUsuario",
+                    ruteo.puedeLeerDeReplicaUsuario(idUsuario), em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                ChatRepository chatRepo = new ChatRepository(em);
 
-            Usuario usuario = usuarioRepo.buscar(idUsuario);
-            if (usuario == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+                Usuario usuario = usuarioRepo.buscar(idUsuario);
+                if (usuario == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-            List<Chat> chats = chatRepo.buscarPorParticipante(usuario, 100, 0);
-            List<ChatConMensajesDTO> resultado = new ArrayList<>();
+                // la bandeja ya viene ordenada por la fecha del ultimo mensaje
+                return chatRepo.buscarBandejaPorParticipante(idUsuario, 100, 0);
+            });
 
-            for (Chat chat : chats) {
-                ChatConMensajesDTO dto = new ChatConMensajesDTO();
-                dto.setIdChat(chat.getIdChat());
-                dto.setNombre(chat.getNombre());
-                dto.setIdMatch(chat.getMatch() != null ? chat.getMatch().getIdMatch() : null);
+        } catch (EntityNotFoundException | ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("cargarChatsDelUsuario",
+                    "Error al cargar chats del usuario", e);
+        }
+    }
 
-                // Obtener participantes
-                List<UsuarioPerfilDTO> participantes = chat.getParticipantes().stream()
-                        .map(this::convertirAUsuarioPerfilDTO)
-                        .collect(Collectors.toList());
-                dto.setParticipantes(participantes);
+    @Override
+    public List<MensajeDTO> obtenerMensajesDelChat(Long idChat, int limit, int offset) throws ServiceException {
+        try {
+            if (idChat == null) {
+                throw new ServiceException("El ID del chat no puede ser nulo");
+            }
 
-                // Obtener mensajes del chat
-                List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, 1, 0);
-                dto.setTotalMensajes(mensajes.size());
+            return transacciones.ejecutarLectura("obtenerMensajesDelChat",
+                    ruteo.puedeLeerDeReplicaChat(idChat), em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
 
-                // Obtener último mensaje
-                if (!mensajes.isEmpty()) {
-                    Mensaje ultimoMensaje = mensajes.get(0);
-                    dto.setUltimoMensaje(ultimoMensaje.getContenido());
-                    dto.setFechaUltimoMensaje(ultimoMensaje.getFechaEnvio());
+                Chat chat = chatRepo.buscar(idChat);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
                 }
 
-                // Verificar si hay mensajes no leídos
-                boolean hayNoLeidos = mensajes.stream()
-                        .anyMatch(m -> !m.getEstaVisto()
-                        && !m.getUsuarioEmisor().getIdUsuario().equals(idUsuario));
-                dto.setHayNoLeidos(hayNoLeidos);
+                List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, limit, offset);
+                Map<Long, Long> lecturas = lecturasDelChat(em, idChat);
 
-                resultado.add(dto);
+                return mensajes.stream()
+                        .filter(m -> !m.getEstaBorrado())
+                        .map(m -> convertirAMensajeDTO(m, lecturas))
+                        .sorted(Comparator.comparing(MensajeDTO::getFechaEnvio))
+                        .collect(Collectors.toList());
+            });
+
+        } catch (EntityNotFoundException | ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("obtenerMensajesDelChat",
+                    "Error al obtener mensajes del chat", e);
+        }
+    }
+
+    @Override
+    public PaginaMensajesDTO obtenerMensajesAntesDe(Long idChat, String cursor, int limit) throws ServiceException {
+        try {
+            if (idChat == null) {
+                throw new ServiceException("El ID del chat no puede ser nulo");
+            }
+            if (limit <= 0) {
+                throw new ServiceException("El limite debe ser mayor a cero");
             }
 
-            // Ordenar por fecha del último mensaje (más reciente primero)
-            resultado.sort((c1, c2) -> {
-                if (c1.getFechaUltimoMensaje() == null) {
-                    return 1;
+            int tamanioPagina = Math.min(limit, LIMITE_PAGINA_MAXIMO);
+            LocalDateTime fechaCursor;
+            Long idCursor;
+            if (cursor != null && !cursor.isBlank()) {
+                String[] partes = decodificarCursor(cursor);
+                fechaCursor = LocalDateTime.parse(partes[0]);
+                idCursor = Long.valueOf(partes[1]);
+            } else {
+                fechaCursor = null;
+                idCursor = null;
+            }
+
+            return transacciones.ejecutarLectura("obtenerMensajesAntesDe", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
+
+                Chat chat = chatRepo.buscar(idChat);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
                 }
-                if (c2.getFechaUltimoMensaje() == null) {
-                    return -1;
+
+                // se pide un registro extra solo para saber si hay mas paginas
+                List<Mensaje> mensajes = mensajeRepo.buscarPorChatAntesDe(idChat, fechaCursor, idCursor, tamanioPagina + 1);
+                boolean hayMas = mensajes.size() > tamanioPagina;
+                if (hayMas) {
+                    mensajes = mensajes.subList(0, tamanioPagina);
                 }
-                return c2.getFechaUltimoMensaje().compareTo(c1.getFechaUltimoMensaje());
-            });
 
-            return resultado;
+                String siguienteCursor = null;
+                if (hayMas) {
+                    Mensaje masAntiguo = mensajes.get(mensajes.size() - 1);
+                    siguienteCursor = codificarCursor(masAntiguo.getFechaEnvio(), masAntiguo.getIdMensaje());
+                }
+
+                Map<Long, Long> lecturas = lecturasDelChat(em, idChat);
+                List<MensajeDTO> pagina = mensajes.stream()
+                        .map(m -> convertirAMensajeDTO(m, lecturas))
+                        .collect(Collectors.toList());
+                Collections.reverse(pagina);
+
+                return new PaginaMensajesDTO(pagina, siguienteCursor, hayMas);
+            });
 
         } catch (EntityNotFoundException | ServiceException e) {
             throw e;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ServiceException("obtenerMensajesAntesDe", "El cursor no es valido", e);
         } catch (Exception e) {
-            throw new ServiceException("cargarChatsDelUsuario",
-                    "Error al cargar chats del usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
+            throw new ServiceException("obtenerMensajesAntesDe",
+                    "Error al obtener mensajes del chat", e);
         }
     }
 
     @Override
-    public List<MensajeDTO> obtenerMensajesDelChat(Long idChat, int limit, int offset) throws ServiceException {
-        EntityManager em = null;
+    public SincronizacionChatDTO sincronizarChat(Long idChat, Long desdeSecuencia) throws ServiceException {
         try {
             if (idChat == null) {
                 throw new ServiceException("El ID del chat no puede ser nulo");
             }
+            if (desdeSecuencia != null && desdeSecuencia < 0) {
+                throw new ServiceException("La secuencia no puede ser negativa");
+            }
 
-            em = JpaUtil.getEntityManager();
-            ChatRepository chatRepo = new ChatRepository(em);
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            return transacciones.ejecutarLectura("sincronizarChat", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
 
-            Chat chat = chatRepo.buscar(idChat);
-            if (chat == null) {
-                throw new EntityNotFoundException("Chat no encontrado");
-            }
+                if (desdeSecuencia == null) {
+                    Long ultimaSecuencia = chatRepo.buscarUltimaSecuencia(idChat);
+                    if (ultimaSecuencia == null) {
+                        throw new EntityNotFoundException("Chat no encontrado");
+                    }
+                    // el cliente arranca de cero, se le mandan todas las marcas
+                    List<LecturaChatDTO> lecturas = new LecturaChatRepository(em).buscarPorChat(idChat).stream()
+                            .map(this::convertirALecturaChatDTO)
+                            .collect(Collectors.toList());
+                    return new SincronizacionChatDTO(idChat, new ArrayList<>(), ultimaSecuencia, false, lecturas);
+                }
 
-            List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, limit, offset);
+                // se pide un registro extra solo para saber si quedan cambios
+                List<Mensaje> cambios = mensajeRepo.buscarCambiosDesde(idChat, desdeSecuencia, LIMITE_PAGINA_MAXIMO + 1);
+                boolean hayMas = cambios.size() > LIMITE_PAGINA_MAXIMO;
+                if (hayMas) {
+                    cambios = cambios.subList(0, LIMITE_PAGINA_MAXIMO);
+                }
 
-            return mensajes.stream()
-                    .filter(m -> !m.getEstaBorrado())
-                    .map(this::convertirAMensajeDTO)
-                    .sorted(Comparator.comparing(MensajeDTO::getFechaEnvio))
-                    .collect(Collectors.toList());
+                // las marcas de lectura son una fila por participante, se leen todas
+                // y se mandan las que se movieron despues de desdeSecuencia
+                List<LecturaChat> marcas = new LecturaChatRepository(em).buscarPorChat(idChat);
+                Map<Long, Long> lecturas = mapaLecturas(marcas);
+                List<MensajeDTO> mensajes = cambios.stream()
+                        .map(m -> convertirAMensajeDTO(m, lecturas))
+                        .collect(Collectors.toList());
+                List<LecturaChatDTO> lecturasMovidas = marcas.stream()
+                        .filter(l -> l.getSecuenciaCambio() > desdeSecuencia)
+                        .map(this::convertirALecturaChatDTO)
+                        .collect(Collectors.toList());
+                long ultimaSecuencia = cambios.isEmpty()
+                        ? desdeSecuencia
+                        : cambios.get(cambios.size() - 1).getSecuenciaCambio();
+                if (!hayMas) {
+                    // una marca puede ser el cambio mas reciente del chat
+                    for (LecturaChatDTO lectura : lecturasMovidas) {
+                        ultimaSecuencia = Math.max(ultimaSecuencia, lectura.getSecuencia());
+                    }
+                }
+
+                return new SincronizacionChatDTO(idChat, mensajes, ultimaSecuencia, hayMas, lecturasMovidas);
+            });
 
         } catch (EntityNotFoundException | ServiceException e) {
             throw e;
         } catch (Exception e) {
-            throw new ServiceException("obtenerMensajesDelChat",
-                    "Error al obtener mensajes del chat", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
+            throw new ServiceException("sincronizarChat", "Error al sincronizar el chat", e);
         }
     }
 
     @Override
     public ChatConMensajesDTO obtenerDetallesChat(Long idChat) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idChat == null) {
                 throw new ServiceException("El ID del chat no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            ChatRepository chatRepo = new ChatRepository(em);
-            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            return transacciones.ejecutarLectura("obtenerDetallesChat", em -> {
+                ChatRepository chatRepo = new ChatRepository(em);
+                MensajeRepository mensajeRepo = new MensajeRepository(em);
 
-            Chat chat = chatRepo.buscar(idChat);
-            if (chat == null) {
-                throw new EntityNotFoundException("Chat no encontrado");
-            }
+                Chat chat = chatRepo.buscar(idChat);
+                if (chat == null) {
+                    throw new EntityNotFoundException("Chat no encontrado");
+                }
 
-            ChatConMensajesDTO dto = new ChatConMensajesDTO();
-            dto.setIdChat(chat.getIdChat());
-            dto.setNombre(chat.getNombre());
-            dto.setIdMatch(chat.getMatch() != null ? chat.getMatch().getIdMatch() : null);
+                ChatConMensajesDTO dto = new ChatConMensajesDTO();
+                dto.setIdChat(chat.getIdChat());
+                dto.setNombre(chat.getNombre());
+                dto.setIdMatch(chat.getMatch() != null ? chat.getMatch().getIdMatch() : null);
 
-            List<UsuarioPerfilDTO> participantes = chat.getParticipantes().stream()
-                    .map(this::convertirAUsuarioPerfilDTO)
-                    .collect(Collectors.toList());
-            dto.setParticipantes(participantes);
+                List<UsuarioPerfilDTO> participantes = chat.getParticipantes().stream()
+                        .map(this::convertirAUsuarioPerfilDTO)
+                        .collect(Collectors.toList());
+                dto.setParticipantes(participantes);
 
-            List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, 1000, 0);
-            dto.setTotalMensajes(mensajes.size());
+                List<Mensaje> mensajes = mensajeRepo.buscarPorChat(chat, 1000, 0);
+                dto.setTotalMensajes(mensajes.size());
 
-            if (!mensajes.isEmpty()) {
-                Mensaje ultimoMensaje = mensajes.get(0);
-                dto.setUltimoMensaje(ultimoMensaje.getContenido());
-                dto.setFechaUltimoMensaje(ultimoMensaje.getFechaEnvio());
-            }
+                if (!mensajes.isEmpty()) {
+                    Mensaje ultimoMensaje = mensajes.get(0);
+                    dto.setUltimoMensaje(ultimoMensaje.getContenido());
+                    dto.setFechaUltimoMensaje(ultimoMensaje.getFechaEnvio());
+                }
 
-            boolean hayNoLeidos = mensajes.stream()
-                    .anyMatch(m -> !m.getEstaVisto());
-            dto.setHayNoLeidos(hayNoLeidos);
+                // sin usuario de referencia, son los mensajes que algun otro
+                // participante todavia no lee
+                Map<Long, Long> lecturas = lecturasDelChat(em, idChat);
+                int noLeidos = (int) mensajes.stream()
+                        .filter(m -> !m.getEstaBorrado() && !fueVisto(m, lecturas))
+                        .count();
+                dto.setMensajesNoLeidos(noLeidos);
+                dto.setHayNoLeidos(noLeidos > 0);
 
-            return dto;
+                return dto;
+            });
 
         } catch (EntityNotFoundException | ServiceException e) {
             throw e;
         } catch (Exception e) {
             throw new ServiceException("obtenerDetallesChat",
                     "Error al obtener detalles del chat", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
-    // Métodos auxiliares de conversión
-    private UsuarioPerfilDTO convertirAUsuarioPerfilDTO(Usuario usuario) {
-        if (usuario == null) {
-            return null;
+    /**
+     * publica un evento despues del commit, un error al publicar no debe
+     * hacer fallar una operacion que ya se confirmo
+     */
+    private void publicar(Supplier<EventoChat> evento) {
+        try {
+            BusEventosChat.getInstance().publicar(evento.get());
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo publicar el evento del chat: " + e.getMessage());
         }
+    }
 
-        UsuarioPerfilDTO dto = new UsuarioPerfilDTO();
-        dto.setIdUsuario(usuario.getIdUsuario());
-        dto.setNombre(usuario.getNombre());
-        dto.setApellidoPaterno(usuario.getApellidoPaterno());
-        dto.setApellidoMaterno(usuario.getApellidoMaterno());
-        dto.setCorreoElectronico(usuario.getCorreoElectronico());
-        dto.setCarrera(usuario.getCarrera());
-        dto.setBiografia(usuario.getBiografia());
-        dto.setUrlFotoPerfil(usuario.getUrlFotoPerfil());
-        dto.setGenero(usuario.getGenero() != null ? usuario.getGenero().name() : null);
-        dto.setFechaNacimiento(usuario.getFechaNacimiento());
+    // Métodos auxiliares del cursor de paginacion
+    private String codificarCursor(LocalDateTime fechaEnvio, Long idMensaje) {
+        String llave = fechaEnvio + "|" + idMensaje;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(llave.getBytes(StandardCharsets.UTF_8));
+    }
 
-        return dto;
+    private String[] decodificarCursor(String cursor) {
+        String llave = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] partes = llave.split("\\|");
+        if (partes.length != 2) {
+            throw new IllegalArgumentException("cursor con formato invalido");
+        }
+        return partes;
+    }
+
+    // Métodos auxiliares de conversión
+    private UsuarioPerfilDTO convertirAUsuarioPerfilDTO(Usuario usuario) {
+        return CachePerfiles.getInstance().obtener(usuario);
     }
 
     private MensajeDTO convertirAMensajeDTO(Mensaje mensaje) {
+        return convertirAMensajeDTO(mensaje, Map.of());
+    }
+
+    /**
+     * @param lecturas marca de lectura por ID de usuario, de lecturasDelChat
+     */
+    private MensajeDTO convertirAMensajeDTO(Mensaje mensaje, Map<Long, Long> lecturas) {
         if (mensaje == null) {
             return null;
         }
@@ -468,9 +608,43 @@ public class ChatService implements IChatService {
         dto.setEmisor(convertirAUsuarioPerfilDTO(mensaje.getUsuarioEmisor()));
         dto.setContenido(mensaje.getContenido());
         dto.setFechaEnvio(mensaje.getFechaEnvio());
-        dto.setEstaVisto(mensaje.getEstaVisto());
+        dto.setEstaVisto(fueVisto(mensaje, lecturas));
         dto.setEstaBorrado(mensaje.getEstaBorrado());
+        dto.setSecuencia(mensaje.getSecuencia());
+        dto.setSecuenciaCambio(mensaje.getSecuenciaCambio());
 
         return dto;
     }
+
+    private LecturaChatDTO convertirALecturaChatDTO(LecturaChat lectura) {
+        return new LecturaChatDTO(lectura.getChat().getIdChat(), lectura.getUsuario().getIdUsuario(),
+                lectura.getIdUltimoMensajeLeido(), lectura.getSecuenciaCambio());
+    }
+
+    // Métodos auxiliares de las marcas de lectura
+    private Map<Long, Long> lecturasDelChat(EntityManager em, Long idChat) {
+        return mapaLecturas(new LecturaChatRepository(em).buscarPorChat(idChat));
+    }
+
+    private static Map<Long, Long> mapaLecturas(List<LecturaChat> marcas) {
+        Map<Long, Long> lecturas = new HashMap<>();
+        for (LecturaChat marca : marcas) {
+            lecturas.put(marca.getUsuario().getIdUsuario(), marca.getIdUltimoMensajeLeido());
+        }
+        return lecturas;
+    }
+
+    /**
+     * un mensaje esta visto si algun participante distinto al emisor ya movio
+     * su marca de lectura hasta el
+     */
+    private static boolean fueVisto(Mensaje mensaje, Map<Long, Long> lecturas) {
+        Long idEmisor = mensaje.getUsuarioEmisor().getIdUsuario();
+        for (Map.Entry<Long, Long> lectura : lecturas.entrySet()) {
+            if (!lectura.getKey().equals(idEmisor) && lectura.getValue() >= mensaje.getIdMensaje()) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,228 @@
+package com.mycompany.hiChatJpa.service.impl;
+
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import com.mycompany.hiChatJpa.service.IColaPretendientesService;
+import com.mycompany.hiChatJpa.service.IUsuarioService;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cola de pretendientes de una sesion. Cuando la cola baja del nivel minimo se
+ * pide otra muestra al servicio de usuarios en un hilo aparte, los
+ * pretendientes que ya se mostraron en la sesion se descartan. Si la recarga
+ * falla se reintenta con espera exponencial.
+ *
+ * @author gatog
+ */
+public class ColaPretendientesService implements IColaPretendientesService {
+
+    private static final int NIVEL_MINIMO = 10;
+    private static final long ESPERA_BASE_MS = 500;
+    private static final long ESPERA_MAXIMA_MS = 30_000;
+    private static final long ESPERA_AGOTADO_MS = 30_000;
+    private static final int FALLOS_ANTES_DE_AVISAR = 3;
+
+    private final Long idUsuario;
+    private final IUsuarioService usuarioService;
+    private final ScheduledExecutorService programador;
+
+    // estado protegido por this
+    private final Deque<UsuarioPerfilDTO> cola = new ArrayDeque<>();
+    private final Set<Long> vistos = new HashSet<>();
+    private final List<CompletableFuture<UsuarioPerfilDTO>> esperando = new ArrayList<>();
+    private boolean recargando;
+    private boolean agotado;
+    private boolean cerrado;
+    private int fallosSeguidos;
+    private long reintentarDespuesNanos;
+
+    // metricas
+    private final LongAdder recargas = new LongAdder();
+    private final LongAdder recargasFallidas = new LongAdder();
+    private final LongAdder nanosRecarga = new LongAdder();
+    private final LongAccumulator maxNanosRecarga = new LongAccumulator(Long::max, 0);
+    private volatile long ultimaLatenciaNanos;
+
+    public ColaPretendientesService(Long idUsuario) {
+        this(idUsuario, new UsuarioService());
+    }
+
+    public ColaPretendientesService(Long idUsuario, IUsuarioService usuarioService) {
+        this.idUsuario = idUsuario;
+        this.usuarioService = usuarioService;
+        this.programador = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("cola-pretendientes-" + idUsuario).factory());
+        synchronized (this) {
+            solicitarRecarga();
+        }
+    }
+
+    @Override
+    public CompletableFuture<UsuarioPerfilDTO> siguiente() {
+        synchronized (this) {
+            if (cerrado) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            UsuarioPerfilDTO pretendiente = cola.poll();
+            if (pretendiente != null) {
+                if (cola.size() < NIVEL_MINIMO) {
+                    solicitarRecarga();
+                }
+                return CompletableFuture.completedFuture(pretendiente);
+            }
+
+            // ya no habia pretendientes y aun no toca volver a preguntar
+            if (agotado && System.nanoTime() < reintentarDespuesNanos) {
+                return CompletableFuture.completedFuture(null);
+            }
+
+            CompletableFuture<UsuarioPerfilDTO> futuro = new CompletableFuture<>();
+            esperando.add(futuro);
+            solicitarRecarga();
+            return futuro;
+        }
+    }
+
+    @Override
+    public synchronized void marcarAtendido(Long idPretendiente) {
+        if (idPretendiente != null) {
+            vistos.add(idPretendiente);
+        }
+    }
+
+    @Override
+    public synchronized int getProfundidad() {
+        return cola.size();
+    }
+
+    @Override
+    public Metricas getMetricas() {
+        long total = recargas.sum();
+        return new Metricas(
+                getProfundidad(),
+                total,
+                recargasFallidas.sum(),
+                ultimaLatenciaNanos,
+                total > 0 ? nanosRecarga.sum() / total : 0,
+                maxNanosRecarga.get()
+        );
+    }
+
+    @Override
+    public void cerrar() {
+        List<CompletableFuture<UsuarioPerfilDTO>> pendientes;
+        synchronized (this) {
+            cerrado = true;
+            cola.clear();
+            pendientes = new ArrayList<>(esperando);
+            esperando.clear();
+        }
+        programador.shutdownNow();
+        pendientes.forEach(f -> f.complete(null));
+    }
+
+    /**
+     * programa una recarga si no hay otra en curso, respeta la espera de los
+     * reintentos. Debe llamarse con el candado tomado.
+     */
+    private void solicitarRecarga() {
+        if (recargando || cerrado) {
+            return;
+        }
+        recargando = true;
+        long espera = Math.max(0, reintentarDespuesNanos - System.nanoTime());
+        programador.schedule(this::recargar, espera, TimeUnit.NANOSECONDS);
+    }
+
+    private void recargar() {
+        long inicio = System.nanoTime();
+        List<UsuarioPerfilDTO> muestra = null;
+        ServiceException error = null;
+        try {
+            muestra = usuarioService.mostrarPretendientes(idUsuario);
+        } catch (ServiceException e) {
+            error = e;
+        } catch (RuntimeException e) {
+            error = new ServiceException("recargar", "Error al recargar pretendientes", e);
+        }
+        registrarLatencia(System.nanoTime() - inicio);
+
+        List<CompletableFuture<UsuarioPerfilDTO>> atendidos = new ArrayList<>();
+        List<UsuarioPerfilDTO> entregados = new ArrayList<>();
+        List<CompletableFuture<UsuarioPerfilDTO>> fallidos = new ArrayList<>();
+
+        synchronized (this) {
+            recargando = false;
+            if (cerrado) {
+                return;
+            }
+
+            if (error == null) {
+                int nuevos = 0;
+                for (UsuarioPerfilDTO pretendiente : muestra) {
+                    if (vistos.add(pretendiente.getIdUsuario())) {
+                        cola.add(pretendiente);
+                        nuevos++;
+                    }
+                }
+                fallosSeguidos = 0;
+                agotado = nuevos == 0;
+                reintentarDespuesNanos = agotado
+                        ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_AGOTADO_MS)
+                        : 0;
+
+                while (!esperando.isEmpty() && !cola.isEmpty()) {
+                    atendidos.add(esperando.remove(0));
+                    entregados.add(cola.poll());
+                }
+                if (agotado) {
+                    // nadie mas que mostrar, los que esperan reciben null
+                    atendidos.addAll(esperando);
+                    esperando.clear();
+                } else if (cola.size() < NIVEL_MINIMO) {
+                    solicitarRecarga();
+                }
+            } else {
+                recargasFallidas.increment();
+                fallosSeguidos++;
+                long espera = Math.min(ESPERA_BASE_MS << Math.min(fallosSeguidos - 1, 16), ESPERA_MAXIMA_MS);
+                reintentarDespuesNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera);
+
+                if (fallosSeguidos >= FALLOS_ANTES_DE_AVISAR) {
+                    fallidos.addAll(esperando);
+                    esperando.clear();
+                }
+                if (!esperando.isEmpty() || cola.size() < NIVEL_MINIMO) {
+                    solicitarRecarga();
+                }
+            }
+        }
+
+        // los futures se completan fuera del candado
+        for (int i = 0; i < atendidos.size(); i++) {
+            atendidos.get(i).complete(i < entregados.size() ? entregados.get(i) : null);
+        }
+        for (CompletableFuture<UsuarioPerfilDTO> futuro : fallidos) {
+            futuro.completeExceptionally(error);
+        }
+    }
+
+    private void registrarLatencia(long nanos) {
+        recargas.increment();
+        nanosRecarga.add(nanos);
+        maxNanosRecarga.accumulate(nanos);
+        ultimaLatenciaNanos = nanos;
+    }
+}
@@ -0,0 +1,271 @@
+package com.mycompany.hiChatJpa.service.impl;
+
+import com.mycompany.hiChatJpa.config.AlmacenImagenesUtil;
+import com.mycompany.hiChatJpa.config.IAlmacenImagenes;
+import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.entitys.EstadoFoto;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import com.mycompany.hiChatJpa.service.ISubidaFotosService;
+import jakarta.persistence.EntityManager;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sube las fotos de perfil con un numero fijo de hilos. Cada subida se
+ * reintenta con espera exponencial, si se agotan los intentos el usuario se
+ * queda con la foto por defecto y la foto se marca como fallida. El estado
+ * pendiente vive en la tabla usuario, asi que lo que no se alcanzo a subir se
+ * retoma al volver a abrir la aplicacion, y lo que no cupo en la cola se
+ * retoma en cuanto se libera un lugar.
+ *
+ * La tabla es compartida entre todos los clientes pero el archivo solo existe
+ * en la maquina donde se registro el usuario, por eso cada cliente solo
+ * retoma las filas cuyo archivo tiene. Al terminar la fila se actualiza solo
+ * si sigue pendiente con la misma ruta, asi dos clientes no se pisan ni se
+ * reemplaza una foto mas nueva.
+ *
+ * @author gatog
+ */
+public class SubidaFotosService implements ISubidaFotosService {
+
+    private static final int HILOS = 2;
+    private static final int MAX_EN_COLA = 100;
+    private static final int MAX_INTENTOS = 5;
+    private static final long ESPERA_BASE_MS = 1_000;
+    private static final long ESPERA_MAXIMA_MS = 60_000;
+
+    private static final SubidaFotosService INSTANCIA = new SubidaFotosService(AlmacenImagenesUtil::getAlmacen,
+            Path.of(System.getProperty("user.home"), ".hichat", "subidas"));
+
+    private final Supplier<IAlmacenImagenes> almacen;
+    private final Path directorioPendientes;
+    private final ScheduledThreadPoolExecutor ejecutor;
+    private final Semaphore cupo = new Semaphore(MAX_EN_COLA);
+    private final Set<Long> enProceso = ConcurrentHashMap.newKeySet();
+    private final List<ObservadorFotos> observadores = new CopyOnWriteArrayList<>();
+
+    // alguna foto no cupo en la cola, al liberar un lugar se vuelve a buscar
+    private final AtomicBoolean hayRechazadas = new AtomicBoolean();
+
+    private SubidaFotosService(Supplier<IAlmacenImagenes> almacen, Path directorioPendientes) {
+        this.almacen = almacen;
+        this.directorioPendientes = directorioPendientes;
+        this.ejecutor = new ScheduledThreadPoolExecutor(HILOS,
+                Thread.ofPlatform().daemon().name("subida-fotos-", 0).factory());
+    }
+
+    public static SubidaFotosService getInstance() {
+        return INSTANCIA;
+    }
+
+    @Override
+    public String copiarAPendientes(String rutaArchivo) {
+        try {
+            Path origen = Path.of(rutaArchivo);
+            Files.createDirectories(directorioPendientes);
+            Path destino = directorioPendientes.resolve(UUID.randomUUID() + "_" + origen.getFileName());
+            Files.copy(origen, destino, StandardCopyOption.REPLACE_EXISTING);
+            return destino.toString();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("No se pudo copiar la foto a pendientes: " + e.getMessage());
+            return rutaArchivo;
+        }
+    }
+
+    @Override
+    public void descartarCopia(String rutaCopia) {
+        borrarCopia(rutaCopia);
+    }
+
+    @Override
+    public void encolar(Long idUsuario, String rutaArchivo) {
+        intentarEncolar(idUsuario, rutaArchivo);
+    }
+
+    /**
+     * @return false si la cola esta llena, la foto sigue pendiente en la base
+     */
+    private boolean intentarEncolar(Long idUsuario, String rutaArchivo) {
+        if (!enProceso.add(idUsuario)) {
+            return true;
+        }
+        if (!cupo.tryAcquire()) {
+            hayRechazadas.set(true);
+            // si el ultimo lugar se libero antes de marcar, nadie mas la retomaria
+            if (!cupo.tryAcquire()) {
+                enProceso.remove(idUsuario);
+                return false;
+            }
+        }
+        ejecutor.execute(() -> subir(idUsuario, rutaArchivo, 1));
+        return true;
+    }
+
+    @Override
+    public int reanudarPendientes() {
+        int encoladas = 0;
+        Long despuesDe = 0L;
+        while (true) {
+            List<Usuario> pagina;
+            EntityManager em = null;
+            try {
+                em = JpaUtil.getEntityManager();
+                pagina = new UsuarioRepository(em).buscarFotosPendientes(despuesDe, MAX_EN_COLA);
+            } catch (Exception e) {
+                System.err.println("No se pudieron reanudar las fotos pendientes: " + e.getMessage());
+                return encoladas;
+            } finally {
+                if (em != null) {
+                    JpaUtil.closeEntityManager();
+                }
+            }
+
+            for (Usuario usuario : pagina) {
+                Long idUsuario = usuario.getIdUsuario();
+                String ruta = usuario.getRutaFotoPendiente();
+                if (ruta == null) {
+                    // sin archivo que subir, la actualizacion condicional evita pisar a otro cliente
+                    ejecutor.execute(() -> finalizarConDefault(idUsuario, null));
+                } else if (Files.isRegularFile(Path.of(ruta))) {
+                    if (!intentarEncolar(idUsuario, ruta)) {
+                        // la cola se lleno, el resto se retoma al liberar un lugar
+                        return encoladas;
+                    }
+                    encoladas++;
+                }
+                // si el archivo no existe la foto es de otra maquina y se deja a su cliente
+            }
+            if (pagina.size() < MAX_EN_COLA) {
+                return encoladas;
+            }
+            despuesDe = pagina.get(pagina.size() - 1).getIdUsuario();
+        }
+    }
+
+    @Override
+    public void agregarObservador(ObservadorFotos observador) {
+        observadores.add(observador);
+    }
+
+    @Override
+    public void quitarObservador(ObservadorFotos observador) {
+        observadores.remove(observador);
+    }
+
+    @Override
+    public void cerrar() {
+        ejecutor.shutdownNow();
+    }
+
+    private void subir(Long idUsuario, String rutaArchivo, int intento) {
+        String url;
+        try {
+            url = almacen.get().subirFotoPerfil(rutaArchivo, idUsuario);
+        } catch (IOException | RuntimeException e) {
+            if (intento < MAX_INTENTOS) {
+                long espera = Math.min(ESPERA_BASE_MS << (intento - 1), ESPERA_MAXIMA_MS);
+                // un poco de azar para que los reintentos no lleguen juntos
+                espera += ThreadLocalRandom.current().nextLong(espera / 4 + 1);
+                ejecutor.schedule(() -> subir(idUsuario, rutaArchivo, intento + 1), espera, TimeUnit.MILLISECONDS);
+            } else {
+                System.err.println("No se pudo subir la foto del usuario " + idUsuario + ": " + e.getMessage());
+                finalizarConDefault(idUsuario, rutaArchivo);
+            }
+            return;
+        }
+        finalizar(idUsuario, url, EstadoFoto.SUBIDA, rutaArchivo);
+    }
+
+    private void finalizarConDefault(Long idUsuario, String rutaArchivo) {
+        String url;
+        try {
+            url = almacen.get().obtenerUrlFotoDefault();
+        } catch (RuntimeException e) {
+            url = "/icons/default-picture.png";
+        }
+        finalizar(idUsuario, url, EstadoFoto.FALLIDA, rutaArchivo);
+    }
+
+    /**
+     * actualiza la url del usuario en su propia transaccion y libera el lugar
+     * en la cola, si la base falla la foto se queda pendiente. Si la fila ya
+     * no tenia esta foto pendiente no cambia nada y solo se borra la copia
+     */
+    private void finalizar(Long idUsuario, String url, EstadoFoto estado, String rutaArchivo) {
+        EntityManager em = null;
+        try {
+            em = JpaUtil.getEntityManager();
+            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+
+            JpaUtil.beginTransaction();
+            int actualizadas = usuarioRepo.actualizarFoto(idUsuario, url, estado, rutaArchivo);
+            JpaUtil.commitTransaction();
+            if (actualizadas > 0) {
+                CachePerfiles.getInstance().invalidar(idUsuario);
+                avisarObservadores(idUsuario, url);
+            }
+            borrarCopia(rutaArchivo);
+        } catch (Exception e) {
+            if (em != null) {
+                JpaUtil.rollbackTransaction();
+            }
+            System.err.println("No se pudo actualizar la foto del usuario " + idUsuario + ": " + e.getMessage());
+        } finally {
+            if (em != null) {
+                JpaUtil.closeEntityManager();
+            }
+            if (enProceso.remove(idUsuario)) {
+                cupo.release();
+                retomarRechazadas();
+            }
+        }
+    }
+
+    private void avisarObservadores(Long idUsuario, String url) {
+        for (ObservadorFotos observador : observadores) {
+            try {
+                observador.alActualizar(idUsuario, url);
+            } catch (RuntimeException e) {
+                // la foto ya quedo guardada, un observador no puede deshacerlo
+                System.err.println("Fallo un observador de fotos: " + e.getMessage());
+            }
+        }
+    }
+
+    private void retomarRechazadas() {
+        if (!hayRechazadas.compareAndSet(true, false)) {
+            return;
+        }
+        try {
+            ejecutor.execute(this::reanudarPendientes);
+        } catch (RejectedExecutionException e) {
+            // el servicio se esta cerrando, se retoman al volver a abrir
+        }
+    }
+
+    private void borrarCopia(String rutaArchivo) {
+        if (rutaArchivo == null || !Path.of(rutaArchivo).startsWith(directorioPendientes)) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(Path.of(rutaArchivo));
+        } catch (IOException e) {
+            System.err.println("No se pudo borrar la copia de la foto: " + e.getMessage());
+        }
+    }
+}
@@ -1,19 +1,21 @@
 package com.mycompany.hiChatJpa.service.impl;
 
-import com.mycompany.hiChatJpa.config.CloudinaryUtil;
 import com.mycompany.hiChatJpa.config.JpaUtil;
+import com.mycompany.hiChatJpa.config.RuteoLecturas;
+import com.mycompany.hiChatJpa.config.TransactionRunner;
 import com.mycompany.hiChatJpa.dto.*;
 import com.mycompany.hiChatJpa.entitys.*;
+import com.mycompany.hiChatJpa.events.BusEventosChat;
+import com.mycompany.hiChatJpa.events.EventoChat;
 import com.mycompany.hiChatJpa.exceptions.DuplicateEntityException;
 import com.mycompany.hiChatJpa.exceptions.EntityNotFoundException;
-import com.mycompany.hiChatJpa.exceptions.RepositoryException;
 import com.mycompany.hiChatJpa.exceptions.ServiceException;
 import com.mycompany.hiChatJpa.repository.impl.*;
+import com.mycompany.hiChatJpa.service.ISubidaFotosService;
 import com.mycompany.hiChatJpa.service.IUsuarioService;
-import jakarta.persistence.EntityManager;
-import java.io.IOException;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.Period;
 import java.util.ArrayList;
 import java.util.List;
@@ -23,6 +25,11 @@ public class UsuarioService implements IUsuarioService {
 
     private static final int EDAD_MINIMA = 18;
     private static final String REGEX_EMAIL = "^[A-Za-z0-9+_.-]+@(.+)$";
+    private static final String URL_FOTO_DEFAULT = "/icons/default-picture.png";
+    private static final int PAGINA_MATCHES = 1000;
+
+    private final TransactionRunner transacciones = TransactionRunner.getInstance();
+    private final RuteoLecturas ruteo = RuteoLecturas.getInstance();
 
     public UsuarioService() {
     }
@@ -36,29 +43,25 @@ public class UsuarioService implements IUsuarioService {
      */
     @Override
     public UsuarioPerfilDTO iniciarSesion(LoginDTO loginDTO) throws ServiceException {
-        EntityManager em = null;
         try {
             validarLoginDTO(loginDTO);
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            Usuario usuario = usuarioRepo.buscarPorCorreo(loginDTO.getCorreoElectronico());
+            return transacciones.ejecutarLectura("iniciarSesion", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                Usuario usuario = usuarioRepo.buscarPorCorreo(loginDTO.getCorreoElectronico());
 
-            if (usuario == null) {
-                throw new EntityNotFoundException("Usuario no encontrado con ese correo");
-            }
-            if (!loginDTO.getContrasena().equals(usuario.getContrasena())) {
-                throw new ServiceException("Credenciales inválidas");
-            }
+                if (usuario == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado con ese correo");
+                }
+                if (!loginDTO.getContrasena().equals(usuario.getContrasena())) {
+                    throw new ServiceException("Credenciales inválidas");
+                }
 
-            return convertirAUsuarioPerfilDTO(usuario);
+                return convertirAUsuarioPerfilDTO(usuario);
+            });
         } catch (EntityNotFoundException | ServiceException e) {
             throw e;
-        } catch (RepositoryException e) {
+        } catch (Exception e) {
             throw new ServiceException("iniciarSesion", "Error al iniciar sesión", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
@@ -71,110 +74,90 @@ public class UsuarioService implements IUsuarioService {
      */
     @Override
     public boolean registrarUsuario(RegistroDTO registroDTO) throws ServiceException {
-        EntityManager em = null;
         try {
             validarRegistroDTO(registroDTO);
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-
-            Usuario usuarioExistente = usuarioRepo.buscarPorCorreo(registroDTO.getCorreoElectronico());
-            if (usuarioExistente != null) {
-                throw new DuplicateEntityException("el correo electronico ya se encuentra asociado a una cuenta");
-            }
 
-            // usuario sin foto primero
-            Usuario nuevoUsuario = new Usuario.Builder()
-                    .nombre(registroDTO.getNombre())
-                    .apellidoPaterno(registroDTO.getApellidoPaterno())
-                    .apellidoMaterno(registroDTO.getApellidoMaterno())
-                    .correoElectronico(registroDTO.getCorreoElectronico())
-                    .contrasena(registroDTO.getContrasena())
-                    .fechaNacimiento(registroDTO.getFechaNacimiento())
-                    .biografia(registroDTO.getBiografia())
-                    .carrera(registroDTO.getCarrera())
-                    .build();
-
-            JpaUtil.beginTransaction();
-            usuarioRepo.insertar(nuevoUsuario);
-            JpaUtil.commitTransaction();
-
-            String urlFotoPerfil;
-            CloudinaryUtil cloudinary = CloudinaryUtil.getInstance();
-            if (registroDTO.getRutaFotoTemporal() != null && !registroDTO.getRutaFotoTemporal().isEmpty()) {
-                try {
-                    urlFotoPerfil = cloudinary.subirFotoPerfil(registroDTO.getRutaFotoTemporal(), nuevoUsuario.getIdUsuario());
-                } catch (IOException e) {
-                    urlFotoPerfil = cloudinary.obtenerUrlFotoDefault();
-                }
+            // la foto se sube despues, mientras tanto se usa la de por defecto; se
+            // copia antes de la transaccion para no tenerla abierta durante la copia
+            boolean tieneFoto = registroDTO.getRutaFotoTemporal() != null && !registroDTO.getRutaFotoTemporal().isEmpty();
+            ISubidaFotosService subidas = SubidaFotosService.getInstance();
+            String rutaPendiente = tieneFoto ? subidas.copiarAPendientes(registroDTO.getRutaFotoTemporal()) : null;
+
+            Usuario nuevoUsuario;
+            try {
+                nuevoUsuario = transacciones.ejecutar("registrarUsuario", em -> {
+                    UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+
+                    Usuario usuarioExistente = usuarioRepo.buscarPorCorreo(registroDTO.getCorreoElectronico());
+                    if (usuarioExistente != null) {
+                        throw new DuplicateEntityException("el correo electronico ya se encuentra asociado a una cuenta");
+                    }
+
+                    Usuario usuario = new Usuario.Builder()
+                            .nombre(registroDTO.getNombre())
+                            .apellidoPaterno(registroDTO.getApellidoPaterno())
+                            .apellidoMaterno(registroDTO.getApellidoMaterno())
+                            .correoElectronico(registroDTO.getCorreoElectronico())
+                            .contrasena(registroDTO.getContrasena())
+                            .fechaNacimiento(registroDTO.getFechaNacimiento())
+                            .biografia(registroDTO.getBiografia())
+                            .carrera(registroDTO.getCarrera())
+                            .urlFotoPerfil(URL_FOTO_DEFAULT)
+                            .estadoFoto(tieneFoto ? EstadoFoto.PENDIENTE : null)
+                            .rutaFotoPendiente(rutaPendiente)
+                            .build();
 
-            } else {
-                urlFotoPerfil = cloudinary.obtenerUrlFotoDefault();
+                    usuarioRepo.insertar(usuario);
+                    return usuario;
+                });
+            } catch (RuntimeException e) {
+                // el usuario no se creo, la copia ya no se va a subir
+                subidas.descartarCopia(rutaPendiente);
+                throw e;
             }
+            ruteo.registrarEscrituraUsuario(nuevoUsuario.getIdUsuario());
 
-            JpaUtil.beginTransaction();
-            nuevoUsuario.setUrlFotoPerfil(urlFotoPerfil);
-            usuarioRepo.actualizar(nuevoUsuario);
-            JpaUtil.commitTransaction();
+            if (tieneFoto) {
+                subidas.encolar(nuevoUsuario.getIdUsuario(), nuevoUsuario.getRutaFotoPendiente());
+            }
             return true;
 
         } catch (DuplicateEntityException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("registrarUsuario", "Error al registrar usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public boolean reestablecerContrasenia(Long idUsuario, String nuevaContrasenia) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idUsuario == null || nuevaContrasenia == null || nuevaContrasenia.trim().isEmpty()) {
                 throw new ServiceException("Los parámetros no pueden ser nulos o vacíos");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            Usuario usuario = usuarioRepo.buscar(idUsuario);
-            if (usuario == null) {
-                throw new EntityNotFoundException("el usuario especificado no existe");
-            }
-
-            JpaUtil.beginTransaction();
-            usuario.setContrasena(nuevaContrasenia);
-            usuarioRepo.actualizar(usuario);
-            JpaUtil.commitTransaction();
+            transacciones.ejecutar("reestablecerContrasenia", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                Usuario usuario = usuarioRepo.buscar(idUsuario);
+                if (usuario == null) {
+                    throw new EntityNotFoundException("el usuario especificado no existe");
+                }
 
+                usuario.setContrasena(nuevaContrasenia);
+                usuarioRepo.actualizar(usuario);
+                return true;
+            });
+            ruteo.registrarEscrituraUsuario(idUsuario);
             return true;
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("reestablecerContrasenia", "error al reestablecer la contrasenia", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public boolean registrarInteraccion(Long idEmisor, Long idReceptor, TipoInteraccion tipo) throws ServiceException {
-        EntityManager em = null;
         try {
             // Validaciones
             if (idEmisor == null || idReceptor == null || tipo == null) {
@@ -185,92 +168,98 @@ public class UsuarioService implements IUsuarioService {
                 throw new ServiceException("No puedes interactuar contigo mismo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            InteraccionRepository interaccionRepo = new InteraccionRepository(em);
-            BloqueoRepository bloqueoRepo = new BloqueoRepository(em);
-            MatchRepository matchRepo = new MatchRepository(em);
-
-            // Verificar que ambos usuarios existan
-            Usuario emisor = usuarioRepo.buscar(idEmisor);
-            Usuario receptor = usuarioRepo.buscar(idReceptor);
-
-            if (emisor == null || receptor == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+            // interaccion, match y chat se escriben juntos al hacer commit
+            Chat nuevoChat = transacciones.ejecutarEnLotes("registrarInteraccion", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                InteraccionRepository interaccionRepo = new InteraccionRepository(em);
+                BloqueoRepository bloqueoRepo = new BloqueoRepository(em);
+                MatchRepository matchRepo = new MatchRepository(em);
 
-            // Verificar que no haya bloqueo entre ellos
-            List<Bloqueo> bloqueos = bloqueoRepo.buscarPorBloqueador(emisor, 100, 0);
-            boolean estaBloqueado = bloqueos.stream()
-                    .anyMatch(b -> b.getUsuarioBloqueado().getIdUsuario().equals(idReceptor));
+                // Verificar que ambos usuarios existan
+                Usuario emisor = usuarioRepo.buscar(idEmisor);
+                Usuario receptor = usuarioRepo.buscar(idReceptor);
 
-            if (estaBloqueado) {
-                throw new ServiceException("No puedes interactuar con un usuario bloqueado");
-            }
-
-            JpaUtil.beginTransaction();
-
-            // Crear la interacción
-            Interaccion nuevaInteraccion = new Interaccion.Builder()
-                    .usuarioEmisor(emisor)
-                    .usuarioReceptor(receptor)
-                    .tipo(tipo)
-                    .build();
-
-            interaccionRepo.insertar(nuevaInteraccion);
-
-            // Si es ME_GUSTA, verificar si hay match
-            if (tipo == TipoInteraccion.ME_GUSTA) {
-                // Buscar si el receptor ya le dio like al emisor
-                List<Interaccion> interaccionesReceptor = interaccionRepo.buscarPorEmisor(receptor, 1000, 0);
-
-                boolean hayMatchMutuo = interaccionesReceptor.stream()
-                        .anyMatch(i -> i.getUsuarioReceptor().getIdUsuario().equals(idEmisor)
-                        && i.getTipo() == TipoInteraccion.ME_GUSTA);
+                if (emisor == null || receptor == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-                if (hayMatchMutuo) {
-                    // Crear el match
-                    Match nuevoMatch = new Match.Builder()
-                            .usuarioA(emisor)
-                            .usuarioB(receptor)
-                            .build();
+                // Verificar que no haya bloqueo entre ellos
+                if (bloqueoRepo.existeBloqueo(idEmisor, idReceptor)) {
+                    throw new ServiceException("No puedes interactuar con un usuario bloqueado");
+                }
 
-                    matchRepo.insertar(nuevoMatch);
+                // Crear la interacción
+                Interaccion nuevaInteraccion = new Interaccion.Builder()
+                        .usuarioEmisor(emisor)
+                        .usuarioReceptor(receptor)
+                        .tipo(tipo)
+                        .build();
 
-                    // Crear el chat automáticamente
-                    ChatRepository chatRepo = new ChatRepository(em);
-                    Chat nuevoChat = new Chat.Builder()
-                            .nombre(emisor.getNombre() + " & " + receptor.getNombre())
-                            .match(nuevoMatch)
-                            .build();
+                interaccionRepo.insertar(nuevaInteraccion);
 
-                    chatRepo.insertar(nuevoChat);
+                // Si es ME_GUSTA, verificar si hay match
+                if (tipo != TipoInteraccion.ME_GUSTA
+                        || !interaccionRepo.existeInteraccion(idReceptor, idEmisor, TipoInteraccion.ME_GUSTA)) {
+                    return null;
                 }
-            }
 
-            JpaUtil.commitTransaction();
+                // Crear el match
+                Match nuevoMatch = new Match.Builder()
+                        .usuarioA(emisor)
+                        .usuarioB(receptor)
+                        .build();
+
+                matchRepo.insertar(nuevoMatch);
+
+                // Crear el chat automáticamente
+                ChatRepository chatRepo = new ChatRepository(em);
+                Chat chat = new Chat.Builder()
+                        .nombre(emisor.getNombre() + " & " + receptor.getNombre())
+                        .match(nuevoMatch)
+                        .build();
+
+                chatRepo.insertar(chat);
+                // Usuario.chats es el lado dueño, es el que escribe usuario_chat
+                emisor.getChats().add(chat);
+                receptor.getChats().add(chat);
+                chat.getParticipantes().add(emisor);
+                chat.getParticipantes().add(receptor);
+                return chat;
+            });
+            ruteo.registrarEscrituraUsuario(idEmisor);
+
+            if (nuevoChat != null) {
+                // el receptor tambien tiene un match nuevo que la replica puede no tener
+                ruteo.registrarEscrituraUsuario(idReceptor);
+                ruteo.registrarEscrituraChat(nuevoChat.getIdChat());
+                // se avisa a los dos usuarios para que se suscriban al chat nuevo
+                Long idMatch = nuevoChat.getMatch().getIdMatch();
+                publicarMatch(idEmisor, EventoChat.nuevoMatch(nuevoChat.getIdChat(), idMatch, idReceptor));
+                publicarMatch(idReceptor, EventoChat.nuevoMatch(nuevoChat.getIdChat(), idMatch, idEmisor));
+            }
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("registrarInteraccion", "Error al registrar interacción", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
+        }
+    }
+
+    /**
+     * publica el aviso de match despues del commit, si falla el match ya
+     * quedo guardado y el cliente lo vera al recargar
+     */
+    private void publicarMatch(Long idUsuario, EventoChat evento) {
+        try {
+            BusEventosChat.getInstance().publicarAUsuario(idUsuario, evento);
+        } catch (RuntimeException e) {
+            System.err.println("No se pudo publicar el match al usuario " + idUsuario + ": " + e.getMessage());
         }
     }
 
     @Override
     public boolean bloquearUsuario(Long idEmisor, Long idReceptor) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idEmisor == null || idReceptor == null) {
                 throw new ServiceException("Los IDs no pueden ser nulos");
@@ -280,371 +269,314 @@ public class UsuarioService implements IUsuarioService {
                 throw new ServiceException("No puedes bloquearte a ti mismo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            BloqueoRepository bloqueoRepo = new BloqueoRepository(em);
+            transacciones.ejecutar("bloquearUsuario", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+                BloqueoRepository bloqueoRepo = new BloqueoRepository(em);
 
-            Usuario emisor = usuarioRepo.buscar(idEmisor);
-            Usuario receptor = usuarioRepo.buscar(idReceptor);
-
-            if (emisor == null || receptor == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+                Usuario emisor = usuarioRepo.buscar(idEmisor);
+                Usuario receptor = usuarioRepo.buscar(idReceptor);
 
-            // Verificar si ya existe el bloqueo
-            List<Bloqueo> bloqueosExistentes = bloqueoRepo.buscarPorBloqueador(emisor, 1000, 0);
-            boolean yaEstaBloqueado = bloqueosExistentes.stream()
-                    .anyMatch(b -> b.getUsuarioBloqueado().getIdUsuario().equals(idReceptor));
-
-            if (yaEstaBloqueado) {
-                throw new ServiceException("El usuario ya está bloqueado");
-            }
-
-            JpaUtil.beginTransaction();
+                if (emisor == null || receptor == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-            Bloqueo nuevoBloqueo = new Bloqueo.Builder()
-                    .usuarioBloqueador(emisor)
-                    .usuarioBloqueado(receptor)
-                    .build();
+                // Verificar si ya existe el bloqueo
+                if (bloqueoRepo.existeBloqueo(idEmisor, idReceptor)) {
+                    throw new ServiceException("El usuario ya está bloqueado");
+                }
 
-            bloqueoRepo.insertar(nuevoBloqueo);
-            JpaUtil.commitTransaction();
+                Bloqueo nuevoBloqueo = new Bloqueo.Builder()
+                        .usuarioBloqueador(emisor)
+                        .usuarioBloqueado(receptor)
+                        .build();
 
+                bloqueoRepo.insertar(nuevoBloqueo);
+                return true;
+            });
+            ruteo.registrarEscrituraUsuario(idEmisor);
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("bloquearUsuario", "Error al bloquear usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public boolean actualizarUsuario(ActualizarUsuarioDTO actualizarDTO) throws ServiceException {
-        EntityManager em = null;
         try {
             validarActualizarUsuarioDTO(actualizarDTO);
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            transacciones.ejecutar("actualizarUsuario", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            Usuario usuario = usuarioRepo.buscar(actualizarDTO.getIdUsuario());
-            if (usuario == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
-
-            JpaUtil.beginTransaction();
+                Usuario usuario = usuarioRepo.buscar(actualizarDTO.getIdUsuario());
+                if (usuario == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-            // Actualizar solo los campos que vienen en el DTO
-            if (actualizarDTO.getNombre() != null) {
-                usuario.setNombre(actualizarDTO.getNombre());
-            }
-            if (actualizarDTO.getApellidoPaterno() != null) {
-                usuario.setApellidoPaterno(actualizarDTO.getApellidoPaterno());
-            }
-            if (actualizarDTO.getApellidoMaterno() != null) {
-                usuario.setApellidoMaterno(actualizarDTO.getApellidoMaterno());
-            }
-            if (actualizarDTO.getCarrera() != null) {
-                usuario.setCarrera(actualizarDTO.getCarrera());
-            }
-            if (actualizarDTO.getBiografia() != null) {
-                usuario.setBiografia(actualizarDTO.getBiografia());
-            }
-            if (actualizarDTO.getFechaNacimiento() != null) {
-                usuario.setFechaNacimiento(actualizarDTO.getFechaNacimiento());
-            }
+                // Actualizar solo los campos que vienen en el DTO
+                if (actualizarDTO.getNombre() != null) {
+                    usuario.setNombre(actualizarDTO.getNombre());
+                }
+                if (actualizarDTO.getApellidoPaterno() != null) {
+                    usuario.setApellidoPaterno(actualizarDTO.getApellidoPaterno());
+                }
+                if (actualizarDTO.getApellidoMaterno() != null) {
+                    usuario.setApellidoMaterno(actualizarDTO.getApellidoMaterno());
+                }
+                if (actualizarDTO.getCarrera() != null) {
+                    usuario.setCarrera(actualizarDTO.getCarrera());
+                }
+                if (actualizarDTO.getBiografia() != null) {
+                    usuario.setBiografia(actualizarDTO.getBiografia());
+                }
+                if (actualizarDTO.getFechaNacimiento() != null) {
+                    usuario.setFechaNacimiento(actualizarDTO.getFechaNacimiento());
+                }
 
-            usuarioRepo.actualizar(usuario);
-            JpaUtil.commitTransaction();
+                return usuarioRepo.actualizar(usuario);
+            });
+            ruteo.registrarEscrituraUsuario(actualizarDTO.getIdUsuario());
+            CachePerfiles.getInstance().invalidar(actualizarDTO.getIdUsuario());
 
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("actualizarUsuario", "Error al actualizar usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public boolean eliminarUsuario(Long id) throws ServiceException {
-        EntityManager em = null;
         try {
             if (id == null) {
                 throw new ServiceException("El ID no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            transacciones.ejecutar("eliminarUsuario", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            Usuario usuario = usuarioRepo.buscar(id);
-            if (usuario == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+                Usuario usuario = usuarioRepo.buscar(id);
+                if (usuario == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-            JpaUtil.beginTransaction();
-            usuarioRepo.eliminar(id);
-            JpaUtil.commitTransaction();
+                return usuarioRepo.eliminar(id);
+            });
+            ruteo.registrarEscrituraUsuario(id);
+            CachePerfiles.getInstance().invalidar(id);
 
             return true;
 
         } catch (EntityNotFoundException | ServiceException e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw e;
         } catch (Exception e) {
-            if (em != null) {
-                JpaUtil.rollbackTransaction();
-            }
             throw new ServiceException("eliminarUsuario", "Error al eliminar usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public UsuarioPerfilDTO buscarPorId(Long id) throws ServiceException {
-        EntityManager em = null;
         try {
             if (id == null) {
                 throw new ServiceException("El ID no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            return transacciones.ejecutarLectura("buscarPorId", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            Usuario usuario = usuarioRepo.buscar(id);
-            if (usuario == null) {
-                return null;
-            }
-
-            return convertirAUsuarioPerfilDTO(usuario);
+                return CachePerfiles.getInstance().obtener(id, usuarioRepo::buscar);
+            });
 
         } catch (Exception e) {
             throw new ServiceException("buscarPorId", "Error al buscar usuario", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public UsuarioPerfilDTO buscarPorCorreo(String correo) throws ServiceException {
-        EntityManager em = null;
         try {
             if (correo == null || correo.trim().isEmpty()) {
                 throw new ServiceException("El correo no puede ser nulo o vacío");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-
-            Usuario usuario = usuarioRepo.buscarPorCorreo(correo);
-            if (usuario == null) {
-                return null;
+            // la busqueda no dice quien la hace, asi que va a la replica y se
+            // repite en la primaria si la replica no lo tiene (registro
+            // reciente) o si el usuario encontrado acaba de cambiar
+            Usuario usuario = transacciones.ejecutarLectura("buscarPorCorreo", JpaUtil.hasReplicas(),
+                    em -> new UsuarioRepository(em).buscarPorCorreo(correo));
+            if (JpaUtil.hasReplicas()
+                    && (usuario == null || !ruteo.puedeLeerDeReplicaUsuario(usuario.getIdUsuario()))) {
+                usuario = transacciones.ejecutarLectura("buscarPorCorreo",
+                        em -> new UsuarioRepository(em).buscarPorCorreo(correo));
             }
 
-            return convertirAUsuarioPerfilDTO(usuario);
+            return usuario != null ? convertirAUsuarioPerfilDTO(usuario) : null;
 
         } catch (Exception e) {
             throw new ServiceException("buscarPorCorreo", "Error al buscar usuario por correo", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public List<UsuarioPerfilDTO> listarUsuarios() throws ServiceException {
-        EntityManager em = null;
         try {
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-
-            List<Usuario> usuarios = usuarioRepo.listar(1000, 0);
+            return transacciones.ejecutarLectura("listarUsuarios", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            return usuarios.stream()
-                    .map(this::convertirAUsuarioPerfilDTO)
-                    .collect(Collectors.toList());
+                // proyeccion directa a perfiles, la lista no muestra la biografia
+                return usuarioRepo.listarPerfiles(1000, 0);
+            });
 
         } catch (Exception e) {
             throw new ServiceException("listarUsuarios", "Error al listar usuarios", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public List<UsuarioPerfilDTO> buscarPorNombreCompleto(String nombre, String apellidoPaterno) throws ServiceException {
-        EntityManager em = null;
         try {
             if (nombre == null || apellidoPaterno == null) {
                 throw new ServiceException("Los parámetros no pueden ser nulos");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            return transacciones.ejecutarLectura("buscarPorNombreCompleto", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            List<Usuario> usuarios = usuarioRepo.buscarPorNombreCompleto(nombre, apellidoPaterno, 100, 0);
+                List<Usuario> usuarios = usuarioRepo.buscarPorNombreCompleto(nombre, apellidoPaterno, 100, 0);
 
-            return usuarios.stream()
-                    .map(this::convertirAUsuarioPerfilDTO)
-                    .collect(Collectors.toList());
+                return usuarios.stream()
+                        .map(this::convertirAUsuarioPerfilDTO)
+                        .collect(Collectors.toList());
+            });
 
         } catch (Exception e) {
             throw new ServiceException("buscarPorNombreCompleto", "Error al buscar por nombre", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public List<UsuarioPerfilDTO> filtrarUsuariosPorNombre(String nombre) throws ServiceException {
-        EntityManager em = null;
         try {
             if (nombre == null || nombre.trim().isEmpty()) {
                 throw new ServiceException("El nombre no puede ser nulo o vacío");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            return transacciones.ejecutarLectura("filtrarUsuariosPorNombre", em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            // Buscar por nombre (esto podría mejorarse con una query LIKE en el repository)
-            List<Usuario> todosUsuarios = usuarioRepo.listar(1000, 0);
+                // Buscar por nombre (esto podría mejorarse con una query LIKE en el repository)
+                List<UsuarioPerfilDTO> todosUsuarios = usuarioRepo.listarPerfiles(1000, 0);
 
-            List<Usuario> usuariosFiltrados = todosUsuarios.stream()
-                    .filter(u -> u.getNombre().toLowerCase().contains(nombre.toLowerCase()))
-                    .collect(Collectors.toList());
-
-            return usuariosFiltrados.stream()
-                    .map(this::convertirAUsuarioPerfilDTO)
-                    .collect(Collectors.toList());
+                return todosUsuarios.stream()
+                        .filter(u -> u.getNombre().toLowerCase().contains(nombre.toLowerCase()))
+                        .collect(Collectors.toList());
+            });
 
         } catch (Exception e) {
             throw new ServiceException("filtrarUsuariosPorNombre", "Error al filtrar usuarios", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public List<UsuarioPerfilDTO> mostrarPretendientes(Long idUsuarioActual) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idUsuarioActual == null) {
                 throw new ServiceException("El ID del usuario no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-
-            Usuario usuarioActual = usuarioRepo.buscar(idUsuarioActual);
-            if (usuarioActual == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+            return transacciones.ejecutarLectura("mostrarPretendientes",
+                    ruteo.puedeLeerDeReplicaUsuario(idUsuarioActual), em -> {
+                UsuarioRepository usuarioRepo = new UsuarioRepository(em);
 
-            List<Usuario> pretendientes = usuarioRepo.buscarPretendientes(idUsuarioActual, 50, 0);
+                Usuario usuarioActual = usuarioRepo.buscar(idUsuarioActual);
+                if (usuarioActual == null) {
+                    throw new EntityNotFoundException("Usuario no encontrado");
+                }
 
-            return pretendientes.stream()
-                    .map(this::convertirAUsuarioPerfilDTO)
-                    .collect(Collectors.toList());
+                return usuarioRepo.muestrearPerfilesPretendientes(idUsuarioActual, 50);
+            });
 
         } catch (EntityNotFoundException | ServiceException e) {
             throw e;
         } catch (Exception e) {
             throw new ServiceException("mostrarPretendientes","Error al obtener pretendientes", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
         }
     }
 
     @Override
     public List<MatchDTO> mostrarMatches(Long idUsuario) throws ServiceException {
-        EntityManager em = null;
         try {
             if (idUsuario == null) {
                 throw new ServiceException("El ID del usuario no puede ser nulo");
             }
 
-            em = JpaUtil.getEntityManager();
-            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
-            MatchRepository matchRepo = new MatchRepository(em);
+            return transacciones.ejecutarLectura("mostrarMatches",
+                    ruteo.puedeLeerDeReplicaUsuario(idUsuario), em -> {
+                MatchRepository matchRepo = new MatchRepository(em);
 
-            Usuario usuario = usuarioRepo.buscar(idUsuario);
-            if (usuario == null) {
-                throw new EntityNotFoundException("Usuario no encontrado");
-            }
+                // una consulta por pagina, casi siempre cabe todo en la primera
+                List<MatchDTO> resultado = matchRepo.buscarPorUsuario(idUsuario, null, null, PAGINA_MATCHES);
+                List<MatchDTO> pagina = resultado;
+                while (pagina.size() == PAGINA_MATCHES) {
+                    MatchDTO ultimo = pagina.get(pagina.size() - 1);
+                    pagina = matchRepo.buscarPorUsuario(idUsuario, ultimo.getFechaMatch(), ultimo.getIdMatch(), PAGINA_MATCHES);
+                    resultado.addAll(pagina);
+                }
 
-            // Buscar matches donde el usuario es usuarioA o usuarioB
-            List<Match> matchesA = matchRepo.buscarPorUsuarioA(usuario, 1000, 0);
-            List<Match> matchesB = matchRepo.buscarPorUsuarioB(usuario, 1000, 0);
-
-            List<MatchDTO> resultado = new ArrayList<>();
-
-            // Convertir matchesA
-            for (Match match : matchesA) {
-                MatchDTO dto = new MatchDTO();
-                dto.setIdMatch(match.getIdMatch());
-                dto.setUsuarioA(convertirAUsuarioPerfilDTO(match.getUsuarioA()));
-                dto.setUsuarioB(convertirAUsuarioPerfilDTO(match.getUsuarioB()));
-                dto.setFechaMatch(match.getFechaMatch());
-                dto.setIdChat(match.getChat() != null ? match.getChat().getIdChat() : null);
-                resultado.add(dto);
-            }
+                if (resultado.isEmpty()) {
+                    validarUsuarioExiste(new UsuarioRepository(em), idUsuario);
+                }
+                return resultado;
+            });
 
-            // Convertir matchesB
-            for (Match match : matchesB) {
-                MatchDTO dto = new MatchDTO();
-                dto.setIdMatch(match.getIdMatch());
-                dto.setUsuarioA(convertirAUsuarioPerfilDTO(match.getUsuarioA()));
-                dto.setUsuarioB(convertirAUsuarioPerfilDTO(match.getUsuarioB()));
-                dto.setFechaMatch(match.getFechaMatch());
-                dto.setIdChat(match.getChat() != null ? match.getChat().getIdChat() : null);
-                resultado.add(dto);
+        } catch (EntityNotFoundException | ServiceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServiceException("mostrarMatches", "Error al obtener matches", e);
+        }
+    }
+
+    @Override
+    public List<MatchDTO> mostrarMatchesAntesDe(Long idUsuario, LocalDateTime fechaMatch, Long idMatch, int limit) throws ServiceException {
+        try {
+            if (idUsuario == null) {
+                throw new ServiceException("El ID del usuario no puede ser nulo");
+            }
+            if (limit <= 0) {
+                throw new ServiceException("El limite debe ser mayor a cero");
             }
 
-            return resultado;
+            return transacciones.ejecutarLectura("mostrarMatchesAntesDe",
+                    ruteo.puedeLeerDeReplicaUsuario(idUsuario), em -> {
+                List<MatchDTO> pagina = new MatchRepository(em)
+                        .buscarPorUsuario(idUsuario, fechaMatch, idMatch, Math.min(limit, PAGINA_MATCHES));
 
+                // solo la primera pagina vacia puede ser por un usuario que no existe
+                if (pagina.isEmpty() && fechaMatch == null) {
+                    validarUsuarioExiste(new UsuarioRepository(em), idUsuario);
+                }
+                return pagina;
+            });
+
+        } catch (EntityNotFoundException | ServiceException e) {
+            throw e;
         } catch (Exception e) {
-            throw new ServiceException("mostrarMatches", "Error al obtener matches", e);
-        } finally {
-            if (em != null) {
-                JpaUtil.closeEntityManager();
-            }
+            throw new ServiceException("mostrarMatchesAntesDe", "Error al obtener matches", e);
+        }
+    }
+
+    /**
+     * el usuario solo se busca cuando la consulta principal no regreso nada,
+     * con resultados ya se sabe que existe
+     */
+    private void validarUsuarioExiste(UsuarioRepository usuarioRepo, Long idUsuario) {
+        if (usuarioRepo.buscar(idUsuario) == null) {
+            throw new EntityNotFoundException("Usuario no encontrado");
         }
     }
 
@@ -698,27 +630,7 @@ public class UsuarioService implements IUsuarioService {
     }
 
     private UsuarioPerfilDTO convertirAUsuarioPerfilDTO(Usuario usuario) {
-        if (usuario == null) {
-            return null;
-        }
-
-        UsuarioPerfilDTO dto = new UsuarioPerfilDTO();
-        dto.setIdUsuario(usuario.getIdUsuario());
-        dto.setNombre(usuario.getNombre());
-        dto.setApellidoPaterno(usuario.getApellidoPaterno());
-        dto.setApellidoMaterno(usuario.getApellidoMaterno());
-        dto.setCorreoElectronico(usuario.getCorreoElectronico());
-        dto.setCarrera(usuario.getCarrera());
-        dto.setBiografia(usuario.getBiografia());
-        dto.setUrlFotoPerfil(usuario.getUrlFotoPerfil());
-        dto.setGenero(usuario.getGenero() != null ? usuario.getGenero().name() : null);
-        dto.setFechaNacimiento(usuario.getFechaNacimiento());
-
-        if (usuario.getFechaNacimiento() != null) {
-            dto.setEdad(calcularEdad(usuario.getFechaNacimiento()));
-        }
-
-        return dto;
+        return CachePerfiles.getInstance().obtener(usuario);
     }
 
     private int calcularEdad(LocalDate fechaNacimiento) {
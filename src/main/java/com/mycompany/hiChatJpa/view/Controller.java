@@ -232,8 +232,12 @@ public class Controller {
      * @param usuario
      */
     private void guardarUsuario(RegistroDTO usuario) {
-        USUARIO_SERVICE.registrarUsuario(usuario);
-        System.out.println("usuario agregado " + usuario.getNombre());
+        EjecutorUI.tarea("registrarUsuario", () -> USUARIO_SERVICE.registrarUsuario(usuario))
+                .grupo(SIGNIN_VIEW)
+                .clave("registrarUsuario:" + usuario.getCorreoElectronico())
+                .alTerminar(r -> System.out.println("usuario agregado " + usuario.getNombre()))
+                .alFallar(e -> javax.swing.JOptionPane.showMessageDialog(mainFrame, "Error al registrar usuario: " + e.getMessage(), "Error", javax.swing.JOptionPane.ERROR_MESSAGE))
+                .ejecutar();
     }
 
     /**
@@ -242,26 +246,45 @@ public class Controller {
      * @param usuario
      */
     private void verificarUsuario(LoginDTO usuario) {
-        try {
-            usuarioPerfil = USUARIO_SERVICE.iniciarSesion(usuario);
-            System.out.println("Usuario loggeado: " + usuarioPerfil.getNombre());
-            if (homePane != null) {
-                contentPanel.remove(homePane);
-            }
-            homePane = new HomePane(this, usuarioPerfil);
-            contentPanel.add(homePane, HOME_VIEW);
-            contentPanel.revalidate();
-            contentPanel.repaint();
-
-            cardLayout.show(contentPanel, HOME_VIEW);
-        } catch (Exception e) {
-            javax.swing.JOptionPane.showMessageDialog(mainFrame, "Error al iniciar sesión: " + e.getMessage(), "Error", javax.swing.JOptionPane.ERROR_MESSAGE);
+        EjecutorUI.tarea("iniciarSesion", () -> USUARIO_SERVICE.iniciarSesion(usuario))
+                .grupo(LOGIN_VIEW)
+                .clave("iniciarSesion:" + usuario.getCorreoElectronico())
+                .interrumpible()
+                .alTerminar(this::mostrarHome)
+                .alFallar(e -> javax.swing.JOptionPane.showMessageDialog(mainFrame, "Error al iniciar sesión: " + e.getMessage(), "Error", javax.swing.JOptionPane.ERROR_MESSAGE))
+                .ejecutar();
+    }
+
+    /**
+     * metodo que muestra el home con el usuario que inicio sesion
+     *
+     * @param perfil
+     */
+    private void mostrarHome(UsuarioPerfilDTO perfil) {
+        usuarioPerfil = perfil;
+        System.out.println("Usuario loggeado: " + usuarioPerfil.getNombre());
+        if (homePane != null) {
+            contentPanel.remove(homePane);
         }
+        homePane = new HomePane(this, usuarioPerfil);
+        contentPanel.add(homePane, HOME_VIEW);
+        contentPanel.revalidate();
+        contentPanel.repaint();
+
+        cardLayout.show(contentPanel, HOME_VIEW);
     }
 
-    private void cambiarContrasenia(RecuperarContraseniaDTO recuperarConstrasenia) {         
-        UsuarioPerfilDTO usuario = USUARIO_SERVICE.buscarPorCorreo(recuperarConstrasenia.getCorreoElectronico()); 
-        USUARIO_SERVICE.reestablecerContrasenia(usuario.getIdUsuario(), recuperarContrasenia.getNuevaConstrasenia());
+    private void cambiarContrasenia(RecuperarContraseniaDTO recuperarConstrasenia) {
+        String correo = recuperarConstrasenia.getCorreoElectronico();
+        String nuevaContrasenia = recuperarConstrasenia.getNuevaConstrasenia();
+        EjecutorUI.tarea("cambiarContrasenia", () -> {
+            UsuarioPerfilDTO usuario = USUARIO_SERVICE.buscarPorCorreo(correo);
+            return USUARIO_SERVICE.reestablecerContrasenia(usuario.getIdUsuario(), nuevaContrasenia);
+        })
+                .grupo(RSPSW_VIEW)
+                .clave("cambiarContrasenia:" + correo)
+                .alFallar(e -> javax.swing.JOptionPane.showMessageDialog(mainFrame, "Error al cambiar la contraseña: " + e.getMessage(), "Error", javax.swing.JOptionPane.ERROR_MESSAGE))
+                .ejecutar();
     }
     
     // metodos de utileria
@@ -277,6 +300,8 @@ public class Controller {
      * metodo que permite cerrar la sesion actual y limpia los datos
      */
     public void cerrarSesion() {
+        // lo que siga pendiente de la sesion ya no debe llegar a la vista
+        EjecutorUI.getInstance().cancelarGrupo(HOME_VIEW);
         if (homePane != null) {
             contentPanel.remove(homePane);
             homePane = null;
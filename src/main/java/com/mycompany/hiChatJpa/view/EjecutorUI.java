@@ -0,0 +1,435 @@
+package com.mycompany.hiChatJpa.view;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+/**
+ * Ejecutor de las llamadas a los services desde las vistas. Cada llamada corre
+ * en un hilo virtual y su resultado se entrega en el hilo de la interfaz.
+ * Las tareas pertenecen a un grupo (normalmente la vista que las lanzo) para
+ * poder cancelarlas al salir de ella, y las tareas con la misma clave que
+ * siguen en curso se unen en una sola llamada.
+ *
+ * @author gatog
+ */
+public class EjecutorUI {
+
+    private static final EjecutorUI INSTANCIA = new EjecutorUI();
+
+    private final ExecutorService hilos = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ui-tarea-", 0).factory());
+    private final Map<String, Ejecucion<?>> enCurso = new HashMap<>();
+    private final Map<String, Set<Suscripcion<?>>> porGrupo = new ConcurrentHashMap<>();
+    private final Map<String, MetricasOperacion> metricas = new ConcurrentHashMap<>();
+
+    private EjecutorUI() {
+    }
+
+    public static EjecutorUI getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * empieza a construir una tarea
+     *
+     * @param <T> tipo del resultado
+     * @param operacion nombre con el que se agrupan las metricas
+     * @param llamada llamada al service
+     * @return builder de la tarea
+     */
+    public static <T> Tarea<T> tarea(String operacion, Callable<T> llamada) {
+        return new Tarea<>(operacion, llamada);
+    }
+
+    /**
+     * cancela todas las tareas del grupo, sus callbacks ya no se ejecutan y
+     * las llamadas interrumpibles que nadie mas espera se interrumpen
+     *
+     * @param grupo grupo a cancelar
+     */
+    public void cancelarGrupo(String grupo) {
+        Set<Suscripcion<?>> suscripciones = porGrupo.remove(grupo);
+        if (suscripciones != null) {
+            suscripciones.forEach(Suscripcion::cancelar);
+        }
+    }
+
+    /**
+     * @return metricas por operacion, tiempo de la llamada fuera de la
+     * interfaz y tiempo que el callback ocupo el hilo de la interfaz
+     */
+    public Map<String, Metricas> getMetricas() {
+        Map<String, Metricas> resultado = new HashMap<>();
+        metricas.forEach((operacion, m) -> resultado.put(operacion, m.snapshot()));
+        return resultado;
+    }
+
+    private <T> Suscripcion<T> enviar(Tarea<T> tarea) {
+        MetricasOperacion m = metricas.computeIfAbsent(tarea.operacion, k -> new MetricasOperacion());
+        Suscripcion<T> suscripcion = new Suscripcion<>(tarea);
+        porGrupo.computeIfAbsent(tarea.grupo, k -> ConcurrentHashMap.newKeySet()).add(suscripcion);
+
+        synchronized (enCurso) {
+            if (tarea.clave != null) {
+                @SuppressWarnings("unchecked")
+                Ejecucion<T> existente = (Ejecucion<T>) enCurso.get(tarea.clave);
+                if (existente != null && existente.agregar(suscripcion)) {
+                    m.coalescidas.increment();
+                    return suscripcion;
+                }
+            }
+
+            Ejecucion<T> ejecucion = new Ejecucion<>(tarea, suscripcion);
+            if (tarea.clave != null) {
+                enCurso.put(tarea.clave, ejecucion);
+            }
+            ejecucion.future = hilos.submit(() -> correr(ejecucion, m));
+        }
+        return suscripcion;
+    }
+
+    private <T> void correr(Ejecucion<T> ejecucion, MetricasOperacion m) {
+        long inicio = System.nanoTime();
+        T resultado = null;
+        Throwable error = null;
+        try {
+            resultado = ejecucion.tarea.llamada.call();
+        } catch (Throwable e) {
+            error = e;
+        }
+        long nanos = System.nanoTime() - inicio;
+        m.registrarEjecucion(nanos, error != null);
+
+        synchronized (enCurso) {
+            if (ejecucion.tarea.clave != null) {
+                enCurso.remove(ejecucion.tarea.clave, ejecucion);
+            }
+        }
+        List<Suscripcion<T>> suscripciones = ejecucion.terminar();
+
+        T valor = resultado;
+        Throwable falla = error;
+        SwingUtilities.invokeLater(() -> {
+            long inicioEdt = System.nanoTime();
+            for (Suscripcion<T> s : suscripciones) {
+                s.entregar(valor, falla, m);
+            }
+            m.registrarEdt(System.nanoTime() - inicioEdt);
+        });
+    }
+
+    /**
+     * builder de una tarea de la interfaz
+     *
+     * @param <T> tipo del resultado
+     */
+    public static class Tarea<T> {
+
+        private final String operacion;
+        private final Callable<T> llamada;
+        private String grupo = "GLOBAL";
+        private String clave;
+        private boolean interrumpible;
+        private Consumer<T> alTerminar = r -> {
+        };
+        private Consumer<Throwable> alFallar = e -> System.err.println("Error en tarea de interfaz: " + e.getMessage());
+
+        private Tarea(String operacion, Callable<T> llamada) {
+            this.operacion = operacion;
+            this.llamada = llamada;
+        }
+
+        /**
+         * @param grupo grupo con el que se cancela la tarea
+         */
+        public Tarea<T> grupo(String grupo) {
+            this.grupo = grupo;
+            return this;
+        }
+
+        /**
+         * @param clave si ya hay una tarea en curso con la misma clave se
+         * reutiliza su resultado en lugar de llamar otra vez al service
+         */
+        public Tarea<T> clave(String clave) {
+            this.clave = clave;
+            return this;
+        }
+
+        /**
+         * marca la tarea como de solo lectura, al cancelarse se interrumpe el
+         * hilo. Las escrituras no deben ser interrumpibles.
+         */
+        public Tarea<T> interrumpible() {
+            this.interrumpible = true;
+            return this;
+        }
+
+        /**
+         * @param alTerminar callback que recibe el resultado en el hilo de la
+         * interfaz
+         */
+        public Tarea<T> alTerminar(Consumer<T> alTerminar) {
+            this.alTerminar = alTerminar;
+            return this;
+        }
+
+        /**
+         * @param alFallar callback que recibe el error en el hilo de la
+         * interfaz
+         */
+        public Tarea<T> alFallar(Consumer<Throwable> alFallar) {
+            this.alFallar = alFallar;
+            return this;
+        }
+
+        /**
+         * envia la tarea al ejecutor
+         *
+         * @return suscripcion que permite cancelar solo esta tarea
+         */
+        public Suscripcion<T> ejecutar() {
+            return INSTANCIA.enviar(this);
+        }
+    }
+
+    /**
+     * interes de una vista en el resultado de una ejecucion
+     *
+     * @param <T> tipo del resultado
+     */
+    public static class Suscripcion<T> {
+
+        private final Tarea<T> tarea;
+        private volatile boolean cancelada;
+        private Ejecucion<T> ejecucion;
+
+        private Suscripcion(Tarea<T> tarea) {
+            this.tarea = tarea;
+        }
+
+        public void cancelar() {
+            cancelada = true;
+            Ejecucion<T> e;
+            synchronized (this) {
+                e = ejecucion;
+            }
+            if (e != null) {
+                e.revisarCancelacion();
+            }
+            Set<Suscripcion<?>> grupo = INSTANCIA.porGrupo.get(tarea.grupo);
+            if (grupo != null) {
+                grupo.remove(this);
+            }
+        }
+
+        public boolean isCancelada() {
+            return cancelada;
+        }
+
+        private synchronized void asignar(Ejecucion<T> ejecucion) {
+            this.ejecucion = ejecucion;
+        }
+
+        private void entregar(T resultado, Throwable error, MetricasOperacion m) {
+            Set<Suscripcion<?>> grupo = INSTANCIA.porGrupo.get(tarea.grupo);
+            if (grupo != null) {
+                grupo.remove(this);
+            }
+            if (cancelada) {
+                m.canceladas.increment();
+                return;
+            }
+            if (error != null) {
+                tarea.alFallar.accept(error);
+            } else {
+                tarea.alTerminar.accept(resultado);
+            }
+        }
+    }
+
+    /**
+     * una llamada real al service, puede tener varias suscripciones si se
+     * unieron tareas con la misma clave
+     */
+    private static class Ejecucion<T> {
+
+        private final Tarea<T> tarea;
+        private final List<Suscripcion<T>> suscripciones = new ArrayList<>();
+        private volatile Future<?> future;
+        private boolean terminada;
+
+        private Ejecucion(Tarea<T> tarea, Suscripcion<T> primera) {
+            this.tarea = tarea;
+            suscripciones.add(primera);
+            primera.asignar(this);
+        }
+
+        private synchronized boolean agregar(Suscripcion<T> suscripcion) {
+            if (terminada) {
+                return false;
+            }
+            suscripciones.add(suscripcion);
+            suscripcion.asignar(this);
+            return true;
+        }
+
+        private synchronized List<Suscripcion<T>> terminar() {
+            terminada = true;
+            return new ArrayList<>(suscripciones);
+        }
+
+        private void revisarCancelacion() {
+            synchronized (this) {
+                if (terminada || !tarea.interrumpible) {
+                    return;
+                }
+                for (Suscripcion<T> s : suscripciones) {
+                    if (!s.cancelada) {
+                        return;
+                    }
+                }
+                terminada = true;
+            }
+            if (tarea.clave != null) {
+                synchronized (INSTANCIA.enCurso) {
+                    INSTANCIA.enCurso.remove(tarea.clave, this);
+                }
+            }
+            Future<?> f = future;
+            if (f != null) {
+                f.cancel(true);
+            }
+        }
+    }
+
+    private static class MetricasOperacion {
+
+        private final LongAdder llamadas = new LongAdder();
+        private final LongAdder fallos = new LongAdder();
+        private final LongAdder canceladas = new LongAdder();
+        private final LongAdder coalescidas = new LongAdder();
+        private final LongAdder nanosEjecucion = new LongAdder();
+        private final LongAccumulator maxNanosEjecucion = new LongAccumulator(Long::max, 0);
+        private final LongAdder entregas = new LongAdder();
+        private final LongAdder nanosEdt = new LongAdder();
+        private final LongAccumulator maxNanosEdt = new LongAccumulator(Long::max, 0);
+
+        private void registrarEjecucion(long nanos, boolean fallo) {
+            llamadas.increment();
+            if (fallo) {
+                fallos.increment();
+            }
+            nanosEjecucion.add(nanos);
+            maxNanosEjecucion.accumulate(nanos);
+        }
+
+        private void registrarEdt(long nanos) {
+            entregas.increment();
+            nanosEdt.add(nanos);
+            maxNanosEdt.accumulate(nanos);
+        }
+
+        private Metricas snapshot() {
+            long total = llamadas.sum();
+            long totalEntregas = entregas.sum();
+            return new Metricas(total, fallos.sum(), canceladas.sum(), coalescidas.sum(),
+                    total > 0 ? nanosEjecucion.sum() / total : 0, maxNanosEjecucion.get(),
+                    totalEntregas > 0 ? nanosEdt.sum() / totalEntregas : 0, maxNanosEdt.get());
+        }
+    }
+
+    /**
+     * valores de una operacion en un instante dado
+     */
+    public static class Metricas {
+
+        private final long llamadas;
+        private final long fallos;
+        private final long canceladas;
+        private final long coalescidas;
+        private final long promedioNanosEjecucion;
+        private final long maxNanosEjecucion;
+        private final long promedioNanosEdt;
+        private final long maxNanosEdt;
+
+        private Metricas(long llamadas, long fallos, long canceladas, long coalescidas,
+                long promedioNanosEjecucion, long maxNanosEjecucion, long promedioNanosEdt, long maxNanosEdt) {
+            this.llamadas = llamadas;
+            this.fallos = fallos;
+            this.canceladas = canceladas;
+            this.coalescidas = coalescidas;
+            this.promedioNanosEjecucion = promedioNanosEjecucion;
+            this.maxNanosEjecucion = maxNanosEjecucion;
+            this.promedioNanosEdt = promedioNanosEdt;
+            this.maxNanosEdt = maxNanosEdt;
+        }
+
+        public long getLlamadas() {
+            return llamadas;
+        }
+
+        public long getFallos() {
+            return fallos;
+        }
+
+        public long getCanceladas() {
+            return canceladas;
+        }
+
+        public long getCoalescidas() {
+            return coalescidas;
+        }
+
+        /**
+         * @return tiempo promedio de la llamada al service, es el tiempo que
+         * la interfaz habria estado congelada
+         */
+        public long getPromedioNanosEjecucion() {
+            return promedioNanosEjecucion;
+        }
+
+        public long getMaxNanosEjecucion() {
+            return maxNanosEjecucion;
+        }
+
+        /**
+         * @return tiempo promedio que los callbacks ocuparon el hilo de la
+         * interfaz
+         */
+        public long getPromedioNanosEdt() {
+            return promedioNanosEdt;
+        }
+
+        public long getMaxNanosEdt() {
+            return maxNanosEdt;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasEjecutorUI{"
+                    + "llamadas=" + llamadas
+                    + ", fallos=" + fallos
+                    + ", canceladas=" + canceladas
+                    + ", coalescidas=" + coalescidas
+                    + ", promedioMs=" + TimeUnit.NANOSECONDS.toMillis(promedioNanosEjecucion)
+                    + ", maxMs=" + TimeUnit.NANOSECONDS.toMillis(maxNanosEjecucion)
+                    + ", promedioEdtMicros=" + TimeUnit.NANOSECONDS.toMicros(promedioNanosEdt)
+                    + ", maxEdtMicros=" + TimeUnit.NANOSECONDS.toMicros(maxNanosEdt)
+                    + '}';
+        }
+    }
+}
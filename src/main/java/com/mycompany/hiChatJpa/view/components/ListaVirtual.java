@@ -0,0 +1,261 @@
+package com.mycompany.hiChatJpa.view.components;
+
+import java.awt.Cursor;
+import java.awt.Graphics;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.swing.AbstractListModel;
+import javax.swing.JList;
+import javax.swing.ListSelectionModel;
+
+/**
+ * lista virtualizada para los registros de chats y matches, en lugar de un
+ * panel por registro se usa un solo renderizador que pinta unicamente las filas
+ * visibles. Las filas tienen altura fija para que Swing no mida cada elemento
+ * y los registros nuevos se agregan al final sin reconstruir la lista.
+ *
+ * Se mide el tiempo de cada pintado contra el objetivo de un cuadro a 60 fps.
+ *
+ * @author gatog
+ * @param <T> tipo de registro que se muestra
+ */
+public class ListaVirtual<T> extends JList<T> {
+
+    /**
+     * tiempo maximo de pintado de un cuadro para mantener 60 fps
+     */
+    public static final long OBJETIVO_CUADRO_NANOS = TimeUnit.MILLISECONDS.toNanos(16);
+
+    private final Modelo<T> modelo;
+    private final RenderizadorRegistro<T> renderizador;
+    private Consumer<T> alPresionarBoton;
+
+    // metricas, solo se tocan desde el EDT
+    private long cuadros;
+    private long cuadrosLentos;
+    private long nanosPintado;
+    private long maxNanosPintado;
+    private long ultimoNanosPintado;
+
+    public ListaVirtual(RenderizadorRegistro<T> renderizador) {
+        this(renderizador, new Modelo<>());
+    }
+
+    private ListaVirtual(RenderizadorRegistro<T> renderizador, Modelo<T> modelo) {
+        super(modelo);
+        this.modelo = modelo;
+        this.renderizador = renderizador;
+        setCellRenderer(renderizador);
+        setFixedCellWidth(RenderizadorRegistro.ANCHO);
+        setFixedCellHeight(RenderizadorRegistro.ALTO);
+        setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        setOpaque(false);
+
+        MouseAdapter raton = new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                clicEn(e);
+            }
+
+            @Override
+            public void mouseMoved(MouseEvent e) {
+                int indice = filaEn(e);
+                boolean sobreBoton = indice >= 0
+                        && renderizador.estaSobreBoton(modelo.getElementAt(indice), puntoEnFila(e, indice));
+                setCursor(sobreBoton
+                        ? Cursor.getPredefinedCursor(Cursor.HAND_CURSOR)
+                        : Cursor.getDefaultCursor());
+            }
+        };
+        addMouseListener(raton);
+        addMouseMotionListener(raton);
+    }
+
+    /**
+     * metodo que agrega registros al final de la lista, solo se notifica el
+     * rango nuevo
+     *
+     * @param registros registros a agregar
+     */
+    public void agregar(List<T> registros) {
+        modelo.agregar(registros);
+    }
+
+    /**
+     * metodo que quita todos los registros
+     */
+    public void limpiar() {
+        modelo.limpiar();
+    }
+
+    public int getCantidad() {
+        return modelo.getSize();
+    }
+
+    /**
+     * accion que se ejecuta al presionar el boton pintado en una fila
+     *
+     * @param alPresionarBoton accion que recibe el registro de la fila
+     */
+    public void setAlPresionarBoton(Consumer<T> alPresionarBoton) {
+        this.alPresionarBoton = alPresionarBoton;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        long inicio = System.nanoTime();
+        super.paintComponent(g);
+        long nanos = System.nanoTime() - inicio;
+
+        cuadros++;
+        nanosPintado += nanos;
+        ultimoNanosPintado = nanos;
+        maxNanosPintado = Math.max(maxNanosPintado, nanos);
+        if (nanos > OBJETIVO_CUADRO_NANOS) {
+            cuadrosLentos++;
+        }
+    }
+
+    /**
+     * metodo que devuelve los tiempos de pintado, debe llamarse desde el EDT
+     *
+     * @return Metricas de los cuadros pintados hasta ahora
+     */
+    public Metricas getMetricas() {
+        return new Metricas(modelo.getSize(), cuadros, cuadrosLentos, ultimoNanosPintado,
+                cuadros > 0 ? nanosPintado / cuadros : 0, maxNanosPintado);
+    }
+
+    private void clicEn(MouseEvent e) {
+        int indice = filaEn(e);
+        if (indice < 0 || alPresionarBoton == null) {
+            return;
+        }
+        T registro = modelo.getElementAt(indice);
+        if (renderizador.estaSobreBoton(registro, puntoEnFila(e, indice))) {
+            alPresionarBoton.accept(registro);
+        }
+    }
+
+    /**
+     * locationToIndex devuelve la fila mas cercana aunque el punto este
+     * debajo de la ultima, aqui solo cuenta si cae dentro de la fila
+     */
+    private int filaEn(MouseEvent e) {
+        int indice = locationToIndex(e.getPoint());
+        if (indice < 0) {
+            return -1;
+        }
+        Rectangle celda = getCellBounds(indice, indice);
+        return celda != null && celda.contains(e.getPoint()) ? indice : -1;
+    }
+
+    private Point puntoEnFila(MouseEvent e, int indice) {
+        Rectangle celda = getCellBounds(indice, indice);
+        return new Point(e.getX() - celda.x, e.getY() - celda.y);
+    }
+
+    /**
+     * modelo que solo crece por el final
+     */
+    private static class Modelo<T> extends AbstractListModel<T> {
+
+        private final List<T> registros = new ArrayList<>();
+
+        @Override
+        public int getSize() {
+            return registros.size();
+        }
+
+        @Override
+        public T getElementAt(int index) {
+            return registros.get(index);
+        }
+
+        void agregar(List<T> nuevos) {
+            if (nuevos == null || nuevos.isEmpty()) {
+                return;
+            }
+            int inicio = registros.size();
+            registros.addAll(nuevos);
+            fireIntervalAdded(this, inicio, registros.size() - 1);
+        }
+
+        void limpiar() {
+            int tamanio = registros.size();
+            if (tamanio == 0) {
+                return;
+            }
+            registros.clear();
+            fireIntervalRemoved(this, 0, tamanio - 1);
+        }
+    }
+
+    /**
+     * tiempos de pintado de la lista en un instante dado
+     */
+    public static class Metricas {
+
+        private final int filas;
+        private final long cuadros;
+        private final long cuadrosLentos;
+        private final long ultimoNanos;
+        private final long promedioNanos;
+        private final long maxNanos;
+
+        public Metricas(int filas, long cuadros, long cuadrosLentos, long ultimoNanos,
+                long promedioNanos, long maxNanos) {
+            this.filas = filas;
+            this.cuadros = cuadros;
+            this.cuadrosLentos = cuadrosLentos;
+            this.ultimoNanos = ultimoNanos;
+            this.promedioNanos = promedioNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public int getFilas() {
+            return filas;
+        }
+
+        public long getCuadros() {
+            return cuadros;
+        }
+
+        /**
+         * @return cuadros que tardaron mas que OBJETIVO_CUADRO_NANOS
+         */
+        public long getCuadrosLentos() {
+            return cuadrosLentos;
+        }
+
+        public long getUltimoNanos() {
+            return ultimoNanos;
+        }
+
+        public long getPromedioNanos() {
+            return promedioNanos;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasListaVirtual{"
+                    + "filas=" + filas
+                    + ", cuadros=" + cuadros
+                    + ", cuadrosLentos=" + cuadrosLentos
+                    + ", ultimoMs=" + ultimoNanos / 1_000_000.0
+                    + ", promedioMs=" + promedioNanos / 1_000_000.0
+                    + ", maxMs=" + maxNanos / 1_000_000.0
+                    + '}';
+        }
+    }
+}
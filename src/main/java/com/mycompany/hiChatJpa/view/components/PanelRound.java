@@ -5,8 +5,11 @@ import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.Shape;
 import java.awt.geom.Area;
+import java.awt.geom.Path2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.geom.RoundRectangle2D;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -57,6 +60,12 @@ public class PanelRound extends JPanel {
     private int roundBottomLeft = 0;
     private int roundBottomRight = 0;
 
+    private static final CacheFormas FORMAS = new CacheFormas();
+
+    // ultima forma usada por este panel
+    private ClaveForma claveActual;
+    private Shape formaActual;
+
     public PanelRound() {
         setOpaque(false);
         setLayout(null);
@@ -115,62 +124,116 @@ public class PanelRound extends JPanel {
         Graphics2D g2 = (Graphics2D) grphcs.create();
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
         g2.setColor(getBackground());
-        Area area = new Area(createRoundTopLeft());
-        if (roundTopRight > 0) {
-            area.intersect(new Area(createRoundTopRight()));
-        }
-        if (roundBottomLeft > 0) {
-            area.intersect(new Area(createRoundBottomLeft()));
-        }
-        if (roundBottomRight > 0) {
-            area.intersect(new Area(createRoundBottomRight()));
-        }
-        g2.fill(area);
+        g2.fill(obtenerForma());
         g2.dispose();
         super.paintComponent(grphcs);
     }
 
-    private Shape createRoundTopLeft() {
+    /**
+     * devuelve la forma redondeada del panel, solo se vuelve a calcular cuando
+     * cambia el tamaño o algun radio y se comparte entre los paneles iguales
+     */
+    private Shape obtenerForma() {
         int width = getWidth();
         int height = getHeight();
-        int roundX = Math.min(width, roundTopLeft);
-        int roundY = Math.min(height, roundTopLeft);
+        ClaveForma clave = claveActual;
+        if (clave == null || clave.width != width || clave.height != height
+                || clave.topLeft != roundTopLeft || clave.topRight != roundTopRight
+                || clave.bottomLeft != roundBottomLeft || clave.bottomRight != roundBottomRight) {
+            clave = new ClaveForma(width, height, roundTopLeft, roundTopRight, roundBottomLeft, roundBottomRight);
+            formaActual = FORMAS.obtener(clave);
+            claveActual = clave;
+        }
+        return formaActual;
+    }
+
+    private static Shape crearForma(ClaveForma clave) {
+        int width = clave.width;
+        int height = clave.height;
+        // sin esquinas redondeadas basta con el rectangulo
+        if (clave.topLeft <= 0 && clave.topRight <= 0 && clave.bottomLeft <= 0 && clave.bottomRight <= 0) {
+            return new Rectangle2D.Double(0, 0, width, height);
+        }
+        Area area = new Area(createRoundTopLeft(width, height, clave.topLeft));
+        if (clave.topRight > 0) {
+            area.intersect(new Area(createRoundTopRight(width, height, clave.topRight)));
+        }
+        if (clave.bottomLeft > 0) {
+            area.intersect(new Area(createRoundBottomLeft(width, height, clave.bottomLeft)));
+        }
+        if (clave.bottomRight > 0) {
+            area.intersect(new Area(createRoundBottomRight(width, height, clave.bottomRight)));
+        }
+        // la forma se comparte, se guarda como trayectoria para que nadie la modifique
+        return new Path2D.Double(area);
+    }
+
+    private static Shape createRoundTopLeft(int width, int height, int round) {
+        int roundX = Math.min(width, round);
+        int roundY = Math.min(height, round);
         Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
         area.add(new Area(new Rectangle2D.Double(roundX / 2, 0, width - roundX / 2, height)));
         area.add(new Area(new Rectangle2D.Double(0, roundY / 2, width, height - roundY / 2)));
         return area;
     }
 
-    private Shape createRoundTopRight() {
-        int width = getWidth();
-        int height = getHeight();
-        int roundX = Math.min(width, roundTopRight);
-        int roundY = Math.min(height, roundTopRight);
+    private static Shape createRoundTopRight(int width, int height, int round) {
+        int roundX = Math.min(width, round);
+        int roundY = Math.min(height, round);
         Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
         area.add(new Area(new Rectangle2D.Double(0, 0, width - roundX / 2, height)));
         area.add(new Area(new Rectangle2D.Double(0, roundY / 2, width, height - roundY / 2)));
         return area;
     }
 
-    private Shape createRoundBottomLeft() {
-        int width = getWidth();
-        int height = getHeight();
-        int roundX = Math.min(width, roundBottomLeft);
-        int roundY = Math.min(height, roundBottomLeft);
+    private static Shape createRoundBottomLeft(int width, int height, int round) {
+        int roundX = Math.min(width, round);
+        int roundY = Math.min(height, round);
         Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
         area.add(new Area(new Rectangle2D.Double(roundX / 2, 0, width - roundX / 2, height)));
         area.add(new Area(new Rectangle2D.Double(0, 0, width, height - roundY / 2)));
         return area;
     }
 
-    private Shape createRoundBottomRight() {
-        int width = getWidth();
-        int height = getHeight();
-        int roundX = Math.min(width, roundBottomRight);
-        int roundY = Math.min(height, roundBottomRight);
+    private static Shape createRoundBottomRight(int width, int height, int round) {
+        int roundX = Math.min(width, round);
+        int roundY = Math.min(height, round);
         Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
         area.add(new Area(new Rectangle2D.Double(0, 0, width - roundX / 2, height)));
         area.add(new Area(new Rectangle2D.Double(0, 0, width, height - roundY / 2)));
         return area;
     }
+
+    /**
+     * tamaño y radios de una forma, los paneles con la misma clave comparten
+     * la misma forma
+     */
+    private record ClaveForma(int width, int height, int topLeft, int topRight, int bottomLeft, int bottomRight) {
+    }
+
+    /**
+     * formas calculadas, acotadas para que redimensionar la ventana no las
+     * acumule sin limite. Solo se usa desde el EDT pero se sincroniza por si
+     * algun panel se pinta fuera de el.
+     */
+    private static final class CacheFormas {
+
+        private static final int MAXIMO_FORMAS = 256;
+
+        private final LinkedHashMap<ClaveForma, Shape> formas = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ClaveForma, Shape> mayor) {
+                return size() > MAXIMO_FORMAS;
+            }
+        };
+
+        synchronized Shape obtener(ClaveForma clave) {
+            Shape forma = formas.get(clave);
+            if (forma == null) {
+                forma = crearForma(clave);
+                formas.put(clave, forma);
+            }
+            return forma;
+        }
+    }
 }
\ No newline at end of file
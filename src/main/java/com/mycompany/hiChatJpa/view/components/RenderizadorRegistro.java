@@ -0,0 +1,133 @@
+package com.mycompany.hiChatJpa.view.components;
+
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.util.function.Function;
+import javax.swing.JComponent;
+import javax.swing.JList;
+import javax.swing.ListCellRenderer;
+
+/**
+ * renderizador de una fila de chat o match: numero a la izquierda, titulo y
+ * un boton redondeado opcional a la derecha. Se reutiliza el mismo componente para
+ * todas las filas, solo cambia el registro que pinta.
+ *
+ * @author gatog
+ * @param <T> tipo de registro que se pinta
+ */
+public class RenderizadorRegistro<T> extends JComponent implements ListCellRenderer<T> {
+
+    public static final int ANCHO = 390;
+    public static final int ALTO = 50;
+
+    private static final Color FONDO = new Color(22, 16, 34);
+    private static final Color FONDO_SELECCION = new Color(44, 32, 68);
+    private static final Font FUENTE_NUMERO = new Font("Lucida Sans Unicode", Font.BOLD, 14);
+    private static final Font FUENTE_TITULO = new Font("Lucida Sans Unicode", Font.BOLD, 12);
+    private static final Font FUENTE_BOTON = new Font("Lucida Sans Unicode", Font.BOLD, 14);
+    private static final Rectangle BOTON = new Rectangle(260, 10, 110, 30);
+
+    private final Function<T, String> numero;
+    private final Function<T, String> titulo;
+    private final String textoBoton;
+    private final Color colorBoton;
+
+    // registro que se esta pintando
+    private String numeroActual;
+    private String tituloActual;
+    private boolean seleccionado;
+
+    /**
+     * @param numero texto de la columna del numero
+     * @param titulo texto del titulo
+     * @param textoBoton texto del boton o null si la fila no tiene boton
+     * @param colorBoton color de fondo del boton
+     */
+    public RenderizadorRegistro(Function<T, String> numero, Function<T, String> titulo,
+            String textoBoton, Color colorBoton) {
+        this.numero = numero;
+        this.titulo = titulo;
+        this.textoBoton = textoBoton;
+        this.colorBoton = colorBoton;
+        setOpaque(false);
+    }
+
+    @Override
+    public Component getListCellRendererComponent(JList<? extends T> list, T value, int index,
+            boolean isSelected, boolean cellHasFocus) {
+        numeroActual = value != null ? numero.apply(value) : "";
+        tituloActual = value != null ? titulo.apply(value) : "";
+        seleccionado = isSelected;
+        return this;
+    }
+
+    /**
+     * indica si el punto (relativo a la fila) cae sobre el boton
+     *
+     * @param registro registro de la fila
+     * @param punto punto relativo a la esquina de la fila
+     * @return true si la fila tiene boton y el punto esta sobre el
+     */
+    boolean estaSobreBoton(T registro, Point punto) {
+        return textoBoton != null && BOTON.contains(punto);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+
+        g2.setColor(seleccionado ? FONDO_SELECCION : FONDO);
+        g2.fillRoundRect(0, 0, ANCHO, ALTO, 20, 20);
+
+        g2.setColor(Color.WHITE);
+        g2.setFont(FUENTE_NUMERO);
+        dibujarCentrado(g2, numeroActual, 0, 0, 50, ALTO);
+
+        g2.setFont(FUENTE_TITULO);
+        FontMetrics metricas = g2.getFontMetrics();
+        String texto = recortar(tituloActual, metricas, 190);
+        g2.drawString(texto, 60, (ALTO - metricas.getHeight()) / 2 + metricas.getAscent());
+
+        if (textoBoton != null) {
+            g2.setColor(colorBoton);
+            g2.fillRoundRect(BOTON.x, BOTON.y, BOTON.width, BOTON.height, 10, 10);
+            g2.setColor(Color.BLACK);
+            g2.setFont(FUENTE_BOTON);
+            dibujarCentrado(g2, textoBoton, BOTON.x, BOTON.y, BOTON.width, BOTON.height);
+        }
+        g2.dispose();
+    }
+
+    private static void dibujarCentrado(Graphics2D g2, String texto, int x, int y, int ancho, int alto) {
+        FontMetrics metricas = g2.getFontMetrics();
+        int tx = x + (ancho - metricas.stringWidth(texto)) / 2;
+        int ty = y + (alto - metricas.getHeight()) / 2 + metricas.getAscent();
+        g2.drawString(texto, tx, ty);
+    }
+
+    /**
+     * corta el texto con "..." para que no invada el boton
+     */
+    private static String recortar(String texto, FontMetrics metricas, int ancho) {
+        if (texto == null) {
+            return "";
+        }
+        if (metricas.stringWidth(texto) <= ancho) {
+            return texto;
+        }
+        int fin = texto.length();
+        while (fin > 0 && metricas.stringWidth(texto.substring(0, fin) + "...") > ancho) {
+            fin--;
+        }
+        return texto.substring(0, fin) + "...";
+    }
+}
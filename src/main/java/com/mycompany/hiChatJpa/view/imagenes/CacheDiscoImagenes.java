@@ -0,0 +1,194 @@
+package com.mycompany.hiChatJpa.view.imagenes;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * cache en disco de las imagenes remotas, por cada url se guardan los bytes
+ * originales y un archivo .meta con el ETag y Last-Modified que devolvio el
+ * servidor para revalidar con una peticion condicional
+ *
+ * @author gatog
+ */
+class CacheDiscoImagenes {
+
+    private static final long FRESCURA_DEFAULT_MS = 10 * 60 * 1000;
+    private static final Pattern MAX_AGE = Pattern.compile("max-age=(\\d+)");
+
+    private final Path directorio;
+    private final HttpClient cliente;
+
+    CacheDiscoImagenes(Path directorio) {
+        this.directorio = directorio;
+        this.cliente = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * resultado de obtener una imagen remota
+     */
+    static class Resultado {
+
+        final byte[] bytes;
+        final boolean desdeDisco;
+
+        Resultado(byte[] bytes, boolean desdeDisco) {
+            this.bytes = bytes;
+            this.desdeDisco = desdeDisco;
+        }
+    }
+
+    /**
+     * obtiene los bytes de la url, si la copia en disco sigue fresca no se
+     * hace peticion, si no se revalida con If-None-Match/If-Modified-Since y
+     * solo se descarga de nuevo cuando el servidor responde con otra version.
+     * Si la red falla y hay copia en disco se usa la copia.
+     *
+     * @param url url de la imagen
+     * @return bytes de la imagen y si se sirvieron desde disco
+     * @throws IOException si no se pudo obtener la imagen de ningun lado
+     */
+    Resultado obtener(String url) throws IOException {
+        String nombre = hash(url);
+        Path datos = directorio.resolve(nombre + ".img");
+        Path meta = directorio.resolve(nombre + ".meta");
+
+        Properties propiedades = leerMeta(meta);
+        boolean hayCopia = propiedades != null && Files.exists(datos);
+
+        if (hayCopia && System.currentTimeMillis() < Long.parseLong(propiedades.getProperty("frescoHasta", "0"))) {
+            return new Resultado(Files.readAllBytes(datos), true);
+        }
+
+        HttpRequest.Builder peticion = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(15))
+                .GET();
+        if (hayCopia) {
+            String etag = propiedades.getProperty("etag");
+            String ultimaModificacion = propiedades.getProperty("lastModified");
+            if (etag != null) {
+                peticion.header("If-None-Match", etag);
+            }
+            if (ultimaModificacion != null) {
+                peticion.header("If-Modified-Since", ultimaModificacion);
+            }
+        }
+
+        HttpResponse<byte[]> respuesta;
+        try {
+            respuesta = cliente.send(peticion.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Descarga interrumpida: " + url, e);
+        } catch (IOException e) {
+            if (hayCopia) {
+                return new Resultado(Files.readAllBytes(datos), true);
+            }
+            throw e;
+        }
+
+        if (respuesta.statusCode() == 304 && hayCopia) {
+            propiedades.setProperty("frescoHasta", String.valueOf(calcularFrescura(respuesta)));
+            escribirMeta(meta, propiedades);
+            return new Resultado(Files.readAllBytes(datos), true);
+        }
+
+        if (respuesta.statusCode() != 200) {
+            if (hayCopia) {
+                return new Resultado(Files.readAllBytes(datos), true);
+            }
+            throw new IOException("Respuesta " + respuesta.statusCode() + " al descargar " + url);
+        }
+
+        byte[] bytes = respuesta.body();
+        Properties nuevas = new Properties();
+        respuesta.headers().firstValue("ETag").ifPresent(v -> nuevas.setProperty("etag", v));
+        respuesta.headers().firstValue("Last-Modified").ifPresent(v -> nuevas.setProperty("lastModified", v));
+        nuevas.setProperty("frescoHasta", String.valueOf(calcularFrescura(respuesta)));
+        nuevas.setProperty("url", url);
+
+        try {
+            Files.createDirectories(directorio);
+            escribirAtomico(datos, bytes);
+            escribirMeta(meta, nuevas);
+        } catch (IOException e) {
+            // sin disco la imagen igual se puede mostrar
+            System.err.println("No se pudo guardar la imagen en cache: " + e.getMessage());
+        }
+        return new Resultado(bytes, false);
+    }
+
+    private long calcularFrescura(HttpResponse<?> respuesta) {
+        long maxAge = respuesta.headers().firstValue("Cache-Control")
+                .map(MAX_AGE::matcher)
+                .filter(Matcher::find)
+                .map(m -> Long.parseLong(m.group(1)) * 1000)
+                .orElse(FRESCURA_DEFAULT_MS);
+        return System.currentTimeMillis() + maxAge;
+    }
+
+    private Properties leerMeta(Path meta) {
+        if (!Files.exists(meta)) {
+            return null;
+        }
+        try (InputStream in = Files.newInputStream(meta)) {
+            Properties propiedades = new Properties();
+            propiedades.load(in);
+            return propiedades;
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private void escribirMeta(Path meta, Properties propiedades) throws IOException {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream();
+        propiedades.store(salida, null);
+        escribirAtomico(meta, salida.toByteArray());
+    }
+
+    /**
+     * escribe en un temporal y luego lo mueve para que nunca se lea un archivo
+     * a medio escribir
+     */
+    private void escribirAtomico(Path destino, byte[] bytes) throws IOException {
+        Path temporal = Files.createTempFile(directorio, "img", ".tmp");
+        try {
+            Files.write(temporal, bytes);
+            try {
+                Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporal);
+        }
+    }
+
+    private static String hash(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(url.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.mycompany.hiChatJpa.view.imagenes;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * Cache de imagenes para las vistas. Guarda en memoria las imagenes ya
+ * decodificadas y escaladas (LRU limitado por bytes, la llave es la ruta mas el
+ * tamaño destino) y las imagenes remotas en disco, revalidando con ETag y
+ * Last-Modified. Las cargas se hacen fuera del hilo de la interfaz.
+ *
+ * @author gatog
+ */
+public class CacheImagenes {
+
+    private static final long MAX_BYTES_MEMORIA = 64L * 1024 * 1024;
+    private static final int HILOS_CARGA = 4;
+    private static final Color COLOR_PLACEHOLDER = new Color(55, 65, 81);
+
+    private static final CacheImagenes INSTANCIA = new CacheImagenes(
+            Path.of(System.getProperty("user.home"), ".hichat", "cache", "imagenes"));
+
+    private final CacheDiscoImagenes disco;
+    private final ExecutorService ejecutor;
+    private final Map<String, CompletableFuture<Entrada>> enCurso = new ConcurrentHashMap<>();
+
+    // lru protegido por this
+    private final LinkedHashMap<String, Entrada> memoria = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytesEnMemoria;
+
+    // metricas
+    private final LongAdder solicitudes = new LongAdder();
+    private final LongAdder aciertosMemoria = new LongAdder();
+    private final LongAdder aciertosDisco = new LongAdder();
+    private final LongAdder descargas = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder bytesDescargados = new LongAdder();
+    private final LongAdder bytesAhorrados = new LongAdder();
+
+    private CacheImagenes(Path directorioDisco) {
+        this.disco = new CacheDiscoImagenes(directorioDisco);
+        this.ejecutor = Executors.newFixedThreadPool(HILOS_CARGA,
+                Thread.ofPlatform().daemon().name("carga-imagenes-", 0).factory());
+    }
+
+    public static CacheImagenes getInstance() {
+        return INSTANCIA;
+    }
+
+    /**
+     * imagen decodificada y escalada junto con el tamaño de los bytes
+     * originales que se evitan descargar al reutilizarla
+     */
+    private static class Entrada {
+
+        private final BufferedImage imagen;
+        private final long bytesOrigen;
+
+        private Entrada(BufferedImage imagen, long bytesOrigen) {
+            this.imagen = imagen;
+            this.bytesOrigen = bytesOrigen;
+        }
+
+        private long tamanio() {
+            return (long) imagen.getWidth() * imagen.getHeight() * 4;
+        }
+    }
+
+    /**
+     * Carga una imagen escalada. Si ya esta en memoria el callback se ejecuta
+     * de inmediato, si no se carga en segundo plano y el callback se ejecuta en
+     * el hilo de la interfaz. Si la imagen no se puede cargar el callback
+     * recibe null para que la vista muestre su imagen por defecto.
+     *
+     * @param ruta recurso del classpath (inicia con /), url http(s), url file:
+     * o ruta de archivo
+     * @param ancho ancho destino
+     * @param alto alto destino
+     * @param mantenerProporcion true para ajustar dentro del tamaño sin
+     * deformar, false para escalar exactamente al tamaño
+     * @param alCargar callback que recibe la imagen
+     */
+    public void cargar(String ruta, int ancho, int alto, boolean mantenerProporcion, Consumer<BufferedImage> alCargar) {
+        solicitudes.increment();
+        if (ruta == null || ruta.isBlank()) {
+            fallos.increment();
+            alCargar.accept(null);
+            return;
+        }
+
+        String clave = ruta + "|" + ancho + "x" + alto + (mantenerProporcion ? "|p" : "|e");
+        Entrada entrada = buscarEnMemoria(clave);
+        if (entrada != null) {
+            aciertosMemoria.increment();
+            bytesAhorrados.add(entrada.bytesOrigen);
+            alCargar.accept(entrada.imagen);
+            return;
+        }
+
+        // si otra vista ya pidio la misma imagen se reutiliza esa carga
+        CompletableFuture<Entrada> nueva = new CompletableFuture<>();
+        CompletableFuture<Entrada> carga = enCurso.putIfAbsent(clave, nueva);
+        if (carga == null) {
+            carga = nueva;
+            ejecutor.execute(() -> {
+                Entrada cargada = cargarYEscalar(ruta, ancho, alto, mantenerProporcion);
+                guardarSiSigueEnCurso(clave, nueva, cargada);
+                nueva.complete(cargada);
+            });
+        }
+
+        carga.thenAccept(e -> SwingUtilities.invokeLater(
+                () -> alCargar.accept(e != null ? e.imagen : null)));
+    }
+
+    /**
+     * crea una imagen lisa para mostrar mientras se carga la real
+     *
+     * @param ancho ancho de la imagen
+     * @param alto alto de la imagen
+     * @return imagen del color de fondo de las tarjetas
+     */
+    public BufferedImage placeholder(int ancho, int alto) {
+        BufferedImage imagen = new BufferedImage(Math.max(ancho, 1), Math.max(alto, 1), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2 = imagen.createGraphics();
+        g2.setColor(COLOR_PLACEHOLDER);
+        g2.fillRect(0, 0, imagen.getWidth(), imagen.getHeight());
+        g2.dispose();
+        return imagen;
+    }
+
+    /**
+     * quita de memoria todas las versiones escaladas de una ruta, se usa
+     * cuando un usuario cambia su foto. Las cargas de esa ruta que ya estaban
+     * en curso terminan pero su imagen ya no se guarda.
+     *
+     * @param ruta ruta de la imagen
+     */
+    public synchronized void invalidar(String ruta) {
+        enCurso.keySet().removeIf(clave -> clave.startsWith(ruta + "|"));
+        Iterator<Map.Entry<String, Entrada>> it = memoria.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entrada> e = it.next();
+            if (e.getKey().startsWith(ruta + "|")) {
+                bytesEnMemoria -= e.getValue().tamanio();
+                it.remove();
+            }
+        }
+    }
+
+    public Metricas getMetricas() {
+        int entradas;
+        long bytes;
+        synchronized (this) {
+            entradas = memoria.size();
+            bytes = bytesEnMemoria;
+        }
+        return new Metricas(solicitudes.sum(), aciertosMemoria.sum(), aciertosDisco.sum(), descargas.sum(),
+                fallos.sum(), bytesDescargados.sum(), bytesAhorrados.sum(), entradas, bytes);
+    }
+
+    private synchronized Entrada buscarEnMemoria(String clave) {
+        return memoria.get(clave);
+    }
+
+    /**
+     * guarda la imagen solo si nadie invalido su ruta mientras se cargaba
+     */
+    private synchronized void guardarSiSigueEnCurso(String clave, CompletableFuture<Entrada> carga, Entrada entrada) {
+        if (enCurso.remove(clave, carga) && entrada != null) {
+            guardarEnMemoria(clave, entrada);
+        }
+    }
+
+    private synchronized void guardarEnMemoria(String clave, Entrada entrada) {
+        Entrada anterior = memoria.put(clave, entrada);
+        if (anterior != null) {
+            bytesEnMemoria -= anterior.tamanio();
+        }
+        bytesEnMemoria += entrada.tamanio();
+
+        // se sacan las menos usadas hasta quedar dentro del limite
+        Iterator<Entrada> it = memoria.values().iterator();
+        while (bytesEnMemoria > MAX_BYTES_MEMORIA && it.hasNext()) {
+            Entrada vieja = it.next();
+            if (vieja == entrada) {
+                break;
+            }
+            bytesEnMemoria -= vieja.tamanio();
+            it.remove();
+        }
+    }
+
+    private Entrada cargarYEscalar(String ruta, int ancho, int alto, boolean mantenerProporcion) {
+        try {
+            byte[] bytes;
+            long bytesOrigen = 0;
+
+            if (ruta.startsWith("/")) {
+                URL recurso = getClass().getResource(ruta);
+                if (recurso == null) {
+                    fallos.increment();
+                    return null;
+                }
+                try (InputStream in = recurso.openStream()) {
+                    bytes = in.readAllBytes();
+                }
+            } else if (ruta.startsWith("http://") || ruta.startsWith("https://")) {
+                CacheDiscoImagenes.Resultado resultado = disco.obtener(ruta);
+                bytes = resultado.bytes;
+                bytesOrigen = bytes.length;
+                if (resultado.desdeDisco) {
+                    aciertosDisco.increment();
+                    bytesAhorrados.add(bytes.length);
+                } else {
+                    descargas.increment();
+                    bytesDescargados.add(bytes.length);
+                }
+            } else if (ruta.startsWith("file:")) {
+                bytes = Files.readAllBytes(Path.of(URI.create(ruta)));
+            } else {
+                bytes = Files.readAllBytes(Path.of(ruta));
+            }
+
+            BufferedImage original = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (original == null || original.getWidth() <= 0 || original.getHeight() <= 0) {
+                fallos.increment();
+                return null;
+            }
+
+            int destinoAncho = ancho;
+            int destinoAlto = alto;
+            if (mantenerProporcion) {
+                double escala = Math.min((double) ancho / original.getWidth(), (double) alto / original.getHeight());
+                destinoAncho = Math.max(1, (int) (original.getWidth() * escala));
+                destinoAlto = Math.max(1, (int) (original.getHeight() * escala));
+            }
+            return new Entrada(escalar(original, destinoAncho, destinoAlto), bytesOrigen);
+
+        } catch (IOException | RuntimeException e) {
+            fallos.increment();
+            System.err.println("No se pudo cargar la imagen " + ruta + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * escala reduciendo a la mitad en cada paso, con interpolacion bilineal da
+     * un resultado parecido a SCALE_SMOOTH en mucho menos tiempo
+     */
+    private static BufferedImage escalar(BufferedImage original, int ancho, int alto) {
+        BufferedImage actual = original;
+        int w = original.getWidth();
+        int h = original.getHeight();
+
+        do {
+            w = (w / 2 >= ancho) ? w / 2 : ancho;
+            h = (h / 2 >= alto) ? h / 2 : alto;
+
+            BufferedImage paso = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = paso.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g2.drawImage(actual, 0, 0, w, h, null);
+            g2.dispose();
+            actual = paso;
+        } while (w != ancho || h != alto);
+
+        return actual;
+    }
+
+    /**
+     * valores de la cache en un instante dado
+     */
+    public static class Metricas {
+
+        private final long solicitudes;
+        private final long aciertosMemoria;
+        private final long aciertosDisco;
+        private final long descargas;
+        private final long fallos;
+        private final long bytesDescargados;
+        private final long bytesAhorrados;
+        private final int entradasEnMemoria;
+        private final long bytesEnMemoria;
+
+        private Metricas(long solicitudes, long aciertosMemoria, long aciertosDisco, long descargas, long fallos,
+                long bytesDescargados, long bytesAhorrados, int entradasEnMemoria, long bytesEnMemoria) {
+            this.solicitudes = solicitudes;
+            this.aciertosMemoria = aciertosMemoria;
+            this.aciertosDisco = aciertosDisco;
+            this.descargas = descargas;
+            this.fallos = fallos;
+            this.bytesDescargados = bytesDescargados;
+            this.bytesAhorrados = bytesAhorrados;
+            this.entradasEnMemoria = entradasEnMemoria;
+            this.bytesEnMemoria = bytesEnMemoria;
+        }
+
+        public long getSolicitudes() {
+            return solicitudes;
+        }
+
+        public long getAciertosMemoria() {
+            return aciertosMemoria;
+        }
+
+        public long getAciertosDisco() {
+            return aciertosDisco;
+        }
+
+        public long getDescargas() {
+            return descargas;
+        }
+
+        public long getFallos() {
+            return fallos;
+        }
+
+        public long getBytesDescargados() {
+            return bytesDescargados;
+        }
+
+        public long getBytesAhorrados() {
+            return bytesAhorrados;
+        }
+
+        public int getEntradasEnMemoria() {
+            return entradasEnMemoria;
+        }
+
+        public long getBytesEnMemoria() {
+            return bytesEnMemoria;
+        }
+
+        /**
+         * @return proporcion de solicitudes que no tuvieron que descargar la
+         * imagen (memoria o disco)
+         */
+        public double getTasaAciertos() {
+            return solicitudes == 0 ? 0 : (double) (aciertosMemoria + aciertosDisco) / solicitudes;
+        }
+
+        @Override
+        public String toString() {
+            return "MetricasCacheImagenes{"
+                    + "solicitudes=" + solicitudes
+                    + ", aciertosMemoria=" + aciertosMemoria
+                    + ", aciertosDisco=" + aciertosDisco
+                    + ", descargas=" + descargas
+                    + ", fallos=" + fallos
+                    + ", bytesAhorrados=" + bytesAhorrados
+                    + ", bytesEnMemoria=" + bytesEnMemoria
+                    + '}';
+        }
+    }
+}
@@ -4,9 +4,11 @@ import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
 import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.service.IChatService;
 import com.mycompany.hiChatJpa.service.impl.ChatService;
-import com.mycompany.hiChatJpa.view.components.ChatRegistroPanel;
+import com.mycompany.hiChatJpa.view.Controller;
+import com.mycompany.hiChatJpa.view.EjecutorUI;
+import com.mycompany.hiChatJpa.view.components.ListaVirtual;
+import com.mycompany.hiChatJpa.view.components.RenderizadorRegistro;
 import java.awt.BorderLayout;
-import java.awt.GridLayout;
 import java.util.List;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -19,6 +21,7 @@ public class ChatPane extends javax.swing.JPanel {
 
     private final UsuarioPerfilDTO loggedUser;
     private final IChatService CHAT_SERVICE;
+    private final ListaVirtual<ChatConMensajesDTO> listaChats;
 
     /**
      * Creates new form LoginPane
@@ -31,14 +34,16 @@ public class ChatPane extends javax.swing.JPanel {
         this.CHAT_SERVICE = new ChatService();
         initComponents();
 
-        panelLista = new JPanel(new GridLayout(0, 1));
+        // todavia no hay vista de chat a la cual ir, asi que la fila no lleva boton
+        listaChats = new ListaVirtual<>(new RenderizadorRegistro<ChatConMensajesDTO>(
+                c -> c.getIdChat().toString(),
+                ChatConMensajesDTO::getNombre,
+                null,
+                null));
 
-        
         //cargarChats();
 
-        JPanel container = new JPanel(new BorderLayout());
-        container.add(panelLista, BorderLayout.NORTH);
-        JScrollPane scrollPane = new JScrollPane(container);
+        JScrollPane scrollPane = new JScrollPane(listaChats);
         scrollPane.getVerticalScrollBar().setUnitIncrement(15);
         add(scrollPane, BorderLayout.CENTER);
     }
@@ -52,53 +57,27 @@ public class ChatPane extends javax.swing.JPanel {
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
     private void initComponents() {
 
-        panelLista = new javax.swing.JPanel();
-        label = new javax.swing.JLabel();
-
         setBackground(new java.awt.Color(22, 16, 34));
         setPreferredSize(new java.awt.Dimension(400, 600));
         setLayout(new java.awt.BorderLayout());
-
-        panelLista.setOpaque(false);
-
-        label.setFont(new java.awt.Font("Lucida Sans Unicode", 1, 24)); // NOI18N
-        label.setForeground(new java.awt.Color(255, 255, 255));
-        label.setHorizontalAlignment(javax.swing.SwingConstants.CENTER);
-        label.setText("Option not supported");
-
-        javax.swing.GroupLayout panelListaLayout = new javax.swing.GroupLayout(panelLista);
-        panelLista.setLayout(panelListaLayout);
-        panelListaLayout.setHorizontalGroup(
-            panelListaLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-            .addGroup(panelListaLayout.createSequentialGroup()
-                .addContainerGap()
-                .addComponent(label, javax.swing.GroupLayout.DEFAULT_SIZE, 388, Short.MAX_VALUE)
-                .addContainerGap())
-        );
-        panelListaLayout.setVerticalGroup(
-            panelListaLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-            .addGroup(panelListaLayout.createSequentialGroup()
-                .addContainerGap()
-                .addComponent(label, javax.swing.GroupLayout.DEFAULT_SIZE, 468, Short.MAX_VALUE)
-                .addContainerGap())
-        );
-
-        add(panelLista, java.awt.BorderLayout.CENTER);
     }// </editor-fold>//GEN-END:initComponents
 
     private void cargarChats() {
+        EjecutorUI.tarea("cargarChatsDelUsuario", () -> CHAT_SERVICE.cargarChatsDelUsuario(loggedUser.getIdUsuario()))
+                .grupo(Controller.HOME_VIEW)
+                .clave("cargarChatsDelUsuario:" + loggedUser.getIdUsuario())
+                .interrumpible()
+                .alTerminar(this::mostrarChats)
+                .ejecutar();
+    }
 
-        List<ChatConMensajesDTO> chats = CHAT_SERVICE.cargarChatsDelUsuario(loggedUser.getIdUsuario());
-
-        chats.forEach(c -> {
-            panelLista.add(new ChatRegistroPanel(c));
-        });
-
-         panelLista.revalidate();
+    private void mostrarChats(List<ChatConMensajesDTO> chats) {
+        if (chats == null) {
+            return;
+        }
+        listaChats.agregar(chats);
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
-    private javax.swing.JLabel label;
-    private javax.swing.JPanel panelLista;
     // End of variables declaration//GEN-END:variables
 }
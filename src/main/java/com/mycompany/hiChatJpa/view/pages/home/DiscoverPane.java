@@ -2,17 +2,17 @@ package com.mycompany.hiChatJpa.view.pages.home;
 
 import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
-import com.mycompany.hiChatJpa.exceptions.ServiceException;
+import com.mycompany.hiChatJpa.service.IColaPretendientesService;
 import com.mycompany.hiChatJpa.service.IUsuarioService;
+import com.mycompany.hiChatJpa.service.impl.ColaPretendientesService;
 import com.mycompany.hiChatJpa.service.impl.UsuarioService;
-import java.awt.Image;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import com.mycompany.hiChatJpa.view.Controller;
+import com.mycompany.hiChatJpa.view.EjecutorUI;
+import com.mycompany.hiChatJpa.view.imagenes.CacheImagenes;
 import javax.swing.ImageIcon;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 /**
  *
@@ -23,7 +23,11 @@ public class DiscoverPane extends javax.swing.JPanel {
     private UsuarioPerfilDTO currentUser;
     private UsuarioPerfilDTO loggedUser;
     private final IUsuarioService USUARIO_SERVICE;
-    private Iterator<UsuarioPerfilDTO> PRETENDIENTES;
+    private final IColaPretendientesService COLA_PRETENDIENTES;
+    private final CacheImagenes CACHE_IMAGENES = CacheImagenes.getInstance();
+
+    private static final int MAX_ANCHO_FOTO = 380 - 20;
+    private static final int MAX_ALTO_FOTO = 358 - 20;
 
     /**
      * Creates new form LoginPane
@@ -35,12 +39,17 @@ public class DiscoverPane extends javax.swing.JPanel {
         initComponents();        
         this.loggedUser = usuario;
         this.USUARIO_SERVICE = new UsuarioService();
-        try {
-            this.PRETENDIENTES = USUARIO_SERVICE.mostrarPretendientes(loggedUser.getIdUsuario()).iterator();
-            loadNext();
-        } catch (ServiceException ex) {
-            JOptionPane.showMessageDialog(null, ex.getMessage(), "soo sorry :(", JOptionPane.ERROR_MESSAGE);
-        }
+        this.COLA_PRETENDIENTES = new ColaPretendientesService(loggedUser.getIdUsuario(), USUARIO_SERVICE);
+        loadNext();
+    }
+
+    /**
+     * al quitar el panel (cerrar sesion) se detiene la recarga de la cola
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        COLA_PRETENDIENTES.cerrar();
     }
 
     /**
@@ -159,12 +168,7 @@ public class DiscoverPane extends javax.swing.JPanel {
      * @param evt
      */
     private void heartLabelMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_heartLabelMouseClicked
-        try {
-            USUARIO_SERVICE.registrarInteraccion(loggedUser.getIdUsuario(), currentUser.getIdUsuario(), TipoInteraccion.ME_GUSTA);
-        } catch (ServiceException ex) {
-            JOptionPane.showMessageDialog(null, "that action cant be done rn", "soo sorry :(", JOptionPane.INFORMATION_MESSAGE);
-        }
-        loadNext();
+        registrarInteraccion(TipoInteraccion.ME_GUSTA);
     }//GEN-LAST:event_heartLabelMouseClicked
 
     /**
@@ -173,120 +177,99 @@ public class DiscoverPane extends javax.swing.JPanel {
      * @param evt
      */
     private void dislikeLabelMouseClicked(java.awt.event.MouseEvent evt) {//GEN-FIRST:event_dislikeLabelMouseClicked
-        try {
-            USUARIO_SERVICE.registrarInteraccion(loggedUser.getIdUsuario(), currentUser.getIdUsuario(), TipoInteraccion.NO_ME_INTERESA);
-        } catch (ServiceException ex) {
-            JOptionPane.showMessageDialog(null, "that action cant be done rn", "soo sorry :(", JOptionPane.INFORMATION_MESSAGE);
+        registrarInteraccion(TipoInteraccion.NO_ME_INTERESA);
+    }//GEN-LAST:event_dislikeLabelMouseClicked
+
+    /**
+     * metodo de utileria que registra la interaccion con el pretendiente actual
+     * fuera del hilo de la interfaz y pasa al siguiente sin esperar a la base
+     *
+     * @param tipo tipo de interaccion
+     */
+    private void registrarInteraccion(TipoInteraccion tipo) {
+        if (currentUser == null) {
+            return;
         }
+        Long idPretendiente = currentUser.getIdUsuario();
+        this.currentUser = null;
+        COLA_PRETENDIENTES.marcarAtendido(idPretendiente);
+
+        EjecutorUI.tarea("registrarInteraccion", () -> USUARIO_SERVICE.registrarInteraccion(loggedUser.getIdUsuario(), idPretendiente, tipo))
+                .grupo(Controller.HOME_VIEW)
+                .clave("registrarInteraccion:" + loggedUser.getIdUsuario() + ":" + idPretendiente)
+                .alFallar(ex -> JOptionPane.showMessageDialog(null, "that action cant be done rn", "soo sorry :(", JOptionPane.INFORMATION_MESSAGE))
+                .ejecutar();
         loadNext();
-    }//GEN-LAST:event_dislikeLabelMouseClicked
+    }
+
+    /**
+     * metodo de utileria que pide el siguiente pretendiente a la cola, la
+     * tarjeta se actualiza en el hilo de la interfaz cuando este disponible
+     */
+    private void loadNext() {
+        COLA_PRETENDIENTES.siguiente().whenComplete((pretendiente, error)
+                -> SwingUtilities.invokeLater(() -> mostrarPretendiente(pretendiente, error)));
+    }
 
     /**
      * metodo de utileria que cambia la tarjeta de presentacion de los
      * pretendientes
      */
-    private void loadNext() {
-        try {
-            this.currentUser = PRETENDIENTES.next();
-            this.username.setText(currentUser.getNombre() + " " + currentUser.getApellidoPaterno());
-            this.userBiography.setText(currentUser.getBiografia());
-            changeImg();
-        } catch (NoSuchElementException ex) {
-            this.userCard.setVisible(false);
-            this.dislikePanel.setVisible(false);
-            this.likePane.setVisible(false);
+    private void mostrarPretendiente(UsuarioPerfilDTO pretendiente, Throwable error) {
+        if (error != null) {
+            JOptionPane.showMessageDialog(null, "couldnt load more people rn", "soo sorry :(", JOptionPane.ERROR_MESSAGE);
         }
+
+        boolean hayPretendiente = error == null && pretendiente != null;
+        this.userCard.setVisible(hayPretendiente);
+        this.dislikePanel.setVisible(hayPretendiente);
+        this.likePane.setVisible(hayPretendiente);
+        if (!hayPretendiente) {
+            return;
+        }
+
+        this.currentUser = pretendiente;
+        this.username.setText(currentUser.getNombre() + " " + currentUser.getApellidoPaterno());
+        this.userBiography.setText(currentUser.getBiografia());
+        changeImg();
     }
 
     /**
-     * metodo de utileria que cambia la foto del perfil mostrado
+     * metodo de utileria que cambia la foto del perfil mostrado, mientras se
+     * carga se muestra un placeholder y si al terminar ya se paso a otro
+     * pretendiente la imagen se descarta
      */
     private void changeImg() {
-        String rutaFoto = currentUser.getUrlFotoPerfil();
-
-        try {
-            ImageIcon iconOriginal;
-            if (rutaFoto.startsWith("/")) {
-                java.net.URL iconURL = getClass().getResource(rutaFoto);
-                if (iconURL == null) {
-                    System.err.println("⚠️ No se encontró el recurso: " + rutaFoto);
-                    cargarImagenPorDefecto();
-                    return;
-                }
-                iconOriginal = new ImageIcon(iconURL);
+        UsuarioPerfilDTO mostrado = currentUser;
+        imgLabel.setIcon(new ImageIcon(CACHE_IMAGENES.placeholder(MAX_ANCHO_FOTO, MAX_ALTO_FOTO)));
+        imgLabel.setText("");
 
-            } else if (rutaFoto.startsWith("http://") || rutaFoto.startsWith("https://")) {
-                try {
-                    URL url = new URL(rutaFoto);
-                    iconOriginal = new ImageIcon(url);
-                    if (iconOriginal.getImageLoadStatus() != java.awt.MediaTracker.COMPLETE) {
-                        System.err.println("⚠️ Error al cargar imagen desde URL");
-                        cargarImagenPorDefecto();
-                        return;
-                    }
-
-                } catch (MalformedURLException e) {
-                    cargarImagenPorDefecto();
-                    return;
-                }
-            } else {
-                iconOriginal = new ImageIcon(rutaFoto);
+        CACHE_IMAGENES.cargar(mostrado.getUrlFotoPerfil(), MAX_ANCHO_FOTO, MAX_ALTO_FOTO, true, imagen -> {
+            if (mostrado != currentUser) {
+                return;
             }
-
-            // Redimensionar la imagen
-            int maxAncho = 380 - 20;
-            int maxAlto = 358 - 20;
-
-            int anchoOriginal = iconOriginal.getIconWidth();
-            int altoOriginal = iconOriginal.getIconHeight();
-
-            if (anchoOriginal <= 0 || altoOriginal <= 0) {
+            if (imagen == null) {
                 cargarImagenPorDefecto();
                 return;
             }
-
-            double escalaAncho = (double) maxAncho / anchoOriginal;
-            double escalaAlto = (double) maxAlto / altoOriginal;
-            double escala = Math.min(escalaAncho, escalaAlto);
-
-            int nuevoAncho = (int) (anchoOriginal * escala);
-            int nuevoAlto = (int) (altoOriginal * escala);
-
-            Image imgEscalada = iconOriginal.getImage().getScaledInstance(nuevoAncho, nuevoAlto, Image.SCALE_SMOOTH);
-
-            imgLabel.setIcon(new ImageIcon(imgEscalada));
+            imgLabel.setIcon(new ImageIcon(imagen));
             imgLabel.setText("");
-
-        } catch (Exception e) {
-            cargarImagenPorDefecto();
-        }
+        });
     }
 
     /**
      * Carga la imagen por defecto cuando falla la carga de la foto del usuario
      */
     private void cargarImagenPorDefecto() {
-        try {
-            java.net.URL iconURL = getClass().getResource("/icons/default-picture.png");
-
-            if (iconURL != null) {
-                ImageIcon iconOriginal = new ImageIcon(iconURL);
-                int maxAncho = 380 - 20;
-                int maxAlto = 358 - 20;
-
-                Image imgEscalada = iconOriginal.getImage().getScaledInstance(maxAncho, maxAlto, Image.SCALE_SMOOTH);
-
-                imgLabel.setIcon(new ImageIcon(imgEscalada));
+        CACHE_IMAGENES.cargar("/icons/default-picture.png", MAX_ANCHO_FOTO, MAX_ALTO_FOTO, false, imagen -> {
+            if (imagen != null) {
+                imgLabel.setIcon(new ImageIcon(imagen));
                 imgLabel.setText("");
             } else {
                 imgLabel.setIcon(null);
                 imgLabel.setText("Sin foto");
             }
-
-        } catch (Exception e) {
-            imgLabel.setIcon(null);
-            imgLabel.setText("Sin foto");
-        }
+        });
     }
     
     
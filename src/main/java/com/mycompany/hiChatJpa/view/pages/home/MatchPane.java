@@ -4,9 +4,11 @@ import com.mycompany.hiChatJpa.dto.MatchDTO;
 import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.service.IUsuarioService;
 import com.mycompany.hiChatJpa.service.impl.UsuarioService;
-import com.mycompany.hiChatJpa.view.components.MatchRegistroPanel;
+import com.mycompany.hiChatJpa.view.Controller;
+import com.mycompany.hiChatJpa.view.EjecutorUI;
+import com.mycompany.hiChatJpa.view.components.ListaVirtual;
+import com.mycompany.hiChatJpa.view.components.RenderizadorRegistro;
 import java.awt.BorderLayout;
-import java.awt.GridLayout;
 import java.util.List;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
@@ -19,6 +21,7 @@ public class MatchPane extends javax.swing.JPanel {
 
     private final UsuarioPerfilDTO loggedUser;
     private final IUsuarioService USUARIO_SERVICE;
+    private final ListaVirtual<MatchDTO> listaMatches;
 
     /**
      * Creates new form LoginPane
@@ -31,13 +34,16 @@ public class MatchPane extends javax.swing.JPanel {
         this.USUARIO_SERVICE = new UsuarioService();
         initComponents();
 
-        panelLista = new JPanel(new GridLayout(0, 1));
-        
+        // los matches no muestran boton
+        listaMatches = new ListaVirtual<>(new RenderizadorRegistro<MatchDTO>(
+                m -> m.getIdMatch().toString(),
+                m -> m.getUsuarioA().getNombre() + "  |  " + m.getUsuarioB().getNombre(),
+                null,
+                null));
+
         cargarMatches();
-        
-        JPanel container = new JPanel(new BorderLayout());
-        container.add(panelLista, BorderLayout.NORTH);
-        JScrollPane scrollPane = new JScrollPane(container);
+
+        JScrollPane scrollPane = new JScrollPane(listaMatches);
         scrollPane.getVerticalScrollBar().setUnitIncrement(15);
         add(scrollPane, BorderLayout.CENTER);
     }
@@ -51,41 +57,28 @@ public class MatchPane extends javax.swing.JPanel {
     // <editor-fold defaultstate="collapsed" desc="Generated Code">//GEN-BEGIN:initComponents
     private void initComponents() {
 
-        panelLista = new javax.swing.JPanel();
-
         setBackground(new java.awt.Color(22, 16, 34));
         setPreferredSize(new java.awt.Dimension(400, 600));
         setLayout(new java.awt.BorderLayout());
-
-        panelLista.setOpaque(false);
-
-        javax.swing.GroupLayout panelListaLayout = new javax.swing.GroupLayout(panelLista);
-        panelLista.setLayout(panelListaLayout);
-        panelListaLayout.setHorizontalGroup(
-            panelListaLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-            .addGap(0, 400, Short.MAX_VALUE)
-        );
-        panelListaLayout.setVerticalGroup(
-            panelListaLayout.createParallelGroup(javax.swing.GroupLayout.Alignment.LEADING)
-            .addGap(0, 480, Short.MAX_VALUE)
-        );
-
-        add(panelLista, java.awt.BorderLayout.CENTER);
     }// </editor-fold>//GEN-END:initComponents
 
-    private void cargarMatches() {        
-        List<MatchDTO> matches = USUARIO_SERVICE.mostrarMatches(loggedUser.getIdUsuario());
+    private void cargarMatches() {
+        EjecutorUI.tarea("mostrarMatches", () -> USUARIO_SERVICE.mostrarMatches(loggedUser.getIdUsuario()))
+                .grupo(Controller.HOME_VIEW)
+                .clave("mostrarMatches:" + loggedUser.getIdUsuario())
+                .interrumpible()
+                .alTerminar(this::mostrarMatches)
+                .ejecutar();
+    }
+
+    private void mostrarMatches(List<MatchDTO> matches) {
         if(matches == null) {
             return;
         }
         
-        matches.forEach(p -> {
-            panelLista.add(new MatchRegistroPanel(p));
-        });
-         panelLista.revalidate();
+        listaMatches.agregar(matches);
     }
 
     // Variables declaration - do not modify//GEN-BEGIN:variables
-    private javax.swing.JPanel panelLista;
     // End of variables declaration//GEN-END:variables
 }
@@ -6,6 +6,9 @@ import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
 import com.mycompany.hiChatJpa.entitys.Usuario;
 import com.mycompany.hiChatJpa.service.IUsuarioService;
 import com.mycompany.hiChatJpa.service.impl.UsuarioService;
+import com.mycompany.hiChatJpa.view.Controller;
+import com.mycompany.hiChatJpa.view.EjecutorUI;
+import com.mycompany.hiChatJpa.view.imagenes.CacheImagenes;
 import java.time.LocalDate;
 import java.time.Period;
 import javax.swing.ImageIcon;
@@ -95,15 +98,17 @@ public class ProfilePane extends javax.swing.JPanel {
      * @param urlFoto URL de la foto
      */
     private void cargarFotoPerfil(String urlFoto) {
-        try {
-            ImageIcon icon = new ImageIcon(urlFoto);
-            // Redimensionar la imagen a 130x130
-            java.awt.Image img = icon.getImage().getScaledInstance(130, 130, java.awt.Image.SCALE_SMOOTH);
-            ImageIcon iconRedimensionado = new ImageIcon(img);
-            panelRound2.setIcon(iconRedimensionado);
-        } catch (Exception e) {
-            System.err.println("Error cargando foto: " + e.getMessage());
-        }
+        CacheImagenes cache = CacheImagenes.getInstance();
+        panelRound2.setIcon(new ImageIcon(cache.placeholder(130, 130)));
+
+        // Redimensionar la imagen a 130x130
+        cache.cargar(urlFoto, 130, 130, false, imagen -> {
+            if (imagen != null) {
+                panelRound2.setIcon(new ImageIcon(imagen));
+            } else {
+                System.err.println("Error cargando foto: " + urlFoto);
+            }
+        });
     }
 
     /**
@@ -356,25 +361,27 @@ public class ProfilePane extends javax.swing.JPanel {
             return;
         }
 
-        try {
-            // Crear DTO para actualizar
-            ActualizarUsuarioDTO actualizarDTO = new ActualizarUsuarioDTO();
-            actualizarDTO.setIdUsuario(usuarioActual.getIdUsuario());
-            actualizarDTO.setBiografia(nuevaBiografia);
-            
-            // Guardar en la base de datos
-            usuarioService.actualizarUsuario(actualizarDTO);
-            
-            // Actualizar la biografía en el DTO local
-            usuarioActual.setBiografia(nuevaBiografia);
-            textFieldPanel1.setMessage(nuevaBiografia);
-            
-            JOptionPane.showMessageDialog(this, "Biografía actualizada correctamente", "Éxito", JOptionPane.INFORMATION_MESSAGE);
-        } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error al guardar: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-            System.err.println("Error guardando biografía: " + e.getMessage());
-            e.printStackTrace();
-        }
+        // Crear DTO para actualizar
+        ActualizarUsuarioDTO actualizarDTO = new ActualizarUsuarioDTO();
+        actualizarDTO.setIdUsuario(usuarioActual.getIdUsuario());
+        actualizarDTO.setBiografia(nuevaBiografia);
+
+        // Guardar en la base de datos fuera del hilo de la interfaz
+        EjecutorUI.tarea("actualizarUsuario", () -> usuarioService.actualizarUsuario(actualizarDTO))
+                .grupo(Controller.HOME_VIEW)
+                .alTerminar(r -> {
+                    // Actualizar la biografía en el DTO local
+                    usuarioActual.setBiografia(nuevaBiografia);
+                    textFieldPanel1.setMessage(nuevaBiografia);
+
+                    JOptionPane.showMessageDialog(this, "Biografía actualizada correctamente", "Éxito", JOptionPane.INFORMATION_MESSAGE);
+                })
+                .alFallar(e -> {
+                    JOptionPane.showMessageDialog(this, "Error al guardar: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                    System.err.println("Error guardando biografía: " + e.getMessage());
+                    e.printStackTrace();
+                })
+                .ejecutar();
     }//GEN-LAST:event_GuardarLabelMouseClicked
 
 
@@ -0,0 +1,155 @@
+package com.mycompany.hiChatJpa.codec;
+
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.dto.MensajeDTO;
+import com.mycompany.hiChatJpa.dto.UsuarioPerfilDTO;
+import com.mycompany.hiChatJpa.server.JsonUtil;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * compara el formato binario contra la serializacion de Java y JSON con un
+ * historial y una bandeja de chats sinteticos: bytes por carga y tiempo
+ * promedio de codificar y decodificar despues de calentar el JIT.
+ *
+ * Uso: PruebaCodecBinario [mensajes] [chats] [iteraciones]
+ * Ejemplo: PruebaCodecBinario 500 100 2000
+ *
+ * @author gatog
+ */
+public class PruebaCodecBinario {
+
+    /**
+     * una forma de convertir la carga a bytes y de regreso
+     */
+    private interface Formato {
+
+        byte[] codificar(Object valor) throws Exception;
+
+        Object decodificar(byte[] bytes) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int mensajes = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int chats = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int iteraciones = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        Formato java = new Formato() {
+            @Override
+            public byte[] codificar(Object valor) throws IOException {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream salida = new ObjectOutputStream(bytes)) {
+                    salida.writeObject(valor);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            public Object decodificar(byte[] bytes) throws IOException, ClassNotFoundException {
+                try (ObjectInputStream entrada = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return entrada.readObject();
+                }
+            }
+        };
+        Formato json = new Formato() {
+            @Override
+            public byte[] codificar(Object valor) throws IOException {
+                return JsonUtil.escribir(valor);
+            }
+
+            @Override
+            public Object decodificar(byte[] bytes) throws IOException {
+                // sin tipo de destino, como lo leeria un cliente generico
+                return JsonUtil.leer(new ByteArrayInputStream(bytes), Object.class);
+            }
+        };
+        Formato binario = new Formato() {
+            @Override
+            public byte[] codificar(Object valor) {
+                return CodecBinario.codificar(valor);
+            }
+
+            @Override
+            public Object decodificar(byte[] bytes) {
+                return CodecBinario.decodificar(bytes);
+            }
+        };
+
+        ArrayList<MensajeDTO> historial = historial(mensajes);
+        ArrayList<ChatConMensajesDTO> bandeja = bandeja(chats);
+
+        System.out.printf("%-10s %-8s %10s %14s %14s%n", "carga", "formato", "bytes", "codificar us", "decodificar us");
+        for (Object[] carga : new Object[][]{{"historial", historial}, {"bandeja", bandeja}}) {
+            medir((String) carga[0], "java", java, carga[1], iteraciones);
+            medir((String) carga[0], "json", json, carga[1], iteraciones);
+            medir((String) carga[0], "binario", binario, carga[1], iteraciones);
+        }
+    }
+
+    private static void medir(String carga, String nombre, Formato formato, Object valor, int iteraciones) throws Exception {
+        byte[] bytes = formato.codificar(valor);
+        // calentamiento
+        for (int i = 0; i < iteraciones / 4; i++) {
+            formato.decodificar(formato.codificar(valor));
+        }
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            bytes = formato.codificar(valor);
+        }
+        long nanosCodificar = (System.nanoTime() - inicio) / iteraciones;
+
+        inicio = System.nanoTime();
+        for (int i = 0; i < iteraciones; i++) {
+            formato.decodificar(bytes);
+        }
+        long nanosDecodificar = (System.nanoTime() - inicio) / iteraciones;
+
+        System.out.printf("%-10s %-8s %10d %14.1f %14.1f%n", carga, nombre, bytes.length,
+                nanosCodificar / 1000.0, nanosDecodificar / 1000.0);
+    }
+
+    // Datos sinteticos parecidos a los reales: dos participantes por chat
+    private static UsuarioPerfilDTO perfil(long id) {
+        return new UsuarioPerfilDTO(id, "Usuario" + id, "Apellido" + id, "Materno" + id,
+                "usuario" + id + "@potros.itson.edu.mx", "Ingenieria en Software",
+                "Me gusta el cafe, la musica y salir a correr por las tardes. Busco gente para platicar.",
+                "https://res.cloudinary.com/hichat/image/upload/v1700000000/perfiles/" + id + ".jpg",
+                id % 2 == 0 ? "MASCULINO" : "FEMENINO", LocalDate.of(2002, 1 + (int) (id % 12), 15), 22);
+    }
+
+    private static ArrayList<MensajeDTO> historial(int cantidad) {
+        UsuarioPerfilDTO a = perfil(1);
+        UsuarioPerfilDTO b = perfil(2);
+        LocalDateTime inicio = LocalDateTime.of(2025, 3, 1, 12, 0);
+        ArrayList<MensajeDTO> mensajes = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            // cada mensaje trae su propia copia del perfil como en convertirAMensajeDTO
+            MensajeDTO mensaje = new MensajeDTO(10_000L + i, 7L, perfil(i % 2 == 0 ? a.getIdUsuario() : b.getIdUsuario()),
+                    "Mensaje numero " + i + " de la conversacion", inicio.plusSeconds(i * 37L), i < cantidad - 5, false);
+            mensaje.setSecuencia((long) i + 1);
+            mensaje.setSecuenciaCambio((long) i + 1);
+            mensajes.add(mensaje);
+        }
+        return mensajes;
+    }
+
+    private static ArrayList<ChatConMensajesDTO> bandeja(int cantidad) {
+        UsuarioPerfilDTO propio = perfil(1);
+        LocalDateTime inicio = LocalDateTime.of(2025, 3, 1, 12, 0);
+        ArrayList<ChatConMensajesDTO> chats = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            List<UsuarioPerfilDTO> participantes = List.of(propio, perfil(100L + i));
+            chats.add(new ChatConMensajesDTO(500L + i, "Usuario1 & Usuario" + (100 + i), 900L + i, new ArrayList<>(participantes),
+                    40 + i, "Nos vemos manana en la biblioteca", inicio.minusMinutes(i * 13L), i % 3 == 0));
+        }
+        return chats;
+    }
+}
@@ -0,0 +1,197 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.dto.ChatConMensajesDTO;
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.Match;
+import com.mycompany.hiChatJpa.entitys.Mensaje;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.ChatRepository;
+import com.mycompany.hiChatJpa.repository.impl.MatchRepository;
+import com.mycompany.hiChatJpa.repository.impl.MensajeRepository;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import com.mycompany.hiChatJpa.service.impl.ChatService;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Supplier;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * prueba de la bandeja de chats. Crea un usuario con N chats, cada uno con
+ * su match, el otro participante y algunos mensajes, y compara dos formas de
+ * cargar la bandeja de 100 chats que muestra la pestaña:
+ *
+ * - por chat: lo que hacia cargarChatsDelUsuario antes, 100 chats del
+ * usuario y por cada uno los participantes y el ultimo mensaje, ordenando en
+ * Java (1 + 2N sentencias, y con mas de 100 chats no eran los mas recientes).
+ *
+ * - proyeccion: ChatService.cargarChatsDelUsuario con
+ * ChatRepository.buscarBandejaPorParticipante.
+ *
+ * Antes de cada repeticion se vacia la cache de segundo nivel, asi se mide
+ * la base de datos y no la cache. Imprime sentencias y milisegundos promedio
+ * de cada forma, y termina con codigo 1 si la proyeccion no regresa los 100
+ * chats con el mensaje mas reciente, en orden.
+ *
+ * Crea sus propios usuarios y no los borra, hay que correrla contra una base
+ * de pruebas y sin DB_REPLICA_URLS.
+ *
+ * Uso: PruebaBandejaChats [chats] [mensajesPorChat] [repeticiones]
+ * Ejemplo: PruebaBandejaChats 1000 3 20
+ *
+ * @author gatog
+ */
+public class PruebaBandejaChats {
+
+    private static final int TAMANIO_BANDEJA = 100;
+
+    // IDs de los chats creados, del de mensajes mas viejos al mas reciente
+    private static final List<Long> chatsCreados = new ArrayList<>();
+
+    public static void main(String[] args) {
+        int chats = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int mensajesPorChat = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        int repeticiones = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        PruebasUtil.correr(() -> ejecutar(chats, mensajesPorChat, repeticiones));
+    }
+
+    private static boolean ejecutar(int chats, int mensajesPorChat, int repeticiones) {
+        PruebasUtil.avisarSiHayReplicas();
+        Long idUsuario = prepararDatos(chats, mensajesPorChat);
+        ChatService chatService = new ChatService();
+        System.out.printf("chats=%d mensajesPorChat=%d repeticiones=%d%n", chats, mensajesPorChat, repeticiones);
+
+        medir("por chat", repeticiones, () -> cargarPorChat(idUsuario));
+        List<Long> obtenido = medir("proyeccion", repeticiones, () -> {
+            List<Long> ids = new ArrayList<>();
+            for (ChatConMensajesDTO chat : chatService.cargarChatsDelUsuario(idUsuario)) {
+                ids.add(chat.getIdChat());
+            }
+            return ids;
+        });
+
+        List<Long> esperado = new ArrayList<>(chatsCreados.reversed()
+                .subList(0, Math.min(TAMANIO_BANDEJA, chatsCreados.size())));
+        boolean correcto = esperado.equals(obtenido);
+        if (!correcto) {
+            System.out.println("ERROR: la bandeja no trae los chats mas recientes en orden");
+        }
+        System.out.println(correcto ? "OK" : "FALLO");
+        return correcto;
+    }
+
+    /**
+     * corre la carga una vez para calentar y luego las repeticiones medidas
+     *
+     * @return IDs de los chats de la ultima carga, en orden
+     */
+    private static List<Long> medir(String nombre, int repeticiones, Supplier<List<Long>> carga) {
+        SessionFactory sessionFactory = JpaUtil.getEntityManagerFactory().unwrap(SessionFactory.class);
+        Statistics estadisticas = sessionFactory.getStatistics();
+        List<Long> ids = carga.get();
+
+        long sentencias = 0;
+        long nanos = 0;
+        for (int i = 0; i < repeticiones; i++) {
+            sessionFactory.getCache().evictAllRegions();
+            long antes = estadisticas.getPrepareStatementCount();
+            long inicio = System.nanoTime();
+            ids = carga.get();
+            nanos += System.nanoTime() - inicio;
+            sentencias += estadisticas.getPrepareStatementCount() - antes;
+        }
+        System.out.printf("%-11s chats=%d sentencias=%d ms=%.2f%n", nombre, ids.size(),
+                sentencias / repeticiones, nanos / 1_000_000.0 / repeticiones);
+        return ids;
+    }
+
+    /**
+     * la carga de la bandeja como era antes de la proyeccion
+     */
+    private static List<Long> cargarPorChat(Long idUsuario) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            Usuario usuario = new UsuarioRepository(em).buscar(idUsuario);
+            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            List<Chat> chats = new ChatRepository(em).buscarPorParticipante(usuario, TAMANIO_BANDEJA, 0);
+
+            List<Object[]> bandeja = new ArrayList<>();
+            for (Chat chat : chats) {
+                chat.getParticipantes().size();
+                List<Mensaje> ultimo = mensajeRepo.buscarPorChat(chat, 1, 0);
+                LocalDateTime fecha = ultimo.isEmpty() ? null : ultimo.get(0).getFechaEnvio();
+                bandeja.add(new Object[]{chat.getIdChat(), fecha});
+            }
+            bandeja.sort(Comparator.comparing((Object[] fila) -> (LocalDateTime) fila[1],
+                    Comparator.nullsLast(Comparator.reverseOrder()))
+                    .thenComparing(fila -> (Long) fila[0], Comparator.reverseOrder()));
+
+            List<Long> ids = new ArrayList<>();
+            for (Object[] fila : bandeja) {
+                ids.add((Long) fila[0]);
+            }
+            return ids;
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+
+    /**
+     * crea al usuario principal y un chat por cada otro usuario, con fechas
+     * de mensaje distintas para que el orden de la bandeja sea unico
+     *
+     * @return ID del usuario principal
+     */
+    private static Long prepararDatos(int cantidad, int mensajesPorChat) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            JpaUtil.beginUnitOfWork();
+            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            MatchRepository matchRepo = new MatchRepository(em);
+            ChatRepository chatRepo = new ChatRepository(em);
+            MensajeRepository mensajeRepo = new MensajeRepository(em);
+            String prefijo = PruebasUtil.nuevoPrefijo("bandeja");
+            LocalDateTime base = LocalDateTime.now().minusDays(1);
+
+            Usuario principal = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, 0);
+            for (int i = 1; i <= cantidad; i++) {
+                Usuario otro = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, i);
+                Match match = new Match.Builder()
+                        .usuarioA(principal)
+                        .usuarioB(otro)
+                        .build();
+                matchRepo.insertar(match);
+                Chat chat = new Chat.Builder()
+                        .nombre("Prueba bandeja " + i)
+                        .match(match)
+                        .build();
+                chatRepo.insertar(chat);
+                principal.getChats().add(chat);
+                otro.getChats().add(chat);
+
+                for (int m = 0; m < mensajesPorChat; m++) {
+                    mensajeRepo.insertar(new Mensaje.Builder()
+                            .chat(chat)
+                            .usuarioEmisor(m % 2 == 0 ? otro : principal)
+                            .contenido("Mensaje " + m + " del chat " + i)
+                            .fechaEnvio(base.plusSeconds((long) i * mensajesPorChat + m))
+                            .secuencia(m + 1L)
+                            .build());
+                }
+                chat.setUltimaSecuencia((long) mensajesPorChat);
+                chatsCreados.add(chat.getIdChat());
+            }
+            JpaUtil.commitTransaction();
+            return principal.getIdUsuario();
+        } catch (Exception e) {
+            JpaUtil.rollbackTransaction();
+            throw new IllegalStateException("No se pudieron crear los datos de la prueba", e);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.dto.MatchDTO;
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.Match;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.ChatRepository;
+import com.mycompany.hiChatJpa.repository.impl.MatchRepository;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import com.mycompany.hiChatJpa.service.impl.UsuarioService;
+import jakarta.persistence.EntityManager;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * prueba de cuantas consultas hace la pestaña de matches. Crea un usuario con
+ * matches de los dos lados (la mitad como usuarioA y la mitad como usuarioB),
+ * cada uno con su chat, vacia la cache de segundo nivel y llama a
+ * UsuarioService.mostrarMatches contando las sentencias que preparo
+ * Hibernate. Con menos de 1000 matches tiene que ser una sola; si no, termina
+ * con codigo 1. Tambien recorre los matches con mostrarMatchesAntesDe en
+ * paginas chicas y revisa que no se repitan ni falten.
+ *
+ * Crea sus propios usuarios y no los borra, hay que correrla contra una base
+ * de pruebas y sin DB_REPLICA_URLS (las sentencias de una replica se cuentan
+ * en otro EntityManagerFactory).
+ *
+ * Uso: PruebaConsultasMatches [matches] [tamanioPagina]
+ * Ejemplo: PruebaConsultasMatches 200 15
+ *
+ * @author gatog
+ */
+public class PruebaConsultasMatches {
+
+    public static void main(String[] args) {
+        int cantidad = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int tamanioPagina = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+
+        PruebasUtil.correr(() -> ejecutar(cantidad, tamanioPagina));
+    }
+
+    private static boolean ejecutar(int cantidad, int tamanioPagina) {
+        PruebasUtil.avisarSiHayReplicas();
+        Long idUsuario = prepararDatos(cantidad);
+        UsuarioService usuarioService = new UsuarioService();
+
+        SessionFactory sessionFactory = JpaUtil.getEntityManagerFactory().unwrap(SessionFactory.class);
+        sessionFactory.getCache().evictAllRegions();
+        Statistics estadisticas = sessionFactory.getStatistics();
+
+        long antes = estadisticas.getPrepareStatementCount();
+        long inicio = System.nanoTime();
+        List<MatchDTO> matches = usuarioService.mostrarMatches(idUsuario);
+        double ms = (System.nanoTime() - inicio) / 1_000_000.0;
+        long sentencias = estadisticas.getPrepareStatementCount() - antes;
+
+        System.out.printf("matches=%d sentencias=%d ms=%.1f%n", matches.size(), sentencias, ms);
+        boolean correcto = true;
+        if (matches.size() != cantidad) {
+            System.out.println("ERROR: se esperaban " + cantidad + " matches");
+            correcto = false;
+        }
+        if (sentencias != 1) {
+            System.out.println("ERROR: mostrarMatches debe hacer una sola consulta");
+            correcto = false;
+        }
+        for (MatchDTO match : matches) {
+            if (match.getIdChat() == null || match.getUsuarioA() == null || match.getUsuarioB() == null
+                    || match.getUsuarioA().getNombre() == null || match.getUsuarioB().getNombre() == null) {
+                System.out.println("ERROR: match incompleto " + match);
+                correcto = false;
+                break;
+            }
+        }
+
+        // recorrido por paginas, cada una continua donde termino la anterior
+        int paginas = 0;
+        int recorridos = 0;
+        MatchDTO ultimo = null;
+        antes = estadisticas.getPrepareStatementCount();
+        while (true) {
+            List<MatchDTO> pagina = usuarioService.mostrarMatchesAntesDe(idUsuario,
+                    ultimo != null ? ultimo.getFechaMatch() : null,
+                    ultimo != null ? ultimo.getIdMatch() : null, tamanioPagina);
+            if (pagina.isEmpty()) {
+                break;
+            }
+            for (MatchDTO match : pagina) {
+                if (!match.getIdMatch().equals(matches.get(recorridos).getIdMatch())) {
+                    System.out.println("ERROR: la pagina " + paginas + " no sigue el orden de mostrarMatches");
+                    return false;
+                }
+                recorridos++;
+            }
+            ultimo = pagina.get(pagina.size() - 1);
+            paginas++;
+        }
+        sentencias = estadisticas.getPrepareStatementCount() - antes;
+        System.out.printf("paginas=%d matches=%d sentencias=%d%n", paginas, recorridos, sentencias);
+        if (recorridos != cantidad) {
+            System.out.println("ERROR: el recorrido por paginas regreso " + recorridos + " matches");
+            correcto = false;
+        }
+
+        System.out.println(correcto ? "OK" : "FALLO");
+        return correcto;
+    }
+
+    /**
+     * crea al usuario principal y un usuario por match, con su chat
+     *
+     * @return ID del usuario principal
+     */
+    private static Long prepararDatos(int cantidad) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            JpaUtil.beginUnitOfWork();
+            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            MatchRepository matchRepo = new MatchRepository(em);
+            ChatRepository chatRepo = new ChatRepository(em);
+            String prefijo = PruebasUtil.nuevoPrefijo("matches");
+
+            Usuario principal = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, 0);
+            for (int i = 1; i <= cantidad; i++) {
+                Usuario otro = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, i);
+                boolean principalEsA = i % 2 == 0;
+                Match match = new Match.Builder()
+                        .usuarioA(principalEsA ? principal : otro)
+                        .usuarioB(principalEsA ? otro : principal)
+                        .build();
+                matchRepo.insertar(match);
+                chatRepo.insertar(new Chat.Builder()
+                        .nombre("Prueba matches " + i)
+                        .match(match)
+                        .build());
+            }
+            JpaUtil.commitTransaction();
+            return principal.getIdUsuario();
+        } catch (Exception e) {
+            JpaUtil.rollbackTransaction();
+            throw new IllegalStateException("No se pudieron crear los datos de la prueba", e);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.entitys.Bloqueo;
+import com.mycompany.hiChatJpa.entitys.Interaccion;
+import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.BloqueoRepository;
+import com.mycompany.hiChatJpa.repository.impl.InteraccionRepository;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * micro prueba de las verificaciones de registrarInteraccion. Crea un usuario
+ * con N interacciones ME_GUSTA salientes y B bloqueos, y compara para
+ * usuarios al azar:
+ *
+ * - like mutuo: buscarPorEmisor(usuario, 1000, 0) recorriendo la lista, como
+ * se hacia antes, contra existeInteraccion (Interaccion.existe).
+ *
+ * - bloqueo: buscarPorBloqueador(usuario, 100, 0) recorriendo la lista
+ * contra existeBloqueo (Bloqueo.existe).
+ *
+ * Cada verificacion usa su propio EntityManager, igual que una llamada al
+ * servicio. Imprime microsegundos y sentencias por verificacion y cuantas
+ * encontro cada forma: con mas de 1000 interacciones o 100 bloqueos la lista
+ * no llega a las mas viejas y la forma anterior las pierde. Termina con
+ * codigo 1 si la busqueda puntual no encuentra todas las que existen.
+ *
+ * Crea sus propios usuarios y no los borra, hay que correrla contra una base
+ * de pruebas.
+ *
+ * Uso: PruebaExistenciaInteracciones [interacciones] [bloqueos] [verificaciones]
+ * Ejemplo: PruebaExistenciaInteracciones 10000 1000 2000
+ *
+ * @author gatog
+ */
+public class PruebaExistenciaInteracciones {
+
+    private final List<Long> otros = new ArrayList<>();
+    private Long idUsuario;
+
+    /**
+     * una verificacion con el EntityManager de la llamada
+     */
+    private interface Verificacion {
+
+        boolean existe(EntityManager em, Long idOtro);
+    }
+
+    public static void main(String[] args) {
+        int interacciones = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int bloqueos = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int verificaciones = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+
+        PruebasUtil.correr(() -> new PruebaExistenciaInteracciones().ejecutar(interacciones, bloqueos, verificaciones));
+    }
+
+    private boolean ejecutar(int interacciones, int bloqueos, int verificaciones) {
+        prepararDatos(interacciones, Math.min(bloqueos, interacciones));
+        System.out.printf("interacciones=%d bloqueos=%d verificaciones=%d%n", interacciones, bloqueos, verificaciones);
+        System.out.printf("%-9s %-8s %12s %11s %11s%n", "consulta", "forma", "encontradas", "us/verif", "sentencias");
+
+        // las mismas semillas para que las dos formas revisen los mismos usuarios
+        medir("like", "lista", verificaciones, 1, (em, idOtro) -> new InteraccionRepository(em)
+                .buscarPorEmisor(em.getReference(Usuario.class, idUsuario), 1000, 0).stream()
+                .anyMatch(i -> i.getUsuarioReceptor().getIdUsuario().equals(idOtro)
+                && i.getTipo() == TipoInteraccion.ME_GUSTA));
+        int likes = medir("like", "puntual", verificaciones, 1, (em, idOtro) -> new InteraccionRepository(em)
+                .existeInteraccion(idUsuario, idOtro, TipoInteraccion.ME_GUSTA));
+
+        medir("bloqueo", "lista", verificaciones, 2, (em, idOtro) -> new BloqueoRepository(em)
+                .buscarPorBloqueador(em.getReference(Usuario.class, idUsuario), 100, 0).stream()
+                .anyMatch(b -> b.getUsuarioBloqueado().getIdUsuario().equals(idOtro)));
+        int bloqueados = medir("bloqueo", "puntual", verificaciones, 2, (em, idOtro) -> new BloqueoRepository(em)
+                .existeBloqueo(idUsuario, idOtro));
+
+        // todos los otros tienen like, los bloqueados son los primeros B
+        int bloqueadosEsperados = 0;
+        Random random = new Random(2);
+        for (int i = 0; i < verificaciones; i++) {
+            if (random.nextInt(otros.size()) < bloqueos) {
+                bloqueadosEsperados++;
+            }
+        }
+        boolean correcto = likes == verificaciones && bloqueados == bloqueadosEsperados;
+        if (!correcto) {
+            System.out.println("ERROR: la busqueda puntual no encontro todas las interacciones o bloqueos");
+        }
+        System.out.println(correcto ? "OK" : "FALLO");
+        return correcto;
+    }
+
+    /**
+     * calienta con una decima parte y luego mide
+     *
+     * @return cuantas verificaciones medidas encontraron la fila
+     */
+    private int medir(String consulta, String forma, int verificaciones, long semilla, Verificacion verificacion) {
+        Statistics estadisticas = JpaUtil.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        verificar(verificaciones / 10, new Random(semilla + 100), verificacion);
+
+        long antes = estadisticas.getPrepareStatementCount();
+        long inicio = System.nanoTime();
+        int encontradas = verificar(verificaciones, new Random(semilla), verificacion);
+        long nanos = System.nanoTime() - inicio;
+        long sentencias = estadisticas.getPrepareStatementCount() - antes;
+
+        System.out.printf("%-9s %-8s %12d %11.1f %11.1f%n", consulta, forma, encontradas,
+                nanos / 1000.0 / verificaciones, (double) sentencias / verificaciones);
+        return encontradas;
+    }
+
+    private int verificar(int veces, Random random, Verificacion verificacion) {
+        int encontradas = 0;
+        for (int i = 0; i < veces; i++) {
+            Long idOtro = otros.get(random.nextInt(otros.size()));
+            EntityManager em = JpaUtil.getEntityManager();
+            try {
+                if (verificacion.existe(em, idOtro)) {
+                    encontradas++;
+                }
+            } finally {
+                JpaUtil.closeEntityManager();
+            }
+        }
+        return encontradas;
+    }
+
+    /**
+     * crea al usuario, un ME_GUSTA hacia cada otro usuario y bloqueos a los
+     * primeros; las fechas crecen para que los primeros queden al final de
+     * las listas ordenadas por fecha
+     */
+    private void prepararDatos(int interacciones, int bloqueos) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            JpaUtil.beginUnitOfWork();
+            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            InteraccionRepository interaccionRepo = new InteraccionRepository(em);
+            BloqueoRepository bloqueoRepo = new BloqueoRepository(em);
+            String prefijo = PruebasUtil.nuevoPrefijo("existe");
+            LocalDateTime base = LocalDateTime.now().minusDays(1);
+
+            Usuario usuario = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, 0);
+            List<Usuario> nuevos = new ArrayList<>();
+            for (int i = 1; i <= interacciones; i++) {
+                Usuario otro = PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, i);
+                nuevos.add(otro);
+                interaccionRepo.insertar(new Interaccion.Builder()
+                        .usuarioEmisor(usuario)
+                        .usuarioReceptor(otro)
+                        .tipo(TipoInteraccion.ME_GUSTA)
+                        .fechaInteraccion(base.plusSeconds(i))
+                        .build());
+                if (i <= bloqueos) {
+                    bloqueoRepo.insertar(new Bloqueo.Builder()
+                            .usuarioBloqueador(usuario)
+                            .usuarioBloqueado(otro)
+                            .fechaBloqueo(base.plusSeconds(i))
+                            .build());
+                }
+            }
+            JpaUtil.commitTransaction();
+
+            idUsuario = usuario.getIdUsuario();
+            for (Usuario otro : nuevos) {
+                otros.add(otro.getIdUsuario());
+            }
+        } catch (Exception e) {
+            JpaUtil.rollbackTransaction();
+            throw new IllegalStateException("No se pudieron crear los datos de la prueba", e);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+}
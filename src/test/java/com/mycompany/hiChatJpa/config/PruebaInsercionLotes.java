@@ -0,0 +1,189 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.entitys.Chat;
+import com.mycompany.hiChatJpa.entitys.Interaccion;
+import com.mycompany.hiChatJpa.entitys.Match;
+import com.mycompany.hiChatJpa.entitys.Mensaje;
+import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.ChatRepository;
+import com.mycompany.hiChatJpa.repository.impl.InteraccionRepository;
+import com.mycompany.hiChatJpa.repository.impl.MatchRepository;
+import com.mycompany.hiChatJpa.repository.impl.MensajeRepository;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * prueba de insercion masiva de mensajes e interacciones. Cada tabla se
+ * llena dos veces: con flush despues de cada insertar, como lo hacen los
+ * servicios normalmente, y dentro de una unidad de trabajo
+ * (JpaUtil.beginUnitOfWork) donde Hibernate junta los INSERT en lotes de
+ * hibernate.jdbc.batch_size. Imprime filas por segundo y cuantas sentencias
+ * preparo Hibernate en cada caso.
+ *
+ * Solo las interacciones van en lotes. Mensaje conserva IDENTITY (ver su
+ * idMensaje), asi que Hibernate inserta cada mensaje al hacer persist, uno
+ * por sentencia, tambien en la unidad de trabajo; las filas de mensaje
+ * quedan como referencia de la insercion sin lotes.
+ *
+ * Crea sus propios usuarios y un chat de prueba y no los borra, hay que
+ * correrla contra una base de pruebas.
+ *
+ * Uso: PruebaInsercionLotes [mensajes] [interacciones] [filasPorTransaccion]
+ * Ejemplo: PruebaInsercionLotes 100000 100000 1000
+ *
+ * @author gatog
+ */
+public class PruebaInsercionLotes {
+
+    private final List<Long> usuarios = new ArrayList<>();
+    private Long idChat;
+    // siguiente par (emisor, receptor) sin usar, la tabla no admite repetidos
+    private int emisor;
+    private int receptor = 1;
+
+    public static void main(String[] args) {
+        int mensajes = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int interacciones = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int porTransaccion = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+        PruebasUtil.correr(() -> {
+            new PruebaInsercionLotes().ejecutar(mensajes, interacciones, porTransaccion);
+            return true;
+        });
+    }
+
+    private void ejecutar(int mensajes, int interacciones, int porTransaccion) {
+        // cada modo necesita sus propios pares de usuarios
+        int cantidadUsuarios = (int) Math.ceil(Math.sqrt(2.0 * interacciones)) + 2;
+        prepararDatos(cantidadUsuarios);
+        System.out.printf("usuarios=%d chat=%d filas por transaccion=%d%n", cantidadUsuarios, idChat, porTransaccion);
+
+        System.out.printf("%-13s %-10s %9s %9s %10s %11s%n", "tabla", "modo", "filas", "segundos", "filas/s", "sentencias");
+        medir("interaccion", false, interacciones, porTransaccion, this::insertarInteracciones);
+        medir("interaccion", true, interacciones, porTransaccion, this::insertarInteracciones);
+        medir("mensaje", false, mensajes, porTransaccion, this::insertarMensajes);
+        medir("mensaje", true, mensajes, porTransaccion, this::insertarMensajes);
+        System.out.println("mensaje usa IDENTITY: sus INSERT no van en lotes en ningun modo");
+    }
+
+    /**
+     * inserta una transaccion con la cantidad de filas indicada
+     */
+    private interface Insercion {
+
+        void insertar(EntityManager em, int filas) throws Exception;
+    }
+
+    private void medir(String tabla, boolean enLotes, int total, int porTransaccion, Insercion insercion) {
+        Statistics estadisticas = JpaUtil.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        long sentenciasAntes = estadisticas.getPrepareStatementCount();
+        long inicio = System.nanoTime();
+
+        for (int hechas = 0; hechas < total; hechas += porTransaccion) {
+            int filas = Math.min(porTransaccion, total - hechas);
+            EntityManager em = JpaUtil.getEntityManager();
+            try {
+                if (enLotes) {
+                    JpaUtil.beginUnitOfWork();
+                } else {
+                    JpaUtil.beginTransaction();
+                }
+                insercion.insertar(em, filas);
+                JpaUtil.commitTransaction();
+            } catch (Exception e) {
+                JpaUtil.rollbackTransaction();
+                throw new IllegalStateException("Fallo la insercion de " + tabla, e);
+            } finally {
+                // contexto nuevo por transaccion para no acumular entidades
+                JpaUtil.closeEntityManager();
+            }
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        System.out.printf("%-13s %-10s %9d %9.2f %10.0f %11d%n", tabla, enLotes ? "lotes" : "inmediato",
+                total, segundos, total / segundos, estadisticas.getPrepareStatementCount() - sentenciasAntes);
+    }
+
+    private void insertarInteracciones(EntityManager em, int filas) throws Exception {
+        InteraccionRepository interaccionRepo = new InteraccionRepository(em);
+        for (int i = 0; i < filas; i++) {
+            interaccionRepo.insertar(new Interaccion.Builder()
+                    .usuarioEmisor(em.getReference(Usuario.class, usuarios.get(emisor)))
+                    .usuarioReceptor(em.getReference(Usuario.class, usuarios.get(receptor)))
+                    .tipo(i % 3 == 0 ? TipoInteraccion.NO_ME_INTERESA : TipoInteraccion.ME_GUSTA)
+                    .build());
+            siguientePar();
+        }
+    }
+
+    private void insertarMensajes(EntityManager em, int filas) throws Exception {
+        ChatRepository chatRepo = new ChatRepository(em);
+        MensajeRepository mensajeRepo = new MensajeRepository(em);
+        Chat chat = chatRepo.buscar(idChat);
+
+        // se reservan las secuencias de toda la transaccion con un solo bloqueo
+        long secuencia = chatRepo.siguienteSecuencia(chat);
+        chat.setUltimaSecuencia(secuencia + filas - 1);
+
+        Usuario[] emisores = {em.getReference(Usuario.class, usuarios.get(0)), em.getReference(Usuario.class, usuarios.get(1))};
+        for (int i = 0; i < filas; i++) {
+            mensajeRepo.insertar(new Mensaje.Builder()
+                    .chat(chat)
+                    .usuarioEmisor(emisores[i % 2])
+                    .contenido("Mensaje de carga " + (secuencia + i))
+                    .secuencia(secuencia + i)
+                    .build());
+        }
+    }
+
+    private void siguientePar() {
+        receptor++;
+        if (receptor == emisor) {
+            receptor++;
+        }
+        if (receptor >= usuarios.size()) {
+            emisor++;
+            receptor = 0;
+        }
+    }
+
+    private void prepararDatos(int cantidadUsuarios) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            JpaUtil.beginUnitOfWork();
+            UsuarioRepository usuarioRepo = new UsuarioRepository(em);
+            String prefijo = PruebasUtil.nuevoPrefijo("carga");
+            List<Usuario> nuevos = new ArrayList<>();
+            for (int i = 0; i < cantidadUsuarios; i++) {
+                nuevos.add(PruebasUtil.nuevoUsuario(usuarioRepo, prefijo, i));
+            }
+
+            Match match = new Match.Builder()
+                    .usuarioA(nuevos.get(0))
+                    .usuarioB(nuevos.get(1))
+                    .build();
+            new MatchRepository(em).insertar(match);
+            Chat chat = new Chat.Builder()
+                    .nombre("Carga de lotes")
+                    .match(match)
+                    .build();
+            new ChatRepository(em).insertar(chat);
+            JpaUtil.commitTransaction();
+
+            for (Usuario usuario : nuevos) {
+                usuarios.add(usuario.getIdUsuario());
+            }
+            idChat = chat.getIdChat();
+        } catch (Exception e) {
+            JpaUtil.rollbackTransaction();
+            throw new IllegalStateException("No se pudieron crear los datos de la prueba", e);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+}
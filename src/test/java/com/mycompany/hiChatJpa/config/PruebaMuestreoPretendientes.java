@@ -0,0 +1,301 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.entitys.Interaccion;
+import com.mycompany.hiChatJpa.entitys.TipoInteraccion;
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.InteraccionRepository;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Function;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+/**
+ * prueba del muestreo de pretendientes. Crea N usuarios y un usuario que ya
+ * interactuo con un porcentaje de ellos: la mitad como un bloque al inicio de
+ * los IDs (un hueco grande de no elegibles) y la otra mitad repartida al azar.
+ * Compara dos formas de sacar una muestra:
+ *
+ * - rand: la consulta anterior, todos los elegibles ORDER BY RAND() LIMIT.
+ *
+ * - muestreo: UsuarioRepository.muestrearPretendientes.
+ *
+ * Imprime milisegundos y sentencias por muestra de cada forma. Despues revisa
+ * que el muestreo sea uniforme: ningun repetido ni no elegible dentro de una
+ * muestra, y las veces que sale cada decil de los elegibles (ordenados por
+ * ID) deben quedar cerca de lo esperado. Tambien imprime cuantas veces salio
+ * el elegible mas frecuente, con huecos mal pesados ese numero se dispara.
+ * Termina con codigo 1 si algo de eso falla.
+ *
+ * Con porcentajes altos (99.9 con 100000 usuarios deja 100 elegibles) se
+ * prueba el caso de pocos elegibles.
+ *
+ * Crea sus propios usuarios y no los borra, hay que correrla contra una base
+ * de pruebas y sin DB_REPLICA_URLS.
+ *
+ * Uso: PruebaMuestreoPretendientes [usuarios] [porcentajeInteractuados] [muestras] [limit]
+ * Ejemplo: PruebaMuestreoPretendientes 1000000 50 200 50
+ *
+ * @author gatog
+ */
+public class PruebaMuestreoPretendientes {
+
+    private static final int DECILES = 10;
+
+    // misma condicion que la consulta anterior a muestrearPretendientes
+    private static final String JPQL_RAND
+            = "SELECT u FROM Usuario u "
+            + "WHERE u.idUsuario <> :idUsuarioActual "
+            + "AND u.idUsuario NOT IN ("
+            + "    SELECT b.usuarioBloqueado.idUsuario FROM Bloqueo b "
+            + "    WHERE b.usuarioBloqueador.idUsuario = :idUsuarioActual"
+            + ") "
+            + "AND u.idUsuario NOT IN ("
+            + "    SELECT b.usuarioBloqueador.idUsuario FROM Bloqueo b "
+            + "    WHERE b.usuarioBloqueado.idUsuario = :idUsuarioActual"
+            + ") "
+            + "AND u.idUsuario NOT IN ("
+            + "    SELECT i.usuarioReceptor.idUsuario FROM Interaccion i "
+            + "    WHERE i.usuarioEmisor.idUsuario = :idUsuarioActual"
+            + ") "
+            + "ORDER BY FUNCTION('RAND')";
+
+    private Long idUsuario;
+    // IDs elegibles para idUsuario en orden, incluye los de otras corridas
+    private long[] elegibles;
+
+    public static void main(String[] args) {
+        int usuarios = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        double porcentaje = args.length > 1 ? Double.parseDouble(args[1]) : 50;
+        int muestras = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int limit = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        PruebasUtil.correr(() -> new PruebaMuestreoPretendientes().ejecutar(usuarios, porcentaje, muestras, limit));
+    }
+
+    private boolean ejecutar(int usuarios, double porcentaje, int muestras, int limit) {
+        PruebasUtil.avisarSiHayReplicas();
+        prepararDatos(usuarios, porcentaje / 100);
+        cargarElegibles();
+        System.out.printf("usuarios=%d interactuados=%.2f%% elegibles=%d muestras=%d limit=%d%n",
+                usuarios, porcentaje, elegibles.length, muestras, limit);
+        System.out.printf("%-9s %9s %11s%n", "forma", "ms", "sentencias");
+
+        // ORDER BY RAND ordena todos los elegibles, con menos repeticiones basta
+        medir("rand", Math.max(1, muestras / 20), em -> {
+            TypedQuery<Usuario> query = em.createQuery(JPQL_RAND, Usuario.class);
+            query.setParameter("idUsuarioActual", idUsuario);
+            query.setMaxResults(limit);
+            return query.getResultList();
+        });
+        long[] veces = new long[elegibles.length];
+        boolean correcto = medir("muestreo", muestras,
+                em -> new UsuarioRepository(em).muestrearPretendientes(idUsuario, limit), veces, limit);
+
+        correcto &= revisarUniformidad(veces, muestras, limit);
+        System.out.println(correcto ? "OK" : "FALLO");
+        return correcto;
+    }
+
+    private void medir(String forma, int muestras, Function<EntityManager, List<Usuario>> muestreo) {
+        medir(forma, muestras, muestreo, null, 0);
+    }
+
+    /**
+     * saca una muestra para calentar y luego las muestras medidas, cada una
+     * con su propio EntityManager
+     *
+     * @param veces si no es null acumula cuantas veces sale cada elegible
+     * @return false si alguna muestra trae repetidos, no elegibles o menos de
+     * los que hay
+     */
+    private boolean medir(String forma, int muestras, Function<EntityManager, List<Usuario>> muestreo,
+            long[] veces, int limit) {
+        Statistics estadisticas = JpaUtil.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        muestra(muestreo);
+
+        boolean correcto = true;
+        long sentencias = 0;
+        long nanos = 0;
+        for (int i = 0; i < muestras; i++) {
+            long antes = estadisticas.getPrepareStatementCount();
+            long inicio = System.nanoTime();
+            List<Usuario> muestra = muestra(muestreo);
+            nanos += System.nanoTime() - inicio;
+            sentencias += estadisticas.getPrepareStatementCount() - antes;
+
+            if (veces != null) {
+                correcto &= revisarMuestra(muestra, veces, limit);
+            }
+        }
+        System.out.printf("%-9s %9.2f %11.1f%n", forma, nanos / 1_000_000.0 / muestras, (double) sentencias / muestras);
+        return correcto;
+    }
+
+    private List<Usuario> muestra(Function<EntityManager, List<Usuario>> muestreo) {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            return muestreo.apply(em);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+
+    private boolean revisarMuestra(List<Usuario> muestra, long[] veces, int limit) {
+        Set<Long> vistos = new HashSet<>();
+        for (Usuario usuario : muestra) {
+            int posicion = Arrays.binarySearch(elegibles, usuario.getIdUsuario());
+            if (posicion < 0 || !vistos.add(usuario.getIdUsuario())) {
+                System.out.println("ERROR: la muestra trae un repetido o un no elegible: " + usuario.getIdUsuario());
+                return false;
+            }
+            veces[posicion]++;
+        }
+        if (muestra.size() != Math.min(limit, elegibles.length)) {
+            System.out.printf("ERROR: la muestra trae %d de %d%n", muestra.size(), Math.min(limit, elegibles.length));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * compara las veces que sale cada decil de los elegibles con lo esperado;
+     * con miles de apariciones por decil una muestra uniforme queda dentro
+     * del 15%
+     */
+    private boolean revisarUniformidad(long[] veces, int muestras, int limit) {
+        long total = Arrays.stream(veces).sum();
+        double esperadoPorElegible = (double) total / elegibles.length;
+        long maximo = Arrays.stream(veces).max().orElse(0);
+        System.out.printf("por elegible: esperado=%.2f maximo=%d%n", esperadoPorElegible, maximo);
+
+        boolean correcto = true;
+        StringBuilder linea = new StringBuilder("deciles:");
+        for (int d = 0; d < DECILES; d++) {
+            int desde = (int) ((long) elegibles.length * d / DECILES);
+            int hasta = (int) ((long) elegibles.length * (d + 1) / DECILES);
+            long suma = 0;
+            for (int i = desde; i < hasta; i++) {
+                suma += veces[i];
+            }
+            double esperado = esperadoPorElegible * (hasta - desde);
+            double desviacion = esperado > 0 ? (suma - esperado) / esperado : 0;
+            linea.append(String.format(" %+.1f%%", desviacion * 100));
+            if (esperado >= 500 && Math.abs(desviacion) > 0.15) {
+                correcto = false;
+            }
+        }
+        System.out.println(linea);
+        if (!correcto) {
+            System.out.println("ERROR: el muestreo no es uniforme");
+        }
+        return correcto;
+    }
+
+    /**
+     * inserta los usuarios en lotes de JDBC y las interacciones con Hibernate
+     * en unidades de trabajo; la mitad de los interactuados son los primeros
+     * IDs y el resto se reparte al azar
+     */
+    private void prepararDatos(int cantidad, double fraccion) {
+        String prefijo = PruebasUtil.nuevoPrefijo("muestreo");
+        EntityManager em = JpaUtil.getEntityManager();
+        long[] ids;
+        try {
+            JpaUtil.beginTransaction();
+            em.unwrap(Session.class).doWork(conexion -> {
+                try (PreparedStatement insert = conexion.prepareStatement("INSERT INTO usuario "
+                        + "(nombre, apellido_paterno, correo_electronico, contraseña, fecha_registro) "
+                        + "VALUES (?, ?, ?, ?, ?)")) {
+                    Timestamp ahora = Timestamp.valueOf(LocalDateTime.now());
+                    for (int i = 0; i <= cantidad; i++) {
+                        insert.setString(1, "Muestreo" + i);
+                        insert.setString(2, "Prueba");
+                        insert.setString(3, prefijo + "." + i + "@prueba.local");
+                        insert.setString(4, "prueba");
+                        insert.setTimestamp(5, ahora);
+                        insert.addBatch();
+                        if (i % 1000 == 999) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+            });
+            JpaUtil.commitTransaction();
+            ids = em.createQuery("SELECT u.idUsuario FROM Usuario u WHERE u.correoElectronico LIKE :prefijo "
+                    + "ORDER BY u.idUsuario", Long.class)
+                    .setParameter("prefijo", prefijo + ".%")
+                    .getResultList().stream().mapToLong(Long::longValue).toArray();
+        } catch (Exception e) {
+            JpaUtil.rollbackTransaction();
+            throw new IllegalStateException("No se pudieron crear los usuarios de la prueba", e);
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+
+        // el ultimo es el que busca, asi el bloque de interactuados queda al inicio
+        idUsuario = ids[ids.length - 1];
+        int bloque = (int) (cantidad * fraccion / 2);
+        double resto = bloque < cantidad ? (cantidad * fraccion - bloque) / (cantidad - bloque) : 0;
+        Random random = new Random(6);
+        int siguiente = 0;
+        while (siguiente < cantidad) {
+            em = JpaUtil.getEntityManager();
+            try {
+                JpaUtil.beginUnitOfWork();
+                InteraccionRepository interaccionRepo = new InteraccionRepository(em);
+                Usuario emisor = em.getReference(Usuario.class, idUsuario);
+                int hasta = Math.min(cantidad, siguiente + 10_000);
+                for (; siguiente < hasta; siguiente++) {
+                    if (siguiente < bloque || random.nextDouble() < resto) {
+                        interaccionRepo.insertar(new Interaccion.Builder()
+                                .usuarioEmisor(emisor)
+                                .usuarioReceptor(em.getReference(Usuario.class, ids[siguiente]))
+                                .tipo(TipoInteraccion.NO_ME_INTERESA)
+                                .build());
+                    }
+                }
+                JpaUtil.commitTransaction();
+            } catch (Exception e) {
+                JpaUtil.rollbackTransaction();
+                throw new IllegalStateException("No se pudieron crear las interacciones de la prueba", e);
+            } finally {
+                JpaUtil.closeEntityManager();
+            }
+        }
+    }
+
+    /**
+     * lee todos los elegibles para revisar las muestras, cuenta tambien a los
+     * usuarios que ya habia en la base
+     */
+    private void cargarElegibles() {
+        EntityManager em = JpaUtil.getEntityManager();
+        try {
+            elegibles = em.createQuery("SELECT u.idUsuario FROM Usuario u "
+                    + "WHERE u.idUsuario <> :idUsuarioActual "
+                    + "AND NOT EXISTS (SELECT b FROM Bloqueo b WHERE b.usuarioBloqueador.idUsuario = :idUsuarioActual "
+                    + "    AND b.usuarioBloqueado = u) "
+                    + "AND NOT EXISTS (SELECT b FROM Bloqueo b WHERE b.usuarioBloqueador = u "
+                    + "    AND b.usuarioBloqueado.idUsuario = :idUsuarioActual) "
+                    + "AND NOT EXISTS (SELECT i FROM Interaccion i WHERE i.usuarioEmisor.idUsuario = :idUsuarioActual "
+                    + "    AND i.usuarioReceptor = u) "
+                    + "ORDER BY u.idUsuario", Long.class)
+                    .setParameter("idUsuarioActual", idUsuario)
+                    .getResultList().stream().mapToLong(Long::longValue).toArray();
+        } finally {
+            JpaUtil.closeEntityManager();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.mycompany.hiChatJpa.config;
+
+import com.mycompany.hiChatJpa.entitys.Usuario;
+import com.mycompany.hiChatJpa.repository.impl.UsuarioRepository;
+import java.util.function.BooleanSupplier;
+
+/**
+ * lo que comparten las pruebas de rendimiento que corren contra una base de
+ * pruebas: el arranque del main y los usuarios que crean
+ *
+ * @author gatog
+ */
+final class PruebasUtil {
+
+    private PruebasUtil() {
+    }
+
+    /**
+     * metodo que corre una prueba, cierra JPA al terminar y sale con codigo 1
+     * si la prueba fallo
+     *
+     * @param prueba regresa true si la prueba paso
+     */
+    static void correr(BooleanSupplier prueba) {
+        boolean correcto;
+        try {
+            correcto = prueba.getAsBoolean();
+        } finally {
+            JpaUtil.shutdown();
+        }
+        if (!correcto) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * metodo que avisa si hay replicas, sus sentencias se cuentan en otro
+     * EntityManagerFactory y no salen en las estadisticas de la primaria
+     */
+    static void avisarSiHayReplicas() {
+        if (JpaUtil.hasReplicas()) {
+            System.out.println("aviso: hay replicas configuradas, el conteo de sentencias no es confiable");
+        }
+    }
+
+    /**
+     * metodo que arma un prefijo distinto en cada corrida para los correos de
+     * los usuarios, la base no admite correos repetidos
+     *
+     * @param prueba nombre corto de la prueba
+     * @return prefijo de los correos
+     */
+    static String nuevoPrefijo(String prueba) {
+        return prueba + System.currentTimeMillis();
+    }
+
+    /**
+     * metodo que inserta un usuario de prueba con el correo
+     * prefijo.numero@prueba.local
+     *
+     * @param usuarioRepo repositorio de la transaccion
+     * @param prefijo prefijo de la corrida, de nuevoPrefijo
+     * @param numero numero del usuario dentro de la corrida
+     * @return usuario insertado
+     */
+    static Usuario nuevoUsuario(UsuarioRepository usuarioRepo, String prefijo, int numero) {
+        Usuario usuario = new Usuario.Builder()
+                .nombre("Prueba" + numero)
+                .apellidoPaterno("Prueba")
+                .correoElectronico(prefijo + "." + numero + "@prueba.local")
+                .contrasena("prueba")
+                .build();
+        usuarioRepo.insertar(usuario);
+        return usuario;
+    }
+}
@@ -0,0 +1,170 @@
+package com.mycompany.hiChatJpa.server;
+
+import com.mycompany.hiChatJpa.dto.LoginDTO;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * cliente de carga para el modo servidor, lanza N clientes concurrentes en
+ * hilos virtuales que piden las rutas indicadas durante un tiempo fijo y al
+ * final imprime peticiones por segundo y percentiles de latencia. Antes
+ * inicia sesion con el correo y la contraseña y manda el token en todas las
+ * peticiones; las respuestas 401 y 403 cuentan como fallidas.
+ *
+ * Uso: PruebaCarga urlBase correo contrasena concurrencia segundos ruta [ruta ...]
+ * Ejemplo: PruebaCarga http://localhost:8080 ana@prueba.local secreta 200 30 /api/usuarios/1 /api/chats/1/cambios?desde=0
+ *
+ * @author gatog
+ */
+public class PruebaCarga {
+
+    private static final int MUESTRAS_POR_CLIENTE = 100_000;
+
+    public static void main(String[] args) {
+        if (args.length < 6) {
+            System.out.println("Uso: PruebaCarga urlBase correo contrasena concurrencia segundos ruta [ruta ...]");
+            return;
+        }
+        String urlBase = args[0];
+        int concurrencia = Integer.parseInt(args[3]);
+        int segundos = Integer.parseInt(args[4]);
+        List<URI> rutas = new ArrayList<>();
+        for (int i = 5; i < args.length; i++) {
+            rutas.add(URI.create(urlBase + args[i]));
+        }
+
+        HttpClient cliente = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String token = iniciarSesion(cliente, urlBase, args[1], args[2]);
+
+        LongAdder exitosas = new LongAdder();
+        LongAdder fallidas = new LongAdder();
+        long[][] latencias = new long[concurrencia][];
+        int[] cantidades = new int[concurrencia];
+
+        // calentamiento para que el JIT y el pool no cuenten en la medicion
+        ejecutar(cliente, token, rutas, Math.min(concurrencia, 16), 3, null, null, null, null);
+
+        long inicio = System.nanoTime();
+        ejecutar(cliente, token, rutas, concurrencia, segundos, exitosas, fallidas, latencias, cantidades);
+        double transcurrido = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        int total = 0;
+        for (int cantidad : cantidades) {
+            total += cantidad;
+        }
+        long[] todas = new long[total];
+        int posicion = 0;
+        for (int i = 0; i < concurrencia; i++) {
+            if (latencias[i] == null) {
+                continue;
+            }
+            System.arraycopy(latencias[i], 0, todas, posicion, cantidades[i]);
+            posicion += cantidades[i];
+        }
+        Arrays.sort(todas);
+
+        System.out.printf("clientes=%d duracion=%.1fs exitosas=%d fallidas=%d%n",
+                concurrencia, transcurrido, exitosas.sum(), fallidas.sum());
+        System.out.printf("peticiones/s=%.1f%n", (exitosas.sum() + fallidas.sum()) / transcurrido);
+        System.out.printf("latencia ms p50=%.2f p95=%.2f p99=%.2f max=%.2f%n",
+                percentil(todas, 0.50), percentil(todas, 0.95), percentil(todas, 0.99),
+                todas.length > 0 ? todas[todas.length - 1] / 1_000_000.0 : 0.0);
+    }
+
+    /**
+     * @return token de la sesion, termina el programa si no se pudo iniciar
+     */
+    private static String iniciarSesion(HttpClient cliente, String urlBase, String correo, String contrasena) {
+        try {
+            String cuerpo = new String(JsonUtil.escribir(new LoginDTO(correo, contrasena)),
+                    StandardCharsets.UTF_8);
+            HttpRequest peticion = HttpRequest.newBuilder(URI.create(urlBase + "/api/sesiones"))
+                    .timeout(Duration.ofSeconds(10))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(cuerpo))
+                    .build();
+            HttpResponse<String> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.ofString());
+            if (respuesta.statusCode() != 200) {
+                System.out.println("No se pudo iniciar sesion: " + respuesta.statusCode() + " " + respuesta.body());
+                System.exit(1);
+            }
+            return JsonUtil.leer(respuesta.body(), Sesion.class).token();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Se interrumpio el inicio de sesion", e);
+        } catch (IOException e) {
+            throw new IllegalStateException("No se pudo iniciar sesion", e);
+        }
+    }
+
+    private record Sesion(String token) {
+    }
+
+    private static void ejecutar(HttpClient cliente, String token, List<URI> rutas, int concurrencia, int segundos,
+            LongAdder exitosas, LongAdder fallidas, long[][] latencias, int[] cantidades) {
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < concurrencia; c++) {
+                final int indice = c;
+                ejecutor.submit(() -> {
+                    long[] propias = new long[MUESTRAS_POR_CLIENTE];
+                    int cantidad = 0;
+                    int siguiente = indice;
+                    while (System.nanoTime() < fin) {
+                        HttpRequest peticion = HttpRequest.newBuilder(rutas.get(siguiente++ % rutas.size()))
+                                .timeout(Duration.ofSeconds(10))
+                                .header("Authorization", "Bearer " + token)
+                                .GET()
+                                .build();
+                        long inicio = System.nanoTime();
+                        boolean ok;
+                        try {
+                            HttpResponse<Void> respuesta = cliente.send(peticion, HttpResponse.BodyHandlers.discarding());
+                            int estado = respuesta.statusCode();
+                            ok = estado < 500 && estado != 401 && estado != 403;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long nanos = System.nanoTime() - inicio;
+                        if (exitosas != null) {
+                            (ok ? exitosas : fallidas).increment();
+                        }
+                        if (cantidad < propias.length) {
+                            propias[cantidad++] = nanos;
+                        }
+                    }
+                    if (latencias != null) {
+                        latencias[indice] = propias;
+                        cantidades[indice] = cantidad;
+                    }
+                });
+            }
+        }
+    }
+
+    private static double percentil(long[] ordenadas, double p) {
+        if (ordenadas.length == 0) {
+            return 0;
+        }
+        int indice = (int) Math.ceil(p * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, indice)] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,235 @@
+package com.mycompany.hiChatJpa.server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * prueba de resistencia para la pasarela de mensajes. Abre N conexiones en
+ * hilos virtuales con la misma cuenta, todas se suscriben al mismo chat y
+ * responden los PING del servidor. Una de ellas envia un mensaje cada
+ * intervalo con la hora de envio y todas miden cuanto tardo en llegarles por
+ * push. Al final imprime conexiones logradas, expulsiones y la latencia de
+ * entrega.
+ *
+ * Uso: PruebaSoakPasarela host puerto conexiones segundos correo contrasena idChat [intervaloMs]
+ * Ejemplo: PruebaSoakPasarela localhost 9090 10000 300 ana@itson.edu.mx secreta 1 1000
+ *
+ * Con 10k conexiones locales hay que subir el limite de descriptores
+ * (ulimit -n) del cliente y del servidor.
+ *
+ * @author gatog
+ */
+public class PruebaSoakPasarela {
+
+    private static final String PREFIJO = "soak:";
+    private static final int MAX_MS_HISTOGRAMA = 10_000;
+
+    private final AtomicLongArray histograma = new AtomicLongArray(MAX_MS_HISTOGRAMA + 1);
+    private final LongAdder entregas = new LongAdder();
+    private final LongAdder fallidas = new LongAdder();
+    private final LongAdder cerradasPorServidor = new LongAdder();
+    private final LongAdder pings = new LongAdder();
+    private final List<Cliente> clientes = new CopyOnWriteArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 7) {
+            System.out.println("Uso: PruebaSoakPasarela host puerto conexiones segundos correo contrasena idChat [intervaloMs]");
+            return;
+        }
+        String host = args[0];
+        int puerto = Integer.parseInt(args[1]);
+        int conexiones = Integer.parseInt(args[2]);
+        int segundos = Integer.parseInt(args[3]);
+        String correo = args[4];
+        String contrasena = args[5];
+        long idChat = Long.parseLong(args[6]);
+        long intervaloMs = args.length > 7 ? Long.parseLong(args[7]) : 1000;
+
+        new PruebaSoakPasarela().ejecutar(host, puerto, conexiones, segundos, correo, contrasena, idChat, intervaloMs);
+    }
+
+    private void ejecutar(String host, int puerto, int conexiones, int segundos, String correo,
+            String contrasena, long idChat, long intervaloMs) throws InterruptedException {
+        CountDownLatch listos = new CountDownLatch(conexiones);
+        String autenticar = linea(Map.of("tipo", "AUTENTICAR", "correo", correo, "contrasena", contrasena));
+        String suscribir = linea(Map.of("tipo", "SUSCRIBIR", "idChat", idChat));
+
+        long inicioConexion = System.nanoTime();
+        try (ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < conexiones; i++) {
+                ejecutor.submit(() -> atender(host, puerto, autenticar, suscribir, listos));
+            }
+
+            // se espera a que las conexiones esten suscritas antes de medir
+            listos.await(Math.max(60, conexiones / 100), TimeUnit.SECONDS);
+            double segundosConexion = (System.nanoTime() - inicioConexion) / 1_000_000_000.0;
+            System.out.printf("conectadas=%d de %d en %.1fs, fallidas=%d%n",
+                    clientes.size(), conexiones, segundosConexion, fallidas.sum());
+
+            long enviados = 0;
+            long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+            if (!clientes.isEmpty()) {
+                Cliente emisor = clientes.get(0);
+                while (System.nanoTime() < fin && !emisor.socket.isClosed()) {
+                    try {
+                        emisor.enviar(linea(Map.of("tipo", "ENVIAR", "idChat", idChat,
+                                "contenido", PREFIJO + System.currentTimeMillis())));
+                        enviados++;
+                    } catch (IOException e) {
+                        System.err.println("El emisor perdio la conexion: " + e.getMessage());
+                        break;
+                    }
+                    Thread.sleep(intervaloMs);
+                }
+            }
+            // margen para que lleguen los ultimos mensajes
+            Thread.sleep(2000);
+            int vivas = 0;
+            for (Cliente cliente : clientes) {
+                if (!cliente.socket.isClosed()) {
+                    vivas++;
+                }
+                cliente.cerrar();
+            }
+
+            long esperadas = enviados * clientes.size();
+            System.out.printf("enviados=%d entregas=%d esperadas=%d vivas al final=%d cerradas por el servidor=%d pings=%d%n",
+                    enviados, entregas.sum(), esperadas, vivas, cerradasPorServidor.sum(), pings.sum());
+            System.out.printf("latencia de entrega ms p50=%d p95=%d p99=%d max=%d%n",
+                    percentil(0.50), percentil(0.95), percentil(0.99), percentil(1.0));
+            ejecutor.shutdownNow();
+        }
+    }
+
+    private void atender(String host, int puerto, String autenticar, String suscribir, CountDownLatch listos) {
+        Cliente cliente;
+        try {
+            Socket socket = new Socket();
+            socket.connect(new InetSocketAddress(host, puerto), 10_000);
+            cliente = new Cliente(socket);
+        } catch (IOException e) {
+            fallidas.increment();
+            listos.countDown();
+            return;
+        }
+
+        boolean suscrito = false;
+        try (BufferedReader lector = new BufferedReader(
+                new InputStreamReader(cliente.socket.getInputStream(), StandardCharsets.UTF_8))) {
+            cliente.enviar(autenticar);
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                Map<?, ?> marco = JsonUtil.leer(linea, Map.class);
+                String tipo = String.valueOf(marco.get("tipo"));
+                switch (tipo) {
+                    case "AUTENTICADO" ->
+                        cliente.enviar(suscribir);
+                    case "SUSCRITO" -> {
+                        suscrito = true;
+                        clientes.add(cliente);
+                        listos.countDown();
+                    }
+                    case "PING" -> {
+                        pings.increment();
+                        cliente.enviar("{\"tipo\":\"PONG\"}\n");
+                    }
+                    case "EVENTO" ->
+                        registrarEntrega(marco);
+                    case "CERRADO" ->
+                        cerradasPorServidor.increment();
+                    case "ERROR" -> {
+                        if (!suscrito) {
+                            System.err.println("Error del servidor: " + marco.get("error"));
+                            return;
+                        }
+                    }
+                    default -> {
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // la conexion se cerro
+        } finally {
+            if (!suscrito) {
+                fallidas.increment();
+                listos.countDown();
+            }
+            cliente.cerrar();
+        }
+    }
+
+    private void registrarEntrega(Map<?, ?> marco) {
+        if (!(marco.get("datos") instanceof Map<?, ?> evento) || !(evento.get("mensaje") instanceof Map<?, ?> mensaje)) {
+            return;
+        }
+        Object contenido = mensaje.get("contenido");
+        if (contenido instanceof String texto && texto.startsWith(PREFIJO)) {
+            long ms = System.currentTimeMillis() - Long.parseLong(texto.substring(PREFIJO.length()));
+            histograma.incrementAndGet((int) Math.max(0, Math.min(ms, MAX_MS_HISTOGRAMA)));
+            entregas.increment();
+        }
+    }
+
+    private long percentil(double p) {
+        long total = entregas.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long objetivo = (long) Math.ceil(p * total);
+        long acumulado = 0;
+        for (int ms = 0; ms <= MAX_MS_HISTOGRAMA; ms++) {
+            acumulado += histograma.get(ms);
+            if (acumulado >= objetivo) {
+                return ms;
+            }
+        }
+        return MAX_MS_HISTOGRAMA;
+    }
+
+    private static String linea(Map<String, Object> marco) {
+        try {
+            return new String(JsonUtil.escribir(marco), StandardCharsets.UTF_8) + "\n";
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class Cliente {
+
+        private final Socket socket;
+        private final OutputStream salida;
+
+        Cliente(Socket socket) throws IOException {
+            this.socket = socket;
+            this.salida = socket.getOutputStream();
+        }
+
+        // el emisor escribe desde otro hilo que el lector que responde los PING
+        synchronized void enviar(String linea) throws IOException {
+            salida.write(linea.getBytes(StandardCharsets.UTF_8));
+            salida.flush();
+        }
+
+        void cerrar() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // ya estaba cerrado
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.mycompany.hiChatJpa.view.components;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.geom.RoundRectangle2D;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+/**
+ * micro prueba del pintado de PanelRound. Pinta el mismo panel muchas veces
+ * sobre una imagen, como cuando la lista repinta sus filas, y compara:
+ *
+ * - antes: el pintado anterior, que armaba las cuatro Area de las esquinas en
+ * cada cuadro (copiado abajo en PanelRoundAnterior).
+ *
+ * - ahora: PanelRound, que reutiliza la forma mientras no cambien el tamaño
+ * ni los radios.
+ *
+ * Con tamanios=1 todos los cuadros son del mismo tamaño (la fila de una
+ * lista); con mas tamaños cada cuadro cambia de ancho, como al redimensionar
+ * la ventana, y con mas de 256 la cache de formas ya no alcanza y cada
+ * cuadro vuelve a armar la forma. Imprime bytes asignados y microsegundos por
+ * cuadro, midiendo las asignaciones del hilo con ThreadMXBean. Los bytes de
+ * ahora no llegan a cero porque el pintado de Java2D (la copia de Graphics y
+ * el relleno con antialias) asigna por su cuenta. Termina con codigo 1 si,
+ * cabiendo los tamaños en la cache, ahora asigna mas que antes.
+ *
+ * Uso: PruebaPintadoPanelRound [cuadros] [tamanios]
+ * Ejemplo: PruebaPintadoPanelRound 20000 1
+ *
+ * @author gatog
+ */
+public class PruebaPintadoPanelRound {
+
+    private static final int ANCHO = 390;
+    private static final int ALTO = 50;
+    private static final int RADIO = 20;
+
+    // igual a MAXIMO_FORMAS de PanelRound
+    private static final int FORMAS_EN_CACHE = 256;
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int cuadros = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        int tamanios = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        boolean[] correcto = new boolean[1];
+        SwingUtilities.invokeAndWait(() -> correcto[0] = ejecutar(cuadros, tamanios));
+        if (!correcto[0]) {
+            System.exit(1);
+        }
+    }
+
+    private static boolean ejecutar(int cuadros, int tamanios) {
+        System.out.printf("cuadros=%d tamanios=%d%n", cuadros, tamanios);
+        System.out.printf("%-6s %14s %12s%n", "forma", "bytes/cuadro", "us/cuadro");
+
+        PanelRoundAnterior anterior = new PanelRoundAnterior();
+        anterior.setRadios(RADIO);
+        PanelRound actual = new PanelRound();
+        actual.setRoundTopLeft(RADIO);
+        actual.setRoundTopRight(RADIO);
+        actual.setRoundBottomLeft(RADIO);
+        actual.setRoundBottomRight(RADIO);
+
+        BufferedImage imagen = new BufferedImage(ANCHO + tamanios, ALTO, BufferedImage.TYPE_INT_ARGB);
+        // calentamiento para que el JIT no cuente en la medicion
+        medir(anterior, imagen, cuadros / 10, tamanios, false);
+        medir(actual, imagen, cuadros / 10, tamanios, false);
+
+        double bytesAntes = medir(anterior, imagen, cuadros, tamanios, true);
+        double bytesAhora = medir(actual, imagen, cuadros, tamanios, true);
+
+        boolean correcto = tamanios > FORMAS_EN_CACHE || bytesAhora <= bytesAntes;
+        if (!correcto) {
+            System.out.println("ERROR: el pintado actual asigna mas que el anterior");
+        }
+        System.out.println(correcto ? "OK" : "FALLO");
+        return correcto;
+    }
+
+    /**
+     * @return bytes asignados por cuadro
+     */
+    private static double medir(JPanel panel, BufferedImage imagen, int cuadros, int tamanios, boolean imprimir) {
+        com.sun.management.ThreadMXBean hilos = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        panel.setBackground(new Color(40, 30, 60));
+        panel.setBounds(0, 0, ANCHO, ALTO);
+        Graphics2D g = imagen.createGraphics();
+        try {
+            long bytesAntes = hilos.getCurrentThreadAllocatedBytes();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < cuadros; i++) {
+                if (tamanios > 1) {
+                    panel.setSize(ANCHO + i % tamanios, ALTO);
+                }
+                panel.paint(g);
+            }
+            long nanos = System.nanoTime() - inicio;
+            long bytes = hilos.getCurrentThreadAllocatedBytes() - bytesAntes;
+            double bytesPorCuadro = cuadros > 0 ? (double) bytes / cuadros : 0;
+            if (imprimir) {
+                System.out.printf("%-6s %14.0f %12.2f%n", panel instanceof PanelRound ? "ahora" : "antes",
+                        bytesPorCuadro, nanos / 1000.0 / cuadros);
+            }
+            return bytesPorCuadro;
+        } finally {
+            g.dispose();
+        }
+    }
+
+    /**
+     * el pintado de PanelRound antes de guardar la forma
+     */
+    private static final class PanelRoundAnterior extends JPanel {
+
+        private int roundTopLeft;
+        private int roundTopRight;
+        private int roundBottomLeft;
+        private int roundBottomRight;
+
+        private PanelRoundAnterior() {
+            setOpaque(false);
+            setLayout(null);
+        }
+
+        private void setRadios(int radio) {
+            roundTopLeft = radio;
+            roundTopRight = radio;
+            roundBottomLeft = radio;
+            roundBottomRight = radio;
+        }
+
+        @Override
+        protected void paintComponent(Graphics grphcs) {
+            Graphics2D g2 = (Graphics2D) grphcs.create();
+            g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g2.setColor(getBackground());
+            Area area = new Area(createRoundTopLeft());
+            if (roundTopRight > 0) {
+                area.intersect(new Area(createRoundTopRight()));
+            }
+            if (roundBottomLeft > 0) {
+                area.intersect(new Area(createRoundBottomLeft()));
+            }
+            if (roundBottomRight > 0) {
+                area.intersect(new Area(createRoundBottomRight()));
+            }
+            g2.fill(area);
+            g2.dispose();
+            super.paintComponent(grphcs);
+        }
+
+        private Shape createRoundTopLeft() {
+            int width = getWidth();
+            int height = getHeight();
+            int roundX = Math.min(width, roundTopLeft);
+            int roundY = Math.min(height, roundTopLeft);
+            Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
+            area.add(new Area(new Rectangle2D.Double(roundX / 2, 0, width - roundX / 2, height)));
+            area.add(new Area(new Rectangle2D.Double(0, roundY / 2, width, height - roundY / 2)));
+            return area;
+        }
+
+        private Shape createRoundTopRight() {
+            int width = getWidth();
+            int height = getHeight();
+            int roundX = Math.min(width, roundTopRight);
+            int roundY = Math.min(height, roundTopRight);
+            Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
+            area.add(new Area(new Rectangle2D.Double(0, 0, width - roundX / 2, height)));
+            area.add(new Area(new Rectangle2D.Double(0, roundY / 2, width, height - roundY / 2)));
+            return area;
+        }
+
+        private Shape createRoundBottomLeft() {
+            int width = getWidth();
+            int height = getHeight();
+            int roundX = Math.min(width, roundBottomLeft);
+            int roundY = Math.min(height, roundBottomLeft);
+            Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
+            area.add(new Area(new Rectangle2D.Double(roundX / 2, 0, width - roundX / 2, height)));
+            area.add(new Area(new Rectangle2D.Double(0, 0, width, height - roundY / 2)));
+            return area;
+        }
+
+        private Shape createRoundBottomRight() {
+            int width = getWidth();
+            int height = getHeight();
+            int roundX = Math.min(width, roundBottomRight);
+            int roundY = Math.min(height, roundBottomRight);
+            Area area = new Area(new RoundRectangle2D.Double(0, 0, width, height, roundX, roundY));
+            area.add(new Area(new Rectangle2D.Double(0, 0, width - roundX / 2, height)));
+            area.add(new Area(new Rectangle2D.Double(0, 0, width, height - roundY / 2)));
+            return area;
+        }
+    }
+}